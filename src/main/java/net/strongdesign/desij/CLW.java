@@ -159,6 +159,21 @@ public class CLW extends CommandLineWrapper {
 	public  CommandLineInteger CSC_BACKTRACKING_LEVEL = 
 		new CommandLineInteger("max-csc-backtracking", -1, Integer.MAX_VALUE, 1, false);
 
+	@Help("The tool extracting the CSC violation traces of the components for CSC aware decomposition." +
+			"\n\t- auto: explicit for components with at most csc-traces-explicit-size places and transitions, otherwise symbolic if they are safe" +
+			"\n\t- explicit: the reachability graph is explored" +
+			"\n\t- symbolic: the reachable states of a safe STG are represented with BDDs" +
+			"\n\t- sat: the unfolding prefix of a safe STG is built in-process and searched with a SAT solver" +
+			"\n\t- punf: the external tools punf and mpsat")
+	public  CommandLineParameter CSC_TRACES = 
+		new CommandLineParameter("csc-traces", "auto,explicit,symbolic,sat,punf", "auto", false);
+	
+	@Help("The maximum size of a component (#Transition + #Places) for which CSC violation traces are extracted from" +
+			" the explicit reachability graph, see csc-traces.")
+	@RelatedTo("CSC_TRACES")
+	public  CommandLineInteger CSC_TRACES_EXPLICIT_SIZE = 
+		new CommandLineInteger("csc-traces-explicit-size", 0, Integer.MAX_VALUE, 60, false);
+
 	// *******************************************************************
 
 	@Help("The maximum number of signals a component can have to perform component aggregation.")
@@ -237,7 +252,6 @@ public class CLW extends CommandLineWrapper {
 	// *******************************************************************
 	
 	@Help("See option -o. Order is updated after every contraction")
-	@NotEnabled
 	public  CommandLineOption ADAPTIVE_REORDERING = 
 	new CommandLineOption('r', "adaptive-reordering", true);
 
@@ -286,11 +300,27 @@ public class CLW extends CommandLineWrapper {
 	public  CommandLineParameter DECOMPOSITION_TREE = 
 		new CommandLineParameter("deco-tree", "combined,top-down", "combined", false);
 
+	@Help("Number of threads reducing the components of a partition, or the subtrees of a decomposition tree, concurrently," +
+			" 0 - one per available processor, 1 - one component after another. The log and the intermediate" +
+			" results are written in the order of the components.")
+	public  CommandLineInteger COMPONENT_THREADS =
+		new CommandLineInteger("component-threads", 0, 1024, 1, false);
+
+	@Help("Memory in MB for the copies of the STG needed to decompose subtrees concurrently, subtrees exceeding it are" +
+			" decomposed one after another, 0 - a quarter of the maximum heap size.")
+	public  CommandLineInteger SNAPSHOT_MEMORY =
+		new CommandLineInteger("snapshot-memory", 0, Integer.MAX_VALUE, 0, false);
 	
 	@Help("The maximum size of an STG (#Transition + #Places) for which properties are checked on the unfolding.")
 	public CommandLineInteger MAX_STG_SIZE_FOR_UNFOLDING = 
 		new CommandLineInteger("max-unfolding-size", 0, Integer.MAX_VALUE, 20, false);
 
+	@Help("The tool computing unfoldings for the options -X and -x." +
+			"\n\t- internal: the prefix is built in-process" +
+			"\n\t- punf: the external tools punf and mpsat")
+	public CommandLineParameter UNFOLDER = 
+		new CommandLineParameter("unfolder", "internal,punf", "internal", false);
+
 	
 	@Help("Use the undo stack instead of cloning. (strongly recommended)")
 	public CommandLineOption UNDO_STACK =
@@ -349,7 +379,7 @@ public class CLW extends CommandLineWrapper {
 	// *******************************************************************	
 
 	@Help("Use an unfolding to check for implicit places. When this option is enabled" +
-	" every implicit places is found. You need punf/mpsat to be installed for this.")
+	" every implicit places is found. With unfolder=punf you need punf/mpsat to be installed for this.")
 	@RelatedTo("MAX_STG_SIZE_FOR_UNFOLDING")
 	public  CommandLineOption RED_UNFOLDING = 
 		new CommandLineOption('X', "red-unfolding", false);	
@@ -367,6 +397,15 @@ public class CLW extends CommandLineWrapper {
 	public CommandLineDouble PLACE_INCREASE =
 		new CommandLineDouble("max-place-increase", 1, Double.MAX_VALUE, 1.1, false);
 
+	//	*******************************************************************
+	
+	@Help("How redundant places and transitions are found after contractions." +
+			"\n\t- incremental: only the nodes around the contracted transitions are checked" +
+			"\n\t- full: all nodes are checked" +
+			"\n\t- verify: incremental, afterwards all nodes are checked and missed ones are reported")
+	public CommandLineParameter REDUNDANCY_CHECK = 
+		new CommandLineParameter("redundancy-check", "incremental,full,verify", "incremental", false);
+
 	// *******************************************************************
 	// Internal Communication Options
 	// *******************************************************************
@@ -487,6 +526,24 @@ public class CLW extends CommandLineWrapper {
 	public CommandLineOption NOILP = 
 		new CommandLineOption('Q', "noilp", true);
 	
+	@Help("The solver for the (I)LP problems of the partitioning strategies, the CSC checks and the implicit place conditions." +
+			"\n\t- java: an in-process dual simplex with branch and bound, which stops with an error if it gives up on a hard ILP" +
+			"\n\t- lpsolve: the native library lp_solve")
+	public CommandLineParameter LP_BACKEND = 
+		new CommandLineParameter("lp-backend", "java,lpsolve", "lpsolve", false);
+
+	@Help("How CSC is checked for the projections of operation reduceint." +
+			"\n\t- lp: two marking equations per output edge, which may report conflicts which are not reachable" +
+			"\n\t- sat: a SAT solver on the configurations of the unfolding prefix, used for structurally bounded STGs only")
+	public CommandLineParameter CSC_CHECKER =
+		new CommandLineParameter("csc-checker", "lp,sat", "lp", false);
+
+	@Help("How the STG-bisimulation is found for the operations check and bisim." +
+			"\n\t- search: elements are guessed and withdrawn again when they fail, which may take exponential time and deep recursion" +
+			"\n\t- refinement: all candidate elements are explored and those which fail are removed, in time linear in their number")
+	public CommandLineParameter BISIM_ENGINE =
+		new CommandLineParameter("bisim-engine", "search,refinement", "search", false);
+
 	
 	// *******************************************************************
 	
@@ -520,6 +577,35 @@ public class CLW extends CommandLineWrapper {
 	public  CommandLineInteger IPLACE_LP_SOLVER_DEPTH = 
 		new CommandLineInteger("lp-solver-depth", 0, Integer.MAX_VALUE, 10, false);	
 	
+	@Help("When searching for implicit places with the LP solver, places which are implicit due to the P-semiflows of the STG" +
+			" are removed without solving an LP.")
+	public CommandLineOption PLACE_INVARIANTS =
+		new CommandLineOption('J', "place-invariants", true);
+	
+	// *******************************************************************
+	
+	@Help("Number of threads used for exploring reachability graphs (operations rg and info, option -R, state graphs)" +
+			" for implicit place queries on unfoldings (option -X) and for the LP checks of implicit places (option -t)," +
+			" 0 - one per available processor, 1 - sequential exploration.")
+	public  CommandLineInteger THREADS = 
+		new CommandLineInteger("threads", 0, 1024, 1, false);
+	
+	// *******************************************************************
+	
+	@Help("Partial order reduction with stubborn sets for operation info, the given property is checked on the reduced state space." +
+			"\n\t- none: no reduction, the full state space is explored" +
+			"\n\t- deadlock: reachable deadlocks" +
+			"\n\t- consistency: consistency of the signal edges, only dummy transitions are reduced" +
+			"\n\t- persistence: output persistence")
+	public  CommandLineParameter REDUCTION = 
+		new CommandLineParameter("reduction", "none,deadlock,consistency,persistence", "none", false);
+	
+	@Help("Representation of the state space for operation info." +
+			"\n\t- explicit: all markings are stored explicitly" +
+			"\n\t- symbolic: the markings of a safe STG are stored as BDDs, consistency, USC and CSC are checked as well")
+	public  CommandLineParameter STATE_SPACE = 
+		new CommandLineParameter("state-space", "explicit,symbolic", "explicit", false);
+	
 	
 	// *******************************************************************
 	// Input / Output options
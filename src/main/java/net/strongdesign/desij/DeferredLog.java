@@ -0,0 +1,102 @@
+/**
+ * Copyright 2004,2005,2006,2007,2008,2009,2010,2011 Mark Schaefer, Dominic Wist
+ *
+ * This file is part of DesiJ.
+ * 
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.desij;
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Log messages of {@link DesiJ#logFile} which can be held back on a thread, e.g. while
+ * several components are reduced concurrently. The held back messages are written later with
+ * {@link #write(List)}, which makes the log independent of the thread scheduling. Holding back
+ * can be nested, messages go to the innermost {@link #hold()}.
+ */
+public class DeferredLog {
+
+	private static final ThreadLocal<LinkedList<List<Message>>> buffers = new ThreadLocal<LinkedList<List<Message>>>();
+
+	public static class Message {
+		private final boolean info;
+		private final String text;
+
+		private Message(boolean info, String text) {
+			this.info = info;
+			this.text = text;
+		}
+	}
+
+	private DeferredLog() {
+	}
+
+	/**
+	 * Holds back all following messages of the current thread.
+	 */
+	public static void hold() {
+		LinkedList<List<Message>> stack = buffers.get();
+		if (stack == null) {
+			stack = new LinkedList<List<Message>>();
+			buffers.set(stack);
+		}
+		stack.push(new LinkedList<Message>());
+	}
+
+	/**
+	 * Stops holding back messages of the current thread, i.e. ends the innermost {@link #hold()}.
+	 * @return The messages held back since the corresponding {@link #hold()}
+	 */
+	public static List<Message> release() {
+		LinkedList<List<Message>> stack = buffers.get();
+		if (stack == null)
+			return new LinkedList<Message>();
+		List<Message> result = stack.pop();
+		if (stack.isEmpty())
+			buffers.remove();
+		return result;
+	}
+
+	/**
+	 * Writes held back messages to the log file of the current thread.
+	 */
+	public static void write(List<Message> messages) {
+		for (Message message : messages) {
+			if (message.info)
+				info(message.text);
+			else
+				debug(message.text);
+		}
+	}
+
+	public static void debug(String message) {
+		LinkedList<List<Message>> stack = buffers.get();
+		if (stack == null)
+			DesiJ.logFile.debug(message);
+		else
+			stack.peek().add(new Message(false, message));
+	}
+
+	public static void info(String message) {
+		LinkedList<List<Message>> stack = buffers.get();
+		if (stack == null)
+			DesiJ.logFile.info(message);
+		else
+			stack.peek().add(new Message(true, message));
+	}
+
+}
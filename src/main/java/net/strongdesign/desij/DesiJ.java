@@ -76,12 +76,15 @@ import net.strongdesign.stg.STGFile;
 import net.strongdesign.stg.STGUtil;
 import net.strongdesign.stg.SignalEdge;
 import net.strongdesign.stg.Signature;
+import net.strongdesign.stg.StubbornSetReduction;
 import net.strongdesign.stg.export.SVGExport;
 import net.strongdesign.stg.parser.ParseException;
 import net.strongdesign.stg.parser.TokenMgrError;
 import net.strongdesign.stg.solvers.RedundantPlaceSolverLP;
 import net.strongdesign.stg.solvers.RedundantPlaceStatistics;
 import net.strongdesign.stg.synthesis.StateGraph;
+import net.strongdesign.stg.synthesis.SymbolicStateGraph;
+import net.strongdesign.stg.synthesis.SynthesisException;
 import net.strongdesign.stg.synthesis.Unfolding;
 import net.strongdesign.stg.traversal.CollectorFactory;
 import net.strongdesign.stg.traversal.ConditionFactory;
@@ -561,7 +564,7 @@ public class DesiJ {
 				STGBisimulationPropagator<Marking, List<Marking>> bisimulationPropagator = new STGBisimulationPropagator<Marking,List<Marking>>();
 				bisimulationPropagator.setSignatures(stg.getSignature(), signatureImpl);
 
-				Set<RelationElement<Marking, List<Marking>>> result = Simulation.findSimulation(spec, pc, bisimulationPropagator);
+				Set<RelationElement<Marking, List<Marking>>> result = findSimulation(spec, pc, bisimulationPropagator);
 				if (result==null)
 					System.out.println("Incorrect decomposition"); //CHECK does findSimulation terminate normally in this case??
 				else {
@@ -585,7 +588,7 @@ public class DesiJ {
 				STGBisimulationPropagator<Integer, Integer> bisimulationPropagator = new STGBisimulationPropagator<Integer,Integer>();
 				bisimulationPropagator.setSignatures(stg.getSignature(), signatureImpl);
 
-				Set<RelationElement<Integer, Integer>> result = Simulation.findSimulation(spec, pc, bisimulationPropagator);
+				Set<RelationElement<Integer, Integer>> result = findSimulation(spec, pc, bisimulationPropagator);
 				if (result==null)
 					System.out.println("Incorrect decomposition"); //CHECK does findSimulation terminate normally in this case??
 				else
@@ -597,6 +600,14 @@ public class DesiJ {
 	}
 
 
+	private static <StateA, StateB> Set<RelationElement<StateA, StateB>> findSimulation(
+			StateSystem<StateA, SignalEdge> spec, StateSystem<StateB, SignalEdge> pc,
+			STGBisimulationPropagator<StateA, StateB> bisimulationPropagator) throws PropagationException {
+		if (CLW.instance.BISIM_ENGINE.getValue().equals("refinement"))
+			return Simulation.findGreatestSimulation(spec, pc, bisimulationPropagator);
+		return Simulation.findSimulation(spec, pc, bisimulationPropagator);
+	}
+
 	private static void show() 
 	throws IOException, FileNotFoundException, ParseException, InterruptedException, STGException {
 		for (String fileName : CLW.instance.getOtherParameters()) {
@@ -682,7 +693,47 @@ public class DesiJ {
 
 
 
-			if (verbose == 1) {
+			StubbornSetReduction.Property property = StubbornSetReduction.Property.fromString(CLW.instance.REDUCTION.getValue());
+			if (CLW.instance.STATE_SPACE.getValue().equals("symbolic")) {
+				try {
+					SymbolicStateGraph sg = new SymbolicStateGraph(stg);
+					System.out.println("#Markings / States (symbolic): " + String.format("%.0f", sg.getNumberOfStates()) +
+							" / #BDD nodes: " + sg.getNumberOfNodes());
+					System.out.println("Consistent: " + sg.isConsistent());
+					if (sg.isConsistent()) {
+						System.out.println("#State codes: " + String.format("%.0f", sg.getNumberOfCodes()));
+						System.out.println("USC / CSC: " + sg.hasUSC() + " / " + sg.hasCSC());
+					}
+				}
+				catch (SynthesisException e) {
+					System.out.println("No symbolic state space: " + e.getMessage());
+				}
+			}
+			else if (property != null) {
+				StubbornSetReduction reduction = new StubbornSetReduction(stg, property);
+				reduction.explore();
+				
+				System.out.println("#Markings / States (reduced for " + CLW.instance.REDUCTION.getValue() + "): " + reduction.getNumberOfStates());
+				System.out.println("#Fully expanded markings / #Skipped firings: " + 
+						reduction.getNumberOfFullyExpanded() + " / " + reduction.getSkippedFirings());
+				
+				switch (property) {
+				case DEADLOCK:
+					System.out.println("#Deadlocks: " + reduction.getViolations().size());
+					for (Marking marking : reduction.getViolations())
+						System.out.println("  " + marking);
+					break;
+				case CONSISTENCY:
+					System.out.println("Consistent: " + reduction.isConsistent());
+					break;
+				case PERSISTENCE:
+					System.out.println("#Markings violating output persistence: " + reduction.getViolations().size());
+					for (Marking marking : reduction.getViolations())
+						System.out.println("  " + marking);
+					break;
+				}
+			}
+			else if (verbose == 1) {
 				System.out.println("#Markings / States: " + STGUtil.sizeOfReachabilityGraph(stg));
 			}
 
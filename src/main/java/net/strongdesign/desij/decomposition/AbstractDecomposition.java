@@ -27,16 +27,29 @@ package net.strongdesign.desij.decomposition;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import net.strongdesign.desij.DeferredLog;
 import net.strongdesign.desij.DesiJ;
+import net.strongdesign.desij.DesiJException;
 import net.strongdesign.desij.CLW;
 import net.strongdesign.desij.Messages;
 import net.strongdesign.desij.decomposition.partitioning.Partition;
+import net.strongdesign.desij.decomposition.tree.AbstractTreeDecomposition;
+import net.strongdesign.stg.DefaultNodeRemover;
+import net.strongdesign.stg.NeighbourTrackingNodeRemover;
 import net.strongdesign.stg.Node;
+import net.strongdesign.stg.NodeRemover;
 import net.strongdesign.stg.Place;
 import net.strongdesign.stg.STG;
 import net.strongdesign.stg.STGException;
@@ -44,6 +57,8 @@ import net.strongdesign.stg.STGFile;
 import net.strongdesign.stg.STGUtil;
 import net.strongdesign.stg.Signature;
 import net.strongdesign.stg.Transition;
+import net.strongdesign.stg.TransitionQueue;
+import net.strongdesign.stg.TransitionQueueWithHeap;
 import net.strongdesign.stg.traversal.ConditionFactory;
 import net.strongdesign.util.FileSupport;
 import net.strongdesign.util.Pair;
@@ -97,10 +112,10 @@ public abstract class AbstractDecomposition   {
 		if (! partition.feasiblePartitionOf(stg) ) throw new STGException(Messages.getString("ParametrizedDecomposition.invalid_partition")); //$NON-NLS-1$
 
 
-		DesiJ.logFile.info(
+		DeferredLog.info(
 				Messages.getString("ParametrizedDecomposition.partition") + 
 				partition);
-		DesiJ.logFile.info(
+		DeferredLog.info(
 				Messages.getString("ParametrizedDecomposition.partition_feasible"));
 
 		//Partitionen generieren
@@ -112,19 +127,125 @@ public abstract class AbstractDecomposition   {
 
 
 		//und aufrufen
+		int threads = CLW.instance.COMPONENT_THREADS.getIntValue();
+		if (threads == 0)
+			threads = Runtime.getRuntime().availableProcessors();
+		if (threads > 1 && components.size() > 1)
+			return reduceConcurrently(stg, components, Math.min(threads, components.size()));
+
+		for (STG component : components) 
+			result.add(reduceComponent(stg, component));
+		
+		return result;
+	}
 
-		for (STG component : components) {
-			StringBuilder signalNames = new StringBuilder();
-			for (String s : component.getSignalNames(component.getSignals(Signature.OUTPUT)))
-				signalNames.append(s.toString());
+	private STG reduceComponent(STG stg, STG component) throws STGException {
+		StringBuilder signalNames = new StringBuilder();
+		for (String s : component.getSignalNames(component.getSignals(Signature.OUTPUT)))
+			signalNames.append(s.toString());
 
-			logging(stg, signalNames.toString(), DecompositionEvent.NEW_COMPONENT, signalNames);
+		logging(stg, signalNames.toString(), DecompositionEvent.NEW_COMPONENT, signalNames);
 
-			STGInOutParameter componentParameter = new STGInOutParameter(component);
-			reduce(componentParameter);
-			result.add(componentParameter.stg);
+		STGInOutParameter componentParameter = new STGInOutParameter(component);
+		reduce(componentParameter);
+		return componentParameter.stg;
+	}
+
+	/**
+	 * A part of the decomposition which is done concurrently to others, e.g. the reduction of one component. 
+	 * The log messages of a part are held back until {@link #writeLog()} and its intermediate results are numbered
+	 * separately, hence neither depends on the thread scheduling. 
+	 */
+	protected abstract class ConcurrentPart<T> implements Callable<T> {
+		private final String name;
+		private final STG rootSpecification = AbstractTreeDecomposition.getRootSpecification();
+		private int number = 0;
+		private List<DeferredLog.Message> log = new LinkedList<DeferredLog.Message>();
+		
+		/**
+		 * @param index The position of the part among its siblings, it determines the names of the intermediate results
+		 */
+		protected ConcurrentPart(int index) {
+			ConcurrentPart<?> parent = currentPart.get();
+			this.name = (parent == null ? "stg_" : parent.name) + digits(index) + "_";
+		}
+		
+		protected abstract T run() throws STGException, IOException;
+		
+		public final T call() throws STGException, IOException {
+			//parts may be run by a thread which is waiting for another part
+			ConcurrentPart<?> previousPart = currentPart.get();
+			STG previousRootSpecification = AbstractTreeDecomposition.getRootSpecification();
+			
+			currentPart.set(this);
+			AbstractTreeDecomposition.setRootSpecification(rootSpecification);
+			DeferredLog.hold();
+			try {
+				return run();
+			}
+			finally {
+				log = DeferredLog.release();
+				AbstractTreeDecomposition.setRootSpecification(previousRootSpecification);
+				if (previousPart == null)
+					currentPart.remove();
+				else
+					currentPart.set(previousPart);
+			}
+		}
+		
+		/**
+		 * Writes the held back log messages of the finished part. 
+		 */
+		public void writeLog() {
+			DeferredLog.write(log);
+		}
+	}
+	
+	private final ThreadLocal<ConcurrentPart<?>> currentPart = new ThreadLocal<ConcurrentPart<?>>();
+	
+	/**
+	 * Reduces the components with the given number of threads. The log messages of the components are written
+	 * in the order of the components when all components are reduced.
+	 */
+	private List<STG> reduceConcurrently(final STG stg, List<STG> components, int threads) throws STGException {
+		List<ConcurrentPart<STG>> parts = new ArrayList<ConcurrentPart<STG>>();
+		List<Future<STG>> futures = new ArrayList<Future<STG>>();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			for (final STG component : components) {
+				ConcurrentPart<STG> part = new ConcurrentPart<STG>(parts.size()) {
+					protected STG run() throws STGException {
+						return reduceComponent(stg, component);
+					}
+				};
+				parts.add(part);
+				futures.add(pool.submit(part));
+			}
+			
+			List<STG> result = new LinkedList<STG>();
+			for (int i=0; i<futures.size(); ++i) {
+				try {
+					result.add(futures.get(i).get());
+				}
+				finally {
+					parts.get(i).writeLog();
+				}
+			}
+			return result;
+		}
+		catch (InterruptedException e) {
+			throw new STGException("Interrupted while reducing the components");
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof STGException)
+				throw (STGException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new DesiJException("Error while reducing the components: " + e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
 		}
-		return result;
 	}
 
 
@@ -146,6 +267,13 @@ public abstract class AbstractDecomposition   {
 	}
 
 	protected void logging(STG stg, DecompositionEvent event, Object affectedComponents) {
+		ConcurrentPart<?> part = currentPart.get();
+		if (part != null) {
+			logging(stg, filePrefix + File.separator + part.name + digits(part.number), event, affectedComponents);
+			if (event.writeSTG()) ++part.number;
+			return;
+		}
+		
 		logging(stg, filePrefix + File.separator + "stg_" + digits(number), event, affectedComponents);
 		if (event.writeSTG()) ++number;   	
 	}
@@ -173,7 +301,7 @@ public abstract class AbstractDecomposition   {
 					return;
 
 
-				DesiJ.logFile.debug(
+				DeferredLog.debug(
 						"" + event + (affectedComponents!=null?affectedComponents:"") + 
 						(CLW.instance.WRITE_INTERMEDIATE_RESULTS.isEnabled() ? (" - file: " +  fileName) : ""));
 			}
@@ -189,7 +317,29 @@ public abstract class AbstractDecomposition   {
 	
 
 	protected Collection<Node> redDel(STG stg) {
-		return STGUtil.redDel(stg);
+		return redDel(stg, new DefaultNodeRemover(stg));
+	}
+	
+	protected Collection<Node> redDel(STG stg, NodeRemover remover) {
+		return STGUtil.redDel(stg, remover);
+	}
+	
+	/**
+	 * Deletes redundant nodes around the nodes changed since the last call, see {@link STGUtil#redDel(STG, NodeRemover, Collection)},
+	 * and updates the contraction order of the transitions next to them.
+	 * @param queue The contraction order, or <code>null</code> if adaptive reordering is disabled.
+	 * @param dirty The changed nodes, or <code>null</code> if all nodes are checked.
+	 */
+	private Collection<Node> redDel(STG stg, TransitionQueue queue, Collection<Node> dirty) {
+		if (queue == null)
+			return STGUtil.redDel(stg, new DefaultNodeRemover(stg), dirty);
+		
+		NeighbourTrackingNodeRemover remover = new NeighbourTrackingNodeRemover(stg);
+		Collection<Node> result = STGUtil.redDel(stg, remover, dirty);
+		queue.removeNodes(remover.getRemoved());
+		for (Node neighbour : remover.getNeighbours())
+			queue.registerAffectedNodes(neighbour.getNeighbours());
+		return result;
 	}
 	
 	public abstract List<Transition> reduce(STGInOutParameter stg) throws STGException;
@@ -199,6 +349,8 @@ public abstract class AbstractDecomposition   {
 	/**
 	 * Contracts a set of transitions; tries to contract a transition several times.
 	 * In fact, as long as no transition at all could be contracted.
+	 * With adaptive reordering, the transition generating the fewest new places is contracted next,
+	 * where the order is updated after every contraction.
 	 * 
 	 * @param decoPara
 	 * @param contract
@@ -214,6 +366,8 @@ public abstract class AbstractDecomposition   {
 		boolean fault;
 		List<Transition> tried, triedSyntactic;
 		Collection<Node> removed = new HashSet<Node>();
+		//the nodes changed since the last deletion of redundant nodes, at first the whole STG is checked
+		Collection<Node> dirty = null;
 
 		do {
 			triedSyntactic = new LinkedList<Transition>();
@@ -223,7 +377,13 @@ public abstract class AbstractDecomposition   {
 			//used to detect an increase in the number of places
 			int nroPlaces = stg.getNumberOfPlaces();
 
-			for (Transition actTransition : contract ) {
+			TransitionQueue queue = null;
+			if (CLW.instance.ORDER_DUMMY_TRANSITIONS.isEnabled() && CLW.instance.ADAPTIVE_REORDERING.isEnabled())
+				queue = new TransitionQueueWithHeap(stg, contract, false);
+			Iterator<Transition> order = contract.iterator();
+
+			while (queue == null ? order.hasNext() : queue.size() > 0) {
+				Transition actTransition = queue == null ? order.next() : queue.pop();
 				if (removed.contains(actTransition))
 					continue;
 				Reason contractable = isContractable(stg, actTransition);
@@ -236,6 +396,10 @@ public abstract class AbstractDecomposition   {
 					
 					Collection<Place> newPlaces = stg.contract(actTransition);          
 					logging(stg, DecompositionEvent.TRANS_CON, actTransition.getString(Node.UNIQUE));
+					
+					Collection<Node> affected = new HashSet<Node>(newPlaces);
+					for (Place place : newPlaces)
+						affected.addAll(place.getNeighbours());
 
 
 					if (CLW.instance.FORBID_SELFTRIGGERING.isEnabled()) {
@@ -254,10 +418,16 @@ public abstract class AbstractDecomposition   {
 								//triedSyntactic.add(actTransition); // However, the signal MUST be backtracked to avoid this conflict --> also when out-det is enabled
 
 								fault = true; 
+								affected.clear();
 								break fp;
 							}
 						}                               
 					}
+					
+					if (dirty != null)
+						dirty.addAll(affected);
+					if (queue != null)
+						queue.registerAffectedNodes(affected);
 
 				}
 				else {
@@ -273,12 +443,14 @@ public abstract class AbstractDecomposition   {
 				}            	
 
 				if (CLW.instance.CHECK_RED_OFTEN.isEnabled()) {
-					removed.addAll(redDel(stg));
+					removed.addAll(redDel(stg, queue, dirty));
+					dirty = new HashSet<Node>();
 				} 
 				else {
 					int newNroP = stg.getNumberOfPlaces();
 					if (newNroP > CLW.instance.PLACE_INCREASE.getDoubleValue() * nroPlaces) {
-						removed.addAll(redDel(stg));
+						removed.addAll(redDel(stg, queue, dirty));
+						dirty = new HashSet<Node>();
 						nroPlaces = newNroP;
 						logging(stg, DecompositionEvent.PLACE_INCREASE, null);
 					}
@@ -287,7 +459,8 @@ public abstract class AbstractDecomposition   {
 			}
 
 			if (! CLW.instance.CHECK_RED_OFTEN.isEnabled()) {
-				removed.addAll(redDel(stg));
+				removed.addAll(redDel(stg, null, dirty));
+				dirty = new HashSet<Node>();
 			}
 
 			//tried to contract all transitions, but none was successful
@@ -65,8 +65,8 @@ public class BasicDecomposition extends AbstractDecomposition {
 			if (toContract.isEmpty())
 				return new LinkedList<Transition>();
 
-			//sort dummies by number of newly generated places |pre t|*|post t| //TODO use priority queue
-			if (CLW.instance.ORDER_DUMMY_TRANSITIONS.isEnabled()) {
+			//sort dummies by number of newly generated places |pre t|*|post t| -- with -r, contract() orders them by its own heap
+			if (CLW.instance.ORDER_DUMMY_TRANSITIONS.isEnabled() && !CLW.instance.ADAPTIVE_REORDERING.isEnabled()) {
 				// Date s = new Date();
 				Collections.sort(toContract, new Comparator<Transition>() {
 					public int compare(Transition o1, Transition o2) {
@@ -104,7 +104,7 @@ public class BasicDecomposition extends AbstractDecomposition {
 					//Integer newInput = remainingTransitions.a.iterator().next().getLabel().getSignal();
 					
 					Integer newInput = null;
-					STG overallSpec = AbstractTreeDecomposition.RootSpecification; // when BasicDecomposition is used in the context of TreeDecomposition
+					STG overallSpec = AbstractTreeDecomposition.getRootSpecification(); // when BasicDecomposition is used in the context of TreeDecomposition
 					if (overallSpec == null) // we're not in context of an enclosing TreeDecomposition
 						overallSpec = this.specification;
 					
@@ -83,14 +83,23 @@ public class LazyDecompositionSingleSignal extends AbstractDecomposition {
 		// Initialisation
 		// *************************************************************
 		
-		//Contains the intermediate results
-		LinkedList<STG> 	resultsSTG 		= new LinkedList<STG>();
+		//Contains snapshots of the intermediate results, starting with the initial component,
+		//the latest result is the current state of the component itself
+		STG stg = stgParam.stg;
+		LinkedList<STG.Snapshot> 	resultsSTG 		= new LinkedList<STG.Snapshot>();
 		LinkedList<Integer> 	resultsSignal 	= new LinkedList<Integer>();
 		
-		//Start with the initial component
-		resultsSTG.add(stgParam.stg);
-		
-		
+		try {
+			reduce(stgParam, resultsSTG, resultsSignal);
+		}
+		finally {
+			for (STG.Snapshot snapshot : resultsSTG)
+				stg.release(snapshot);
+		}
+		return null;
+	}
+	
+	private void reduce(STGInOutParameter stgParam, LinkedList<STG.Snapshot> resultsSTG, LinkedList<Integer> resultsSignal) throws STGException {
 		
 		// *************************************************************
 		// The main loop, pick the latest result and try a contraction 
@@ -102,8 +111,8 @@ public class LazyDecompositionSingleSignal extends AbstractDecomposition {
 			// Try the next contraction, if finished -> return 
 			// *************************************************************
 			
-			//get latest result and make a copy
-			stgParam.stg = resultsSTG.getLast().clone();
+			//preserve the latest result
+			resultsSTG.addLast(stgParam.stg.snapshot());
 			
 			//choose transition set for contraction
 			List<Transition> contract; 
@@ -121,7 +130,7 @@ public class LazyDecompositionSingleSignal extends AbstractDecomposition {
 				}
 				else 
 					redDel(stgParam.stg);
-				return null; // regular finishing point of Lazy Decomposition
+				return; // regular finishing point of Lazy Decomposition
 			}
 			
 			//memorize signal to be contracted
@@ -170,7 +179,9 @@ public class LazyDecompositionSingleSignal extends AbstractDecomposition {
 				logging(stgParam.stg, DecompositionEvent.LAZY_BACKTRACKING, null);
 				
 				if (CLW.instance.STOP_WHEN_BACKTRACKING.isEnabled())
-					return null;
+					return;
+				
+				stgParam.stg.restore(resultsSTG.removeLast());
 				
 				//if backtracking of two or more stages is needed this List
 				//contains all dummy signals which must be changed to input
@@ -192,12 +203,11 @@ public class LazyDecompositionSingleSignal extends AbstractDecomposition {
 				
 				backtracking: while (true) {
 					//update last intermediate result
-					stgParam.stg = resultsSTG.getLast();
 					stgParam.stg.setSignature(revertSignal, Signature.INPUT);
 					
 					//if backtracking was performed until the original component was restored
 					//(with all dummies converted to inputs) we must stop, too
-					if (resultsSTG.size() == 1) {
+					if (resultsSTG.isEmpty()) {
 						logging(stgParam.stg, DecompositionEvent.LAZY_REACHED_N, revertSignal);
 						break backtracking;
 					}
@@ -233,7 +243,7 @@ public class LazyDecompositionSingleSignal extends AbstractDecomposition {
 						lastSignal = resultsSignal.getLast();
 						
 						resultsSignal.removeLast();                           
-						resultsSTG.removeLast();
+						stgParam.stg.restore(resultsSTG.removeLast());
 						
 						firstTry = false;
 
@@ -260,8 +270,6 @@ public class LazyDecompositionSingleSignal extends AbstractDecomposition {
 			//success -> save new intermediate result and continue
 			else {
 				redDel(stgParam.stg);
-				
-				resultsSTG.addLast(stgParam.stg);
 			}
 		}
 	}
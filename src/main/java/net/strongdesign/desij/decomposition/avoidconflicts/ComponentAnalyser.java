@@ -35,6 +35,7 @@ import net.strongdesign.stg.STGException;
 import net.strongdesign.stg.Signature;
 import net.strongdesign.stg.Transition;
 import net.strongdesign.stg.traversal.ConditionFactory;
+import net.strongdesign.stg.unfolding.ConfigurationEncoding;
 
 import net.strongdesign.util.Pair;
 
@@ -105,6 +106,7 @@ public abstract class ComponentAnalyser {
 		if (selfTriggersOnly) {
 			List<Transition> selfTrigger;
 			for (STG component: components) { 
+				ConfigurationEncoding reachability = null; // shared by the dynamic checks of the component
 				for (Transition t1: component.getTransitions(ConditionFactory.ALL_TRANSITIONS)) {
 					for (Node place: t1.getChildren()) {
 						for (Node t2: place.getChildren()) {
@@ -116,7 +118,9 @@ public abstract class ComponentAnalyser {
 								) {
 									if (CLW.instance.CONFLICT_TYPE.getValue().equals("st")) {
 										// Don't put any pure structural self-trigger in the seflTriggers data structure
-										if (!IrreducibleCSCConflictIdentifier.isDynamicSelfTrigger(t1,(Transition)t2))
+										if (reachability == null && CLW.instance.UNFOLDER.getValue().equals("internal"))
+											reachability = IrreducibleCSCConflictIdentifier.getReachabilityEncoding(component);
+										if (!IrreducibleCSCConflictIdentifier.isDynamicSelfTrigger(t1,(Transition)t2,reachability))
 											continue;
 									}
 									selfTrigger = new ArrayList<Transition>(2);
@@ -42,9 +42,12 @@ import net.strongdesign.stg.Transition;
 import net.strongdesign.stg.Place;
 import net.strongdesign.stg.Node;
 import net.strongdesign.stg.Marking;
+import net.strongdesign.stg.synthesis.CSCTraceProviderFactory;
 import net.strongdesign.stg.synthesis.SynthesisException;
 import net.strongdesign.stg.traversal.ConditionFactory;
 import net.strongdesign.stg.traversal.MultiCondition;
+import net.strongdesign.stg.unfolding.ConfigurationEncoding;
+import net.strongdesign.stg.unfolding.Prefix;
 import net.strongdesign.stg.Signature;
 
 /**
@@ -65,6 +68,15 @@ public class IrreducibleCSCConflictIdentifier {
 	}
 	
 	public static boolean isDynamicSelfTrigger(Transition tEntry, Transition tExit) {
+		return isDynamicSelfTrigger(tEntry, tExit, null);
+	}
+	
+	/**
+	 * @param reachability - the encoding of the prefix of the STG of both transitions, see 
+	 * {@link #getReachabilityEncoding(STG)}; it can be reused for all checks of the same STG, 
+	 * null if it should be created for this check 
+	 */
+	public static boolean isDynamicSelfTrigger(Transition tEntry, Transition tExit, ConfigurationEncoding reachability) {
 		
 		Map<Place, Integer> reachabilityCondition = new HashMap<Place, Integer>();
 		
@@ -97,8 +109,11 @@ public class IrreducibleCSCConflictIdentifier {
 		for (Integer i : reachabilityCondition.values())
 			if (i.intValue() > 1) return true; // We cannot handle unsafe nets with mpsat
 		
-		// check the reachability condition for the considered dynamic self-trigger with mpsat
-		if ( !reachabilityCheckWithMpsat(reachabilityCondition, tEntry.getSTG()) ) return false;		
+		// check the reachability condition for the considered dynamic self-trigger
+		if (!CLW.instance.UNFOLDER.getValue().equals("internal")) {
+			if ( !reachabilityCheckWithMpsat(reachabilityCondition, tEntry.getSTG()) ) return false;
+		}
+		else if ( !reachabilityCheckWithPrefix(reachabilityCondition, tEntry.getSTG(), reachability) ) return false;
 		
 		return true; // optimistic approach
 	}
@@ -118,19 +133,9 @@ public class IrreducibleCSCConflictIdentifier {
 			result = new HashSet<Set<Pair<Transition,Transition>>>();
 			IrreducibleCSCConflictIdentifier transSequenceFinder = new IrreducibleCSCConflictIdentifier(component);
 			
-			// ****** Unfolding based
-			transSequenceFinder.cscTraces = net.strongdesign.stg.synthesis.Unfolding.getCSCViolationTraces(
-					transSequenceFinder.criticalComponent);
-			
-			// ****** State graph based
-//			try {
-//				transSequenceFinder.cscTraces = net.strongdesign.stg.synthesis.StateGraph.getSG(
-//						transSequenceFinder.criticalComponent).getCSCViolationTraces();
-//			} catch (STGException e) {
-//				throw new RuntimeException(e.getMessage());
-//			} catch (SynthesisException e) {
-//				throw new RuntimeException(e.getMessage());
-//			}
+			// ****** Unfolding or state graph based, see csc-traces
+			transSequenceFinder.cscTraces = new HashSet<Pair<List<SignalEdge>, List<SignalEdge>>>(
+					CSCTraceProviderFactory.getProvider().getCSCViolationTraces(transSequenceFinder.criticalComponent));
 			
 			transSequenceFinder.cscTransitionSequences = new ArrayList<Pair<List<Transition>,List<Transition>>>();
 			for (Pair<List<SignalEdge>, List<SignalEdge>> conflictingTraces : transSequenceFinder.cscTraces) {
@@ -259,6 +264,45 @@ public class IrreducibleCSCConflictIdentifier {
 
 
 
+	/**
+	 * Returns the encoding of the prefix of the STG for the in-process reachability checks of 
+	 * {@link #isDynamicSelfTrigger(Transition, Transition, ConfigurationEncoding)}, null if the STG cannot be unfolded.
+	 */
+	public static ConfigurationEncoding getReachabilityEncoding(STG stg) {
+		try {
+			return new ConfigurationEncoding(new Prefix(stg));
+		}
+		catch (STGException e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Checks the reachabilityCondition like {@link #reachabilityCheckWithMpsat(Map, STG)}, but with the internal 
+	 * unfolder and a SAT solver
+	 * @param reachability - the encoding of the prefix of stg, null if it has to be created 
+	 */
+	private static boolean reachabilityCheckWithPrefix(Map<Place,Integer> reachabilityCondition, STG stg, 
+			ConfigurationEncoding reachability) {
+		
+		if (reachabilityCondition.isEmpty()) return true; // no reachabilityCondition is always reachable
+		
+		if (reachability == null)
+			reachability = getReachabilityEncoding(stg);
+		if (reachability == null)
+			return true; // Marking COULD be reachable
+		
+		List<Place> marked = new ArrayList<Place>();
+		List<Place> unmarked = new ArrayList<Place>();
+		for (Place place : reachabilityCondition.keySet())
+			if (reachabilityCondition.get(place).intValue() == 0)
+				unmarked.add(place);
+			else if (reachabilityCondition.get(place).intValue() == 1)
+				marked.add(place);
+		
+		return reachability.findConfiguration(marked, unmarked) != null;
+	}
+	
 	/**
 	 * Checks the reachabilityCondition with the help of unfoldings
 	 * @param reachabilityCondition: a minimal reachable marking -> i.e. gives a lower bound to token count for each place
@@ -27,7 +27,6 @@ import net.sf.javailp.Problem;
 import net.sf.javailp.Result;
 import net.sf.javailp.Solver;
 import net.sf.javailp.SolverFactory;
-import net.sf.javailp.SolverFactoryLpSolve;
 import net.strongdesign.desij.CLW;
 import net.strongdesign.stg.Node;
 import net.strongdesign.stg.Place;
@@ -35,6 +34,7 @@ import net.strongdesign.stg.STG;
 import net.strongdesign.stg.Signature;
 import net.strongdesign.stg.Transition;
 import net.strongdesign.stg.solvers.MarkingEquationCache;
+import net.strongdesign.stg.solvers.LPBackend;
 import net.strongdesign.stg.traversal.Condition;
 import net.strongdesign.stg.traversal.ConditionFactory;
 import net.strongdesign.util.Pair;
@@ -100,7 +100,7 @@ public class LPSignalFinder implements ICSCSolvingSignalFinder {
 	
 	private boolean isDelayTransition(Transition delayTrans) {
 		
-		SolverFactory factory = new SolverFactoryLpSolve();
+		SolverFactory factory = LPBackend.newSolverFactory();
 		factory.setParameter(Solver.VERBOSE, 0); // we don't need messages from the solver
 		factory.setParameter(Solver.TIMEOUT, 0); // no timeout
 		
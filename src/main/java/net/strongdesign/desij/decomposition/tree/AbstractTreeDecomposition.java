@@ -23,14 +23,21 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.strongdesign.desij.CLW;
+import net.strongdesign.desij.DesiJException;
 import net.strongdesign.desij.decomposition.AbstractDecomposition;
 import net.strongdesign.desij.decomposition.BasicDecomposition;
 import net.strongdesign.desij.decomposition.DecompositionEvent;
 import net.strongdesign.desij.decomposition.STGInOutParameter;
 import net.strongdesign.desij.decomposition.partitioning.Partition;
 import net.strongdesign.desij.decomposition.partitioning.PartitionComponent;
+import net.strongdesign.stg.Place;
 import net.strongdesign.stg.STG;
 import net.strongdesign.stg.STGException;
 import net.strongdesign.stg.Signature;
@@ -41,8 +48,31 @@ import net.strongdesign.util.PresetTree;
 
 public abstract class AbstractTreeDecomposition extends AbstractDecomposition {
 	
-	public static STG RootSpecification = null;
+	// the specification of the tree decomposition running on a thread, it is needed by the BasicDecompositions
+	// used during the tree traversal; thread local, such that components can be reduced concurrently
+	private static final ThreadLocal<STG> rootSpecification = new ThreadLocal<STG>();
     
+	public static STG getRootSpecification() {
+		return rootSpecification.get();
+	}
+	
+	public static void setRootSpecification(STG specification) {
+		if (specification == null)
+			rootSpecification.remove();
+		else
+			rootSpecification.set(specification);
+	}
+	
+	
+	/**Rough memory usage of an STG in bytes per node and per arc, for estimating the size of snapshots.*/
+	private static final long BYTES_PER_NODE = 400;
+	private static final long BYTES_PER_ARC = 100;
+	
+	//the pool for decomposing subtrees concurrently, null if the tree is traversed sequentially
+	private ExecutorService pool;
+	//the memory left for snapshots in bytes
+	private AtomicLong snapshotMemory;
+	
 	
 	public AbstractTreeDecomposition(String filePrefix) {
 		super(filePrefix);
@@ -68,7 +98,7 @@ public abstract class AbstractTreeDecomposition extends AbstractDecomposition {
 		logging(stg, DecompositionEvent.TREE_START, null);		
 	
 		this.specification = stg; // will be changed during the decomposition process --> former versions can be recovered using the Undo-Stack
-		RootSpecification = stg.clone(); // important to know the overall specifications, esp. for the BasicDecompositions used during the Tree-Traversal
+		setRootSpecification(stg.clone()); // important to know the overall specifications, esp. for the BasicDecompositions used during the Tree-Traversal
 		
 		//The final components
 		Collection<STG> components = new LinkedList<STG>();
@@ -101,16 +131,23 @@ public abstract class AbstractTreeDecomposition extends AbstractDecomposition {
 			logging(stg, DecompositionEvent.TREE_CREATED, tree.getSize());
 			logging(stg, DecompositionEvent.TREE_CREATED_VALUE, tree);
 		
-			decomposeTree(stg, tree, components);
+			int threads = CLW.instance.COMPONENT_THREADS.getIntValue();
+			if (threads == 0)
+				threads = Runtime.getRuntime().availableProcessors();
+			
+			if (threads > 1)
+				decomposeTreeConcurrently(stg, tree, components, threads);
+			else
+				decomposeTree(stg, tree, components);
 			
 			logging(stg, DecompositionEvent.FINISHED, null);
 			
-			RootSpecification = null; // tidy up, such that it doesn't influence other decompositions
+			setRootSpecification(null); // tidy up, such that it doesn't influence other decompositions
 						
 			return components;
 		}
 		else { // tree == null
-			RootSpecification = null; // tidy up, that it doesn't influence other decompositions
+			setRootSpecification(null); // tidy up, that it doesn't influence other decompositions
 			return new BasicDecomposition(filePrefix).decompose(stg, partition);
 		}
 		
@@ -122,6 +159,161 @@ public abstract class AbstractTreeDecomposition extends AbstractDecomposition {
     protected abstract void decomposeTree(STG stg, PresetTree<Integer, Collection<Integer>> tree, Collection<STG> components) throws STGException, IOException ;
 	
     
+	private void decomposeTreeConcurrently(final STG stg, final PresetTree<Integer, Collection<Integer>> tree, 
+			final Collection<STG> components, int threads) throws STGException, IOException {
+		
+		long budget = CLW.instance.SNAPSHOT_MEMORY.getIntValue() * 1024L * 1024L;
+		if (budget == 0)
+			budget = Runtime.getRuntime().maxMemory() / 4;
+		snapshotMemory = new AtomicLong(budget);
+		pool = Executors.newFixedThreadPool(threads);
+		
+		SubtreeTask root = new SubtreeTask(new ConcurrentPart<Void>(0) {
+			protected Void run() throws STGException, IOException {
+				decomposeTree(stg, tree, components);
+				return null;
+			}
+		});
+		
+		try {
+			root.join();
+		}
+		finally {
+			root.part.writeLog();
+			pool.shutdownNow();
+			pool = null;
+			snapshotMemory = null;
+		}
+	}
+	
+	
+	/**
+	 * Returns if subtrees are decomposed concurrently, see {@link #decomposeSubtrees(STG, List)}.
+	 */
+	protected boolean isConcurrent() {
+		return pool != null;
+	}
+	
+	
+	/**
+	 * The decomposition of a subtree, see {@link AbstractTreeDecomposition#decomposeSubtrees(STG, List)}.
+	 */
+	protected abstract class Subtree {
+		/**The components resulting from the subtree.*/
+		protected final Collection<STG> components = new LinkedList<STG>();
+		
+		private STG snapshot;
+		private SubtreeTask task;
+		
+		/**
+		 * Decomposes the subtree, afterwards the STG must be the same as before, e.g. by undoing.
+		 */
+		protected abstract void decompose(STG stg) throws STGException, IOException;
+		
+		/**
+		 * Called by the thread of the parent node after the subtree is decomposed, the subtrees are finished in their order.
+		 * @param stg The STG of the parent node
+		 */
+		protected void finished(STG stg) throws STGException, IOException {
+		}
+	}
+	
+	
+	/**
+	 * Decomposes subtrees one after another on the given STG. If enabled and if the memory budget allows it, each 
+	 * subtree gets its own snapshot of the STG and they are decomposed concurrently; the result is the same.
+	 */
+	protected void decomposeSubtrees(STG stg, List<? extends Subtree> subtrees) throws STGException, IOException {
+		if (pool != null && subtrees.size() > 1) {
+			long size = getSnapshotSize(stg);
+			
+			for (int i=0; i<subtrees.size(); ++i) {
+				if (snapshotMemory.addAndGet(-size) < 0) {
+					snapshotMemory.addAndGet(size);
+					break;
+				}
+				
+				final Subtree subtree = subtrees.get(i);
+				final long snapshotSize = size;
+				subtree.snapshot = stg.clone();
+				subtree.task = new SubtreeTask(new ConcurrentPart<Void>(i) {
+					protected Void run() throws STGException, IOException {
+						STG snapshot = subtree.snapshot;
+						subtree.snapshot = null;
+						try {
+							subtree.decompose(snapshot);
+						}
+						finally {
+							snapshotMemory.addAndGet(snapshotSize);
+						}
+						return null;
+					}
+				});
+				pool.execute(subtree.task);
+			}
+		}
+		
+		for (Subtree subtree : subtrees) {
+			if (subtree.task == null) {
+				subtree.decompose(stg);
+			}
+			else {
+				try {
+					subtree.task.join();
+				}
+				finally {
+					subtree.task.part.writeLog();
+					subtree.task = null;
+				}
+			}
+			subtree.finished(stg);
+		}
+	}
+	
+	
+	private static long getSnapshotSize(STG stg) {
+		long arcs = 0;
+		for (Place place : stg.getPlaces())
+			arcs += place.getChildren().size() + place.getParents().size();
+		return BYTES_PER_NODE * stg.getSize() + BYTES_PER_ARC * arcs;
+	}
+	
+	
+	/**
+	 * A subtree decomposed by the pool. A thread waiting for a task which has not been started yet runs it
+	 * itself, hence the waiting parents cannot occupy all threads of the pool.
+	 */
+	private static class SubtreeTask extends FutureTask<Void> {
+		private final ConcurrentPart<Void> part;
+		
+		SubtreeTask(ConcurrentPart<Void> part) {
+			super(part);
+			this.part = part;
+		}
+		
+		void join() throws STGException, IOException {
+			run(); // does nothing if the pool has started the task already
+			try {
+				get();
+			}
+			catch (InterruptedException e) {
+				throw new STGException("Interrupted while decomposing a subtree");
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof STGException)
+					throw (STGException) e.getCause();
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				throw new DesiJException("Error while decomposing a subtree: " + e.getCause());
+			}
+		}
+	}
+	
+    
    
 	@Override
 	/**
@@ -21,7 +21,6 @@ package net.strongdesign.desij.decomposition.tree;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -47,17 +46,16 @@ import net.strongdesign.stg.Marking;
 import net.strongdesign.stg.STG;
 import net.strongdesign.stg.STGAdapterFactory;
 import net.strongdesign.stg.STGException;
-import net.strongdesign.stg.STGFile;
 import net.strongdesign.stg.SignalEdge;
 import net.strongdesign.stg.Signature;
 import net.strongdesign.stg.Transition;
+import net.strongdesign.stg.synthesis.CSCTraceProviderFactory;
 import net.strongdesign.stg.traversal.CollectorFactory;
 import net.strongdesign.stg.traversal.ConditionFactory;
 import net.strongdesign.util.FileSupport;
 import net.strongdesign.util.HelperApplications;
 import net.strongdesign.util.Pair;
 import net.strongdesign.util.PresetTree;
-import net.strongdesign.util.StreamGobbler;
 
 public class CscAwareDecomposition extends AbstractTreeDecomposition {
 
@@ -80,6 +78,24 @@ public class CscAwareDecomposition extends AbstractTreeDecomposition {
 			PresetTree<Integer, Collection<Integer>> tree, 
 			Collection<STG> components) 
 	throws STGException, IOException {
+		
+		//stores the task concerning csc solving which have to be performed in the respective nodes
+		Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> nodeTasks = 
+			new HashMap<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>>();
+		
+		traverse(stg, tree, components, nodeTasks);
+	}
+	
+	
+	/**
+	 * Traverses the subtree tree and decomposes its nodes, the traversal ends when the parent of tree is reached.
+	 */
+	private void traverse(
+			STG stg, 
+			PresetTree<Integer, Collection<Integer>> tree, 
+			Collection<STG> components,
+			Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> nodeTasks) 
+	throws STGException, IOException {
 
 		/*
 		 * General outline of the implementation
@@ -104,9 +120,8 @@ public class CscAwareDecomposition extends AbstractTreeDecomposition {
 		//current position in the decomposition tree
 		PresetTree<Integer, Collection<Integer>> currentNode = tree;
 
-		//stores the task concerning csc solving which have to be performed in the respective nodes
-		Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> nodeTasks = 
-			new HashMap<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>>();
+		//where the traversal ends
+		PresetTree<Integer, Collection<Integer>> stop = tree.getParent();
 
 
 		//the stack which stores the iterators for the next child to be entered
@@ -143,6 +158,12 @@ public class CscAwareDecomposition extends AbstractTreeDecomposition {
 				
 				// perform component aggregation and build components after checking CSC
 				leaf = buildComponent(stg, components, currentNode, nodeTasks);
+				
+				// the subtrees may be decomposed concurrently, then they are all finished afterwards
+				if (!leaf && isConcurrent() && nextNodeStack.peek().size() > 1) {
+					traverseSubtrees(stg, components, currentNode, nodeTasks, nextNodeStack.peek());
+					nextNodeStack.peek().clear();
+				}
 			}
 			else {			
 				//perform the CSC solving, i.e. take care of the still unfinished inverse projections 
@@ -167,7 +188,7 @@ public class CscAwareDecomposition extends AbstractTreeDecomposition {
 				stg.undoToMarker(UndoMarker.ENTERED_NODE);
 			}
 			
-			if (currentNode == null)
+			if (currentNode == stop)
 				break traversal;
 			
 			
@@ -177,6 +198,49 @@ public class CscAwareDecomposition extends AbstractTreeDecomposition {
 
 
 
+	/**
+	 * Traverses the given children of a node as subtrees, see {@link #decomposeSubtrees(STG, List)}. Every subtree
+	 * collects its own tasks, after a subtree is finished its tasks for the node are handled as in the sequential
+	 * traversal.
+	 */
+	private void traverseSubtrees(
+			STG stg, 
+			final Collection<STG> nodeComponents, 
+			final PresetTree<Integer, Collection<Integer>> node, 
+			final Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> nodeTasks,
+			Collection<PresetTree<Integer, Collection<Integer>>> children) 
+	throws STGException, IOException {
+		
+		List<Subtree> subtrees = new LinkedList<Subtree>();
+		for (final PresetTree<Integer, Collection<Integer>> child : children) {
+			child.setParent(node);
+			subtrees.add(new Subtree() {
+				private Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> subtreeTasks = 
+					new HashMap<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>>();
+				
+				protected void decompose(STG stg) throws STGException, IOException {
+					traverse(stg, child, this.components, subtreeTasks);
+				}
+				
+				protected void finished(STG stg) throws STGException, IOException {
+					nodeComponents.addAll(this.components);
+					for (Map.Entry<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> tasks : subtreeTasks.entrySet()) {
+						Set<SolveCSC> known = nodeTasks.get(tasks.getKey());
+						if (known == null)
+							nodeTasks.put(tasks.getKey(), tasks.getValue());
+						else
+							known.addAll(tasks.getValue());
+					}
+					handleTasks(stg, nodeComponents, node, nodeTasks);
+				}
+			});
+		}
+		
+		decomposeSubtrees(stg, subtrees);
+	}
+
+
+
 	private void handleTasks(
 			STG stg, 
 			Collection<STG> components, 
@@ -725,107 +789,13 @@ public class CscAwareDecomposition extends AbstractTreeDecomposition {
 
 
 	/**
-	 * Extract the CSC violation traces from an STG. Uses punf and mpsat, see above.
+	 * Extract the CSC violation traces from an STG with the provider selected by csc-traces.
 	 * @param stg
 	 * @return
 	 * @throws IOException
 	 */
 	private List<Pair<List<SignalEdge>, List<SignalEdge>>> getCSCViolationTraces(STG stg) throws IOException {
-		//where the STG is saved
-		File tmpSTG = File.createTempFile("desij", ".g");
-
-		//where the unfolding is saved
-		File tmpUNF = File.createTempFile("desij", ".unf");
-
-		//where the CSC violating traces are saved
-		File tmpCONF = File.createTempFile("desij", ".conf");
-
-		//save the STG, generate the unfolding and extract CSC violating traces
-		FileSupport.saveToDisk(STGFile.convertToG(stg, false), tmpSTG.getCanonicalPath());
-
-		try {
-			
-			Process punf = HelperApplications.startExternalTool(HelperApplications.PUNF, 
-					" -m"+HelperApplications.SECTION_START+"="+HelperApplications.SECTION_END +
-					HelperApplications.SECTION_START+tmpUNF.getCanonicalPath()+HelperApplications.SECTION_END + 
-					" " + 
-					HelperApplications.SECTION_START+tmpSTG.getCanonicalPath()+HelperApplications.SECTION_END );
-			
-			
-			
-			OutputStream os = null;
-			OutputStream es = null;
-			
-			if (CLW.instance.PUNF_MPSAT_GOBBLE.isEnabled()) {
-				os = System.out;
-				es = System.err;
-			}
-			
-			StreamGobbler.createGobbler(punf.getInputStream(), "punf", os);
-			StreamGobbler.createGobbler(punf.getErrorStream(), "punf-er", es);
-			
-			punf.waitFor();
-			punf.getErrorStream().close();
-			punf.getInputStream().close();
-			punf.getOutputStream().close();
-			
-
-			Process mpsat = HelperApplications.startExternalTool(HelperApplications.MPSAT, 
-					" -C -a " +
-					HelperApplications.SECTION_START+tmpUNF.getCanonicalPath()+HelperApplications.SECTION_END + 
-					" " + 
-					HelperApplications.SECTION_START+tmpCONF.getCanonicalPath()+HelperApplications.SECTION_END );
-			
-			
-			StreamGobbler.createGobbler(mpsat.getInputStream(), "mpsat", os);
-			StreamGobbler.createGobbler(mpsat.getErrorStream(), "mpsat-er", es);
-			
-			mpsat.waitFor();
-			mpsat.getErrorStream().close();
-			mpsat.getInputStream().close();
-			mpsat.getOutputStream().close();
-			
-		}
-		catch (InterruptedException e) {
-			throw new DesiJException("Error involving punf/mpsat.");
-		}
-
-		//parse the conflict traces
-		String conflicts = FileSupport.loadFileFromDisk(tmpCONF.getCanonicalPath());
-		
-
-		//no CSC conflict
-		if (conflicts.startsWith("NO"))
-			return Collections.emptyList();    	
-
-		//the final result with all traces
-		List<Pair<List<SignalEdge>, List<SignalEdge>>> result = new LinkedList<Pair<List<SignalEdge>, List<SignalEdge>>>();
-
-		//help variables containing the current traces
-		List<SignalEdge> trace0 = new LinkedList<SignalEdge>();
-		List<SignalEdge> trace1 = new LinkedList<SignalEdge>();
-
-
-		//split the line and convert the entries
-		int i=0;
-		for (String line : conflicts.split("\n")) {
-			if (line.endsWith("\r")) line = line.substring(0, line.length()-1); // cut "\r" for Windows machines
-			if (line.startsWith("YES") || line.startsWith("_SEQ"))
-				continue;
-
-			if (i==0) {
-				i=1;
-				trace0 = getTrace(stg, line);
-			} 
-			else {
-				i=0;
-				trace1 = getTrace(stg, line);
-				result.add(new Pair<List<SignalEdge>, List<SignalEdge>> (trace0, trace1));
-			}
-		}
-		
-		
-		return result;
+		return CSCTraceProviderFactory.getProvider().getCSCViolationTraces(stg);
 	}
 
 	/**
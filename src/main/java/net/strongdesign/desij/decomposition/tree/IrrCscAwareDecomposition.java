@@ -19,12 +19,8 @@
 
 package net.strongdesign.desij.decomposition.tree;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -37,29 +33,24 @@ import java.util.Set;
 import java.util.Stack;
 
 import net.strongdesign.desij.CLW;
-import net.strongdesign.desij.DesiJException;
 import net.strongdesign.desij.decomposition.BasicDecomposition;
 import net.strongdesign.desij.decomposition.DecompositionEvent;
 import net.strongdesign.desij.decomposition.STGInOutParameter;
 import net.strongdesign.statesystem.StateSystem;
 import net.strongdesign.statesystem.StateSystemException;
 import net.strongdesign.statesystem.StateSystems;
-import net.strongdesign.stg.EdgeDirection;
 import net.strongdesign.stg.Marking;
 import net.strongdesign.stg.STG;
 import net.strongdesign.stg.STGAdapterFactory;
 import net.strongdesign.stg.STGException;
-import net.strongdesign.stg.STGFile;
 import net.strongdesign.stg.SignalEdge;
 import net.strongdesign.stg.Signature;
 import net.strongdesign.stg.Transition;
+import net.strongdesign.stg.synthesis.CSCTraceProviderFactory;
 import net.strongdesign.stg.traversal.CollectorFactory;
 import net.strongdesign.stg.traversal.ConditionFactory;
-import net.strongdesign.util.FileSupport;
-import net.strongdesign.util.HelperApplications;
 import net.strongdesign.util.Pair;
 import net.strongdesign.util.PresetTree;
-import net.strongdesign.util.StreamGobbler;
 
 public class IrrCscAwareDecomposition extends AbstractTreeDecomposition {
 
@@ -82,6 +73,24 @@ public class IrrCscAwareDecomposition extends AbstractTreeDecomposition {
 			PresetTree<Integer, Collection<Integer>> tree, 
 			Collection<STG> components) 
 	throws STGException, IOException {
+		
+		//stores the task concerning csc solving which have to be performed in the respective nodes
+		Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> nodeTasks = 
+			new HashMap<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>>();
+		
+		traverse(stg, tree, components, nodeTasks);
+	}
+	
+	
+	/**
+	 * Traverses the subtree tree and decomposes its nodes, the traversal ends when the parent of tree is reached.
+	 */
+	private void traverse(
+			STG stg, 
+			PresetTree<Integer, Collection<Integer>> tree, 
+			Collection<STG> components,
+			Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> nodeTasks) 
+	throws STGException, IOException {
 
 		/*
 		 * General outline of the implementation
@@ -106,9 +115,8 @@ public class IrrCscAwareDecomposition extends AbstractTreeDecomposition {
 		//current position in the decompositon tree
 		PresetTree<Integer, Collection<Integer>> currentNode = tree;
 
-		//stores the task concerning csc solving which have to be performed in the respective nodes
-		Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> nodeTasks = 
-			new HashMap<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>>();
+		//where the traversal ends
+		PresetTree<Integer, Collection<Integer>> stop = tree.getParent();
 
 
 		//the stack which stores the iterators for the next child to be entered
@@ -145,6 +153,12 @@ public class IrrCscAwareDecomposition extends AbstractTreeDecomposition {
 				
 				// perform component aggregation and build components after checking CSC
 				leaf = buildComponent(stg, components, currentNode, nodeTasks);
+				
+				// the subtrees may be decomposed concurrently, then they are all finished afterwards
+				if (!leaf && isConcurrent() && nextNodeStack.peek().size() > 1) {
+					traverseSubtrees(stg, components, currentNode, nodeTasks, nextNodeStack.peek());
+					nextNodeStack.peek().clear();
+				}
 			}
 			else {			
 				//perform the CSC solving, i.e. take care of the still unfinished inverse projections 
@@ -169,7 +183,7 @@ public class IrrCscAwareDecomposition extends AbstractTreeDecomposition {
 				stg.undoToMarker(UndoMarker.ENTERED_NODE);
 			}
 			
-			if (currentNode == null)
+			if (currentNode == stop)
 				break traversal;
 			
 			
@@ -179,6 +193,49 @@ public class IrrCscAwareDecomposition extends AbstractTreeDecomposition {
 
 
 
+	/**
+	 * Traverses the given children of a node as subtrees, see {@link #decomposeSubtrees(STG, List)}. Every subtree
+	 * collects its own tasks, after a subtree is finished its tasks for the node are handled as in the sequential
+	 * traversal.
+	 */
+	private void traverseSubtrees(
+			STG stg, 
+			final Collection<STG> nodeComponents, 
+			final PresetTree<Integer, Collection<Integer>> node, 
+			final Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> nodeTasks,
+			Collection<PresetTree<Integer, Collection<Integer>>> children) 
+	throws STGException, IOException {
+		
+		List<Subtree> subtrees = new LinkedList<Subtree>();
+		for (final PresetTree<Integer, Collection<Integer>> child : children) {
+			child.setParent(node);
+			subtrees.add(new Subtree() {
+				private Map<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> subtreeTasks = 
+					new HashMap<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>>();
+				
+				protected void decompose(STG stg) throws STGException, IOException {
+					traverse(stg, child, this.components, subtreeTasks);
+				}
+				
+				protected void finished(STG stg) throws STGException, IOException {
+					nodeComponents.addAll(this.components);
+					for (Map.Entry<PresetTree<Integer, Collection<Integer>>, Set<SolveCSC>> tasks : subtreeTasks.entrySet()) {
+						Set<SolveCSC> known = nodeTasks.get(tasks.getKey());
+						if (known == null)
+							nodeTasks.put(tasks.getKey(), tasks.getValue());
+						else
+							known.addAll(tasks.getValue());
+					}
+					handleTasks(stg, nodeComponents, node, nodeTasks);
+				}
+			});
+		}
+		
+		decomposeSubtrees(stg, subtrees);
+	}
+
+
+
 	private void handleTasks(
 			STG stg, 
 			Collection<STG> components, 
@@ -665,99 +722,18 @@ public class IrrCscAwareDecomposition extends AbstractTreeDecomposition {
 
 
 	/**
-	 * Extract the irreducible CSC violation traces from an STG. Uses punf and mpsat, see above.
+	 * Extract the irreducible CSC violation traces from an STG with the provider selected by csc-traces.
 	 * @param stg
 	 * @return
 	 * @throws IOException
 	 */
 	private List<Pair<List<SignalEdge>, List<SignalEdge>>> getIrrCSCViolationTraces(STG stg) throws IOException {
-		//where the STG is saved
-		File tmpSTG = File.createTempFile("desij", ".g");
-
-		//where the unfolding is saved
-		File tmpUNF = File.createTempFile("desij", ".unf");
-
-		//where the CSC violating traces are saved
-		File tmpCONF = File.createTempFile("desij", ".conf");
-
-		//save the STG, generate the unfolding and extract CSC violating traces
-		FileSupport.saveToDisk(STGFile.convertToG(stg, false), tmpSTG.getCanonicalPath());
-
-		try {
-			
-			Process punf = HelperApplications.startExternalTool(HelperApplications.PUNF, 
-					" -m"+HelperApplications.SECTION_START+"="+HelperApplications.SECTION_END +
-					HelperApplications.SECTION_START+tmpUNF.getCanonicalPath()+HelperApplications.SECTION_END + 
-					" " + 
-					HelperApplications.SECTION_START+tmpSTG.getCanonicalPath()+HelperApplications.SECTION_END );
-			
-			
-			
-			if (CLW.instance.PUNF_MPSAT_GOBBLE.isEnabled()) {
-				StreamGobbler.createGobbler(punf.getInputStream(), "punf", System.out);
-				StreamGobbler.createGobbler(punf.getErrorStream(), "punf", System.err);
-			}
-			
-			punf.waitFor();
-			punf.getErrorStream().close();
-			punf.getInputStream().close();
-			punf.getOutputStream().close();
-			
-
-			Process mpsat = HelperApplications.startExternalTool(HelperApplications.MPSAT, 
-					" -C -a " +
-					HelperApplications.SECTION_START+tmpUNF.getCanonicalPath()+HelperApplications.SECTION_END + 
-					" " + 
-					HelperApplications.SECTION_START+tmpCONF.getCanonicalPath()+HelperApplications.SECTION_END );
-			if (CLW.instance.PUNF_MPSAT_GOBBLE.isEnabled()) {
-				StreamGobbler.createGobbler(mpsat.getInputStream(), "mpsat", System.out);
-				StreamGobbler.createGobbler(mpsat.getErrorStream(), "mpsat", System.err);
-			}
-			mpsat.waitFor();
-			mpsat.getErrorStream().close();
-			mpsat.getInputStream().close();
-			mpsat.getOutputStream().close();
-			
-		}
-		catch (InterruptedException e) {
-			throw new DesiJException("Error involving punf/mpsat.");
-		}
-
-		//parse the conflict traces
-		String conflicts = FileSupport.loadFileFromDisk(tmpCONF.getCanonicalPath());
-		
-
-		//no CSC conflict
-		if (conflicts.startsWith("NO"))
-			return Collections.emptyList();    	
-
 		//the final result with all traces
 		List<Pair<List<SignalEdge>, List<SignalEdge>>> result = new LinkedList<Pair<List<SignalEdge>, List<SignalEdge>>>();
 
-		//help variables containing the current traces
-		List<SignalEdge> trace0 = new LinkedList<SignalEdge>();
-		List<SignalEdge> trace1 = new LinkedList<SignalEdge>();
-
-
-		//split the line and convert the entries
-		BufferedReader reader = new BufferedReader(new StringReader(conflicts));
-		String line;
-		int i=0;
-		while ( (line = reader.readLine()) != null ) {
-			if (line.startsWith("YES") || line.startsWith("_SEQ"))
-				continue;
-
-			if (i==0) {
-				i=1;
-				trace0 = getTrace(stg, line);
-			} 
-			else {
-				i=0;
-				trace1 = getTrace(stg, line);
-				if ( isIrreducibleConflict(trace0, trace1, stg) )
-					result.add(new Pair<List<SignalEdge>, List<SignalEdge>> (trace0, trace1));
-			}
-		}
+		for (Pair<List<SignalEdge>, List<SignalEdge>> traces : CSCTraceProviderFactory.getProvider().getCSCViolationTraces(stg))
+			if ( isIrreducibleConflict(traces.a, traces.b, stg) )
+				result.add(traces);
 		
 		return result;
 	}
@@ -810,47 +786,6 @@ public class IrrCscAwareDecomposition extends AbstractTreeDecomposition {
 
 
 
-	/**
-	 * Converts a single trace given as String delivered by mpsat into an appropriate representation. 
-	 * @param line
-	 * @return
-	 */
-	private List<SignalEdge> getTrace(STG stg, String line) {
-		List<SignalEdge> result = new LinkedList<SignalEdge>();
-		boolean dummySignal = false; // might be a specification dummy without signal direction
-
-		for (String edge : line.split(",")) {
-			if (edge.startsWith("i") || edge.startsWith("I")) {
-			} 
-			else if (edge.startsWith("o") || edge.startsWith("O") ) {
-			}
-			else if (edge.startsWith("d") || edge.startsWith("D") ) {
-				dummySignal = true;
-			}
-			else if (edge.matches("[ \t]*"))
-				continue;
-			else
-				throw new DesiJException("Unknown signature in "+line);
-
-			String sig = edge.replaceAll(".*\\.|/.*","");
-
-			EdgeDirection direction;
-			if (sig.endsWith("+"))
-				direction = EdgeDirection.UP;
-			else if (sig.endsWith("-"))
-				direction = EdgeDirection.DOWN;
-			else if (!dummySignal)
-				throw new DesiJException("Unknown direction in "+line);
-			else
-				direction = EdgeDirection.UNKNOWN;
-
-			String signalName = sig.replaceAll("\\+|-|_" ,  "");
-			Integer signal = Integer.parseInt(signalName);
-			result.add(new SignalEdge(signal, direction));
-		}
-
-		return result;
-	}
 
 
 //
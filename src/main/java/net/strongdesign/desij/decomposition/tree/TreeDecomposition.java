@@ -22,6 +22,8 @@ package net.strongdesign.desij.decomposition.tree;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
 
 import net.strongdesign.desij.CLW;
 import net.strongdesign.desij.decomposition.BasicDecomposition;
@@ -94,11 +96,19 @@ public class TreeDecomposition extends AbstractTreeDecomposition {
     	}
     	
     	//otherwise -> go into the subtrees
-    	
-    	for (PresetTree<Integer, Collection<Integer>> child : tree.getSubtrees()) {
-    		decomposeTree(stg, child, components);
+    	List<Subtree> subtrees = new LinkedList<Subtree>();
+    	for (final PresetTree<Integer, Collection<Integer>> child : tree.getSubtrees()) {
+    		subtrees.add(new Subtree() {
+    			protected void decompose(STG stg) throws STGException, IOException {
+    				decomposeTree(stg, child, this.components);
+    			}
+    		});
     	}
     	
+    	decomposeSubtrees(stg, subtrees);
+    	for (Subtree subtree : subtrees)
+    		components.addAll(subtree.components);
+    	
     	stg.undoToMarker(UndoMarker.ENTERED_NODE);
 	}
 
@@ -33,7 +33,7 @@ public class DecompositionStatistics extends UnicastRemoteObject implements IDec
 	private int eventCounter = 0;
 	private Map<DecompositionEvent, Integer> events	= new HashMap<DecompositionEvent, Integer>();
 
-	public void logging(STG stg, DecompositionEvent event, Object affectedComponents) {
+	public synchronized void logging(STG stg, DecompositionEvent event, Object affectedComponents) {
 		++eventCounter;
 		
 		Integer count = events.get(event);
@@ -50,11 +50,11 @@ public class DecompositionStatistics extends UnicastRemoteObject implements IDec
 		logging(null, DecompositionEvent.STAT_SERVER_STARTED, null);		
 	}
 
-	public int getEventCount() {
+	public synchronized int getEventCount() {
 		return eventCounter;
 	}
 
-	public int getEventCount(DecompositionEvent event) {
+	public synchronized int getEventCount(DecompositionEvent event) {
 		return events.get(event);
 	}
 
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.desij.unittest;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import net.strongdesign.desij.CLW;
+import net.strongdesign.statesystem.StateSystem;
+import net.strongdesign.stg.Marking;
+import net.strongdesign.stg.Place;
+import net.strongdesign.stg.STG;
+import net.strongdesign.stg.STGAdapterFactory;
+import net.strongdesign.stg.STGCreator;
+import net.strongdesign.stg.STGException;
+import net.strongdesign.stg.SignalEdge;
+import net.strongdesign.stg.unfolding.Prefix;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the reachability queries of {@link Prefix} with the explicit reachability graph.
+ */
+public class PrefixTest {
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		CLW.instance = new CLW(new String[] {"x.g"});
+	}
+
+	@Test
+	public final void testReachabilityPar() throws STGException {
+		checkReachability(STGCreator.getPredefinedSTG("par:a"));
+	}
+
+	@Test
+	public final void testReachabilitySeq() throws STGException {
+		checkReachability(STGCreator.getPredefinedSTG("seq:a"));
+	}
+
+	/**
+	 * Every reachable marking must be found, and a pair of places must be marked together by the
+	 * prefix iff it is marked together by some reachable marking.
+	 */
+	private static void checkReachability(STG stg) throws STGException {
+		Prefix prefix = new Prefix(stg);
+		assertTrue(prefix.isSafe());
+
+		List<Place> places = new ArrayList<Place>(stg.getPlaces());
+		boolean[][] together = new boolean[places.size()][places.size()];
+
+		for (Marking marking : getReachableMarkings(stg)) {
+			List<Place> marked = new ArrayList<Place>();
+			List<Place> unmarked = new ArrayList<Place>();
+			for (Place place : places) {
+				Integer tokens = marking.getMarking(place);
+				if (tokens != null && tokens > 0)
+					marked.add(place);
+				else
+					unmarked.add(place);
+			}
+			assertTrue(marking.toString(), prefix.isReachable(marked, unmarked));
+
+			for (Place p : marked)
+				for (Place q : marked)
+					together[places.indexOf(p)][places.indexOf(q)] = true;
+		}
+
+		for (int i=0; i<places.size(); ++i)
+			for (int j=i; j<places.size(); ++j)
+				assertEquals(places.get(i) + " " + places.get(j), together[i][j], 
+						prefix.isReachable(Arrays.asList(places.get(i), places.get(j)), Collections.<Place>emptyList()));
+	}
+
+	private static Set<Marking> getReachableMarkings(STG stg) {
+		StateSystem<Marking, SignalEdge> system = STGAdapterFactory.getStateSystemAdapter(stg);
+		Set<Marking> result = new HashSet<Marking>();
+		Queue<Marking> queue = new LinkedList<Marking>();
+		result.add(system.getInitialState());
+		queue.add(system.getInitialState());
+
+		while (!queue.isEmpty()) {
+			Marking marking = queue.poll();
+			for (SignalEdge edge : system.getEvents(marking))
+				for (Marking next : system.getNextStates(marking, edge))
+					if (result.add(next))
+						queue.add(next);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.desij.unittest;
+
+import static org.junit.Assert.*;
+
+import net.strongdesign.util.sat.SATSolver;
+
+import org.junit.Test;
+
+/**
+ * Small formulas with known results for the incremental {@link SATSolver}.
+ */
+public class SATSolverTest {
+
+	@Test
+	public final void testAssumptions() {
+		SATSolver solver = new SATSolver();
+		int a = solver.newVariable(), b = solver.newVariable(), c = solver.newVariable();
+		solver.addClause(a, b);
+		solver.addClause(-a, c);
+		solver.addClause(-b, c);
+
+		assertEquals(SATSolver.SAT, solver.solve());
+		assertTrue(solver.getValue(c));
+
+		assertEquals(SATSolver.UNSAT, solver.solve(-c));
+
+		// an unsatisfiable assumption does not affect later queries
+		assertEquals(SATSolver.SAT, solver.solve(-a));
+		assertFalse(solver.getValue(a));
+		assertTrue(solver.getValue(b));
+		assertTrue(solver.getValue(c));
+
+		assertEquals(SATSolver.UNSAT, solver.solve(-a, -b));
+		assertEquals(SATSolver.SAT, solver.solve(a, b));
+	}
+
+	@Test
+	public final void testPigeonhole() {
+		// pigeon i is enabled by the assumption enabled[i], 4 pigeons do not fit into 3 holes
+		SATSolver solver = new SATSolver();
+		int pigeons = 4, holes = 3;
+		int[][] in = new int[pigeons][holes];
+		int[] enabled = new int[pigeons];
+		for (int i=0; i<pigeons; ++i) {
+			enabled[i] = solver.newVariable();
+			int[] clause = new int[holes + 1];
+			for (int h=0; h<holes; ++h)
+				clause[h] = in[i][h] = solver.newVariable();
+			clause[holes] = -enabled[i];
+			solver.addClause(clause);
+		}
+		for (int h=0; h<holes; ++h) {
+			int[] column = new int[pigeons];
+			for (int i=0; i<pigeons; ++i)
+				column[i] = in[i][h];
+			solver.atMostOne(column);
+		}
+
+		assertEquals(SATSolver.SAT, solver.solve(enabled[0], enabled[1], enabled[2]));
+		assertEquals(SATSolver.UNSAT, solver.solve(enabled));
+		assertEquals(SATSolver.SAT, solver.solve(enabled[1], enabled[2], enabled[3]));
+	}
+
+	@Test
+	public final void testGates() {
+		SATSolver solver = new SATSolver();
+		int a = solver.newVariable(), b = solver.newVariable();
+		int and = solver.and(a, b), or = solver.or(a, b), xor = solver.xor(a, b);
+
+		for (int i=0; i<4; ++i) {
+			boolean x = (i & 1) != 0, y = (i & 2) != 0;
+			assertEquals(SATSolver.SAT, solver.solve(x ? a : -a, y ? b : -b));
+			assertEquals(x && y, solver.getValue(and));
+			assertEquals(x || y, solver.getValue(or));
+			assertEquals(x != y, solver.getValue(xor));
+		}
+		assertEquals(SATSolver.UNSAT, solver.solve(xor, and));
+		assertEquals(SATSolver.UNSAT, solver.solve(-or, a));
+	}
+
+	@Test
+	public final void testAtMostOne() {
+		// more literals than the pairwise encoding is used for
+		SATSolver solver = new SATSolver();
+		int[] x = new int[8];
+		for (int i=0; i<x.length; ++i)
+			x[i] = solver.newVariable();
+		solver.atMostOne(x);
+
+		for (int i=0; i<x.length; ++i) {
+			assertEquals(SATSolver.SAT, solver.solve(x[i]));
+			for (int j=0; j<x.length; ++j)
+				assertEquals(i == j, solver.getValue(x[j]));
+			for (int j=i+1; j<x.length; ++j)
+				assertEquals(SATSolver.UNSAT, solver.solve(x[i], x[j]));
+		}
+	}
+
+	@Test
+	public final void testUnsatisfiableClauses() {
+		SATSolver solver = new SATSolver();
+		int a = solver.newVariable(), b = solver.newVariable();
+		assertTrue(solver.addClause(a, b));
+		assertTrue(solver.addClause(-a, b));
+		assertTrue(solver.addClause(a, -b));
+		solver.addClause(-a, -b);
+		assertEquals(SATSolver.UNSAT, solver.solve());
+	}
+
+}
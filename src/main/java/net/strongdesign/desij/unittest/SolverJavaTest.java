@@ -0,0 +1,136 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.desij.unittest;
+
+import static org.junit.Assert.*;
+
+import net.sf.javailp.Linear;
+import net.sf.javailp.OptType;
+import net.sf.javailp.Problem;
+import net.sf.javailp.Result;
+import net.strongdesign.stg.solvers.SolverFactoryJava;
+
+import org.junit.Test;
+
+/**
+ * Small (I)LPs with known solutions for {@link net.strongdesign.stg.solvers.SolverJava}.
+ */
+public class SolverJavaTest {
+
+	@Test
+	public final void testLP() {
+		// max x + y, x + 2y <= 4, 3x + y <= 6
+		Problem problem = new Problem();
+		problem.setObjective(linear(1, "x", 1, "y"), OptType.MAX);
+		problem.add(linear(1, "x", 2, "y"), "<=", 4);
+		problem.add(linear(3, "x", 1, "y"), "<=", 6);
+
+		Result result = solve(problem);
+		assertNotNull(result);
+		assertEquals(1.6, result.get("x").doubleValue(), 1e-6);
+		assertEquals(1.2, result.get("y").doubleValue(), 1e-6);
+		assertEquals(2.8, result.getObjective().doubleValue(), 1e-6);
+	}
+
+	@Test
+	public final void testILP() {
+		// the LP optimum above is fractional, the integral one is x=1, y=1 or x=2, y=0
+		Problem problem = new Problem();
+		problem.setObjective(linear(1, "x", 1, "y"), OptType.MAX);
+		problem.add(linear(1, "x", 2, "y"), "<=", 4);
+		problem.add(linear(3, "x", 1, "y"), "<=", 6);
+		problem.setVarType("x", Integer.class);
+		problem.setVarType("y", Integer.class);
+
+		Result result = solve(problem);
+		assertNotNull(result);
+		assertEquals(2, result.getObjective().intValue());
+		assertTrue(result.get("x").intValue() + 2 * result.get("y").intValue() <= 4);
+		assertTrue(3 * result.get("x").intValue() + result.get("y").intValue() <= 6);
+	}
+
+	@Test
+	public final void testKnapsack() {
+		// max 5a + 4b + 3c, 2a + 3b + c <= 5, 4a + b + 2c <= 11, 3a + 4b + 2c <= 8 with binary variables
+		Problem problem = new Problem();
+		problem.setObjective(linear(5, "a", 4, "b", 3, "c"), OptType.MAX);
+		problem.add(linear(2, "a", 3, "b", 1, "c"), "<=", 5);
+		problem.add(linear(4, "a", 1, "b", 2, "c"), "<=", 11);
+		problem.add(linear(3, "a", 4, "b", 2, "c"), "<=", 8);
+		for (String v : new String[] {"a", "b", "c"})
+			problem.setVarType(v, Boolean.class);
+
+		Result result = solve(problem);
+		assertNotNull(result);
+		assertEquals(9, result.getObjective().intValue());
+		assertEquals(1, result.get("a").intValue());
+		assertEquals(1, result.get("b").intValue());
+		assertEquals(0, result.get("c").intValue());
+	}
+
+	@Test
+	public final void testInfeasible() {
+		// 2x + 4y = 3 has a fractional, but no integral solution
+		Problem problem = new Problem();
+		problem.add(linear(2, "x", 4, "y"), "=", 3);
+		problem.setVarType("x", Integer.class);
+		problem.setVarType("y", Integer.class);
+		assertNull(solve(problem));
+
+		// 3x + 5y = 7 needs branching to be refuted
+		problem = new Problem();
+		problem.add(linear(3, "x", 5, "y"), "=", 7);
+		problem.setVarType("x", Integer.class);
+		problem.setVarType("y", Integer.class);
+		assertNull(solve(problem));
+
+		// x + y <= 1, x + y >= 2
+		problem = new Problem();
+		problem.add(linear(1, "x", 1, "y"), "<=", 1);
+		problem.add(linear(1, "x", 1, "y"), ">=", 2);
+		assertNull(solve(problem));
+	}
+
+	@Test
+	public final void testEquality() {
+		// 3x + 5y = 8 with integers, the only solution is x=1, y=1
+		Problem problem = new Problem();
+		problem.add(linear(3, "x", 5, "y"), "=", 8);
+		problem.setVarType("x", Integer.class);
+		problem.setVarType("y", Integer.class);
+
+		Result result = solve(problem);
+		assertNotNull(result);
+		assertEquals(1, result.get("x").intValue());
+		assertEquals(1, result.get("y").intValue());
+	}
+
+	private static Result solve(Problem problem) {
+		return new SolverFactoryJava().get().solve(problem);
+	}
+
+	private static Linear linear(Object... terms) {
+		Linear result = new Linear();
+		for (int i=0; i<terms.length; i+=2)
+			result.add((Number) terms[i], terms[i+1]);
+		return result;
+	}
+
+}
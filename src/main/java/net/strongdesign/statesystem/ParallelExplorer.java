@@ -0,0 +1,185 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.statesystem;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.strongdesign.statesystem.decorator.Cache;
+
+/**
+ * Explores all reachable states of a {@link StateSystem} with several threads.
+ *
+ * <p>Every worker expands the states of its own frontier. While there are fewer workers than threads, a worker
+ * hands off half of a large frontier as a new worker to a fixed thread pool. The visited states are kept in a {@link ConcurrentHashMap}, whoever
+ * inserts a state first expands it. The state system must be usable by several threads at once, e.g.
+ * the adapter of {@link net.strongdesign.stg.STGAdapterFactory}.
+ *
+ * <p>{@link #explore()} returns a {@link Cache} which contains all events and successors, hence the
+ * sequential algorithms working on it see exactly the same state system as before, only without
+ * computing anything.
+ */
+public class ParallelExplorer<State,Event> {
+
+	/**A frontier larger than this is split if some threads are idle.*/
+	private static final int SPLIT_SIZE = 32;
+
+	private final StateSystem<State,Event> system;
+	private final int threads;
+
+	private Set<State> visited;
+	private Map<State, Set<Event>> eventCache;
+	private Map<State, Map<Event, Set<State>>> nextStateCache;
+	private AtomicInteger numberOfStates;
+	private AtomicReference<Throwable> failure;
+
+	/**The number of workers which have been submitted and have not finished yet.*/
+	private AtomicInteger pending;
+	private CountDownLatch finished;
+	private ExecutorService pool;
+
+	/**
+	 * @param threads The number of threads, 0 for the number of available processors.
+	 */
+	public ParallelExplorer(StateSystem<State,Event> system, int threads) {
+		this.system = system;
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * Returns the number of reachable states.
+	 */
+	public int countStates() {
+		run(false);
+		return numberOfStates.get();
+	}
+
+	/**
+	 * Explores all reachable states and returns a cache containing all of them.
+	 */
+	public Cache<State,Event> explore() {
+		run(true);
+		return new Cache<State,Event>(system, eventCache, nextStateCache);
+	}
+
+
+	private void run(boolean record) {
+		visited = Collections.newSetFromMap(new ConcurrentHashMap<State, Boolean>(1024, 0.75f, threads));
+		eventCache = record ? new ConcurrentHashMap<State, Set<Event>>(1024, 0.75f, threads) : null;
+		nextStateCache = record ? new ConcurrentHashMap<State, Map<Event, Set<State>>>(1024, 0.75f, threads) : null;
+		numberOfStates = new AtomicInteger();
+		failure = new AtomicReference<Throwable>();
+		pending = new AtomicInteger(1);
+		finished = new CountDownLatch(1);
+
+		State initial = system.getInitialState();
+		visited.add(initial);
+		Deque<State> frontier = new ArrayDeque<State>();
+		frontier.add(initial);
+
+		pool = Executors.newFixedThreadPool(threads);
+		try {
+			pool.execute(new Worker(frontier));
+			finished.await();
+		}
+		catch (InterruptedException e) {
+			failure.compareAndSet(null, e);
+		}
+		finally {
+			pool.shutdownNow();
+		}
+
+		Throwable t = failure.get();
+		if (t instanceof RuntimeException)
+			throw (RuntimeException) t;
+		if (t instanceof Error)
+			throw (Error) t;
+		if (t != null)
+			throw new RuntimeException(t);
+	}
+
+
+	private class Worker implements Runnable {
+		private final Deque<State> frontier;
+
+		Worker(Deque<State> frontier) {
+			this.frontier = frontier;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!frontier.isEmpty() && failure.get() == null) {
+					expand(frontier.poll());
+
+					if (frontier.size() > SPLIT_SIZE && pending.get() < threads) {
+						Deque<State> split = new ArrayDeque<State>();
+						for (int i = frontier.size() / 2; i > 0; --i)
+							split.add(frontier.pollLast());
+						pending.incrementAndGet();
+						pool.execute(new Worker(split));
+					}
+				}
+			}
+			catch (Throwable t) {
+				failure.compareAndSet(null, t);
+				finished.countDown();
+			}
+
+			if (pending.decrementAndGet() == 0)
+				finished.countDown();
+		}
+
+		private void expand(State state) {
+			int n = numberOfStates.incrementAndGet();
+			if (n % 1000 == 0)
+				System.err.print(".");
+
+			Set<Event> events = system.getEvents(state);
+			Map<Event, Set<State>> nextStates = eventCache == null ? null : new HashMap<Event, Set<State>>();
+
+			for (Event event : events) {
+				Set<State> successors = system.getNextStates(state, event);
+				if (nextStates != null)
+					nextStates.put(event, successors);
+
+				for (State successor : successors)
+					if (visited.add(successor))
+						frontier.add(successor);
+			}
+
+			if (eventCache != null) {
+				eventCache.put(state, events);
+				nextStateCache.put(state, nextStates);
+			}
+		}
+	}
+
+}
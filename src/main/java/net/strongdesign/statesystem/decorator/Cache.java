@@ -51,6 +51,17 @@ public class Cache<State,Event> implements StateSystem<State,Event>{
         nextStateCache 	= new HashMap<State, Map<Event, Set<State>>>();
     }
     
+    /**
+     * Creates a cache which is already filled, e.g. by {@link net.strongdesign.statesystem.ParallelExplorer}.
+     */
+    public Cache (StateSystem<State,Event> system, Map<State, Set<Event>> eventCache, 
+    		Map<State, Map<Event, Set<State>>> nextStateCache) {
+        this.system = system;
+        currentState = system.getInitialState();
+        this.eventCache 		= eventCache;
+        this.nextStateCache 	= nextStateCache;
+    }
+    
 
 public State getInitialState() {
 	return currentState;
@@ -19,8 +19,13 @@
 
 package net.strongdesign.statesystem.simulation;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 
 import net.strongdesign.statesystem.StateSystem;
@@ -61,6 +66,118 @@ public class Simulation {
 		return bisim;		
 	}
 	
+	/**
+	 * Like {@link #findSimulation(StateSystem, StateSystem, RelationPropagator)}, but without guessing: all elements
+	 * reachable from the start relation are explored, then the elements which cannot be included are removed
+	 * until nothing changes. An element is removed if it cannot be propagated or if all alternatives of one of its
+	 * sets are removed; this is counted per set, hence the time is linear in the size of the explored relation.
+	 * Since neither step is recursive, deep state systems do not overflow the stack.
+	 * @return A simulation containing the start relation, null if there is none.
+	 * @throws PropagationException 
+	 */
+	public static <StateA, StateB, Event> Set<RelationElement<StateA, StateB>> findGreatestSimulation(
+			StateSystem<StateA, Event> sys1, 
+			StateSystem<StateB, Event> sys2, 
+			RelationPropagator<StateA, StateB, Event> relProp ) throws PropagationException {
+		
+		relProp.setSystems(sys1, sys2);
+		
+		Map<RelationElement<StateA, StateB>, Integer> numbers = new HashMap<RelationElement<StateA, StateB>, Integer>();
+		List<RelationElement<StateA, StateB>> elements = new ArrayList<RelationElement<StateA, StateB>>();
+		Set<RelationElement<StateA, StateB>> start = relProp.getStartRelation();
+		for (RelationElement<StateA, StateB> el : start)
+			getNumber(el, numbers, elements);
+		
+		//explore, every set of a propagation becomes a requirement of its element
+		List<Boolean> propagated = new ArrayList<Boolean>();
+		List<int[]> requirements = new ArrayList<int[]>();
+		List<Integer> owners = new ArrayList<Integer>();
+		for (int i=0; i<elements.size(); ++i) {
+			List<Set<RelationElement<StateA, StateB>>> p = relProp.propagateElement(elements.get(i));
+			propagated.add(p != null);
+			if (p == null) continue;
+			for (Set<RelationElement<StateA, StateB>> c : p) {
+				int[] alternatives = new int[c.size()];
+				int j = 0;
+				for (RelationElement<StateA, StateB> e : c)
+					alternatives[j++] = getNumber(e, numbers, elements);
+				requirements.add(alternatives);
+				owners.add(i);
+			}
+		}
+		
+		//refine
+		int n = elements.size();
+		List<List<Integer>> usedBy = new ArrayList<List<Integer>>(n);
+		for (int i=0; i<n; ++i)
+			usedBy.add(new ArrayList<Integer>(2));
+		int[] remaining = new int[requirements.size()];
+		boolean[] removed = new boolean[n];
+		Queue<Integer> queue = new LinkedList<Integer>();
+		
+		for (int i=0; i<n; ++i)
+			if (!propagated.get(i)) {
+				removed[i] = true;
+				queue.add(i);
+			}
+		for (int r=0; r<remaining.length; ++r) {
+			int[] alternatives = requirements.get(r);
+			remaining[r] = alternatives.length;
+			for (int e : alternatives)
+				usedBy.get(e).add(r);
+			int owner = owners.get(r);
+			if (alternatives.length == 0 && !removed[owner]) {
+				removed[owner] = true;
+				queue.add(owner);
+			}
+		}
+		
+		while (!queue.isEmpty()) 
+			for (int r : usedBy.get(queue.poll())) {
+				int owner = owners.get(r);
+				if (--remaining[r] == 0 && !removed[owner]) {
+					removed[owner] = true;
+					queue.add(owner);
+				}
+			}
+		
+		for (RelationElement<StateA, StateB> el : start)
+			if (removed[numbers.get(el)])
+				return null;
+		
+		//collect the elements needed by the start relation, choosing the first remaining alternative of each set
+		List<List<Integer>> requirementsOf = new ArrayList<List<Integer>>(n);
+		for (int i=0; i<n; ++i)
+			requirementsOf.add(new ArrayList<Integer>(2));
+		for (int r=0; r<remaining.length; ++r)
+			requirementsOf.get(owners.get(r)).add(r);
+		
+		Set<RelationElement<StateA, StateB>> result = new LinkedHashSet<RelationElement<StateA, StateB>>(start);
+		for (RelationElement<StateA, StateB> el : start)
+			queue.add(numbers.get(el));
+		while (!queue.isEmpty())
+			for (int r : requirementsOf.get(queue.poll()))
+				for (int e : requirements.get(r))
+					if (!removed[e]) {
+						if (result.add(elements.get(e)))
+							queue.add(e);
+						break;
+					}
+		
+		return result;
+	}
+	
+	private static <StateA, StateB> int getNumber(RelationElement<StateA, StateB> el, 
+			Map<RelationElement<StateA, StateB>, Integer> numbers, List<RelationElement<StateA, StateB>> elements) {
+		Integer result = numbers.get(el);
+		if (result == null) {
+			result = elements.size();
+			numbers.put(el, result);
+			elements.add(el);
+		}
+		return result;
+	}
+	
 	/**
 	 * Propagates a set of elements, see @link RelationPropagator#propagateElement(RelationElement) for the details of a.
 	 * @param <State>
@@ -0,0 +1,352 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Compact storage of the weighted arcs on one side (preset or postset) of a {@link Node}.
+ *
+ * <p>The adjacent nodes are kept in a dense array together with a parallel array of
+ * primitive arc weights, so an arc costs two array slots instead of a boxed map entry.
+ * Small sets are searched linearly, larger ones additionally get an open addressing
+ * index of positions.
+ *
+ * <p>The instance itself is the live key set returned by {@link Node#getParents()} and
+ * {@link Node#getChildren()}; removing an element through the set removes the arc on this side only,
+ * exactly as the former <code>HashMap.keySet()</code> did. Positional access via
+ * {@link #nodeAt(int)} and {@link #weightAt(int)} allows iteration without allocation.
+ */
+final class ArcSet extends AbstractSet<Node> {
+
+	private static final Node[] NO_NODES = new Node[0];
+	private static final int[] NO_WEIGHTS = new int[0];
+
+	/**Up to this size the set is searched linearly, beyond the hash index is used.*/
+	private static final int LINEAR_LIMIT = 8;
+
+	/**The adjacent nodes, valid in [0,size).*/
+	private Node[] nodes = NO_NODES;
+
+	/**The arc weights, weights[i] belongs to nodes[i] and is always positive.*/
+	private int[] weights = NO_WEIGHTS;
+
+	private int size;
+
+	/**Open addressing table of positions+1, 0 marks a free slot. Null for small sets.*/
+	private int[] index;
+
+	/**Structural modifications, for fail-fast iterators.*/
+	private int modCount;
+
+	/**The node whose preset or postset this is, it is notified before every modification of an arc.*/
+	private final Node owner;
+
+
+	ArcSet(Node owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Constructs an independent copy of the given set.
+	 */
+	ArcSet(ArcSet other) {
+		owner = other.owner;
+		copy(other);
+	}
+
+	/**
+	 * Replaces the content of this set with a copy of the content of the given one.
+	 */
+	void assign(ArcSet other) {
+		owner.changing();
+		copy(other);
+	}
+
+	private void copy(ArcSet other) {
+		size = other.size;
+		nodes = size == 0 ? NO_NODES : new Node[size];
+		weights = size == 0 ? NO_WEIGHTS : new int[size];
+		System.arraycopy(other.nodes, 0, nodes, 0, size);
+		System.arraycopy(other.weights, 0, weights, 0, size);
+		index = other.index == null ? null : other.index.clone();
+		++modCount;
+	}
+
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the node at the given position, 0 <= i < {@link #size()}.
+	 */
+	Node nodeAt(int i) {
+		return nodes[i];
+	}
+
+	/**
+	 * Returns the arc weight at the given position, 0 <= i < {@link #size()}.
+	 */
+	int weightAt(int i) {
+		return weights[i];
+	}
+
+	/**
+	 * Returns the weight of the arc to the given node, 0 if there is no such arc.
+	 */
+	int getWeight(Object node) {
+		int i = indexOf(node);
+		return i < 0 ? 0 : weights[i];
+	}
+
+	/**
+	 * Returns the position of the given node or -1 if it is not contained.
+	 */
+	int indexOf(Object node) {
+		if (node == null) return -1;
+
+		if (index == null) {
+			for (int i=0; i<size; ++i) {
+				Node n = nodes[i];
+				if (n == node || n.equals(node))
+					return i;
+			}
+			return -1;
+		}
+
+		int mask = index.length - 1;
+		for (int slot = hash(node) & mask; ; slot = (slot+1) & mask) {
+			int pos = index[slot] - 1;
+			if (pos < 0) return -1;
+			Node n = nodes[pos];
+			if (n == node || n.equals(node))
+				return pos;
+		}
+	}
+
+	/**
+	 * Sets the weight of the arc to the given node, adding the node if necessary.
+	 * @param weight must be positive
+	 */
+	void put(Node node, int weight) {
+		int i = indexOf(node);
+		owner.arcChanging(this, node, i >= 0 ? weights[i] : 0);
+		if (i >= 0) {
+			weights[i] = weight;
+			return;
+		}
+
+		if (size == nodes.length) {
+			int capacity = size == 0 ? 2 : size + (size >> 1) + 1;
+			Node[] newNodes = new Node[capacity];
+			int[] newWeights = new int[capacity];
+			System.arraycopy(nodes, 0, newNodes, 0, size);
+			System.arraycopy(weights, 0, newWeights, 0, size);
+			nodes = newNodes;
+			weights = newWeights;
+		}
+
+		nodes[size] = node;
+		weights[size] = weight;
+		++size;
+		++modCount;
+
+		if (index != null && 2*size > index.length)
+			rehash();
+		else if (index != null)
+			insertIndex(size-1);
+		else if (size > LINEAR_LIMIT)
+			rehash();
+	}
+
+	/**
+	 * Removes the arc to the given node.
+	 * @return The former weight of the arc, 0 if there was none.
+	 */
+	int removeNode(Object node) {
+		int i = indexOf(node);
+		if (i < 0) return 0;
+
+		int weight = weights[i];
+		removeAt(i);
+		return weight;
+	}
+
+	/**
+	 * Removes the arc at the given position, the last arc is moved to this position.
+	 */
+	private void removeAt(int i) {
+		owner.arcChanging(this, nodes[i], weights[i]);
+		int last = size - 1;
+
+		if (index != null) {
+			deleteIndex(i);
+			if (i != last)
+				updateIndex(last, i);
+		}
+
+		nodes[i] = nodes[last];
+		weights[i] = weights[last];
+		nodes[last] = null;
+		size = last;
+		++modCount;
+
+		if (index != null && size <= LINEAR_LIMIT / 2)
+			index = null;
+	}
+
+	/**
+	 * Rebuilds the hash index, needed whenever the hash codes of the contained nodes
+	 * may have changed, e.g. after {@link STG#setIds(java.util.Map, boolean)}.
+	 */
+	void rehash() {
+		if (size <= LINEAR_LIMIT / 2) {
+			index = null;
+			return;
+		}
+
+		int capacity = 16;
+		while (capacity < 3*size) capacity <<= 1;
+		index = new int[capacity];
+		for (int i=0; i<size; ++i)
+			insertIndex(i);
+	}
+
+
+	private static int hash(Object node) {
+		int h = node.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	private void insertIndex(int pos) {
+		int mask = index.length - 1;
+		int slot = hash(nodes[pos]) & mask;
+		while (index[slot] != 0)
+			slot = (slot+1) & mask;
+		index[slot] = pos + 1;
+	}
+
+	private int findSlot(int pos) {
+		int mask = index.length - 1;
+		int slot = hash(nodes[pos]) & mask;
+		while (index[slot] != pos + 1)
+			slot = (slot+1) & mask;
+		return slot;
+	}
+
+	private void updateIndex(int oldPos, int newPos) {
+		index[findSlot(oldPos)] = newPos + 1;
+	}
+
+	/**
+	 * Deletes the index entry of the given position with backward shifting,
+	 * so no tombstones are needed for linear probing.
+	 */
+	private void deleteIndex(int pos) {
+		int mask = index.length - 1;
+		int hole = findSlot(pos);
+		int slot = hole;
+		while (true) {
+			slot = (slot+1) & mask;
+			int entry = index[slot];
+			if (entry == 0) break;
+			int home = hash(nodes[entry-1]) & mask;
+			// the entry may fill the hole if its home is not cyclically in (hole, slot]
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				index[hole] = entry;
+				hole = slot;
+			}
+		}
+		index[hole] = 0;
+	}
+
+
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return removeNode(o) > 0;
+	}
+
+	@Override
+	public void clear() {
+		for (int i=0; i<size; ++i) {
+			owner.arcChanging(this, nodes[i], weights[i]);
+			nodes[i] = null;
+		}
+		size = 0;
+		index = null;
+		++modCount;
+	}
+
+	@Override
+	public boolean add(Node e) {
+		throw new UnsupportedOperationException("Arcs can only be added via the weight setters of Node");
+	}
+
+	@Override
+	public Iterator<Node> iterator() {
+		return new Iterator<Node>() {
+			private int cursor = 0;
+			private int last = -1;
+			private int expectedModCount = modCount;
+
+			public boolean hasNext() {
+				return cursor < size;
+			}
+
+			public Node next() {
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+				if (cursor >= size)
+					throw new NoSuchElementException();
+				last = cursor;
+				return nodes[cursor++];
+			}
+
+			public void remove() {
+				if (last < 0)
+					throw new IllegalStateException();
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+
+				removeAt(last);
+				// the former last element now lives at position last and is visited next
+				cursor = last;
+				last = -1;
+				expectedModCount = modCount;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The canonical form of the arcs of a node: the identifiers of the preset and of the postset
+ * in ascending order together with the arc weights. For transitions the label is part of the
+ * signature, except for dummy transitions.
+ *
+ * <p>Two nodes of the same STG have equal signatures iff they are duplicates of each other in the sense of
+ * {@link net.strongdesign.stg.traversal.ConditionFactory#getDuplicateTransitionCondition(Transition)},
+ * the marking of places is not part of the signature.
+ */
+public final class ArcSignature {
+
+	/** The arcs of the preset followed by those of the postset, as identifier and weight. */
+	private final long[] arcs;
+	private final int presetSize;
+	private final SignalEdge label;
+	private final int hash;
+
+
+	private ArcSignature(Node node, SignalEdge label) {
+		Set<Node> parents = node.getParents();
+		Set<Node> children = node.getChildren();
+
+		presetSize = parents.size();
+		arcs = new long[presetSize + children.size()];
+
+		int i = 0;
+		for (Node parent : parents)
+			arcs[i++] = arc(parent, node.getParentValue(parent));
+		for (Node child : children)
+			arcs[i++] = arc(child, node.getChildValue(child));
+
+		Arrays.sort(arcs, 0, presetSize);
+		Arrays.sort(arcs, presetSize, arcs.length);
+
+		this.label = label;
+		this.hash = (Arrays.hashCode(arcs)*31 + presetSize)*31 + (label == null ? 0 : label.hashCode());
+	}
+
+	private static long arc(Node node, int weight) {
+		return ((long) node.getIdentifier() << 32) | (weight & 0xffffffffL);
+	}
+
+	public static ArcSignature of(Place place) {
+		return new ArcSignature(place, null);
+	}
+
+	public static ArcSignature of(Transition transition) {
+		STG stg = transition.getSTG();
+		SignalEdge label = transition.getLabel();
+		if (stg != null && stg.getSignature(label.getSignal()) == Signature.DUMMY)
+			label = null;
+		return new ArcSignature(transition, label);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof ArcSignature))
+			return false;
+		ArcSignature other = (ArcSignature) obj;
+
+		return hash == other.hash
+			&& presetSize == other.presetSize
+			&& (label == null ? other.label == null : label.equals(other.label))
+			&& Arrays.equals(arcs, other.arcs);
+	}
+
+}
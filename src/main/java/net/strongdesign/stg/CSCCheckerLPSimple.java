@@ -32,9 +32,9 @@ import net.sf.javailp.Problem;
 import net.sf.javailp.Result;
 import net.sf.javailp.Solver;
 import net.sf.javailp.SolverFactory;
-import net.sf.javailp.SolverFactoryLpSolve;
 import net.strongdesign.desij.CLW;
 import net.strongdesign.desij.DesiJException;
+import net.strongdesign.stg.solvers.LPBackend;
 import net.strongdesign.stg.traversal.ConditionFactory;
 
 import lpsolve.LpSolveException;
@@ -102,7 +102,7 @@ public class CSCCheckerLPSimple implements ICSCCheckLPStrategy {
 	private boolean solveLP(Transition t1, List<Transition> transHavingSignalOft1,
 			Set<Integer> projectedSignals) {
 		
-		SolverFactory factory = new SolverFactoryLpSolve();
+		SolverFactory factory = LPBackend.newSolverFactory();
 		factory.setParameter(Solver.VERBOSE, 0); // we don't need messages from the solver
 		factory.setParameter(Solver.TIMEOUT, 0); // no timeout
 		
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.strongdesign.stg.unfolding.ConfigurationEncoding;
+import net.strongdesign.stg.unfolding.Prefix;
+import net.strongdesign.util.sat.SATSolver;
+
+/**
+ * Checks CSC of projections like {@link CSCCheckerLPSimple}, but on the configurations of the unfolding
+ * prefix instead of the marking equation, hence only reachable conflicts are found.
+ *
+ * <p>The STG is unfolded and two configurations are encoded once; every check of {@link #execute(Set)} is a
+ * query under assumptions: the parities of the projected signals are equal, t1 is enabled by the first
+ * configuration and no transition of its signal by the second one. Hence the clauses learned for one
+ * projection are reused for the next one. Unlike the ILP, there is no objective minimising the occurrences
+ * of the silent signals.
+ */
+public class CSCCheckerSAT implements ICSCCheckLPStrategy {
+
+	private final STG stg;
+	private final NetStructure net;
+	private final SATSolver solver;
+	private final ConfigurationEncoding.Configuration first, second;
+
+	/**Per non-dummy signal, a literal which forces both configurations to the same parity of the signal.*/
+	private final Map<Integer, Integer> sameParity = new HashMap<Integer, Integer>();
+	/**Per signal, the literal which is true if the second configuration enables an edge of the signal.*/
+	private final Map<Integer, Integer> enabledBySecond = new HashMap<Integer, Integer>();
+
+
+	/**
+	 * @param stg must be bounded
+	 * @throws STGException if the STG cannot be unfolded
+	 */
+	public CSCCheckerSAT(STG stg) throws STGException {
+		this.stg = stg;
+		Prefix prefix = new Prefix(stg);
+		this.net = prefix.getNetStructure();
+
+		ConfigurationEncoding encoding = new ConfigurationEncoding(prefix);
+		this.solver = encoding.getSolver();
+		this.first = encoding.getConfiguration(0);
+		this.second = encoding.getConfiguration(1);
+
+		// all literals read from a model have to exist before the first query
+		for (Integer signal : stg.getSignals()) {
+			if (stg.getSignature(signal) == Signature.DUMMY)
+				continue;
+			int p1 = first.getParity(signal), p2 = second.getParity(signal);
+			int same = solver.newVariable();
+			solver.addClause(-same, -p1, p2);
+			solver.addClause(-same, p1, -p2);
+			sameParity.put(signal, same);
+		}
+	}
+
+	@Override
+	public boolean execute(Set<Integer> neededSignals) {
+		List<Integer> assumptions = new ArrayList<Integer>();
+		for (int sig : neededSignals)
+			if (sameParity.containsKey(sig))
+				assumptions.add(sameParity.get(sig));
+
+		for (int sig : neededSignals) {
+			if (stg.getSignature(sig) != Signature.INTERNAL && stg.getSignature(sig) != Signature.OUTPUT)
+				continue;
+
+			for (int t1=0; t1<net.getNumberOfTransitions(); ++t1) {
+				if (!net.getLabel(t1).getSignal().equals(sig))
+					continue;
+
+				// M1[t1> and not M2[t2> for all t2 with the signal of t1
+				assumptions.add(first.getEnabled(t1));
+				assumptions.add(-getEnabledBySecond(sig));
+				boolean conflict = solve(assumptions) == SATSolver.SAT;
+				assumptions.remove(assumptions.size() - 1);
+				assumptions.remove(assumptions.size() - 1);
+
+				if (conflict)
+					return false; // the model is kept for getUnbalancedSignals
+			}
+		}
+
+		return true;
+	}
+
+	private int getEnabledBySecond(int sig) {
+		Integer result = enabledBySecond.get(sig);
+		if (result == null) {
+			List<Integer> enabled = new ArrayList<Integer>();
+			for (int t=0; t<net.getNumberOfTransitions(); ++t)
+				if (net.getLabel(t).getSignal().equals(sig))
+					enabled.add(second.getEnabled(t));
+			int[] literals = new int[enabled.size()];
+			for (int i=0; i<literals.length; ++i)
+				literals[i] = enabled.get(i);
+			result = solver.or(literals);
+			enabledBySecond.put(sig, result);
+		}
+		return result;
+	}
+
+	private int solve(List<Integer> assumptions) {
+		int[] literals = new int[assumptions.size()];
+		for (int i=0; i<literals.length; ++i)
+			literals[i] = assumptions.get(i);
+		return solver.solve(literals);
+	}
+
+	/**
+	 * Returns the silent internal signals whose parities differ in the conflict found last.
+	 */
+	@Override
+	public Set<Integer> getUnbalancedSignals(Set<Integer> neededSignals) {
+		Set<Integer> result = new HashSet<Integer>();
+		for (int s : stg.getSignals(Signature.INTERNAL)) {
+			if (neededSignals.contains(s))
+				continue;
+			if (solver.getValue(first.getParity(s)) != solver.getValue(second.getParity(s)))
+				result.add(s);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.strongdesign.stg.traversal.ConditionFactory;
+
+/**
+ * Finds duplicate places and transitions by bucketing them according to their {@link ArcSignature},
+ * i.e. with one pass over the nodes instead of comparing all pairs of siblings.
+ */
+public abstract class DuplicateDetector {
+
+	/**
+	 * Returns the places which are redundant since another of the given places has the same arcs
+	 * and a lower or the same marking. Of each class of duplicates the place with the lowest marking
+	 * is kept, in case of equal markings the last one of the iteration order.
+	 */
+	public static List<Place> findDuplicatePlaces(Collection<Place> places) {
+		List<Place> result = new ArrayList<Place>();
+		Map<ArcSignature, Place> kept = new HashMap<ArcSignature, Place>();
+
+		for (Place place : places) {
+			ArcSignature signature = ArcSignature.of(place);
+			Place other = kept.get(signature);
+			if (other == null) {
+				kept.put(signature, place);
+			}
+			else if (place.getMarking() <= other.getMarking()) {
+				result.add(other);
+				kept.put(signature, place);
+			}
+			else {
+				result.add(place);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the transitions which are redundant since another of the given transitions has the same arcs and,
+	 * unless both are dummies, the same label. Of each class of duplicates the last one of the iteration order is kept.
+	 */
+	public static List<Transition> findDuplicateTransitions(Collection<Transition> transitions) {
+		List<Transition> result = new ArrayList<Transition>();
+		Map<ArcSignature, Transition> kept = new HashMap<ArcSignature, Transition>();
+
+		for (Transition transition : transitions) {
+			Transition other = kept.put(ArcSignature.of(transition), transition);
+			if (other != null)
+				result.add(other);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Checks if a sibling of the place has the same arcs and a lower or the same marking.
+	 * @param reason Is filled with the duplicate place.
+	 */
+	public static boolean hasDuplicate(Place place, Collection<Node> reason) {
+		Node neighbour = anyNeighbour(place);
+		if (neighbour == null)
+			return false;
+
+		ArcSignature signature = null;
+		for (Node sibling : neighbour.getNeighbours()) {
+			Place other = (Place) sibling;
+			if (other == place || other.getMarking() > place.getMarking() || !sameDegree(place, other))
+				continue;
+			if (signature == null)
+				signature = ArcSignature.of(place);
+			if (signature.equals(ArcSignature.of(other))) {
+				reason.add(other);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if another transition of the STG is a duplicate of the given one. Only the transitions
+	 * sharing a place with it are compared, unless the transition has no arcs at all.
+	 */
+	public static boolean hasDuplicate(Transition transition) {
+		Node neighbour = anyNeighbour(transition);
+		if (neighbour == null)
+			return !transition.getSTG().getTransitions(
+					ConditionFactory.getDuplicateTransitionCondition(transition)).isEmpty();
+
+		ArcSignature signature = null;
+		for (Node sibling : neighbour.getNeighbours()) {
+			Transition other = (Transition) sibling;
+			if (other == transition || !sameDegree(transition, other))
+				continue;
+			if (signature == null)
+				signature = ArcSignature.of(transition);
+			if (signature.equals(ArcSignature.of(other)))
+				return true;
+		}
+		return false;
+	}
+
+	private static Node anyNeighbour(Node node) {
+		if (!node.getParents().isEmpty())
+			return node.getParents().iterator().next();
+		if (!node.getChildren().isEmpty())
+			return node.getChildren().iterator().next();
+		return null;
+	}
+
+	private static boolean sameDegree(Node n1, Node n2) {
+		return n1.getParents().size() == n2.getParents().size() && n1.getChildren().size() == n2.getChildren().size();
+	}
+
+}
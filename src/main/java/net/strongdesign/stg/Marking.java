@@ -40,6 +40,13 @@ public class Marking  {
         marking = new HashMap<Place, Integer>();
     }
     
+    /**
+     * For subclasses with their own storage.
+     */
+    protected Marking(Map<Place, Integer> marking) {
+        this.marking = marking;
+    }
+    
     
     public void setMarking(Place p, Integer i) {
         marking.put(p, i);
@@ -54,15 +61,45 @@ public class Marking  {
             return i;        
     }
     
+    /**
+     * Returns the number of places of this marking.
+     */
+    protected int size() {
+        return marking.size();
+    }
+    
+    /**
+     * Returns the places of this marking.
+     */
+    protected Collection<Place> getPlaces() {
+        return marking.keySet();
+    }
+    
+    /**
+     * The hash of one place with its token count, the hash code of a marking is the sum of these.
+     * Other than the former <code>HashMap.hashCode()</code> the bits are mixed, since the
+     * identifiers of places and the token counts are small numbers. 
+     */
+    protected static int entryHash(Place place, int tokens) {
+        int h = place.hashCode() * 0x9E3779B9 + tokens;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+    
     public int hashCode() {
-        return marking.hashCode();
+        int h = 0;
+        for (Map.Entry<Place, Integer> entry : marking.entrySet())
+            h += entryHash(entry.getKey(), entry.getValue());
+        return h;
     }
     
     public String toString() {
         StringBuilder res = new StringBuilder();
         boolean emptyMarking = true;
-        for (Place place : marking.keySet()) {
-            Integer m = marking.get(place);
+        for (Place place : getPlaces()) {
+            Integer m = getMarking(place);
             if (m != 0) {
                 emptyMarking = false;
                 if (m == 1)
@@ -87,14 +124,14 @@ public class Marking  {
         if (! (state instanceof Marking) )
             return false;
         
-        Map<Place, Integer> m = ((Marking)state).marking;
+        Marking m = (Marking)state;
         
  
-        if ( m.keySet().size() != marking.keySet().size()   )
+        if ( m.size() != size()   )
             return false;
         
-        for (Place place : m.keySet()  )
-            if (! m.get(place).equals(marking.get(place))   )
+        for (Place place : m.getPlaces()  )
+            if (! m.getMarking(place).equals(getMarking(place))   )
                 return false;
         
         return true;
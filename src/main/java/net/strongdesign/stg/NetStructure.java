@@ -0,0 +1,407 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.strongdesign.stg.traversal.ConditionFactory;
+
+/**
+ * Precompiled pre- and postsets of the transitions of an STG, for firing transitions on
+ * {@link PackedMarking}s without touching the STG.
+ *
+ * <p>Places are numbered as in the {@link PackedMarking.Layout} of the structure, transitions by
+ * their position in {@link #getTransition(int)}. Sets of enabled transitions are bit vectors
+ * over these positions. After firing a transition only the transitions consuming from its pre- and
+ * postset places can change their enabling, see {@link #updateEnabled(long[], int[], int)}.
+ *
+ * <p>The structure is a snapshot of the STG at construction time, later changes of the
+ * STG are not reflected. Apart from widening the layout it is immutable, hence it can be used by
+ * several threads.
+ */
+public final class NetStructure {
+
+	private final STG stg;
+
+	/**The current layout, may be replaced by a wider one.*/
+	private volatile PackedMarking.Layout layout;
+
+	private final Transition[] transitions;
+	private final SignalEdge[] labels;
+
+	/**Preset places and arc weights of each transition.*/
+	private final int[][] prePlaces, preWeights;
+	/**Postset places and arc weights of each transition.*/
+	private final int[][] postPlaces, postWeights;
+
+	/**For each place the transitions which have it in their preset.*/
+	private final int[][] consumers;
+	/**For each place the transitions which have it in their postset.*/
+	private final int[][] producers;
+	/**For each transition the transitions whose enabling may change when it fires.*/
+	private final int[][] affected;
+
+	private final Map<SignalEdge, int[]> transitionsOfLabel;
+
+
+	public NetStructure(STG stg) {
+		this.stg = stg;
+		this.layout = PackedMarking.Layout.create(stg);
+
+		Collection<Transition> stgTransitions = stg.getTransitions(ConditionFactory.ALL_TRANSITIONS);
+		transitions = stgTransitions.toArray(new Transition[stgTransitions.size()]);
+		int nt = transitions.length;
+		int np = layout.getPlaces().length;
+
+		labels = new SignalEdge[nt];
+		prePlaces = new int[nt][];
+		preWeights = new int[nt][];
+		postPlaces = new int[nt][];
+		postWeights = new int[nt][];
+
+		List<List<Integer>> consumerLists = new ArrayList<List<Integer>>(np);
+		List<List<Integer>> producerLists = new ArrayList<List<Integer>>(np);
+		for (int p=0; p<np; ++p) {
+			consumerLists.add(new ArrayList<Integer>(2));
+			producerLists.add(new ArrayList<Integer>(2));
+		}
+
+		Map<SignalEdge, List<Integer>> labelLists = new HashMap<SignalEdge, List<Integer>>();
+
+		for (int t=0; t<nt; ++t) {
+			Transition transition = transitions[t];
+			labels[t] = transition.getLabel();
+
+			int n = transition.getParentCount();
+			prePlaces[t] = new int[n];
+			preWeights[t] = new int[n];
+			for (int i=0; i<n; ++i) {
+				int p = layout.getPosition((Place) transition.getParentAt(i));
+				prePlaces[t][i] = p;
+				preWeights[t][i] = transition.getParentValueAt(i);
+				consumerLists.get(p).add(t);
+			}
+
+			n = transition.getChildCount();
+			postPlaces[t] = new int[n];
+			postWeights[t] = new int[n];
+			for (int i=0; i<n; ++i) {
+				int p = layout.getPosition((Place) transition.getChildAt(i));
+				postPlaces[t][i] = p;
+				postWeights[t][i] = transition.getChildValueAt(i);
+				producerLists.get(p).add(t);
+			}
+
+			List<Integer> sameLabel = labelLists.get(labels[t]);
+			if (sameLabel == null) {
+				sameLabel = new ArrayList<Integer>(1);
+				labelLists.put(labels[t], sameLabel);
+			}
+			sameLabel.add(t);
+		}
+
+		consumers = new int[np][];
+		producers = new int[np][];
+		for (int p=0; p<np; ++p) {
+			consumers[p] = toArray(consumerLists.get(p));
+			producers[p] = toArray(producerLists.get(p));
+		}
+
+		affected = new int[nt][];
+		long[] seen = new long[words(nt)];
+		List<Integer> buffer = new ArrayList<Integer>();
+		for (int t=0; t<nt; ++t) {
+			buffer.clear();
+			collectConsumers(prePlaces[t], seen, buffer);
+			collectConsumers(postPlaces[t], seen, buffer);
+			affected[t] = toArray(buffer);
+			for (int u : affected[t])
+				seen[u >>> 6] &= ~(1L << u);
+		}
+
+		transitionsOfLabel = new HashMap<SignalEdge, int[]>(labelLists.size() * 2);
+		for (Map.Entry<SignalEdge, List<Integer>> entry : labelLists.entrySet())
+			transitionsOfLabel.put(entry.getKey(), toArray(entry.getValue()));
+	}
+
+	private void collectConsumers(int[] places, long[] seen, List<Integer> buffer) {
+		for (int p : places)
+			for (int u : consumers[p])
+				if ((seen[u >>> 6] & (1L << u)) == 0) {
+					seen[u >>> 6] |= 1L << u;
+					buffer.add(u);
+				}
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] result = new int[list.size()];
+		for (int i=0; i<result.length; ++i)
+			result[i] = list.get(i);
+		return result;
+	}
+
+	/**
+	 * Returns the number of longs of a bit vector over the transitions.
+	 */
+	private static int words(int bits) {
+		return (bits + 63) >>> 6;
+	}
+
+
+	public STG getSTG() {
+		return stg;
+	}
+
+	public PackedMarking.Layout getLayout() {
+		return layout;
+	}
+
+	public int getNumberOfPlaces() {
+		return layout.getPlaces().length;
+	}
+
+	public int getNumberOfTransitions() {
+		return transitions.length;
+	}
+
+	public Transition getTransition(int t) {
+		return transitions[t];
+	}
+
+	public SignalEdge getLabel(int t) {
+		return labels[t];
+	}
+
+	/**
+	 * Returns the positions of the transitions with the given label, the array must not be modified.
+	 */
+	public int[] getTransitions(SignalEdge label) {
+		int[] result = transitionsOfLabel.get(label);
+		return result == null ? new int[0] : result;
+	}
+
+	/**Returns the preset places of a transition, the array must not be modified.*/
+	public int[] getPreset(int t) {
+		return prePlaces[t];
+	}
+
+	/**Returns the postset places of a transition, the array must not be modified.*/
+	public int[] getPostset(int t) {
+		return postPlaces[t];
+	}
+
+	/**Returns the transitions having the place in their preset, the array must not be modified.*/
+	public int[] getConsumers(int p) {
+		return consumers[p];
+	}
+
+	/**Returns the transitions having the place in their postset, the array must not be modified.*/
+	public int[] getProducers(int p) {
+		return producers[p];
+	}
+
+	/**Returns the weight of the arc from the place to the transition, 0 if there is none.*/
+	public int getPreWeight(int t, int p) {
+		for (int i=0; i<prePlaces[t].length; ++i)
+			if (prePlaces[t][i] == p)
+				return preWeights[t][i];
+		return 0;
+	}
+
+	/**Returns the weight of the arc from the transition to the place, 0 if there is none.*/
+	public int getPostWeight(int t, int p) {
+		for (int i=0; i<postPlaces[t].length; ++i)
+			if (postPlaces[t][i] == p)
+				return postWeights[t][i];
+		return 0;
+	}
+
+
+	/**
+	 * Returns the token counts of a marking, indexed by place position.
+	 */
+	public int[] getValues(Marking marking) {
+		PackedMarking packed = toLayout(marking);
+		int[] values = new int[getNumberOfPlaces()];
+		packed.getValues(values);
+		return values;
+	}
+
+	/**
+	 * Returns the given marking as packed marking with the numbering of this structure.
+	 */
+	public PackedMarking toLayout(Marking marking) {
+		if (marking instanceof PackedMarking &&
+				((PackedMarking)marking).getLayout().getPlaces() == layout.getPlaces())
+			return (PackedMarking) marking;
+		return pack(getValuesOf(marking));
+	}
+
+	private int[] getValuesOf(Marking marking) {
+		Place[] places = layout.getPlaces();
+		int[] values = new int[places.length];
+		for (int i=0; i<places.length; ++i)
+			values[i] = marking.getMarking(places[i]);
+		return values;
+	}
+
+	/**
+	 * Packs the token counts, indexed by place position. The layout is widened if necessary.
+	 */
+	public PackedMarking pack(int[] values) {
+		PackedMarking.Layout current = layout;
+		int max = 0;
+		for (int v : values)
+			max = Math.max(max, v);
+
+		if (!current.fits(max))
+			current = widen(max);
+
+		return current.pack(values);
+	}
+
+	private synchronized PackedMarking.Layout widen(int max) {
+		layout = layout.widen(max);
+		return layout;
+	}
+
+	/**
+	 * Returns the initial marking of the STG, i.e. its marking when the structure was created.
+	 */
+	public PackedMarking getInitialMarking() {
+		Place[] places = layout.getPlaces();
+		int[] values = new int[places.length];
+		for (int i=0; i<places.length; ++i)
+			values[i] = places[i].getMarking();
+		return pack(values);
+	}
+
+
+	public boolean isEnabled(int[] values, int t) {
+		int[] places = prePlaces[t];
+		int[] weights = preWeights[t];
+		for (int i=0; i<places.length; ++i)
+			if (values[places[i]] < weights[i])
+				return false;
+		return true;
+	}
+
+	/**
+	 * Fires the transition on the given token counts, which are modified. The transition
+	 * must be enabled.
+	 */
+	public void fire(int[] values, int t) {
+		int[] places = prePlaces[t];
+		int[] weights = preWeights[t];
+		for (int i=0; i<places.length; ++i)
+			values[places[i]] -= weights[i];
+
+		places = postPlaces[t];
+		weights = postWeights[t];
+		for (int i=0; i<places.length; ++i)
+			values[places[i]] += weights[i];
+	}
+
+	/**
+	 * Returns the bit vector of the transitions enabled under the given token counts.
+	 */
+	public long[] computeEnabled(int[] values) {
+		long[] enabled = new long[words(transitions.length)];
+		for (int t=0; t<transitions.length; ++t)
+			if (isEnabled(values, t))
+				enabled[t >>> 6] |= 1L << t;
+		return enabled;
+	}
+
+	/**
+	 * Returns the enabled transitions after firing t, where <code>enabled</code> are the enabled transitions
+	 * before and <code>values</code> the token counts after firing. Only transitions consuming from the pre- and
+	 * postset of t are checked again.
+	 */
+	public long[] updateEnabled(long[] enabled, int[] values, int t) {
+		long[] result = enabled.clone();
+		for (int u : affected[t])
+			if (isEnabled(values, u))
+				result[u >>> 6] |= 1L << u;
+			else
+				result[u >>> 6] &= ~(1L << u);
+		return result;
+	}
+
+	public static boolean isSet(long[] bits, int t) {
+		return (bits[t >>> 6] & (1L << t)) != 0;
+	}
+
+	/**
+	 * Returns the enabled transitions of the given marking. They are cached in packed markings
+	 * created by this structure.
+	 */
+	public long[] getEnabled(PackedMarking marking) {
+		if (marking.getLayout().getPlaces() != layout.getPlaces())
+			return computeEnabled(getValues(marking));
+
+		long[] enabled = marking.enabled;
+		if (enabled == null) {
+			int[] values = new int[getNumberOfPlaces()];
+			marking.getValues(values);
+			enabled = computeEnabled(values);
+			marking.enabled = enabled;
+		}
+		return enabled;
+	}
+
+	/**
+	 * Fires t in the given marking and returns the successor marking, with its enabled transitions
+	 * computed incrementally. The transition must be enabled.
+	 */
+	public PackedMarking fire(PackedMarking marking, int t) {
+		PackedMarking source = toLayout(marking);
+		long[] enabled = getEnabled(source);
+
+		int[] values = new int[getNumberOfPlaces()];
+		source.getValues(values);
+		fire(values, t);
+
+		PackedMarking result = pack(values);
+		result.enabled = updateEnabled(enabled, values, t);
+		return result;
+	}
+
+	/**
+	 * Returns the positions of the enabled transitions.
+	 */
+	public List<Integer> getEnabledTransitions(PackedMarking marking) {
+		long[] enabled = getEnabled(toLayout(marking));
+		if (enabled.length == 0)
+			return Collections.emptyList();
+
+		List<Integer> result = new ArrayList<Integer>();
+		for (int w=0; w<enabled.length; ++w)
+			for (long bits = enabled[w]; bits != 0; bits &= bits - 1)
+				result.add((w << 6) + Long.numberOfTrailingZeros(bits));
+		return result;
+	}
+
+}
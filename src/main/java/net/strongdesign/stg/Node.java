@@ -26,9 +26,7 @@
 package net.strongdesign.stg;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 
@@ -63,11 +61,11 @@ public abstract class Node  implements Cloneable {
     /**A unique identifier, i.e. unique for every STG and node type.*/
     private Integer identifier;
 
-    /**The values of the arcs for the parent nodes.*/
-	private Map<Node, Integer> parentValues;
+    /**The arcs to the parent nodes together with their weights.*/
+	private final ArcSet parentValues;
 	
-	/**The values of the arcs for the child nodes.*/
-	private Map<Node, Integer> childValues;
+	/**The arcs to the child nodes together with their weights.*/
+	private final ArcSet childValues;
 	
 	@Override
 	public abstract Node clone();
@@ -84,8 +82,8 @@ public abstract class Node  implements Cloneable {
 		this.stg = stg;
 		this.identifier = identifier;
 		
-		parentValues = new HashMap<Node, Integer>();
-		childValues = new HashMap<Node, Integer>();		
+		parentValues = new ArcSet(this);
+		childValues = new ArcSet(this);
 	}
 
 	/**
@@ -110,17 +108,19 @@ public abstract class Node  implements Cloneable {
 
 
 	public final void setIdentifier(Integer id) {
+		if (stg != null)
+			stg.identifierChanging(this);
 		identifier = id;
 	}
 
 	public Set<Node> getNeighbours() {
 		Set<Node> result = new HashSet<Node>();
 		
-		for (Node node : childValues.keySet())
-			result.add(node);
+		for (int i=0; i<childValues.size(); ++i)
+			result.add(childValues.nodeAt(i));
 
-		for (Node node : parentValues.keySet())
-			result.add(node);
+		for (int i=0; i<parentValues.size(); ++i)
+			result.add(parentValues.nodeAt(i));
 		
 		return result;
 	}
@@ -155,29 +155,20 @@ public abstract class Node  implements Cloneable {
 	 * @param value The new value of the related arc. If lower-equal 0, node is removed from the parent list 
 	 */
 	public void setParentValue(Node node, int value) {
-		boolean nodeExists = parentValues.keySet().contains(node);
+		int oldValue = parentValues.getWeight(node);
 		
-		if (nodeExists && value > 0) {
-			if (value != (parentValues.get(node)).intValue()) {
-				parentValues.put(node,  new Integer(value));
+		if (value > 0) {
+			if (value != oldValue) {
+				parentValues.put(node, value);
 				node.setChildValue(this, value);
-			}		
+			}
 			return;
 		}
 		
-		if (!nodeExists && value > 0) {
-			//parents.add(node);
-			parentValues.put(node, new Integer(value));
+		if (oldValue > 0) {
+			parentValues.removeNode(node);
 			node.setChildValue(this, value);
-			return;		
 		}
-		
-		if (nodeExists && value <= 0) {
-			//parents.remove(node);
-			parentValues.remove(node);
-			node.setChildValue(this, value);
-			return;	
-		}		
 	}
 
 	/**
@@ -188,29 +179,20 @@ public abstract class Node  implements Cloneable {
 	 * @param value The new value of the related arc. If lower-equal 0, node is removed from the parent list 
 	 */
 	public void setChildValue(Node node, int value) {
-		boolean nodeExists = childValues.keySet().contains(node);
+		int oldValue = childValues.getWeight(node);
 		
-		if (nodeExists && value > 0) {
-			if (value != (childValues.get(node)).intValue()) {
-				childValues.put(node,  new Integer(value));
+		if (value > 0) {
+			if (value != oldValue) {
+				childValues.put(node, value);
 				node.setParentValue(this, value);
-			}		
+			}
 			return;
 		}
 		
-		if (!nodeExists && value > 0) {
-			//children.add(node);
-			childValues.put(node, new Integer(value));
+		if (oldValue > 0) {
+			childValues.removeNode(node);
 			node.setParentValue(this, value);
-			return;		
 		}
-		
-		if (nodeExists && value <= 0) {
-			//children.remove(node);
-			childValues.remove(node);
-			node.setParentValue(this, value);
-			return;	
-		}		
 	}
 
 	
@@ -241,11 +223,11 @@ public abstract class Node  implements Cloneable {
 	}
 
 	/**
-	 * Returns the parents of the instance.
+	 * Returns the parents of the instance. The set is a live view, no copy is made.
 	 * @return A list containing the parents.
 	 */
 	public final Set<Node> getParents() {
-		return parentValues.keySet();
+		return parentValues;
 	}
 	
 	public final boolean hasParents() {
@@ -253,11 +235,11 @@ public abstract class Node  implements Cloneable {
 	}
 
 	/**
-	 * Returns the children of the instance.
+	 * Returns the children of the instance. The set is a live view, no copy is made.
 	 * @return A list containing the children.
 	 */
 	public final Set<Node> getChildren() {
-		return  childValues.keySet();
+		return childValues;
 	}
 
 	public final boolean hasChildren() {
@@ -270,10 +252,7 @@ public abstract class Node  implements Cloneable {
 	 * @return The arc value for this parent, 0 if the node is not known to the instance
 	 */
 	public int getParentValue(Node node) {
-		Integer i = parentValues.get(node);
-		if (i == null)
-			return 0;
-		return i;
+		return parentValues.getWeight(node);
 	}
 
 	/**
@@ -282,10 +261,53 @@ public abstract class Node  implements Cloneable {
 	 * @return The arc value for this child, 0 if the node is not known to the instance
 	 */
 	public int getChildValue(Node node) {
-		Integer i = childValues.get(node);
-		if (i == null)
-			return 0;
-		return i;
+		return childValues.getWeight(node);
+	}
+	
+	/**
+	 * Returns the number of parents, together with {@link #getParentAt(int)} and
+	 * {@link #getParentValueAt(int)} this allows iterating the preset without allocation.
+	 */
+	public final int getParentCount() {
+		return parentValues.size();
+	}
+	
+	/**
+	 * Returns the i-th parent, 0 <= i < {@link #getParentCount()}. The order is arbitrary 
+	 * and only stable as long as the preset is not modified.
+	 */
+	public final Node getParentAt(int i) {
+		return parentValues.nodeAt(i);
+	}
+	
+	/**
+	 * Returns the arc-weight to the i-th parent, see {@link #getParentAt(int)}.
+	 */
+	public final int getParentValueAt(int i) {
+		return parentValues.weightAt(i);
+	}
+	
+	/**
+	 * Returns the number of children, together with {@link #getChildAt(int)} and
+	 * {@link #getChildValueAt(int)} this allows iterating the postset without allocation.
+	 */
+	public final int getChildCount() {
+		return childValues.size();
+	}
+	
+	/**
+	 * Returns the i-th child, 0 <= i < {@link #getChildCount()}. The order is arbitrary 
+	 * and only stable as long as the postset is not modified.
+	 */
+	public final Node getChildAt(int i) {
+		return childValues.nodeAt(i);
+	}
+	
+	/**
+	 * Returns the arc-weight to the i-th child, see {@link #getChildAt(int)}.
+	 */
+	public final int getChildValueAt(int i) {
+		return childValues.weightAt(i);
 	}
 
 	/**
@@ -300,21 +322,92 @@ public abstract class Node  implements Cloneable {
 
 
 	public void disconnect() {
-		for (Node node : getChildren()) 
-			node.parentValues.remove(this);
-		
-		for (Node node : getParents()) 
-			node.childValues.remove(this);
-		
+		for (int i=0; i<childValues.size(); ++i) 
+			childValues.nodeAt(i).parentValues.removeNode(this);
 		
+		for (int i=0; i<parentValues.size(); ++i) 
+			parentValues.nodeAt(i).childValues.removeNode(this);
 	}
 	
 	public void reconnect() {
-		for (Node node : getChildren()) 
-			node.parentValues.put(this, getChildValue(node));
+		for (int i=0; i<childValues.size(); ++i) 
+			childValues.nodeAt(i).parentValues.put(this, childValues.weightAt(i));
 		
-		for (Node node : getParents()) 
-			node.childValues.put(this, getParentValue(node));
+		for (int i=0; i<parentValues.size(); ++i) 
+			parentValues.nodeAt(i).childValues.put(this, parentValues.weightAt(i));
+	}
+	
+	/**
+	 * Must be called before the state of the node is modified, it is recorded for the open
+	 * snapshots of its STG, see {@link STG#snapshot()}.
+	 */
+	final void changing() {
+		if (stg != null)
+			stg.nodeChanging(this);
+	}
+	
+	/**
+	 * Must be called before the weight of an arc is modified on one side, the former weight is
+	 * recorded for undo, see {@link STG#addUndoMarker(Object)}.
+	 * @param arcs The preset or postset of this node
+	 * @param node The adjacent node
+	 */
+	final void arcChanging(ArcSet arcs, Node node, int oldWeight) {
+		if (stg != null)
+			stg.arcChanging(this, arcs == parentValues, node, oldWeight);
+	}
+	
+	/**
+	 * Sets the weight of an arc on one side only, 0 removes the arc. Needed for undo.
+	 */
+	void restoreArc(boolean parent, Node node, int weight) {
+		ArcSet arcs = parent ? parentValues : childValues;
+		if (weight > 0)
+			arcs.put(node, weight);
+		else
+			arcs.removeNode(node);
+	}
+	
+	/**
+	 * Returns a copy of the current state of the node. 
+	 */
+	State saveState() {
+		return new State(this);
+	}
+	
+	/**
+	 * Resets the node to a state returned by {@link #saveState()}, the adjacent nodes are not updated. 
+	 */
+	void restoreState(State state) {
+		identifier = state.identifier;
+		parentValues.assign(state.parentValues);
+		childValues.assign(state.childValues);
+	}
+	
+	/**
+	 * The state of a node at the time a snapshot was taken.
+	 */
+	static class State {
+		final Integer identifier;
+		final ArcSet parentValues;
+		final ArcSet childValues;
+		Object label;
+		int marking;
+		
+		State(Node node) {
+			identifier = node.identifier;
+			parentValues = new ArcSet(node.parentValues);
+			childValues = new ArcSet(node.childValues);
+		}
+	}
+	
+	/**
+	 * Rebuilds the arc lookup structures, which is necessary after the identifiers
+	 * of adjacent nodes were changed.
+	 */
+	void rehashArcs() {
+		parentValues.rehash();
+		childValues.rehash();
 	}
 	
 	
@@ -0,0 +1,282 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable marking which stores the token counts in a packed array, intended for
+ * state space exploration where millions of markings are kept in hash sets.
+ *
+ * <p>The places are numbered by a {@link Layout}, which also fixes the number of bits
+ * per place: 1 bit for 1-safe nets (a bit vector), 8, 16 or 32 bits otherwise, i.e. byte, short
+ * or int values. All variants are packed into a <code>long[]</code>. The hash code is computed
+ * once on construction and equality of markings with the same layout is a plain array comparison.
+ *
+ * <p>Hash code and equality are compatible with {@link Marking}, so packed and map based markings
+ * of the same places can be mixed in collections.
+ */
+public final class PackedMarking extends Marking {
+
+	private final Layout layout;
+	private final long[] words;
+	private final int hash;
+
+	/**The enabled transitions, cached by the {@link NetStructure} of the layout. Not part of the state.*/
+	volatile long[] enabled;
+
+
+	private PackedMarking(Layout layout, long[] words) {
+		super(null);
+		this.layout = layout;
+		this.words = words;
+
+		int h = 0;
+		for (int i=0; i<layout.places.length; ++i)
+			h += entryHash(layout.places[i], get(i));
+		this.hash = h;
+	}
+
+	/**
+	 * Returns the layout which numbers the places of this marking.
+	 */
+	public Layout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Returns the number of tokens on the place with the given position in the layout.
+	 */
+	public int get(int position) {
+		int shift = layout.shift;
+		int offset = (position & ((1 << shift) - 1)) * layout.width;
+		return (int) ((words[position >>> shift] >>> offset) & layout.valueMask);
+	}
+
+	/**
+	 * Copies the token counts into the given array, indexed by position in the layout.
+	 */
+	public void getValues(int[] values) {
+		for (int i=0; i<layout.places.length; ++i)
+			values[i] = get(i);
+	}
+
+	/**
+	 * Sets the marking of the places of the layout to this marking.
+	 */
+	public void apply() {
+		Place[] places = layout.places;
+		for (int i=0; i<places.length; ++i)
+			places[i].setMarking(get(i));
+	}
+
+
+	@Override
+	public void setMarking(Place p, Integer i) {
+		throw new UnsupportedOperationException("Packed markings are immutable");
+	}
+
+	@Override
+	public Integer getMarking(Place p) {
+		Integer position = layout.positions.get(p);
+		if (position == null)
+			return null;
+		return get(position);
+	}
+
+	@Override
+	protected int size() {
+		return layout.places.length;
+	}
+
+	@Override
+	protected Collection<Place> getPlaces() {
+		return Arrays.asList(layout.places);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object state) {
+		if (state == this)
+			return true;
+
+		if (! (state instanceof Marking) )
+			return false;
+
+		Marking m = (Marking) state;
+		if (m.hashCode() != hash)
+			return false;
+
+		if (m instanceof PackedMarking) {
+			PackedMarking p = (PackedMarking) m;
+			if (p.layout == layout)
+				return Arrays.equals(p.words, words);
+		}
+
+		return super.equals(state);
+	}
+
+
+	/**
+	 * Numbering of a fixed set of places and the number of bits used per place.
+	 * Layouts are immutable and can be shared between threads.
+	 */
+	public static final class Layout {
+		private final Place[] places;
+		private final Map<Place, Integer> positions;
+
+		/**Bits per place, one of 1, 8, 16, 32.*/
+		private final int width;
+		/**log2 of the number of places per word.*/
+		private final int shift;
+		private final long valueMask;
+
+
+		private Layout(Place[] places, Map<Place, Integer> positions, int width) {
+			this.places = places;
+			this.positions = positions;
+			this.width = width;
+			this.shift = Integer.numberOfTrailingZeros(64 / width);
+			this.valueMask = width == 32 ? 0xFFFFFFFFL : (1L << width) - 1;
+		}
+
+		/**
+		 * Creates a layout for the current places of the STG. The width is chosen from the current
+		 * marking, a bit vector if every place carries at most one token.
+		 */
+		public static Layout create(STG stg) {
+			Collection<Place> stgPlaces = stg.getPlaces();
+			Place[] places = stgPlaces.toArray(new Place[stgPlaces.size()]);
+			Map<Place, Integer> positions = new HashMap<Place, Integer>(places.length * 2);
+			int max = 0;
+			for (int i=0; i<places.length; ++i) {
+				positions.put(places[i], i);
+				max = Math.max(max, places[i].getMarking());
+			}
+
+			return new Layout(places, positions, widthFor(max));
+		}
+
+		private static int widthFor(int max) {
+			if (max <= 1)
+				return 1;
+			if (max <= 0xFF)
+				return 8;
+			if (max <= 0xFFFF)
+				return 16;
+			return 32;
+		}
+
+		/**
+		 * Returns the places in the order of their positions. The array must not be modified.
+		 */
+		public Place[] getPlaces() {
+			return places;
+		}
+
+		/**
+		 * Returns the position of the given place, -1 if it is not part of the layout.
+		 */
+		public int getPosition(Place place) {
+			Integer position = positions.get(place);
+			return position == null ? -1 : position;
+		}
+
+		/**
+		 * Returns the bits used per place.
+		 */
+		public int getWidth() {
+			return width;
+		}
+
+		/**
+		 * Returns true if the given number of tokens fits into the width of this layout.
+		 */
+		public boolean fits(int tokens) {
+			return tokens >= 0 && (tokens & ~valueMask) == 0;
+		}
+
+		/**
+		 * Returns a layout for the same places which can store the given number of tokens per place,
+		 * this layout if it already can.
+		 */
+		public Layout widen(int max) {
+			if (fits(max))
+				return this;
+			return new Layout(places, positions, widthFor(max));
+		}
+
+		/**
+		 * Packs the current marking of the places of this layout.
+		 * @throws IllegalArgumentException if a token count does not fit into the width
+		 */
+		public PackedMarking pack() {
+			long[] words = new long[wordCount()];
+			for (int i=0; i<places.length; ++i)
+				set(words, i, places[i].getMarking());
+			return new PackedMarking(this, words);
+		}
+
+		/**
+		 * Packs the given token counts, indexed by position.
+		 * @throws IllegalArgumentException if a token count does not fit into the width
+		 */
+		public PackedMarking pack(int[] values) {
+			long[] words = new long[wordCount()];
+			for (int i=0; i<places.length; ++i)
+				set(words, i, values[i]);
+			return new PackedMarking(this, words);
+		}
+
+		/**
+		 * Packs a marking of the places of this layout.
+		 * @throws IllegalArgumentException if a token count does not fit into the width
+		 */
+		public PackedMarking pack(Marking marking) {
+			if (marking instanceof PackedMarking && ((PackedMarking)marking).layout == this)
+				return (PackedMarking) marking;
+
+			long[] words = new long[wordCount()];
+			for (int i=0; i<places.length; ++i)
+				set(words, i, marking.getMarking(places[i]));
+			return new PackedMarking(this, words);
+		}
+
+		private int wordCount() {
+			return (places.length + (1 << shift) - 1) >>> shift;
+		}
+
+		private void set(long[] words, int position, int tokens) {
+			if (!fits(tokens))
+				throw new IllegalArgumentException("Marking " + tokens + " of place " + places[position] +
+						" does not fit into " + width + " bits");
+			int offset = (position & ((1 << shift) - 1)) * width;
+			words[position >>> shift] |= ((long) tokens) << offset;
+		}
+	}
+
+}
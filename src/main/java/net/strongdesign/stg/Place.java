@@ -105,6 +105,7 @@ public class Place  extends Node {
 	 * @param label The new label.
 	 */
 	public void setLabel(String label) {
+		changing();
 		this.label = label;
 	}
 
@@ -114,8 +115,25 @@ public class Place  extends Node {
 	 */
 	public void setMarking(int i) {
 		if (i<0) i=0;
+		if (marking != i && stg != null)
+			stg.markingChanging(this);
 		marking = i;
 	}
+	
+	@Override
+	State saveState() {
+		State state = super.saveState();
+		state.label = label;
+		state.marking = marking;
+		return state;
+	}
+	
+	@Override
+	void restoreState(State state) {
+		super.restoreState(state);
+		label = (String) state.label;
+		marking = state.marking;
+	}
 
 	/**
 	 * Sets the arc-weight for a child node, see {@link stg.AbstractNode#setChildValue(Node, int)}.
@@ -0,0 +1,770 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.strongdesign.stg.traversal.ConditionFactory;
+
+/**
+ * The P-semiflows of an STG, i.e. the nonnegative integer vectors y over the places with y*C = 0
+ * for the incidence matrix C. Each of them gives the invariant y*M = y*M_N for all reachable markings M.
+ *
+ * <p>The semiflows with minimal support are computed with the Farkas algorithm on sparse integer vectors,
+ * where the transitions are eliminated in the order generating the fewest new vectors. If the number of
+ * vectors gets too large, the computation stops and only the semiflows found so far are kept; all answers
+ * are still sound then, but may be weaker, see {@link #isComplete()}.
+ *
+ * <p>The invariants are kept with the STG, see {@link #of(STG)}. Contracting a transition maps the
+ * semiflows to the new places and {@link #removePlace(Place)} drops the semiflows containing a place,
+ * semiflows not fitting the STG after other changes are dropped by the next call of {@link #of(STG)}.
+ * Hence, the semiflows need not be minimal anymore, and if too many places are left uncovered
+ * everything is computed again.
+ */
+public final class PlaceInvariants {
+
+	/** The number of vectors of the Farkas algorithm after which the computation stops. */
+	private static final int MAX_VECTORS = 5000;
+
+	/** The number of pairs combined for a single transition after which the computation stops. */
+	private static final long MAX_PAIRS = 1000000;
+
+	/** The number of support comparisons per place after which the computation stops, it should not take longer than a few LPs. */
+	private static final long MAX_COMPARISONS = 500;
+
+	/** Coefficients larger than this are not followed, since they would overflow soon. */
+	private static final long MAX_COEFFICIENT = 1L << 40;
+
+
+	/**
+	 * A P-semiflow, the places are ordered by their identifiers.
+	 */
+	public static final class Semiflow {
+		private final Place[] places;
+		private final int[] identifiers;
+		private final long[] weights;
+
+		private Semiflow(Map<Place, Long> weights) {
+			List<Place> sorted = new ArrayList<Place>(weights.keySet());
+			Collections.sort(sorted, BY_IDENTIFIER);
+			long gcd = 0;
+			for (Place place : sorted)
+				gcd = gcd(gcd, weights.get(place));
+
+			this.places = sorted.toArray(new Place[sorted.size()]);
+			this.identifiers = new int[places.length];
+			this.weights = new long[places.length];
+			for (int i = 0; i < places.length; i++) {
+				identifiers[i] = places[i].getIdentifier();
+				this.weights[i] = weights.get(places[i]) / gcd;
+			}
+		}
+
+		public List<Place> getPlaces() {
+			return Collections.unmodifiableList(Arrays.asList(places));
+		}
+
+		/**
+		 * @return The weight of the place, 0 if it is not in the support.
+		 */
+		public long getWeight(Place place) {
+			int i = Arrays.binarySearch(identifiers, place.getIdentifier());
+			return i >= 0 && places[i] == place ? weights[i] : 0;
+		}
+
+		/**
+		 * @return The weighted token sum y*M of the current marking, which is the same for all reachable markings.
+		 */
+		public long getTokens() {
+			long result = 0;
+			for (int i = 0; i < places.length; i++)
+				result += weights[i] * places[i].getMarking();
+			return result;
+		}
+
+		public int size() {
+			return places.length;
+		}
+
+		/**
+		 * Checks if all places belong to the STG and y*C = 0 still holds.
+		 */
+		private boolean fits(STG stg) {
+			Map<Node, Long> sum = new HashMap<Node, Long>();
+			for (int i = 0; i < places.length; i++) {
+				Place place = places[i];
+				if (stg.getPlace(place.getIdentifier()) != place)
+					return false;
+				for (Node t : place.getNeighbours()) {
+					long delta = weights[i] * (t.getChildValue(place) - place.getChildValue(t));
+					Long old = sum.get(t);
+					sum.put(t, old == null ? delta : old + delta);
+				}
+			}
+			for (Long value : sum.values())
+				if (value != 0)
+					return false;
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder();
+			for (int i = 0; i < places.length; i++) {
+				if (i > 0)
+					result.append(" + ");
+				if (weights[i] != 1)
+					result.append(weights[i]).append("*");
+				result.append(places[i].getString(Node.UNIQUE));
+			}
+			return result.toString();
+		}
+	}
+
+
+	private final STG stg;
+
+	private final Set<Semiflow> semiflows = new LinkedHashSet<Semiflow>();
+	private final Map<Place, Set<Semiflow>> semiflowsOfPlace = new HashMap<Place, Set<Semiflow>>();
+
+	/** True if the last computation found all minimal semiflows. */
+	private boolean complete;
+
+	/** The number of places not covered by a semiflow after the last computation. */
+	private int uncovered;
+
+	/** The number of support comparisons of the current computation and its limit. */
+	private long comparisons;
+	private long maxComparisons;
+
+
+	private PlaceInvariants(STG stg) {
+		this.stg = stg;
+	}
+
+	/**
+	 * Returns the invariants of the STG, which are computed at the first call and updated afterwards.
+	 */
+	public static PlaceInvariants of(STG stg) {
+		PlaceInvariants result = stg.placeInvariants;
+		if (result == null) {
+			result = new PlaceInvariants(stg);
+			result.compute();
+			stg.placeInvariants = result;
+		}
+		else
+			result.update();
+		return result;
+	}
+
+	public Collection<Semiflow> getSemiflows() {
+		return Collections.unmodifiableCollection(semiflows);
+	}
+
+	/**
+	 * @return True if the semiflows generate all semiflows of the STG when they were computed.
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Checks if the place is covered by a semiflow, i.e. it is structurally bounded.
+	 */
+	public boolean isBounded(Place place) {
+		return semiflowsOfPlace.containsKey(place);
+	}
+
+	/**
+	 * Checks if every place is covered by a semiflow, i.e. the STG is conservative and hence structurally bounded.
+	 */
+	public boolean isStructurallyBounded() {
+		return semiflowsOfPlace.size() == stg.getNumberOfPlaces();
+	}
+
+	/**
+	 * @return An upper bound of the tokens on the place in any reachable marking, -1 if the place is not covered.
+	 */
+	public long getBound(Place place) {
+		long result = -1;
+		Set<Semiflow> with = semiflowsOfPlace.get(place);
+		if (with != null)
+			for (Semiflow semiflow : with) {
+				long bound = semiflow.getTokens() / semiflow.getWeight(place);
+				if (result == -1 || bound < result)
+					result = bound;
+			}
+		return result;
+	}
+
+	/**
+	 * Checks if the place is structurally implicit by means of the semiflows: if a semiflow a contains the place
+	 * and another semiflow b contains the rest of a but not the place, then b-a gives
+	 * V(p)*M(p) = sum V(q)*M(q) + c for all reachable markings, where all V(q) are nonnegative. This is a
+	 * solution of the problem of {@link net.strongdesign.stg.solvers.RedundantPlaceSolverLP} with equality for
+	 * the changes of the marking, which is checked for the marking and the enabling conditions.
+	 *
+	 * <p>If the method returns false, the place may still be implicit.
+	 *
+	 * @param within if not null, only places of this set may have a positive valuation
+	 * @param reason if not null and the place is implicit, it is filled with the places having a positive valuation
+	 */
+	public boolean isImplicit(Place place, Set<Place> within, Collection<Place> reason) {
+		if (place.getChildren().isEmpty())
+			return true;
+
+		// the same quick check as the solver does
+		for (Node t : place.getChildren()) {
+			boolean found = false;
+			for (Node p : t.getParents())
+				if (p != place && (within == null || within.contains(p))) {
+					found = true;
+					break;
+				}
+			if (!found)
+				return false;
+		}
+
+		Set<Semiflow> with = semiflowsOfPlace.get(place);
+		if (with == null)
+			return false;
+
+		for (Semiflow a : with) {
+			if (a.size() == 1) {
+				if (isImplicit(place, a, null, within, reason))
+					return true;
+				continue;
+			}
+
+			// the candidates for b contain all places of a except the place itself, any of them can be used to find them
+			Set<Semiflow> rarest = null;
+			for (Place q : a.places)
+				if (q != place) {
+					Set<Semiflow> candidates = semiflowsOfPlace.get(q);
+					if (rarest == null || candidates.size() < rarest.size())
+						rarest = candidates;
+				}
+
+			for (Semiflow b : rarest)
+				if (b.getWeight(place) == 0 && isImplicit(place, a, b, within, reason))
+					return true;
+		}
+		return false;
+	}
+
+	private static boolean isImplicit(Place place, Semiflow a, Semiflow b, Set<Place> within, Collection<Place> reason) {
+		// the smallest ratio beta/alpha with beta*b >= alpha*a outside the place
+		long alpha = 1;
+		long beta = 0;
+		for (int i = 0; i < a.places.length; i++) {
+			Place q = a.places[i];
+			if (q == place)
+				continue;
+			long bq = b.getWeight(q);
+			if (bq == 0)
+				return false;
+			if (a.weights[i] * alpha > beta * bq) {
+				alpha = bq;
+				beta = a.weights[i];
+			}
+		}
+
+		Map<Place, Long> valuation = new LinkedHashMap<Place, Long>();
+		if (b != null)
+			for (int i = 0; i < b.places.length; i++) {
+				long v = beta * b.weights[i] - alpha * a.getWeight(b.places[i]);
+				if (v > 0)
+					valuation.put(b.places[i], v);
+			}
+		long vp = alpha * a.getWeight(place);
+
+		long c = vp * place.getMarking();
+		for (Map.Entry<Place, Long> v : valuation.entrySet()) {
+			if (within != null && !within.contains(v.getKey()))
+				return false;
+			c -= v.getValue() * v.getKey().getMarking();
+		}
+		if (c < 0)
+			return false;
+
+		for (Node t : place.getChildren()) {
+			long needed = vp * place.getChildValue(t) - c;
+			for (Node q : t.getParents()) {
+				Long v = valuation.get(q);
+				if (v != null)
+					needed -= v * q.getChildValue(t);
+			}
+			if (needed > 0)
+				return false;
+		}
+
+		if (reason != null)
+			reason.addAll(valuation.keySet());
+		return true;
+	}
+
+	/**
+	 * Drops the semiflows containing the place, which has to be called when the place is removed from the STG.
+	 */
+	public void removePlace(Place place) {
+		Set<Semiflow> with = semiflowsOfPlace.get(place);
+		if (with != null)
+			for (Semiflow semiflow : new ArrayList<Semiflow>(with))
+				remove(semiflow);
+	}
+
+	/**
+	 * Maps the semiflows to the places generated by contracting a transition with the given pre- and postset.
+	 * The new place of a pair of a preset and a postset place has the arcs of both places, hence a
+	 * semiflow stays one if the weights of the preset places are distributed to the new places such that
+	 * each postset place gets its own weight. All arc weights of the transition are 1.
+	 *
+	 * @param newPlaces the new places in the order of {@link STG#contract(Transition)}, i.e. for each preset place all postset places
+	 */
+	void contracted(List<Place> preset, List<Place> postset, List<Place> newPlaces) {
+		Set<Semiflow> touched = new LinkedHashSet<Semiflow>();
+		for (Place place : preset)
+			if (semiflowsOfPlace.containsKey(place))
+				touched.addAll(semiflowsOfPlace.get(place));
+		for (Place place : postset)
+			if (semiflowsOfPlace.containsKey(place))
+				touched.addAll(semiflowsOfPlace.get(place));
+
+		for (Semiflow semiflow : touched) {
+			remove(semiflow);
+
+			long[] in = new long[preset.size()];
+			long[] out = new long[postset.size()];
+			long sum = 0;
+			for (int i = 0; i < in.length; i++)
+				sum += in[i] = semiflow.getWeight(preset.get(i));
+			for (int j = 0; j < out.length; j++)
+				sum -= out[j] = semiflow.getWeight(postset.get(j));
+			if (sum != 0)
+				continue;
+
+			Map<Place, Long> weights = new LinkedHashMap<Place, Long>();
+			for (int k = 0; k < semiflow.places.length; k++)
+				weights.put(semiflow.places[k], semiflow.weights[k]);
+			for (Place place : preset)
+				weights.remove(place);
+			for (Place place : postset)
+				weights.remove(place);
+
+			// north west corner rule of the transportation problem
+			int i = 0;
+			int j = 0;
+			while (i < in.length && j < out.length) {
+				long amount = Math.min(in[i], out[j]);
+				if (amount > 0)
+					weights.put(newPlaces.get(i*out.length + j), amount);
+				in[i] -= amount;
+				out[j] -= amount;
+				if (in[i] == 0)
+					i++;
+				if (out[j] == 0)
+					j++;
+			}
+
+			if (!weights.isEmpty())
+				add(new Semiflow(weights));
+		}
+	}
+
+	private void update() {
+		for (Semiflow semiflow : new ArrayList<Semiflow>(semiflows))
+			if (!semiflow.fits(stg))
+				remove(semiflow);
+		for (Place place : new ArrayList<Place>(semiflowsOfPlace.keySet()))
+			if (stg.getPlace(place.getIdentifier()) != place)
+				semiflowsOfPlace.remove(place);
+
+		int nowUncovered = stg.getNumberOfPlaces() - semiflowsOfPlace.size();
+		if (nowUncovered > uncovered + Math.max(16, stg.getNumberOfPlaces() / 8))
+			compute();
+	}
+
+	private void add(Semiflow semiflow) {
+		semiflows.add(semiflow);
+		for (Place place : semiflow.places) {
+			Set<Semiflow> with = semiflowsOfPlace.get(place);
+			if (with == null)
+				semiflowsOfPlace.put(place, with = new LinkedHashSet<Semiflow>());
+			with.add(semiflow);
+		}
+	}
+
+	private void remove(Semiflow semiflow) {
+		semiflows.remove(semiflow);
+		for (Place place : semiflow.places) {
+			Set<Semiflow> with = semiflowsOfPlace.get(place);
+			if (with != null) {
+				with.remove(semiflow);
+				if (with.isEmpty())
+					semiflowsOfPlace.remove(place);
+			}
+		}
+	}
+
+
+	// *******************************************************************
+	// Farkas algorithm
+	// *******************************************************************
+
+	/**
+	 * The places of a row as a bit vector.
+	 */
+	private static final class Support {
+		final long[] words;
+		final int cardinality;
+		final int first;
+
+		Support(long[] words) {
+			this.words = words;
+			int c = 0;
+			int f = -1;
+			for (int k = 0; k < words.length; k++) {
+				c += Long.bitCount(words[k]);
+				if (f == -1 && words[k] != 0)
+					f = 64*k + Long.numberOfTrailingZeros(words[k]);
+			}
+			this.cardinality = c;
+			this.first = f;
+		}
+
+		Support union(Support other) {
+			long[] result = new long[words.length];
+			for (int k = 0; k < words.length; k++)
+				result[k] = words[k] | other.words[k];
+			return new Support(result);
+		}
+
+		boolean contains(int place) {
+			return (words[place >> 6] & (1L << place)) != 0;
+		}
+
+		boolean containsAll(Support other) {
+			for (int k = 0; k < words.length; k++)
+				if ((other.words[k] & ~words[k]) != 0)
+					return false;
+			return true;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Support && Arrays.equals(words, ((Support) o).words);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(words);
+		}
+	}
+
+	/**
+	 * A row of the Farkas algorithm: a nonnegative combination of places and its sparse incidence vector.
+	 */
+	private static final class Vector {
+		final Support support;
+		final int[] places;
+		final long[] weights;
+		final int[] transitions;
+		final long[] values;
+
+		Vector(int[] places, long[] weights, int[] transitions, long[] values, int numberOfPlaces) {
+			this.places = places;
+			this.weights = weights;
+			this.transitions = transitions;
+			this.values = values;
+			long[] words = new long[(numberOfPlaces + 63) >> 6];
+			for (int p : places)
+				words[p >> 6] |= 1L << p;
+			this.support = new Support(words);
+		}
+
+		long valueOf(int transition) {
+			int i = Arrays.binarySearch(transitions, transition);
+			return i >= 0 ? values[i] : 0;
+		}
+	}
+
+	private void compute() {
+		semiflows.clear();
+		semiflowsOfPlace.clear();
+		complete = true;
+		comparisons = 0;
+		maxComparisons = MAX_COMPARISONS * Math.max(stg.getNumberOfPlaces(), 100);
+
+		List<Place> places = new ArrayList<Place>(stg.getPlaces());
+		Collections.sort(places, BY_IDENTIFIER);
+		List<Transition> transitions = stg.getTransitions(ConditionFactory.ALL_TRANSITIONS);
+		Map<Node, Integer> transitionIndex = new HashMap<Node, Integer>();
+		for (Transition t : transitions)
+			transitionIndex.put(t, transitionIndex.size());
+
+		List<Vector> rows = new ArrayList<Vector>();
+		for (int p = 0; p < places.size(); p++) {
+			Place place = places.get(p);
+			Map<Integer, Long> incidence = new HashMap<Integer, Long>();
+			for (Node t : place.getNeighbours()) {
+				long delta = t.getChildValue(place) - place.getChildValue(t);
+				if (delta != 0)
+					incidence.put(transitionIndex.get(t), delta);
+			}
+			int[] ts = new int[incidence.size()];
+			int k = 0;
+			for (Integer t : incidence.keySet())
+				ts[k++] = t;
+			Arrays.sort(ts);
+			long[] vs = new long[ts.length];
+			for (k = 0; k < ts.length; k++)
+				vs[k] = incidence.get(ts[k]);
+			rows.add(new Vector(new int[] {p}, new long[] {1}, ts, vs, places.size()));
+		}
+
+		boolean[] eliminated = new boolean[transitions.size()];
+		for (int step = 1; ; step++) {
+			// the transition generating the fewest new vectors
+			int[] pos = new int[eliminated.length];
+			int[] neg = new int[eliminated.length];
+			for (Vector row : rows)
+				for (int k = 0; k < row.transitions.length; k++)
+					if (row.values[k] > 0)
+						pos[row.transitions[k]]++;
+					else
+						neg[row.transitions[k]]++;
+
+			int column = -1;
+			long best = 0;
+			for (int t = 0; t < eliminated.length; t++) {
+				if (eliminated[t] || pos[t] + neg[t] == 0)
+					continue;
+				long growth = (long) pos[t] * neg[t] - pos[t] - neg[t];
+				if (column == -1 || growth < best) {
+					column = t;
+					best = growth;
+				}
+			}
+			if (column == -1)
+				break;
+
+			List<Vector> next = eliminate(rows, column, pos[column], neg[column], step, places.size());
+			if (next == null) {
+				complete = false;
+				break;
+			}
+			rows = next;
+			eliminated[column] = true;
+		}
+
+		for (Vector row : rows) {
+			if (row.transitions.length != 0)
+				continue;
+			Map<Place, Long> weights = new LinkedHashMap<Place, Long>();
+			for (int k = 0; k < row.places.length; k++)
+				weights.put(places.get(row.places[k]), row.weights[k]);
+			add(new Semiflow(weights));
+		}
+		uncovered = stg.getNumberOfPlaces() - semiflowsOfPlace.size();
+	}
+
+	/**
+	 * Replaces the rows with a nonzero entry in the column by the combinations of a positive and a negative one,
+	 * only combinations with minimal support are kept. A minimal support after eliminating the given number of
+	 * columns has at most one place more than the number of columns.
+	 * @return The new rows or null if there would be too many or finding them takes too long.
+	 */
+	private List<Vector> eliminate(List<Vector> rows, int column, int pos, int neg, int step, int numberOfPlaces) {
+		if ((long) pos * neg > MAX_PAIRS)
+			return null;
+
+		List<Vector> result = new ArrayList<Vector>();
+		List<Vector> positive = new ArrayList<Vector>();
+		List<Vector> negative = new ArrayList<Vector>();
+		for (Vector row : rows) {
+			long v = row.valueOf(column);
+			if (v > 0)
+				positive.add(row);
+			else if (v < 0)
+				negative.add(row);
+			else
+				result.add(row);
+		}
+
+		// the rows kept so far, indexed by their first place, for finding subsets of the support of a combination
+		Map<Integer, List<Support>> kept = new HashMap<Integer, List<Support>>();
+		for (Vector row : result)
+			index(kept, row.support);
+
+		List<Vector[]> pairs = new ArrayList<Vector[]>();
+		List<Support> unions = new ArrayList<Support>();
+		for (Vector a : positive)
+			for (Vector b : negative) {
+				comparisons++;
+				Support union = a.support.union(b.support);
+				if (union.cardinality > step + 1)
+					continue;
+				if (comparisons > maxComparisons)
+					return null;
+				if (!containsSubset(kept, union, false)) {
+					pairs.add(new Vector[] {a, b});
+					unions.add(union);
+				}
+			}
+
+		// among the combinations, keep those without a smaller support and the first one of equal supports
+		Map<Integer, List<Support>> combined = new HashMap<Integer, List<Support>>();
+		for (Support union : unions)
+			index(combined, union);
+		Set<Support> seen = new HashSet<Support>();
+		for (int i = 0; i < pairs.size(); i++) {
+			Support union = unions.get(i);
+			if (comparisons > maxComparisons)
+				return null;
+			if (containsSubset(combined, union, true) || !seen.add(union))
+				continue;
+			Vector row = combine(pairs.get(i)[0], pairs.get(i)[1], column, numberOfPlaces);
+			if (row == null)
+				return null;
+			result.add(row);
+			if (result.size() > MAX_VECTORS)
+				return null;
+		}
+
+		return result;
+	}
+
+	private static void index(Map<Integer, List<Support>> index, Support support) {
+		List<Support> list = index.get(support.first);
+		if (list == null)
+			index.put(support.first, list = new ArrayList<Support>());
+		list.add(support);
+	}
+
+	/**
+	 * Checks if the index contains a subset of the support, only proper subsets if requested.
+	 */
+	private boolean containsSubset(Map<Integer, List<Support>> index, Support support, boolean proper) {
+		for (int p = support.first; p >= 0 && p < 64 * support.words.length; p++) {
+			if (!support.contains(p))
+				continue;
+			List<Support> list = index.get(p);
+			if (list == null)
+				continue;
+			for (Support other : list) {
+				comparisons++;
+				if (other.cardinality > support.cardinality || proper && other.cardinality == support.cardinality)
+					continue;
+				if (support.containsAll(other))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The combination of a and b with 0 in the column, divided by the gcd of its entries, null on an overflow.
+	 */
+	private static Vector combine(Vector a, Vector b, int column, int numberOfPlaces) {
+		long fa = -b.valueOf(column);
+		long fb = a.valueOf(column);
+
+		int[] places = new int[a.places.length + b.places.length];
+		long[] weights = new long[places.length];
+		int np = merge(a.places, a.weights, fa, b.places, b.weights, fb, places, weights);
+		int[] transitions = new int[a.transitions.length + b.transitions.length];
+		long[] values = new long[transitions.length];
+		int nt = merge(a.transitions, a.values, fa, b.transitions, b.values, fb, transitions, values);
+
+		long gcd = 0;
+		for (int k = 0; k < np; k++)
+			gcd = gcd(gcd, weights[k]);
+		for (int k = 0; k < np; k++) {
+			weights[k] /= gcd;
+			if (weights[k] > MAX_COEFFICIENT)
+				return null;
+		}
+		for (int k = 0; k < nt; k++)
+			values[k] /= gcd;
+
+		return new Vector(Arrays.copyOf(places, np), Arrays.copyOf(weights, np),
+				Arrays.copyOf(transitions, nt), Arrays.copyOf(values, nt), numberOfPlaces);
+	}
+
+	/**
+	 * Computes fa*a + fb*b of two sparse vectors, zero entries are left out.
+	 * @return The number of entries of the result.
+	 */
+	private static int merge(int[] ia, long[] va, long fa, int[] ib, long[] vb, long fb, int[] index, long[] value) {
+		int i = 0;
+		int j = 0;
+		int n = 0;
+		while (i < ia.length || j < ib.length) {
+			long v;
+			int k;
+			if (j == ib.length || i < ia.length && ia[i] < ib[j]) {
+				k = ia[i];
+				v = fa * va[i++];
+			}
+			else if (i == ia.length || ib[j] < ia[i]) {
+				k = ib[j];
+				v = fb * vb[j++];
+			}
+			else {
+				k = ia[i];
+				v = fa * va[i++] + fb * vb[j++];
+			}
+			if (v != 0) {
+				index[n] = k;
+				value[n++] = v;
+			}
+		}
+		return n;
+	}
+
+	private static long gcd(long a, long b) {
+		a = Math.abs(a);
+		b = Math.abs(b);
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	private static final Comparator<Place> BY_IDENTIFIER = new Comparator<Place>() {
+		public int compare(Place p1, Place p2) {
+			return p1.getIdentifier() - p2.getIdentifier();
+		}
+	};
+
+}
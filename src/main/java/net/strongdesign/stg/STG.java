@@ -21,15 +21,16 @@ package net.strongdesign.stg;
 
 import java.awt.Point;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 
 import javax.naming.OperationNotSupportedException;
 
@@ -40,6 +41,7 @@ import net.strongdesign.stg.traversal.Condition;
 import net.strongdesign.stg.traversal.ConditionFactory;
 import net.strongdesign.stg.traversal.Operation;
 import net.strongdesign.stg.traversal.Operations;
+import net.strongdesign.stg.traversal.SignalCondition;
 import net.strongdesign.stg.traversal.STGOperations;
 import net.strongdesign.util.FileSupport;
 import net.strongdesign.util.HelperApplications;
@@ -65,9 +67,21 @@ public final class STG implements Cloneable {
 	/**All transitions of the STG.*/
 	private Set<Transition> transitions;
 
+	/**The places indexed by their identifiers, kept in sync with {@link #places}.*/
+	private Map<Integer, Place> placeIds;
+
+	/**The transitions indexed by their identifiers, kept in sync with {@link #transitions}.*/
+	private Map<Integer, Transition> transitionIds;
+
+	/**The transitions of every signal, kept in sync with {@link #transitions}.*/
+	private Map<Integer, Set<Transition>> signalTransitions;
+
 	/**The signatures of signals.*/
 	private Map<Integer, Signature> signatures;
 
+	/**The signals of every signature, kept in sync with {@link #signatures}.*/
+	private Map<Signature, Set<Integer>> signatureSignals;
+
 	/**Number occurrences of a given signal.*/
 	private Map<Integer, Integer> signalOccurences;
 
@@ -80,12 +94,27 @@ public final class STG implements Cloneable {
 	/**The maximal unique id assigned to some node. This is an internal management information.*/
 	private int maxNodeNumber;
 
-	/**The undo stack.*/
-	private Stack<UndoOperation> undoStack;
+	/**The undo information, see {@link #addUndoMarker(Object)}.*/
+	private UndoLog undoLog;
+	
+	/**The positions of the undo markers in the undo log.*/
+	private LinkedList<UndoMarker> undoMarkers;
+	
+	/**The number of undo markers which were set with the undo stack enabled.*/
+	private int recordingMarkers;
+	
+	/**True while the undo log is replayed.*/
+	private boolean replaying;
+
+	/**The innermost open snapshot, null if there is none.*/
+	private Snapshot journal;
 
 	/**The coordinates of the nodes for a graphical representation.*/
 	private STGCoordinates coordinates;
 
+	/**The P-semiflows, kept up to date by contractions, null if they were never requested, see {@link PlaceInvariants#of(STG)}.*/
+	PlaceInvariants placeInvariants;
+
 	/**True if node coordinates are actually saved.*/
 	//private boolean withCoordinates;
 	public boolean isWithCoordinates() {
@@ -97,6 +126,7 @@ public final class STG implements Cloneable {
 	 * @author Norman Kluge
 	 */
 	public void clearCoordinates() {
+		coordinatesChanging();
 		coordinates.clear();
 	}
 
@@ -110,10 +140,15 @@ public final class STG implements Cloneable {
 	public STG() {
 		places = new HashSet<Place>();
 		transitions = new HashSet<Transition>();
+		placeIds = new HashMap<Integer, Place>();
+		transitionIds = new HashMap<Integer, Transition>();
+		signalTransitions = new HashMap<Integer, Set<Transition>>();
 		maxNodeNumber = 0;		
 		signatures = new HashMap<Integer, Signature>();
+		signatureSignals = new HashMap<Signature, Set<Integer>>();
 		signalOccurences = new HashMap<Integer, Integer>();
-		undoStack = new Stack<UndoOperation>();
+		undoLog = new UndoLog();
+		undoMarkers = new LinkedList<UndoMarker>();
 		signalNames = new HashMap<Integer, String>();
 		signalNumbers = new HashMap<String, Integer>();
 		
@@ -142,7 +177,7 @@ public final class STG implements Cloneable {
 			for (Place place : places) {
 				Place newPlace = place.clone();
 				newPlace.setSTG(result);
-				result.places.add(newPlace);
+				result.registerPlace(newPlace);
 				newPlaces.put(place, newPlace);		        
 				if (isWithCoordinates())
 					result.coordinates.put(newPlace, coordinates.get(place));
@@ -152,7 +187,7 @@ public final class STG implements Cloneable {
 			for (Transition transition : transitions) {
 				Transition newTransition = transition.clone();
 				newTransition.setSTG(result);
-				result.transitions.add(newTransition);
+				result.registerTransition(newTransition);
 				newTransitions.put(transition, newTransition);
 				if (isWithCoordinates())
 					result.coordinates.put(newTransition, coordinates.get(transition));
@@ -161,18 +196,18 @@ public final class STG implements Cloneable {
 			//Copy incidence matrix to new nodes
 			for (Place place : places) {
 				Place newPlace = newPlaces.get(place);
-				for (Node child : place.getChildren()) 
+				for (int i=0; i<place.getChildCount(); ++i) 
 					newPlace.setChildValue(
-							newTransitions.get(child),
-							place.getChildValue(child) );
+							newTransitions.get(place.getChildAt(i)),
+							place.getChildValueAt(i) );
 			}
 
 			for (Transition transition : transitions) {
 				Transition newTransition = newTransitions.get(transition); 
-				for (Node child : transition.getChildren()) 
+				for (int i=0; i<transition.getChildCount(); ++i) 
 					newTransition.setChildValue(
-							newPlaces.get(child),
-							transition.getChildValue(child) );
+							newPlaces.get(transition.getChildAt(i)),
+							transition.getChildValueAt(i) );
 			}		
 		}
 		catch (Exception e) {
@@ -181,7 +216,7 @@ public final class STG implements Cloneable {
 		result.maxNodeNumber = maxNodeNumber;		
 
 		for (Integer signal : signatures.keySet())
-			result.signatures.put(signal, signatures.get(signal));
+			result.putSignature(signal, signatures.get(signal));
 
 		for (Integer signal : signalOccurences.keySet())
 			result.signalOccurences.put(signal, signalOccurences.get(signal));
@@ -196,16 +231,33 @@ public final class STG implements Cloneable {
 	 * @param copy
 	 */
 	public void restore(STG stg) {
+		if (journal != null) {
+			for (Node node : getNodes())
+				nodeChanging(node);
+			for (Integer signal : signalNames.keySet())
+				signalChanging(signal);
+			for (Integer signal : signalOccurences.keySet())
+				signalChanging(signal);
+			for (Integer signal : stg.signalNames.keySet())
+				signalChanging(signal);
+			for (Integer signal : stg.signalOccurences.keySet())
+				signalChanging(signal);
+		}
+		
 		signalNames = new HashMap<Integer, String>(stg.signalNames);
 		signalNumbers = new HashMap<String, Integer>(stg.signalNumbers);
 
 		places = new HashSet<Place>();
 		transitions = new HashSet<Transition>();
+		placeIds = new HashMap<Integer, Place>();
+		transitionIds = new HashMap<Integer, Transition>();
 		
 		coordinates = new STGCoordinates();
 		
 		signalOccurences = new HashMap<Integer, Integer>();
 		signatures = new HashMap<Integer, Signature>();
+		signalTransitions = new HashMap<Integer, Set<Transition>>();
+		signatureSignals = new HashMap<Signature, Set<Integer>>();
 		
 		
 		//Contains the copy of each place, transition resp.  
@@ -218,7 +270,7 @@ public final class STG implements Cloneable {
 			for (Place place : stg.places) {
 				Place newPlace = place.clone();
 				newPlace.setSTG(this);
-				places.add(newPlace);
+				registerPlace(newPlace);
 				newPlaces.put(place, newPlace);		        
 				if (isWithCoordinates())
 					coordinates.put(newPlace, stg.coordinates.get(place));
@@ -228,7 +280,7 @@ public final class STG implements Cloneable {
 			for (Transition transition : stg.transitions) {
 				Transition newTransition = transition.clone();
 				newTransition.setSTG(this);
-				transitions.add(newTransition);
+				registerTransition(newTransition);
 				newTransitions.put(transition, newTransition);
 				if (isWithCoordinates())
 					coordinates.put(newTransition, stg.coordinates.get(transition));
@@ -237,18 +289,18 @@ public final class STG implements Cloneable {
 			//Copy incidence matrix to new nodes
 			for (Place place : stg.places) {
 				Place newPlace = newPlaces.get(place);
-				for (Node child : place.getChildren()) 
+				for (int i=0; i<place.getChildCount(); ++i) 
 					newPlace.setChildValue(
-							newTransitions.get(child),
-							place.getChildValue(child) );
+							newTransitions.get(place.getChildAt(i)),
+							place.getChildValueAt(i) );
 			}
 
 			for (Transition transition : stg.transitions) {
 				Transition newTransition = newTransitions.get(transition); 
-				for (Node child : transition.getChildren()) 
+				for (int i=0; i<transition.getChildCount(); ++i) 
 					newTransition.setChildValue(
-							newPlaces.get(child),
-							transition.getChildValue(child) );
+							newPlaces.get(transition.getChildAt(i)),
+							transition.getChildValueAt(i) );
 			}		
 		}
 		catch (Exception e) {
@@ -257,7 +309,7 @@ public final class STG implements Cloneable {
 		maxNodeNumber = stg.maxNodeNumber;		
 
 		for (Integer signal : stg.signatures.keySet())
-			signatures.put(signal, stg.signatures.get(signal));
+			putSignature(signal, stg.signatures.get(signal));
 
 		for (Integer signal : stg.signalOccurences.keySet())
 			signalOccurences.put(signal, stg.signalOccurences.get(signal));
@@ -356,7 +408,7 @@ public final class STG implements Cloneable {
 	public <R> List<R> collectFromTransitions(
 			Condition<? super Transition> condition, 
 			Collector<? super Transition, R> collector) {
-		return STGOperations.collectFromCollection(transitions, condition, collector);
+		return STGOperations.collectFromCollection(getCandidateTransitions(condition), condition, collector);
 	}
 
 
@@ -368,7 +420,7 @@ public final class STG implements Cloneable {
 	public <R> Set<R> collectUniqueCollectionFromTransitions(
 			Condition<Transition> condition, 
 			Collector<Transition, R> collector) {
-		return STGOperations.collectUniqueCollectionFromCollection(transitions, condition, collector);
+		return STGOperations.collectUniqueCollectionFromCollection(getCandidateTransitions(condition), condition, collector);
 	}
 
 
@@ -380,7 +432,7 @@ public final class STG implements Cloneable {
 	public <R> Set<R> collectUniqueFromTransitions(
 			Condition<Transition> condition, 
 			Collector<Transition, ? extends Collection<R>> collector) {
-		return STGOperations.collectUniqueFromCollection(transitions, condition, collector);
+		return STGOperations.collectUniqueFromCollection(getCandidateTransitions(condition), condition, collector);
 	}
 
 	/**
@@ -651,7 +703,40 @@ public final class STG implements Cloneable {
 	 * @return
 	 */
 	public List<Transition> getTransitions(Condition<? super Transition> condition) {
-		return STGOperations.getElements(transitions, condition);
+		return STGOperations.getElements(getCandidateTransitions(condition), condition);
+	}
+
+	/**
+	 * Returns all transitions with the given signal, the lookup uses the signal index.
+	 * @param signal
+	 * @return An unmodifiable view, which is empty if the signal does not occur.
+	 */
+	public Set<Transition> getTransitionsOfSignal(Integer signal) {
+		Set<Transition> result = signalTransitions.get(signal);
+		if (result == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Returns the transitions which may fulfil the given condition. For a {@link SignalCondition}
+	 * these are taken from the signal index, otherwise all transitions are returned.
+	 */
+	private Collection<Transition> getCandidateTransitions(Condition<? super Transition> condition) {
+		if (! (condition instanceof SignalCondition))
+			return transitions;
+		
+		Collection<Integer> signals = ((SignalCondition<? super Transition>) condition).getSignals(this);
+		if (signals == null)
+			return transitions;
+		
+		List<Transition> result = new ArrayList<Transition>();
+		for (Integer signal : new HashSet<Integer>(signals)) {
+			Set<Transition> ofSignal = signalTransitions.get(signal);
+			if (ofSignal != null)
+				result.addAll(ofSignal);
+		}
+		return result;
 	}
 
 	/**
@@ -667,7 +752,10 @@ public final class STG implements Cloneable {
 	 * @return
 	 */
 	public int getNumberOfDummies() {
-		return getTransitions(ConditionFactory.IS_DUMMY).size();
+		int result = 0;
+		for (Integer signal : getSignals(Signature.DUMMY))
+			result += getTransitionsOfSignal(signal).size();
+		return result;
 	}
 
 	
@@ -766,6 +854,7 @@ public final class STG implements Cloneable {
 	
 	
 	public void setSignalName(Integer signal, String name) throws STGException {
+		signalChanging(signal);
 		if (signalNames.put(signal, name) != null) {
 			throw new STGException(	"Signal number " + signal + " already assigned to " 
 					+ signalNames.get(signal) + ". Reassignment to " + name + " is not possible.");
@@ -838,6 +927,7 @@ public final class STG implements Cloneable {
 			String newName = renaming.get(oldName);
 			if (newName == null) continue;
 			
+			signalChanging(signal);
 			signalNames.put(signal, newName);
 			signalNumbers.put(newName, signal);
 		}
@@ -851,8 +941,12 @@ public final class STG implements Cloneable {
 	 */
 	public Set<Integer> getSignals(Signature sign) {
 		Set<Integer> result = new HashSet<Integer>();
-		for (Integer signal : getSignals())
-			if (getSignature(signal) == sign)
+		Set<Integer> ofSignature = signatureSignals.get(sign);
+		if (ofSignature == null)
+			return result;
+		
+		for (Integer signal : ofSignature)
+			if (signalOccurences.containsKey(signal))
 				result.add(signal);
 
 		return result;
@@ -884,8 +978,9 @@ public final class STG implements Cloneable {
 	 * @param sign
 	 */
 	public void setSignature(Integer signal, Signature sign) {
-		addUndo(new UndoSetSignature(signal, getSignature(signal)));
-		signatures.put(signal, sign);
+		beginOperation();
+		logSignal(signal);
+		putSignature(signal, sign);
 	}
 
 
@@ -913,9 +1008,9 @@ public final class STG implements Cloneable {
 	 * must be provided, id's are generated by the STG itself.
 	 */
 	public Place addPlace(String label, int marking) {
+		beginOperation();
 		Place newPlace = new Place(label, ++maxNodeNumber, marking, this);
-		places.add(newPlace);
-		addUndo(new UndoAddNode(newPlace));
+		registerPlace(newPlace);
 
 		return newPlace;
 	}
@@ -951,7 +1046,19 @@ public final class STG implements Cloneable {
 			node.setIdentifier(++maxNodeNumber);
 		}
 
-		// rebuild places and nodes sets
+		// rebuild places and nodes sets, their hash codes depend on the identifiers
+		places = new HashSet<Place>(places);
+		transitions = new HashSet<Transition>(transitions);
+		placeIds.clear();
+		transitionIds.clear();
+		for (Place place : places)
+			placeIds.put(place.getIdentifier(), place);
+		for (Transition transition : transitions)
+			transitionIds.put(transition.getIdentifier(), transition);
+		for (Map.Entry<Integer, Set<Transition>> entry : signalTransitions.entrySet())
+			entry.setValue(new HashSet<Transition>(entry.getValue()));
+		for (Node node : getNodes())
+			node.rehashArcs();
 		
 	}
 	
@@ -978,31 +1085,30 @@ public final class STG implements Cloneable {
 	 * must be provided, id's are generated by the STG itself.
 	 */
 	public Transition addTransition(SignalEdge label) {
+		beginOperation();
 		//Generate new Transition ...
 		Transition newTransition = new Transition(label, ++maxNodeNumber, this);
 
 		//.. and add it to the net
-		transitions.add(newTransition);
+		registerTransition(newTransition);
 
 		//update signal count and signatures
 		Integer signal = label.getSignal();
 		Integer signalCount = signalOccurences.get(signal);
 		Signature signature = signatures.get(signal);
-		addUndo(new UndoSignatureModification(signal, signalCount, signature));
-
+		logSignal(signal);
+		signalChanging(signal);
 		if (signalCount == null) {
 			//signal is unkown, now it occurs exactly once
 			signalOccurences.put(signal, 1);
 			//if there is no signature yet, add one
 			if (signature==null)
-				signatures.put(signal, Signature.ANY);
+				putSignature(signal, Signature.ANY);
 		}
 		else
 			//signal is known, update number
 			signalOccurences.put(signal, signalCount+1);
 
-		//add the appropriate undo operation
-		addUndo(new UndoAddNode(newTransition));
 
 		return newTransition;
 	}
@@ -1011,6 +1117,7 @@ public final class STG implements Cloneable {
 	 * Adds a new transition to the net with a specific id
 	 */
 	public Transition addTransition(SignalEdge label, Integer identifier) {
+		beginOperation();
 		//Generate new Transition ...
 		Transition newTransition = new Transition(label, identifier, this);
 		// we must check whether the identifier exists or not
@@ -1018,32 +1125,144 @@ public final class STG implements Cloneable {
 			maxNodeNumber = identifier; 
 
 		//.. and add it to the net
-		transitions.add(newTransition);
+		registerTransition(newTransition);
 
 		//update signal count and signatures
 		Integer signal = label.getSignal();
 		Integer signalCount = signalOccurences.get(signal);
 		Signature signature = signatures.get(signal);
-		addUndo(new UndoSignatureModification(signal, signalCount, signature));
-
+		logSignal(signal);
+		signalChanging(signal);
 		if (signalCount == null) {
 			//signal is unkown, now it occurs exactly once
 			signalOccurences.put(signal, 1);
 			//if there is no signature yet, add one
 			if (signature==null)
-				signatures.put(signal, Signature.ANY);
+				putSignature(signal, Signature.ANY);
 		}
 		else
 			//signal is known, update number
 			signalOccurences.put(signal, signalCount+1);
 
-		//add the appropriate undo operation
-		addUndo(new UndoAddNode(newTransition));
 
 		return newTransition;
 	}
 
 
+	/**
+	 * Adds the place to the place set and the identifier index, no undo information is recorded.
+	 */
+	private void registerPlace(Place place) {
+		nodeChanging(place);
+		logRegistration(place, true);
+		places.add(place);
+		placeIds.put(place.getIdentifier(), place);
+	}
+
+	/**
+	 * Adds the transition to the transition set and the identifier index, no undo information is recorded.
+	 */
+	private void registerTransition(Transition transition) {
+		nodeChanging(transition);
+		logRegistration(transition, true);
+		transitions.add(transition);
+		transitionIds.put(transition.getIdentifier(), transition);
+		
+		Integer signal = transition.getLabel().getSignal();
+		Set<Transition> ofSignal = signalTransitions.get(signal);
+		if (ofSignal == null) {
+			ofSignal = new HashSet<Transition>();
+			signalTransitions.put(signal, ofSignal);
+		}
+		ofSignal.add(transition);
+	}
+
+	/**
+	 * Moves a transition whose label was changed to the index of its new signal.
+	 */
+	void signalChanged(Transition transition, Integer oldSignal) {
+		Integer signal = transition.getLabel().getSignal();
+		if (signal.equals(oldSignal) || !isRegistered(transition))
+			return;
+		
+		Set<Transition> ofSignal = signalTransitions.get(oldSignal);
+		if (ofSignal != null) {
+			ofSignal.remove(transition);
+			if (ofSignal.isEmpty())
+				signalTransitions.remove(oldSignal);
+		}
+		ofSignal = signalTransitions.get(signal);
+		if (ofSignal == null) {
+			ofSignal = new HashSet<Transition>();
+			signalTransitions.put(signal, ofSignal);
+		}
+		ofSignal.add(transition);
+	}
+
+	/**
+	 * Removes the place from the place set and the identifier index, no undo information is recorded.
+	 */
+	private void unregisterPlace(Place place) {
+		nodeChanging(place);
+		logRegistration(place, false);
+		places.remove(place);
+		if (placeIds.get(place.getIdentifier()) == place)
+			placeIds.remove(place.getIdentifier());
+	}
+
+	/**
+	 * Removes the transition from the transition set and the identifier index, no undo information is recorded.
+	 */
+	private void unregisterTransition(Transition transition) {
+		nodeChanging(transition);
+		logRegistration(transition, false);
+		transitions.remove(transition);
+		if (transitionIds.get(transition.getIdentifier()) == transition)
+			transitionIds.remove(transition.getIdentifier());
+		
+		Integer signal = transition.getLabel().getSignal();
+		Set<Transition> ofSignal = signalTransitions.get(signal);
+		if (ofSignal != null) {
+			ofSignal.remove(transition);
+			if (ofSignal.isEmpty())
+				signalTransitions.remove(signal);
+		}
+	}
+	
+	/**
+	 * Sets the signature of a signal and updates the signature index, no undo information is recorded.
+	 */
+	private void putSignature(Integer signal, Signature signature) {
+		signalChanging(signal);
+		Signature oldSignature = signatures.put(signal, signature);
+		if (oldSignature == signature)
+			return;
+		
+		if (oldSignature != null)
+			signatureSignals.get(oldSignature).remove(signal);
+		
+		if (signature != null) {
+			Set<Integer> ofSignature = signatureSignals.get(signature);
+			if (ofSignature == null) {
+				ofSignature = new HashSet<Integer>();
+				signatureSignals.put(signature, ofSignature);
+			}
+			ofSignature.add(signal);
+		}
+	}
+	
+	/**
+	 * Removes the signature of a signal and updates the signature index, no undo information is recorded.
+	 * @return The former signature.
+	 */
+	private Signature removeSignature(Integer signal) {
+		signalChanging(signal);
+		Signature oldSignature = signatures.remove(signal);
+		if (oldSignature != null)
+			signatureSignals.get(oldSignature).remove(signal);
+		return oldSignature;
+	}
+
 	/**
 	 * Removes the given node from the STG.
 	 * @param node
@@ -1061,10 +1280,9 @@ public final class STG implements Cloneable {
 	 * @param place
 	 */
 	public void removePlace(Place place) {
+		beginOperation();
 		place.disconnect();
-		places.remove(place);	
-
-		addUndo(new UndoRemoveNode(place));
+		unregisterPlace(place);
 	}
 
 
@@ -1073,24 +1291,24 @@ public final class STG implements Cloneable {
 	 * @param transition
 	 */
 	public void removeTransition(Transition transition) {
+		beginOperation();
 		transition.disconnect();		
-		transitions.remove(transition);
+		unregisterTransition(transition);
 
 		//update signal count and signatures
 		Integer signal = transition.getLabel().getSignal();
 		Integer signalCount = signalOccurences.get(signal);
 
-		addUndo(new UndoSignatureModification(signal, signalCount, getSignature(signal)));
+		logSignal(signal);
+		signalChanging(signal);
 		//signal must be known
 		if (signalCount == 1) {
 			//last occurence, remove it
 			signalOccurences.remove(signal);
-			signatures.remove(signal);
+			removeSignature(signal);
 		}
 		else
 			signalOccurences.put(signal, signalCount-1);
-
-		addUndo(new UndoRemoveNode(transition));
 	}
 
 
@@ -1100,46 +1318,209 @@ public final class STG implements Cloneable {
 	// Undo of operations
 	// *******************************************************************
 
+	/*
+	 * Record types of the undo log, the type is the last int of a record:
+	 * ARC_PARENT, ARC_CHILD  ints: former weight; refs: node, adjacent node 
+	 * MARKING                ints: former marking; refs: place
+	 * REGISTERED             refs: node which was added
+	 * UNREGISTERED           refs: node which was removed
+	 * SIGNAL                 ints: signal, former occurences and signature, -1 for none
+	 * OPERATION              ints: former maxNodeNumber, starts an operation, see #undo() 
+	 */
+	private static final int ARC_PARENT 	= 0;
+	private static final int ARC_CHILD 		= 1;
+	private static final int MARKING 		= 2;
+	private static final int REGISTERED 	= 3;
+	private static final int UNREGISTERED 	= 4;
+	private static final int SIGNAL 		= 5;
+	private static final int OPERATION 		= 6;
+	
+	private static final Signature[] SIGNATURES = Signature.values();
+
+	/**
+	 * Modifications are recorded as long as an undo marker is set with the undo stack enabled.
+	 */
+	private boolean isRecording() {
+		return recordingMarkers > 0 && !replaying;
+	}
+
+	/**
+	 * Starts a new undoable operation.
+	 */
+	private void beginOperation() {
+		if (!isRecording())
+			return;
+		
+		undoLog.push(maxNodeNumber);
+		undoLog.push(OPERATION);
+	}
+	
+	/**
+	 * Records the former weight of an arc, see {@link Node#arcChanging(ArcSet, Node, int)}.
+	 */
+	void arcChanging(Node node, boolean parent, Node adjacent, int oldWeight) {
+		nodeChanging(node);
+		if (!isRecording())
+			return;
+		
+		undoLog.push(node);
+		undoLog.push(adjacent);
+		undoLog.push(oldWeight);
+		undoLog.push(parent ? ARC_PARENT : ARC_CHILD);
+	}
+	
+	/**
+	 * Records the former marking of a place, must be called before it is modified.
+	 */
+	void markingChanging(Place place) {
+		nodeChanging(place);
+		if (!isRecording())
+			return;
+		
+		undoLog.push(place);
+		undoLog.push(place.getMarking());
+		undoLog.push(MARKING);
+	}
+	
+	private void logRegistration(Node node, boolean added) {
+		if (!isRecording())
+			return;
+		
+		undoLog.push(node);
+		undoLog.push(added ? REGISTERED : UNREGISTERED);
+	}
+	
+	private void logSignal(Integer signal) {
+		if (!isRecording())
+			return;
+		
+		Integer occurences = signalOccurences.get(signal);
+		Signature signature = signatures.get(signal);
+		undoLog.push(signal.intValue());
+		undoLog.push(occurences == null ? -1 : occurences);
+		undoLog.push(signature == null ? -1 : signature.ordinal());
+		undoLog.push(SIGNAL);
+	}
+	
+	/**
+	 * Undos the records of the undo log in reverse order.
+	 * @param size The position in the log to which the records are undone
+	 * @param operation If true, stops after the start of the last operation
+	 */
+	private void rollback(int size, boolean operation) {
+		replaying = true;
+		try {
+			while (undoLog.size() > size) {
+				int type = undoLog.popInt();
+				switch (type) {
+				case ARC_PARENT:
+				case ARC_CHILD: {
+					int weight = undoLog.popInt();
+					Node adjacent = (Node) undoLog.popRef();
+					Node node = (Node) undoLog.popRef();
+					node.restoreArc(type == ARC_PARENT, adjacent, weight);
+					break;
+				}
+				case MARKING: {
+					int marking = undoLog.popInt();
+					((Place) undoLog.popRef()).setMarking(marking);
+					break;
+				}
+				case REGISTERED: {
+					Node node = (Node) undoLog.popRef();
+					if (node instanceof Place)
+						unregisterPlace((Place) node);
+					else
+						unregisterTransition((Transition) node);
+					break;
+				}
+				case UNREGISTERED: {
+					Node node = (Node) undoLog.popRef();
+					if (node instanceof Place)
+						registerPlace((Place) node);
+					else
+						registerTransition((Transition) node);
+					break;
+				}
+				case SIGNAL: {
+					int signature = undoLog.popInt();
+					int occurences = undoLog.popInt();
+					Integer signal = undoLog.popInt();
+					if (occurences < 0)
+						signalOccurences.remove(signal);
+					else
+						signalOccurences.put(signal, occurences);
+					if (signature < 0)
+						removeSignature(signal);
+					else
+						putSignature(signal, SIGNATURES[signature]);
+					break;
+				}
+				case OPERATION:
+					maxNodeNumber = undoLog.popInt();
+					if (operation)
+						return;
+					break;
+				default:
+					throw new IllegalStateException("Corrupt undo log");
+				}
+			}
+		}
+		finally {
+			replaying = false;
+			dropMarkers();
+		}
+	}
+	
 	/**
-	 * Adds an undo operation to the undo stack.
+	 * Removes the markers which point behind the end of the undo log. 
 	 */
-	private void addUndo(UndoOperation operation) {
-		if (CLW.instance.UNDO_STACK.isEnabled()) {
-			undoStack.push(operation);
-		} 
+	private void dropMarkers() {
+		while (!undoMarkers.isEmpty() && undoMarkers.getLast().size > undoLog.size())
+			removeLastMarker();
+	}
+	
+	private UndoMarker removeLastMarker() {
+		UndoMarker marker = undoMarkers.removeLast();
+		if (marker.snapshot == null)
+			--recordingMarkers;
+		return marker;
 	}
 
 	/**
-	 * Undos an operation.
+	 * Undos the last operation.
 	 * @throws STGException
 	 */
 	public void undo() throws STGException {
 		if (! CLW.instance.UNDO_STACK.isEnabled())
 			throw new STGException("Undo stack is not enabled.");
 		
-		while (undoStack.size() != 0) {
-			UndoOperation op = undoStack.pop();
-			if (! (op instanceof UndoMarker)) {
-				op.apply();
-				return;
-			}
-		}
-		throw new STGException("Undo stack is empty.");
+		if (undoLog.isEmpty())
+			throw new STGException("Undo stack is empty.");
+		
+		rollback(0, true);
 	}
 
 	public void clearUndoStack() {
-		undoStack.clear();
+		for (UndoMarker marker : undoMarkers)
+			if (marker.snapshot != null)
+				release(marker.snapshot);
+		undoMarkers.clear();
+		recordingMarkers = 0;
+		undoLog.clear();
 	}
 
 	/**
-	 * Adds an undo marker to the stack, see @link #undoToLastMarker().
+	 * Adds an undo marker, see {@link #undoToMarker(Object)}. With the undo stack enabled, all modifications 
+	 * are recorded from now on in the undo log, otherwise a snapshot is taken, see {@link #snapshot()}.
 	 */
 	public void addUndoMarker(Object m) {
-		undoStack.push(new UndoMarker(m));
-		
-		if (! CLW.instance.UNDO_STACK.isEnabled()) {
-			undoStack.push(new CloneUndo(this));
-		}
+		UndoMarker marker = new UndoMarker(m, undoLog.size());
+		if (CLW.instance.UNDO_STACK.isEnabled())
+			++recordingMarkers;
+		else
+			marker.snapshot = snapshot();
+		undoMarkers.add(marker);
 	}
 
 
@@ -1148,208 +1529,300 @@ public final class STG implements Cloneable {
 	 * @throws STGException
 	 */
 	public void undoToMarker(Object m) throws STGException {
-
-		while (!undoStack.isEmpty()) {
-			UndoOperation lastOperation = undoStack.pop();
-			if (! (lastOperation instanceof UndoMarker) ) {
-				lastOperation.apply();				
-			}
-
-			else if (((UndoMarker)lastOperation).getMarker()==m)
+		int size = 0;
+		while (!undoMarkers.isEmpty()) {
+			UndoMarker marker = removeLastMarker();
+			if (marker.snapshot != null)
+				restore(marker.snapshot);
+			
+			if (marker.marker == m) {
+				size = marker.size;
 				break;
+			}
 		}
+		
+		rollback(size, false);
 	}
 
 
 	/**
-	 * Common interface for undo operations.
+	 * A marker of the undo log.
 	 */
-	private interface UndoOperation {
-		public void apply() throws STGException;
-	}
-
-
-
-	private class UndoMarker implements UndoOperation {
-		private Object marker;
-
-		public UndoMarker(Object marker) {
-			this.marker = marker;
-		}
-
-		public void apply(){}
-
-		public String toString() {
-			return "\nUndo marker "+marker ;
-		}
-
-		public Object getMarker() {
-			return marker;
-		}
-
-	}
-
-
-	private class CloneUndo implements UndoOperation {
-		private STG target;
-		private STG copy;
+	private static class UndoMarker {
+		private final Object marker;
 		
-
-		public CloneUndo(STG stg) {
-			target = stg;
-			copy = stg.clone();
-		}
+		/**The position of the marker in the undo log.*/
+		private final int size;
 		
-		public void apply() throws STGException {
-			target.restore(copy);			
-		}
+		/**The snapshot to be restored if the undo stack is not enabled.*/
+		private Snapshot snapshot;
 		
-		public String toString() {
-			return "Clone undo ";
+		public UndoMarker(Object marker, int size) {
+			this.marker = marker;
+			this.size = size;
 		}
 		
-	}
-	
-	/**
-	 * Collects several other undo operations, which are undone together. 
-	 */
-	private class CombinedUndo implements UndoOperation {
-
-		private Stack<UndoOperation> undoStack = new Stack<UndoOperation>();
-		private String message;
-
-		public CombinedUndo(String message) {
-			this.message = message;
-		}
-
-		@SuppressWarnings("unused")
-		public CombinedUndo(List<UndoOperation> operations) {
-			undoStack.addAll(operations);
-		}
-
-		public void addUndo(UndoOperation operation) {
-			undoStack.add(operation);
-		}
 		public String toString() {
-			return message;
-		}
-
-		public void apply() throws STGException {
-			while (!undoStack.isEmpty()) {
-				undoStack.pop().apply();				
-			}
+			return "Undo marker " + marker;
 		}
 	}
 
-	private class UndoSignatureModification implements UndoOperation {
-		private Integer signal;
-		private Integer signalCount;
-		private Signature signature;
-
-		public UndoSignatureModification(Integer signal, Integer signalCount, Signature signature) {
-			this.signal = signal;
-			this.signalCount = signalCount;
-			this.signature = signature;
-		}
 
-		public void apply() {
-			if (signalCount == null || signalCount==0) {
-				signatures.remove(signal);
-				signalOccurences.remove(signal);
-			}
-			else {
-				signalOccurences.put(signal, signalCount);
-				if (signature==null)
-					signatures.remove(signal);
-				else
-					signatures.put(signal, signature);
-			}
-		}
+	// *******************************************************************
+	// Snapshots
+	// *******************************************************************
 
-		public String toString() {
-			return "Former signature of " + signal + " was " + signature +", former count was " + signalCount;
-		}
+	/**
+	 * Takes a snapshot of the current state, which can be reestablished with {@link #restore(Snapshot)}.
+	 * 
+	 * <p>Nothing is copied when the snapshot is taken, instead the first modification of a node or signal
+	 * saves its former state. Hence taking, restoring and releasing a snapshot costs time proportional to 
+	 * the modifications made in the meantime and not to the size of the STG. Snapshots may be nested.
+	 * Every snapshot must be restored or released eventually, otherwise the modifications are recorded forever.
+	 */
+	public Snapshot snapshot() {
+		journal = new Snapshot(journal);
+		return journal;
 	}
 
 	/**
-	 * Undos the addition of a node, i.e. removes some node. 
+	 * Reestablishes the state at the time the snapshot was taken, the snapshot and all snapshots taken
+	 * later are closed. Undo operations recorded since then are discarded.
+	 * @throws STGException if the snapshot is not open for this STG.
 	 */
-	private class UndoAddNode implements UndoOperation {
-
-		private Node node;
-
-		public UndoAddNode(Node node) {
-			this.node = node;
+	public void restore(Snapshot snapshot) throws STGException {
+		Snapshot s = journal;
+		while (s != null && s != snapshot)
+			s = s.outer;
+		if (s == null)
+			throw new STGException("Snapshot is not open for this STG.");
+		
+		while (true) {
+			Snapshot current = journal;
+			current.rollback();
+			if (current == snapshot)
+				break;
 		}
+	}
 
-		public void apply() {
-			--maxNodeNumber;
-
+	/**
+	 * Closes the snapshot without changing the STG, later snapshots remain open. 
+	 * Snapshots which are not open for this STG are ignored.
+	 */
+	public void release(Snapshot snapshot) {
+		Snapshot inner = null;
+		Snapshot s = journal;
+		while (s != null && s != snapshot) {
+			inner = s;
+			s = s.outer;
+		}
+		if (s == null)
+			return;
+		
+		snapshot.mergeIntoOuter();
+		if (inner == null)
+			journal = snapshot.outer;
+		else
+			inner.outer = snapshot.outer;
+		snapshot.outer = null;
+		snapshot.nodes = null;
+	}
 
-			node.disconnect();
-			if (node instanceof Place)
-				places.remove(node);
-			else 
-				transitions.remove(node);
-		}
+	/**
+	 * Records the state of the node if it is modified for the first time since the innermost snapshot.
+	 */
+	void nodeChanging(Node node) {
+		if (journal == null || journal.nodes.containsKey(node))
+			return;
+		
+		journal.nodes.put(node, new NodeState(node));
+	}
 
-		public String toString() {
-			return "Added node "+node.toString();
-		}
+	/**
+	 * Like {@link #nodeChanging(Node)}, but additionally the hash codes of the STG elements become 
+	 * invalid when the snapshot is restored.  
+	 */
+	void identifierChanging(Node node) {
+		if (journal == null)
+			return;
+		
+		nodeChanging(node);
+		journal.identifiersChanged = true;
+	}
 
+	/**
+	 * Records name, signature and occurences of a signal if one of them is modified for the 
+	 * first time since the innermost snapshot.
+	 */
+	private void signalChanging(Integer signal) {
+		if (journal == null || journal.signals.containsKey(signal))
+			return;
+		
+		journal.signals.put(signal, new SignalState(signal));
 	}
 
 	/**
-	 *	Undos the deletion of a node, i.e. adds it to the STG. 
+	 * Copies the coordinates before their first modification since the innermost snapshot. 
 	 */
-	private class UndoRemoveNode implements UndoOperation {
-		private Node node;
+	private void coordinatesChanging() {
+		if (journal != null && journal.coordinates == coordinates)
+			coordinates = (STGCoordinates) coordinates.clone();
+	}
+	
+	private boolean isRegistered(Node node) {
+		if (node instanceof Place)
+			return placeIds.get(node.getIdentifier()) == node;
+		return transitionIds.get(node.getIdentifier()) == node;
+	}
 
-		public UndoRemoveNode(Node node) {
-			this.node = node;
+	/**
+	 * A snapshot of an STG, see {@link STG#snapshot()}. 
+	 */
+	public class Snapshot {
+		/**The next older open snapshot.*/
+		private Snapshot outer;
+		
+		/**The former state of the nodes modified since the snapshot, null if the snapshot is closed.*/
+		private Map<Node, NodeState> nodes = new IdentityHashMap<Node, NodeState>();
+		
+		/**The former state of the signals modified since the snapshot.*/
+		private Map<Integer, SignalState> signals = new HashMap<Integer, SignalState>();
+		
+		private final int maxNodeNumber;
+		private final STGCoordinates coordinates;
+		private final int undoSize;
+		private final int undoRefSize;
+		private final int undoMarkerCount;
+		private boolean identifiersChanged;
+		
+		private Snapshot(Snapshot outer) {
+			this.outer = outer;
+			maxNodeNumber = STG.this.maxNodeNumber;
+			coordinates = STG.this.coordinates;
+			undoSize = undoLog.size();
+			undoRefSize = undoLog.refSize();
+			undoMarkerCount = undoMarkers.size();
 		}
-
-		public void apply() {
-			if (node instanceof Place)
-				places.add((Place) node);
-
-			else if (node instanceof Transition)
-				transitions.add((Transition) node);
-
-			node.reconnect();
+		
+		public boolean isOpen() {
+			return nodes != null;
 		}
-
-		public String toString() {
-			return "Removed node "+node.toString();
+		
+		/**
+		 * Hands the recorded states over to the next older snapshot, the states of elements which
+		 * were not modified between both snapshots are still the former ones for the older snapshot.
+		 */
+		private void mergeIntoOuter() {
+			if (outer == null)
+				return;
+			
+			for (Map.Entry<Node, NodeState> entry : nodes.entrySet())
+				if (!outer.nodes.containsKey(entry.getKey()))
+					outer.nodes.put(entry.getKey(), entry.getValue());
+			
+			for (Map.Entry<Integer, SignalState> entry : signals.entrySet())
+				if (!outer.signals.containsKey(entry.getKey()))
+					outer.signals.put(entry.getKey(), entry.getValue());
+			
+			outer.identifiersChanged |= identifiersChanged;
 		}
-	}
-
-	private class UndoSetSignature implements UndoOperation {
-		private Collection<Integer> signals;
-		private Signature oldSignature;
-
-		@SuppressWarnings("unused")
-		public UndoSetSignature(Collection<Integer> signals, Signature oldSignature) {
-			this.signals = signals;
-			this.oldSignature = oldSignature;
+		
+		/**
+		 * Restores the STG, this must be the innermost snapshot.
+		 */
+		private void rollback() {
+			mergeIntoOuter();
+			// the modifications below restore older states, they must not be recorded again 
+			journal = null;
+			replaying = true;
+			
+			for (SignalState state : signals.values()) {
+				String name = signalNames.get(state.signal);
+				if (name != null && state.signal.equals(signalNumbers.get(name)))
+					signalNumbers.remove(name);
+			}
+			for (SignalState state : signals.values())
+				state.restore();
+			
+			for (Node node : nodes.keySet())
+				if (isRegistered(node)) {
+					if (node instanceof Place)
+						unregisterPlace((Place) node);
+					else
+						unregisterTransition((Transition) node);
+				}
+			
+			for (Map.Entry<Node, NodeState> entry : nodes.entrySet()) {
+				Node node = entry.getKey();
+				node.restoreState(entry.getValue().state);
+				if (entry.getValue().registered) {
+					if (node instanceof Place)
+						registerPlace((Place) node);
+					else
+						registerTransition((Transition) node);
+				}
+			}
+			
+			// the arc lookup of unmodified nodes depends on the identifiers of their neighbours
+			if (identifiersChanged)
+				for (Node node : getNodes())
+					node.rehashArcs();
+			
+			STG.this.maxNodeNumber = maxNodeNumber;
+			STG.this.coordinates = coordinates;
+			undoLog.truncate(undoSize, undoRefSize);
+			while (undoMarkers.size() > undoMarkerCount)
+				removeLastMarker();
+			
+			replaying = false;
+			journal = outer;
+			outer = null;
+			nodes = null;
+			signals = null;
 		}
-
-		public UndoSetSignature(Integer signal, Signature oldSignature) {
-			this.signals = new LinkedList<Integer>();
-			signals.add(signal);
-			this.oldSignature = oldSignature;
+	}
+	
+	private class NodeState {
+		private final boolean registered;
+		private final Node.State state;
+		
+		public NodeState(Node node) {
+			registered = isRegistered(node);
+			state = node.saveState();
 		}
-
-		public void apply() {
-			for (Integer signal : signals)
-				signatures.put(signal, oldSignature);
-
+	}
+	
+	private class SignalState {
+		private final Integer signal;
+		private final String name;
+		private final Signature signature;
+		private final Integer occurences;
+		
+		public SignalState(Integer signal) {
+			this.signal = signal;
+			name = signalNames.get(signal);
+			signature = signatures.get(signal);
+			occurences = signalOccurences.get(signal);
 		}
-
-		public String toString() {
-			return "Changed signature of " + signals +" from " + oldSignature;
+		
+		public void restore() {
+			if (name == null)
+				signalNames.remove(signal);
+			else {
+				signalNames.put(signal, name);
+				signalNumbers.put(name, signal);
+			}
+			
+			if (signature == null)
+				removeSignature(signal);
+			else
+				putSignature(signal, signature);
+			
+			if (occurences == null)
+				signalOccurences.remove(signal);
+			else
+				signalOccurences.put(signal, occurences);
 		}
-
 	}
 
 	// *******************************************************************
@@ -1372,6 +1845,7 @@ public final class STG implements Cloneable {
 	 * creates a clone for coordinates from another STG
 	 */
 	public void copyCoordinates(STGCoordinates coordinates) {
+		coordinatesChanging();
 		this.coordinates.clear();
 		this.coordinates = (STGCoordinates)coordinates.clone();
 	}
@@ -1402,6 +1876,7 @@ public final class STG implements Cloneable {
 		if (!places.contains(node) && !transitions.contains(node))
 			throw new STGException("Unknown node '"+node+"'");
 		
+		coordinatesChanging();
 		return coordinates.put(node, point);
 	}
 
@@ -1484,7 +1959,7 @@ public final class STG implements Cloneable {
 				transition))
 			throw new STGException("Contraction not possible: "+transition);
 
-		CombinedUndo contractionUndo = new CombinedUndo("Contraction of "+transition);
+		beginOperation();
 
 		Set<Node> parents = transition.getParents();
 		Set<Node> children = transition.getChildren();
@@ -1492,6 +1967,18 @@ public final class STG implements Cloneable {
 		//checking for self-triggering
 		List<Place> newPlaces = new LinkedList<Place>();
 
+		//the order of the new places is needed for mapping the invariants
+		List<Place> preset = null;
+		List<Place> postset = null;
+		if (placeInvariants != null) {
+			preset = new ArrayList<Place>();
+			for (Node actParent : parents)
+				preset.add((Place) actParent);
+			postset = new ArrayList<Place>();
+			for (Node actChild : children)
+				postset.add((Place) actChild);
+		}
+
 		for (Node actParent : parents) {
 			for (Node actChild : children) {
 
@@ -1503,15 +1990,13 @@ public final class STG implements Cloneable {
 				if (CLW.instance.PRODUCTIVE.isEnabled()  )
 				{
 					newPlace = new Place("p", ++maxNodeNumber, marking, this);
-					places.add(newPlace);
-					contractionUndo.addUndo(new UndoAddNode(newPlace));
+					registerPlace(newPlace);
 				}
 				else {                	
 					newPlace = new Place(
 							"_"+actParent.getString(Node.SIMPLE) + "." + actChild.getString(Node.SIMPLE)+"_", 
 							++maxNodeNumber, marking, this);
-					places.add(newPlace);
-					contractionUndo.addUndo(new UndoAddNode(newPlace));
+					registerPlace(newPlace);
 				}
 
 
@@ -1558,36 +2043,30 @@ public final class STG implements Cloneable {
 		
 		Set<Node> toRemove = new HashSet<Node>(); // avoid concurrent container modification
 		
-		for (Node node : parents){
-			contractionUndo.addUndo(new UndoRemoveNode(node));
-			toRemove.add(node);
-		}
-
-		for (Node node : children){
-			contractionUndo.addUndo(new UndoRemoveNode(node));
-			toRemove.add(node);
-		}
+		toRemove.addAll(parents);
+		toRemove.addAll(children);
 		
 		for (Node node: toRemove) {
 			node.disconnect();
-			places.remove(node);
+			unregisterPlace((Place) node);
 		}
 
 		Integer signal = transition.getLabel().getSignal();
 		int sc = signalOccurences .get(signal);
-		contractionUndo.addUndo(new UndoSignatureModification(signal, sc, getSignature(signal)));
+		logSignal(signal);
+		signalChanging(signal);
 		if (sc>1)
 			signalOccurences.put(signal, sc-1);
 		else {
 			signalOccurences.remove(signal);
-			signatures.remove(signal);
+			removeSignature(signal);
 		}
 
 		transition.disconnect();
-		contractionUndo.addUndo(new UndoRemoveNode(transition));
-		transitions.remove(transition);
+		unregisterTransition(transition);
 
-		addUndo(contractionUndo);
+		if (placeInvariants != null)
+			placeInvariants.contracted(preset, postset, newPlaces);
 
 		return newPlaces;
 	}
@@ -1614,6 +2093,9 @@ public final class STG implements Cloneable {
 		// Reassignment not necessary
 		if (oldSignal.equals(newSignal))
 			return;
+		
+		signalChanging(oldSignal);
+		signalChanging(newSignal);
 
 		String oldName = signalNames.get(newSignal);
 		if (oldName == null) {
@@ -1624,6 +2106,7 @@ public final class STG implements Cloneable {
 					ConditionFactory.getSignalOfCondition(oldSignal), 
 					new Operation<Transition>() {
 						public void operation(Transition o) throws STGException {
+							o.changing();
 							o.label = new SignalEdge(nSignal, o.label.getDirection());					
 						}		
 					}
@@ -1632,7 +2115,10 @@ public final class STG implements Cloneable {
 			signalNumbers.put(newName, newSignal);
 			signalNames.put(newSignal, newName);
 			signalOccurences.put(newSignal, signalOccurences.remove(oldSignal));
-			signatures.put(newSignal, signatures.remove(oldSignal));
+			Set<Transition> ofOldSignal = signalTransitions.remove(oldSignal);
+			if (ofOldSignal != null)
+				signalTransitions.put(newSignal, ofOldSignal);
+			putSignature(newSignal, removeSignature(oldSignal));
 
 			signalNames.remove(oldSignal);
 		}
@@ -1646,6 +2132,7 @@ public final class STG implements Cloneable {
 					ConditionFactory.getSignalOfCondition(oldSignal, newSignal), 
 					new Operation<Transition>() {
 						public void operation(Transition o) throws STGException {
+							o.changing();
 							if (o.label.getSignal().equals(oSignal)) {
 								o.label = new SignalEdge(nSignal, o.label.getDirection());	
 							}
@@ -1661,11 +2148,18 @@ public final class STG implements Cloneable {
 			Integer newOccurcences = signalOccurences.get(oldSignal);
 			signalOccurences.put(newSignal, newOccurcences);
 			signalOccurences.put(oldSignal, oldOccurcences);
+			
+			Set<Transition> oldTransitions = signalTransitions.remove(newSignal);
+			Set<Transition> newTransitions = signalTransitions.remove(oldSignal);
+			if (newTransitions != null)
+				signalTransitions.put(newSignal, newTransitions);
+			if (oldTransitions != null)
+				signalTransitions.put(oldSignal, oldTransitions);
 
 			Signature oldSignature = signatures.get(newSignal);
 			Signature newSignature = signatures.get(oldSignal);
-			signatures.put(newSignal, newSignature);
-			signatures.put(oldSignal, oldSignature);
+			putSignature(newSignal, newSignature);
+			putSignature(oldSignal, oldSignature);
 
 			signalNames.put(oldSignal, oldName);
 			signalNumbers.put(oldName, oldSignal);
@@ -1827,9 +2321,9 @@ public final class STG implements Cloneable {
 							result.signalNumbers.put(signalNameN2,newLabel.signal);
 							if (n2.signatures.get(transOfN2.label.signal).compareTo(Signature.OUTPUT) == 0 ||
 									n1.signatures.get(transOfN1.label.signal).compareTo(Signature.OUTPUT) == 0 )
-								result.signatures.put(newLabel.signal, Signature.OUTPUT);
+								result.putSignature(newLabel.signal, Signature.OUTPUT);
 							else
-								result.signatures.put(newLabel.signal, Signature.INPUT);
+								result.putSignature(newLabel.signal, Signature.INPUT);
 						}
 						newTransition = result.addTransition(newLabel);
 						newSynchronizers.get(transOfN2).add(newTransition);
@@ -1856,7 +2350,7 @@ public final class STG implements Cloneable {
 						newLabels.put(transOfN2.label, newLabel);
 						result.signalNames.put(newLabel.signal, signalNameN2);
 						result.signalNumbers.put(signalNameN2, newLabel.signal);
-						result.signatures.put(newLabel.signal, n2.signatures.get(transOfN2.label.signal));
+						result.putSignature(newLabel.signal, n2.signatures.get(transOfN2.label.signal));
 					}
 					newTransition = result.addTransition(newLabel);
 					newTransitions.put(transOfN2, newTransition); // because it is not a real synchronizer
@@ -1876,7 +2370,7 @@ public final class STG implements Cloneable {
 					newLabels.put(transOfN2.label, newLabel);
 					result.signalNames.put(newLabel.signal, signalNameN2);
 					result.signalNumbers.put(signalNameN2, newLabel.signal);
-					result.signatures.put(newLabel.signal, n2.signatures.get(transOfN2.label.signal));
+					result.putSignature(newLabel.signal, n2.signatures.get(transOfN2.label.signal));
 				}
 				newTransition = result.addTransition(newLabel);
 				newTransitions.put(transOfN2, newTransition);
@@ -1937,7 +2431,7 @@ public final class STG implements Cloneable {
 			for (Place place : places) {
 				Place newPlace = place.clone();
 				newPlace.setSTG(result);
-				result.places.add(newPlace);
+				result.registerPlace(newPlace);
 				newPlaces.put(place, newPlace);		        
 			}
 
@@ -1945,25 +2439,25 @@ public final class STG implements Cloneable {
 			for (Transition transition : transitions) {
 				Transition newTransition = transition.clone();
 				newTransition.setSTG(result);
-				result.transitions.add(newTransition);
+				result.registerTransition(newTransition);
 				newTransitions.put(transition, newTransition);
 			}
 
 			//Copy incidence matrix to new nodes
 			for (Place place : places) {
 				Place newPlace = newPlaces.get(place);
-				for (Node child : place.getChildren()) 
+				for (int i=0; i<place.getChildCount(); ++i) 
 					newPlace.setChildValue(
-							newTransitions.get(child),
-							place.getChildValue(child) );
+							newTransitions.get(place.getChildAt(i)),
+							place.getChildValueAt(i) );
 			}
 
 			for (Transition transition : transitions) {
 				Transition newTransition = newTransitions.get(transition); 
-				for (Node child : transition.getChildren()) 
+				for (int i=0; i<transition.getChildCount(); ++i) 
 					newTransition.setChildValue(
-							newPlaces.get(child),
-							transition.getChildValue(child) );
+							newPlaces.get(transition.getChildAt(i)),
+							transition.getChildValueAt(i) );
 			}		
 		}
 		catch (Exception e) {
@@ -1972,7 +2466,7 @@ public final class STG implements Cloneable {
 		result.maxNodeNumber = maxNodeNumber;		
 
 		for (Integer signal : signatures.keySet())
-			result.signatures.put(signal, signatures.get(signal));
+			result.putSignature(signal, signatures.get(signal));
 
 		for (Integer signal : signalOccurences.keySet())
 			result.signalOccurences.put(signal, signalOccurences.get(signal));
@@ -1985,18 +2479,16 @@ public final class STG implements Cloneable {
 	}
 	
 	/**
-	 * Returns the node with the given identifier
+	 * Returns the node with the given identifier, transitions are preferred.
+	 * The lookup uses the identifier index and takes constant time.
 	 * @param identifier
 	 * @return Node or null if no node was found
 	 */
 	public Node getNode(int identifier) {
-		for (Transition trans: transitions)
-			if (trans.getIdentifier() == identifier) return trans;
+		Transition trans = transitionIds.get(identifier);
+		if (trans != null) return trans;
 		
-		for (Place place: places)
-			if (place.getIdentifier() == identifier) return place;
-		
-		return null;
+		return placeIds.get(identifier);
 	}
 	
 	
@@ -2006,9 +2498,16 @@ public final class STG implements Cloneable {
 	 * @return trans or null if no transition was found
 	 */
 	public Transition getTransition(int identifier) {
-		for (Transition trans: transitions)
-			if (trans.getIdentifier() == identifier) return trans;
-		return null;
+		return transitionIds.get(identifier);
+	}
+	
+	/**
+	 * Returns the place with the given identifier
+	 * @param identifier
+	 * @return place or null if no place was found
+	 */
+	public Place getPlace(int identifier) {
+		return placeIds.get(identifier);
 	}
 	
 	
@@ -2114,32 +2613,14 @@ public final class STG implements Cloneable {
 	 * returns true, if a transition has enough tokens to fire
 	 */
 	public boolean canFire(Transition t) {
-		
-		for (Node n : t.getParents()) {
-			Place p = (Place)n;  
-			if (p.getMarking()<t.getParentValue(p)) return false; 
-		}
-		return true;
+		return t.isActivated();
 	}
 	
 	/*
 	 * fires a given transition (moves tokens)
 	 */
 	public void fireTransition(Transition t) {
-		if (canFire(t)) {
-			
-			for (Node n : t.getParents()) {
-				Place p = (Place)n;
-				int pv = t.getParentValue(p);
-				p.setMarking(p.getMarking()-pv); 
-			}
-			
-			for (Node n : t.getChildren()) {
-				Place p = (Place)n;
-				int cv = t.getChildValue(p);
-				p.setMarking(p.getMarking()+cv); 
-			}
-		}
+		t.fire();
 	}
 
 	/*
@@ -2147,9 +2628,8 @@ public final class STG implements Cloneable {
 	 */
 	public boolean canUnFire(Transition t) {
 		
-		for (Node n : t.getChildren()) {
-			Place p = (Place)n;  
-			if (p.getMarking()<t.getChildValue(p)) return false; 
+		for (int i=0; i<t.getChildCount(); ++i) {
+			if (((Place)t.getChildAt(i)).getMarking()<t.getChildValueAt(i)) return false; 
 		}
 		return true;
 	}
@@ -2160,16 +2640,14 @@ public final class STG implements Cloneable {
 	public void unFireTransition(Transition t) {
 		if (canUnFire(t)) {
 			
-			for (Node n : t.getChildren()) {
-				Place p = (Place)n;
-				int pv = t.getChildValue(p);
-				p.setMarking(p.getMarking()-pv); 
+			for (int i=0; i<t.getChildCount(); ++i) {
+				Place p = (Place)t.getChildAt(i);
+				p.setMarking(p.getMarking()-t.getChildValueAt(i)); 
 			}
 			
-			for (Node n : t.getParents()) {
-				Place p = (Place)n;
-				int cv = t.getParentValue(p);
-				p.setMarking(p.getMarking()+cv); 
+			for (int i=0; i<t.getParentCount(); ++i) {
+				Place p = (Place)t.getParentAt(i);
+				p.setMarking(p.getMarking()+t.getParentValueAt(i)); 
 			}
 		}
 	}
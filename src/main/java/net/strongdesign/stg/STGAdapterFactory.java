@@ -20,7 +20,6 @@
 package net.strongdesign.stg;
 
 import net.strongdesign.statesystem.*;
-import net.strongdesign.stg.traversal.*;
 
 
 import java.util.*;
@@ -41,36 +40,41 @@ import java.util.*;
 public abstract class STGAdapterFactory {
     private STGAdapterFactory() {}
     
+    /**
+     * Adapter of an STG to the interface {@link StateSystem}. The states are {@link PackedMarking}s
+     * of the places the STG had when the adapter was created.
+     * 
+     * <p>Enabled transitions and successor markings are computed with a {@link NetStructure}
+     * of the STG, the STG itself is not modified. Hence, an adapter can be used concurrently, but it does not
+     * reflect changes of the STG after its creation.
+     */
     public static class StateSystemAdapter<State,Event> implements StateSystem<Marking, SignalEdge> {
         protected STG stg;
+        protected NetStructure net;
         
         
         public STG getSTG() {
         	return stg;
         }
         
+        public NetStructure getNetStructure() {
+        	return net;
+        }
+        
         public StateSystemAdapter(STG stg) {
             this.stg = stg;
+            this.net = new NetStructure(stg);
         }
         
         public Marking getInitialState () {
-            return stg.getMarking();
+            return net.getInitialMarking();
         }
         
         public Set<SignalEdge> getEvents(Marking marking) {
-            Marking oldMarking = stg.getMarking();
-            
-            stg.setMarking(marking);
-            
             Set<SignalEdge> res = new HashSet<SignalEdge>();
             
-            List<Transition> actTrans =  stg.getTransitions(ConditionFactory.ACTIVATED);
-            
-            for (Transition t : actTrans )
-                res.add(t.getLabel() );
-            
-            
-            stg.setMarking(oldMarking);
+            for (int t : net.getEnabledTransitions(net.toLayout(marking)))
+                res.add(net.getLabel(t));
             
             return res;
         }
@@ -78,23 +82,12 @@ public abstract class STGAdapterFactory {
         public Set<Marking> getNextStates(Marking marking, SignalEdge event) {
             Set<Marking> res = new HashSet<Marking>();
             
+            PackedMarking packed = net.toLayout(marking);
+            long[] enabled = net.getEnabled(packed);
             
-            Marking oldMarking = stg.getMarking();
-            stg.setMarking(marking);
-            
-            MultiCondition<Transition> cond = new MultiCondition<Transition>(MultiCondition.AND);
-            cond.addCondition(ConditionFactory.getSignalEdgeOfCondition(event  ));
-            cond.addCondition(ConditionFactory.ACTIVATED);
-            
-            java.util.List<Transition> rightTransitions = stg.getTransitions(cond);
-            
-            for (Transition t : rightTransitions) {
-                t.fire();
-                res.add(stg.getMarking());
-                stg.setMarking(marking);
-            }
-            
-            stg.setMarking(oldMarking);
+            for (int t : net.getTransitions(event))
+                if (NetStructure.isSet(enabled, t))
+                    res.add(net.fire(packed, t));
             
             return res;
         }
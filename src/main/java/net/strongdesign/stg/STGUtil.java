@@ -27,6 +27,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.rmi.server.SkeletonNotFoundException;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -35,27 +36,36 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import lpsolve.LpSolveException;
 
 import net.strongdesign.balsa.hcexpressionparser.terms.STGCompositionOperations;
 import net.strongdesign.desij.CLW;
-import net.strongdesign.desij.DesiJ;
+import net.strongdesign.desij.DeferredLog;
 import net.strongdesign.desij.DesiJException;
 import net.strongdesign.desij.decomposition.BasicDecomposition;
 import net.strongdesign.desij.decomposition.DecompositionEvent;
 import net.strongdesign.desij.decomposition.STGInOutParameter;
 import net.strongdesign.desij.decomposition.partitioning.PartitionerCommonCauseSubnet;
+import net.strongdesign.statesystem.ParallelExplorer;
 import net.strongdesign.statesystem.StateSystem;
 import net.strongdesign.stg.solvers.RedundantPlaceSolverLP;
+import net.strongdesign.stg.solvers.RedundantPlaceSolverPool;
 import net.strongdesign.stg.solvers.RedundantPlaceStatistics;
 import net.strongdesign.stg.traversal.Condition;
 import net.strongdesign.stg.traversal.ConditionFactory;
 import net.strongdesign.stg.traversal.NotCondition;
+import net.strongdesign.stg.unfolding.Prefix;
 import net.strongdesign.util.FileSupport;
 import net.strongdesign.util.HelperApplications;
 import net.strongdesign.util.StreamGobbler;
@@ -79,7 +89,7 @@ public abstract class STGUtil {
 	 */
 	public static int removeDummies(STG stg) throws STGException {
 		if (CLW.instance.ORDER_DUMMY_TRANSITIONS.isEnabled())
-			return contractDummies(new TransitionQueueWithTreeMap(stg), stg);
+			return contractDummies(new TransitionQueueWithHeap(stg), stg);
 		else
 			return contractDummies(new TransitionQueueWithArrayList(stg), stg);
 	}
@@ -124,6 +134,7 @@ public abstract class STGUtil {
 		int result = queue.size();
 		int contractions = 0;
 		int redDel_frequency = 10;
+		Collection<Node> dirty = null;
 		while(true)
 		{
 			int nroPlaces = stg.getNumberOfPlaces();
@@ -132,12 +143,18 @@ public abstract class STGUtil {
 			if(actTransition != null)
 			{
 				Collection<Place> places = stg.contract(actTransition);
-				for(Place place : places)
-					queue.registerAffectedNodes(place.getNeighbours());
+				for(Place place : places) {
+					Collection<Node> neighbours = place.getNeighbours();
+					queue.registerAffectedNodes(neighbours);
+					if (dirty != null) {
+						dirty.add(place);
+						dirty.addAll(neighbours);
+					}
+				}
 				
 				contractions++;
 				
-				DesiJ.logFile.debug("Contracted transition: " + actTransition.getString(Node.UNIQUE));
+				DeferredLog.debug("Contracted transition: " + actTransition.getString(Node.UNIQUE));
 			}
 			
 			
@@ -153,7 +170,8 @@ public abstract class STGUtil {
 					) {
 						contractions = 0;
 						NeighbourTrackingNodeRemover remover = new NeighbourTrackingNodeRemover(stg);
-						redDel(stg, remover);
+						redDel(stg, remover, dirty);
+						dirty = new HashSet<Node>();
 						queue.removeNodes(remover.getRemoved());
 						
 						Collection<Node> neighbours = remover.getNeighbours();
@@ -345,22 +363,27 @@ public abstract class STGUtil {
 			
 			// find out problematic signals
 			do {
-				STG stgClone = stg.clone();
-				// dummify all channel signals
-				HashSet<Integer> dummified = removeChannelsBreeze(stgClone, problematic);
-				
-				good = true;
-				
-				// first, contract just to find the problematic dummies 
-				removeDummiesBreeze(stgClone, true);
-				
-				for (Transition t: stgClone.getTransitions(ConditionFactory.IS_DUMMY)) {
+				STG.Snapshot snapshot = stg.snapshot();
+				try {
+					// dummify all channel signals
+					HashSet<Integer> dummified = removeChannelsBreeze(stg, problematic);
+					
+					good = true;
+					
+					// first, contract just to find the problematic dummies 
+					removeDummiesBreeze(stg, true);
 					
-					if (dummified.contains(t.getLabel().getSignal())) {
-						problematic.add(t.getLabel().getSignal());
-						good = false;
+					for (Transition t: stg.getTransitions(ConditionFactory.IS_DUMMY)) {
+						
+						if (dummified.contains(t.getLabel().getSignal())) {
+							problematic.add(t.getLabel().getSignal());
+							good = false;
+						}
 					}
 				}
+				finally {
+					stg.restore(snapshot);
+				}
 				
 			} while (!good);
 			
@@ -456,24 +479,24 @@ public abstract class STGUtil {
 	static Reason isContractable(STG stg, Transition transition) {
 		
 		if (stg.getSignature(transition.getLabel().getSignal()) != Signature.DUMMY) {
-			DesiJ.logFile.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is not a dummy");
+			DeferredLog.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is not a dummy");
 			return Reason.SYNTACTIC;
 		}
 
 		if ( ! ConditionFactory.SECURE_CONTRACTION.fulfilled(transition)) {
-			DesiJ.logFile.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is not secure");
+			DeferredLog.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is not secure");
 			return Reason.SYNTACTIC;
 		}
 
 		//TODO wird das doppelt geprueft ???
 		if ( ConditionFactory.LOOP_NODE.fulfilled(transition)) {
-			DesiJ.logFile.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is a loop transition");
+			DeferredLog.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is a loop transition");
 			return Reason.SYNTACTIC;
 		}
 
 		//TODO wird das doppelt geprueft ???
 		if ( ConditionFactory.ARC_WEIGHT.fulfilled(transition)) {
-			DesiJ.logFile.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it has no proper arc weights");
+			DeferredLog.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it has no proper arc weights");
 			return Reason.SYNTACTIC;
 		}
 
@@ -482,12 +505,12 @@ public abstract class STGUtil {
 			if (! ConditionFactory.SAFE_CONTRACTABLE.fulfilled(transition)) {
 				if (CLW.instance.SAFE_CONTRACTIONS_UNFOLDING.isEnabled() && stg.getSize() <= CLW.instance.MAX_STG_SIZE_FOR_UNFOLDING.getIntValue()) {
 					if (! new ConditionFactory.SafeContraction<Transition>(stg).fulfilled(transition)) {
-						DesiJ.logFile.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is dynamically unsafe");
+						DeferredLog.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is dynamically unsafe");
 						return Reason.SYNTACTIC;
 					}
 				}
 				else {
-					DesiJ.logFile.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is structurally unsafe");
+					DeferredLog.debug("Contraction of " + transition.getString(Node.UNIQUE) + " is not possible because it is structurally unsafe");
 					return Reason.SYNTACTIC;
 				}
 			}
@@ -515,17 +538,128 @@ public abstract class STGUtil {
 		if (CLW.instance.REMOVE_REDUNDANT_PLACES.isEnabled()) { 
 			Collection<Place> r=STGUtil.removeRedundantPlaces(stg, remover);
 			result.addAll(r);
-			DesiJ.logFile.debug("Remove all redundant places: " + r.toString());
+			DeferredLog.debug("Remove all redundant places: " + r.toString());
 		}
 		
 		if (CLW.instance.REMOVE_REDUNDANT_TRANSITIONS.isEnabled()) { 
 			Collection<Transition> r=STGUtil.removeRedundantTransitions(stg, remover);
 			result.addAll(r);
-			DesiJ.logFile.debug("Remove all redundant transitions: " + r.toString());
+			DeferredLog.debug("Remove all redundant transitions: " + r.toString());
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Same as {@link #redDel(STG, NodeRemover)}, but only the given nodes and their surroundings are checked, 
+	 * i.e. the neighbours and the neighbours of the neighbours; the surroundings of every deleted node are
+	 * checked again. Usually the dirty nodes are the places generated by contractions, if they are 
+	 * <code>null</code> all nodes are checked.
+	 * 
+	 * <p>The check with an unfolding or an LP solver is not local, in these cases and with 
+	 * redundancy-check=full all nodes are checked. With redundancy-check=verify all nodes are checked afterwards
+	 * and the nodes missed by the incremental check are reported.
+	 */
+	public static Collection<Node> redDel(STG stg, NodeRemover remover, Collection<? extends Node> dirty) {
+		String mode = CLW.instance.REDUNDANCY_CHECK.getValue();
+		
+		if (dirty == null || mode.equals("full") 
+				|| CLW.instance.USE_LP_SOLVE_FOR_IMPLICIT_PLACES.isEnabled()
+				|| CLW.instance.RED_UNFOLDING.isEnabled() && stg.getSize() <= CLW.instance.MAX_STG_SIZE_FOR_UNFOLDING.getIntValue())
+			return redDel(stg, remover);
+		
+		Collection<Node> result = new HashSet<Node>();
+		
+		Condition<Place> redPlace = ConditionFactory.getRedundantPlaceCondition(stg, false);
+		
+		Set<Place> places = new HashSet<Place>();
+		Set<Transition> transitions = new HashSet<Transition>();
+		for (Node node : dirty)
+			addSurroundings(node.getNeighbours(), node, places, transitions);
+		
+		while (!places.isEmpty() || !transitions.isEmpty()) {
+			
+			if (CLW.instance.REMOVE_REDUNDANT_PLACES.isEnabled()) {
+				LinkedList<Place> toCheck = new LinkedList<Place>(places);
+				places.clear();
+				Collections.sort(toCheck, new STGUtil.GreatestPresetFirst());
+				
+				for (Iterator<Place> it = toCheck.iterator(); it.hasNext(); ) {
+					Place place = it.next();
+					if (stg.getPlace(place.getIdentifier()) != place)
+						it.remove();
+				}
+				
+				// the duplicates of a place are its siblings, which are checked as well
+				for (Place place : DuplicateDetector.findDuplicatePlaces(toCheck)) {
+					RedundantPlaceStatistics.totalStructuralChecks.incrementAndGet();
+					Collection<Node> neighbours = place.getNeighbours();
+					remover.removePlace(place);
+					result.add(place);
+					addSurroundings(neighbours, null, places, transitions);
+				}
+				
+				for (Place place : toCheck) {
+					if (stg.getPlace(place.getIdentifier()) != place || !redPlace.fulfilled(place)) 
+						continue;
+					RedundantPlaceStatistics.totalStructuralChecks.incrementAndGet();
+					Collection<Node> neighbours = place.getNeighbours();
+					remover.removePlace(place);
+					result.add(place);
+					addSurroundings(neighbours, null, places, transitions);
+				}
+			}
+			places.clear();
+			
+			if (CLW.instance.REMOVE_REDUNDANT_TRANSITIONS.isEnabled()) {
+				LinkedList<Transition> toCheck = new LinkedList<Transition>(transitions);
+				transitions.clear();
+				
+				for (Transition transition : toCheck) {
+					if (stg.getTransition(transition.getIdentifier()) != transition) 
+						continue;
+					if (!ConditionFactory.LOOP_ONLY_TRANSITION.fulfilled(transition) && !DuplicateDetector.hasDuplicate(transition))
+						continue;
+					Collection<Node> neighbours = transition.getNeighbours();
+					remover.removeTransition(transition);
+					result.add(transition);
+					addSurroundings(neighbours, null, places, transitions);
+				}
+			}
+			transitions.clear();
+		}
+		
+		DeferredLog.debug("Remove redundant nodes incrementally: " + result.toString());
+		
+		if (mode.equals("verify")) {
+			Collection<Node> missed = redDel(stg, remover);
+			if (!missed.isEmpty())
+				DeferredLog.info("Redundant nodes missed by the incremental check: " + missed.toString());
+			result.addAll(missed);
 		}
 		
 		return result;
 	}
+	
+	/**
+	 * Adds the given nodes, the node itself and the neighbours of the given nodes to the places and transitions to be checked.
+	 */
+	private static void addSurroundings(Collection<Node> neighbours, Node node, Set<Place> places, Set<Transition> transitions) {
+		if (node != null)
+			addNode(node, places, transitions);
+		for (Node neighbour : neighbours) {
+			addNode(neighbour, places, transitions);
+			for (Node next : neighbour.getNeighbours())
+				addNode(next, places, transitions);
+		}
+	}
+	
+	private static void addNode(Node node, Set<Place> places, Set<Transition> transitions) {
+		if (node instanceof Place)
+			places.add((Place) node);
+		else
+			transitions.add((Transition) node);
+	}
 
 	public static Set<Place> removeRedundantPlaces(STG stg, NodeRemover remover) {
 		if (CLW.instance.RED_UNFOLDING.isEnabled() && (stg.getSize() <= CLW.instance.MAX_STG_SIZE_FOR_UNFOLDING.getIntValue()))
@@ -537,6 +671,9 @@ public abstract class STGUtil {
 
 	//THEO-XXX move generation of unfolding to constructor, is this correct? can a place become not redundant after del. of some other redundant place?
 	public static Set<Place> removeRedundantPlacesWithUnfolding(STG stg, boolean repeat, NodeRemover remover) {
+		if (CLW.instance.UNFOLDER.getValue().equals("internal"))
+			return removeRedundantPlacesWithPrefix(stg, repeat, remover);
+		
 		File unfolding = null;
 
 		try {
@@ -663,6 +800,137 @@ public abstract class STGUtil {
 	}
 
 
+	/**
+	 * Same as {@link #removeRedundantPlacesWithUnfolding(STG, boolean, NodeRemover)}, but the queries are answered
+	 * by an in-process {@link Prefix} instead of punf/mpsat: a place is redundant if no reachable marking
+	 * leaves it empty while marking all other places of the preset of one of its children.
+	 * 
+	 * <p>The queries of all candidates are evaluated in advance by several threads (see {@link CLW#THREADS}).
+	 * Places are still removed one after the other in the same order, if the presets around a place
+	 * have changed meanwhile its query is evaluated again, hence the result is the same as for the sequential loop.
+	 */
+	public static Set<Place> removeRedundantPlacesWithPrefix(STG stg, boolean repeat, NodeRemover remover) {
+		Prefix prefix = null;
+		try {
+			prefix = new Prefix(stg);
+		}
+		catch (STGException e) {
+			DeferredLog.debug("No unfolding for implicit places: " + e.getMessage());
+		}
+
+		int threads = getExplorationThreads();
+		if (threads == 0)
+			threads = Runtime.getRuntime().availableProcessors();
+
+		Set<Place> removed = new HashSet<Place>();
+		boolean found;
+
+		do {
+			found = false;
+			Set<Place> places = new HashSet<Place>(stg.getPlaces());
+
+			Map<Place, Set<Set<Place>>> queries = new HashMap<Place, Set<Set<Place>>>();
+			Map<Place, Boolean> implicit = new HashMap<Place, Boolean>();
+			if (prefix != null && threads > 1) {
+				for (Place place : places)
+					if (isImplicitPlaceCandidate(place))
+						queries.put(place, getSiblingPresets(place));
+				implicit = checkImplicitPlaces(prefix, queries, threads);
+			}
+
+			for (Place place : places) {
+				//no children, does not affect firing of any transition -> definitely redundant
+				if (place.getChildren().size() == 0)	{
+					found = true;
+					remover.removePlace(place);
+					removed.add(place);
+					continue;
+				}
+
+				//is the single parent of a transition -> definitely not redundant
+				if (!isImplicitPlaceCandidate(place) || prefix == null) continue;
+
+				Set<Set<Place>> siblings = getSiblingPresets(place);
+				Boolean redundant = implicit.get(place);
+				if (redundant == null || !siblings.equals(queries.get(place)))
+					redundant = isImplicitPlace(prefix, place, siblings);
+
+				if (redundant) {
+					found = true;
+					remover.removePlace(place);
+					removed.add(place);
+				}
+			}
+		} while (repeat && found);
+
+		return removed;
+	}
+
+	private static boolean isImplicitPlaceCandidate(Place place) {
+		if (place.getChildren().size() == 0)
+			return false;
+		for (Node child : place.getChildren())
+			if (child.getParents().size() == 1)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Returns for each child of the place the other places of its preset.
+	 */
+	private static Set<Set<Place>> getSiblingPresets(Place place) {
+		Set<Set<Place>> result = new HashSet<Set<Place>>();
+		for (Node child : place.getChildren()) {
+			Set<Place> siblings = new HashSet<Place>();
+			for (Node sibling : child.getParents())
+				if (sibling != place)
+					siblings.add((Place) sibling);
+			result.add(siblings);
+		}
+		return result;
+	}
+
+	private static boolean isImplicitPlace(Prefix prefix, Place place, Set<Set<Place>> siblingPresets) {
+		for (Set<Place> siblings : siblingPresets)
+			if (prefix.isReachable(siblings, Collections.singleton(place)))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Evaluates the implicit place queries with the given number of threads.
+	 */
+	private static Map<Place, Boolean> checkImplicitPlaces(final Prefix prefix, Map<Place, Set<Set<Place>>> queries,
+			int threads) {
+		Map<Place, Future<Boolean>> futures = new HashMap<Place, Future<Boolean>>();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			for (final Map.Entry<Place, Set<Set<Place>>> query : queries.entrySet())
+				futures.put(query.getKey(), pool.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						return isImplicitPlace(prefix, query.getKey(), query.getValue());
+					}
+				}));
+
+			Map<Place, Boolean> result = new HashMap<Place, Boolean>();
+			for (Map.Entry<Place, Future<Boolean>> future : futures.entrySet())
+				result.put(future.getKey(), future.getValue().get());
+			return result;
+		}
+		catch (InterruptedException e) {
+			throw new DesiJException("Interrupted while checking implicit places");
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new DesiJException("Error while checking implicit places: " + e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+
 	static class GreatestPresetFirst implements Comparator<Place> {
 		@Override
 		public int compare(Place p1, Place p2) {
@@ -681,6 +949,18 @@ public abstract class STGUtil {
 		}
 	}
 	
+	/**
+	 * Removes all duplicate places, see {@link DuplicateDetector#findDuplicatePlaces(Collection)}.
+	 */
+	private static Set<Place> removeDuplicatePlaces(Collection<Place> places, NodeRemover remover) {
+		Set<Place> result = new HashSet<Place>(DuplicateDetector.findDuplicatePlaces(places));
+		for (Place place : result) {
+			RedundantPlaceStatistics.totalStructuralChecks.incrementAndGet();
+			remover.removePlace(place);
+		}
+		return result;
+	}
+	
 	public static Set<Place> removeRedundantPlaces(STG stg, boolean repeat, NodeRemover remover) {
 		
 		Set<Place> result = new HashSet<Place>();
@@ -689,8 +969,8 @@ public abstract class STGUtil {
 		
 		boolean found;
 		
-		// first, remove all redundant places that are quick to find
-		Condition<Place> redPlace = ConditionFactory.getRedundantPlaceCondition(stg);
+		// first, remove all redundant places that are quick to find, duplicates are found separately
+		Condition<Place> redPlace = ConditionFactory.getRedundantPlaceCondition(stg, false);
 		
 		if (true||!CLW.instance.USE_LP_SOLVE_FOR_IMPLICIT_PLACES.isEnabled()) 
 		{
@@ -703,9 +983,15 @@ public abstract class STGUtil {
 				places.addAll(stg.getPlaces());
 				Collections.sort(places, new STGUtil.GreatestPresetFirst());
 				
+				Set<Place> duplicates = removeDuplicatePlaces(places, remover);
+				found = !duplicates.isEmpty();
+				result.addAll(duplicates);
+				
 				for (Place place : places ) {
+					if (duplicates.contains(place))
+						continue;
 					if (redPlace.fulfilled(place)) {
-						RedundantPlaceStatistics.totalStructuralChecks++;
+						RedundantPlaceStatistics.totalStructuralChecks.incrementAndGet();
 						found = true;
 						remover.removePlace(place);
 						result.add(place);
@@ -734,6 +1020,16 @@ public abstract class STGUtil {
 			
 			RedundantPlaceSolverLP solver = new RedundantPlaceSolverLP();
 			
+			// the places are checked in advance by several threads, but still removed one after the other
+			// in the same order; if a decision does not hold anymore due to the removals, the place is checked again
+			int threads = getExplorationThreads();
+			if (threads == 0)
+				threads = Runtime.getRuntime().availableProcessors();
+			RedundantPlaceSolverPool pool = threads > 1 ? new RedundantPlaceSolverPool(threads) : null;
+			
+			// places shown to be implicit by the P-semiflows need no LP
+			PlaceInvariants invariants = CLW.instance.PLACE_INVARIANTS.isEnabled() ? PlaceInvariants.of(stg) : null;
+			
 			do {
 				found = false;
 				int i = 0;
@@ -743,6 +1039,16 @@ public abstract class STGUtil {
 				places.addAll(stg.getPlaces());
 				Collections.sort(places, new STGUtil.GreatestPresetFirst());
 				
+				Map<Place, RedundantPlaceSolverPool.Decision> decisions = Collections.emptyMap();
+				if (pool != null) {
+					List<Place> undecided = new ArrayList<Place>();
+					for (Place place : places)
+						if (invariants == null || !isImplicitByInvariants(invariants, stg, place, d))
+							undecided.add(place);
+					decisions = pool.decide(stg, undecided, d);
+				}
+				Set<Place> removed = new HashSet<Place>();
+				
 				for (Place place : places ){
 					i++;
 					
@@ -761,7 +1067,19 @@ public abstract class STGUtil {
 					}
 					
 					
-					boolean r1 = solver.isRedundant2(stg, place, d);
+					RedundantPlaceSolverPool.Decision decision = decisions.get(place);
+					boolean r1;
+					if (invariants != null && isImplicitByInvariants(invariants, stg, place, d)) {
+						RedundantPlaceStatistics.totalInvariantFound.incrementAndGet();
+						r1 = true;
+					}
+					else if (decision != null && decision.isValid(stg, removed))
+						r1 = decision.isRedundant();
+					else {
+						if (decision != null)
+							RedundantPlaceStatistics.totalRechecked.incrementAndGet();
+						r1 = solver.isRedundant2(stg, place, d);
+					}
 //					boolean r2 = solver.isRedundant2(stg, place, d);
 					
 //					boolean r1 = redPlace.fulfilled(place);
@@ -779,13 +1097,20 @@ public abstract class STGUtil {
 					if (r1) {
 						found = true;
 						remover.removePlace(place);
+						if (invariants != null)
+							invariants.removePlace(place);
 						result.add(place);
+						removed.add(place);
 						foundNum ++;
 					}
 					
 				}
 			} while (false && repeat && found);
 			
+			solver.dispose();
+			if (pool != null)
+				pool.dispose();
+			
 //			System.out.printf("LP solver found:%d\n", foundNum);
 		}
 
@@ -793,25 +1118,28 @@ public abstract class STGUtil {
 	}
 
 	
+	/**
+	 * Checks if the place is implicit due to the P-semiflows, using only places of the subgraph of the given depth like the LP.
+	 */
+	private static boolean isImplicitByInvariants(PlaceInvariants invariants, STG stg, Place place, int depth) {
+		Set<Place> within = null;
+		if (depth > 0) {
+			within = new HashSet<Place>();
+			STG.getSubgraphNodes(stg, place, depth, within, new HashSet<Transition>());
+		}
+		return invariants.isImplicit(place, within, null);
+	}
+	
 	public static Set<Transition> removeRedundantTransitions(STG stg, NodeRemover remover) {
 		Set<Transition> result = new HashSet<Transition>();
 		
-//		result.addAll(removeLoopOnlyTransitions(stg, remover));
-//		result.addAll(DuplicateTransitionRemover.removeDuplicateTransitions(stg, remover));
-//		
-//		return result;
-		Condition<Transition> redTransition = ConditionFactory.getRedundantTransitionCondition(stg);
+		// removing transitions changes only places, hence no further loop-only or duplicate transitions can arise
+		result.addAll(removeLoopOnlyTransitions(stg, remover));
+		result.addAll(DuplicateTransitionRemover.removeDuplicateTransitions(stg, remover));
 		
-		while (true) {
-			
-			java.util.List<Transition> t = stg.getTransitions(redTransition);
-			if (t.size()==0) return result;
-			remover.removeTransition(t.get(0));
-			result.add(t.get(0));
-		}
+		return result;
 	}
 
-	@SuppressWarnings("unused")
 	private static Collection<? extends Transition> removeLoopOnlyTransitions(STG stg, NodeRemover remover) {
 		Set<Transition> result = new HashSet<Transition>();
 		for(Transition t : stg.getTransitions(ConditionFactory.LOOP_ONLY_TRANSITION))
@@ -853,6 +1181,10 @@ public abstract class STGUtil {
 		Queue<Marking> toDoStates  				= new LinkedList<Marking>();
 		Queue<Place> toDoPlaces	  				= new LinkedList<Place>();
 		StateSystem<Marking, SignalEdge> sys 	= STGAdapterFactory.getStateSystemAdapter(stg);                
+		
+		int threads = getExplorationThreads();
+		if (threads != 1)
+			sys = new ParallelExplorer<Marking, SignalEdge>(sys, threads).explore();
 
 		Place startPlace = result.addPlace("p", 1);
 		toDoStates.add(sys.getInitialState());
@@ -886,10 +1218,21 @@ public abstract class STGUtil {
 	}
 
 	public static int sizeOfReachabilityGraph(STG stg)   {
+		return sizeOfReachabilityGraph(stg, getExplorationThreads());
+	}
+	
+	/**
+	 * Returns the number of reachable markings, explored with the given number of threads.
+	 * @param threads 0 for one thread per processor
+	 */
+	public static int sizeOfReachabilityGraph(STG stg, int threads)   {
+		StateSystem<Marking, SignalEdge> sys 	= STGAdapterFactory.getStateSystemAdapter(stg);                
+		if (threads != 1)
+			return new ParallelExplorer<Marking, SignalEdge>(sys, threads).countStates();
+		
 		Set<Marking> knownStates 				= new HashSet<Marking>();
 		Queue<Marking> toDoStates				= new LinkedList<Marking>();
 
-		StateSystem<Marking, SignalEdge> sys 	= STGAdapterFactory.getStateSystemAdapter(stg);                
 
 		toDoStates.add(sys.getInitialState());
 		knownStates.add(sys.getInitialState());
@@ -916,6 +1259,15 @@ public abstract class STGUtil {
 		return result;
 	}
 	
+	/**
+	 * Returns the number of threads for exploring reachability graphs, see {@link CLW#THREADS}.
+	 */
+	public static int getExplorationThreads() {
+		if (CLW.instance == null)
+			return 1;
+		return CLW.instance.THREADS.getIntValue();
+	}
+	
 	/**
 	 * Checks if transitions have the same signals and directions 
 	 * @param t1
@@ -1738,7 +2090,7 @@ public abstract class STGUtil {
 //								stg.getSignature(t2.getLabel().getSignal())==Signature.DUMMY
 //								)
 //							{
-//								RedundantPlaceStatistics.totalSharedPathSplits++;
+//								RedundantPlaceStatistics.totalSharedPathSplits.incrementAndGet();
 //								
 //								// we do have some changes
 //								ret=true;
@@ -1905,7 +2257,7 @@ public abstract class STGUtil {
 					Place p = tp.get(t1);
 					Transition t2 = pt.get(p);
 					stg.removePlace(p);
-					RedundantPlaceStatistics.totalSharedPathSplits++;
+					RedundantPlaceStatistics.totalSharedPathSplits.incrementAndGet();
 					
 					if (p1.getParents().size()>1) {
 						Place np1 = stg.addPlace("p", 0);
@@ -2012,7 +2364,7 @@ public abstract class STGUtil {
 			if (failed) continue;
 			
 			// conditions are good, apply relaxation for each of the tran*
-			RedundantPlaceStatistics.totalMergePlaceSplits++;
+			RedundantPlaceStatistics.totalMergePlaceSplits.incrementAndGet();
 
 			for (Node post: postPlaces) {
 				
@@ -2054,7 +2406,7 @@ public abstract class STGUtil {
 			
 		}
 		
-		System.out.println("Total splits:"+RedundantPlaceStatistics.totalMergePlaceSplits+ " new Transition count:"+stg.getNumberOfTransitions());
+		System.out.println("Total splits:"+RedundantPlaceStatistics.totalMergePlaceSplits.get()+ " new Transition count:"+stg.getNumberOfTransitions());
 		
 		return ret;
 	}
@@ -2181,7 +2533,11 @@ public abstract class STGUtil {
 		// initialize CSCChecking --> pick the right strategy here
 //		ICSCCheckLPStrategy lpCSCCheck = CSCCheckerLPSolvePreCaching.
 //				getCSCCheckerLPSolvePreCaching(stg); // singleton: uses the lpsolve java wrapper directly
-		ICSCCheckLPStrategy lpCSCCheck = new CSCCheckerLPSimple(stg); // inefficient, but more transparent implementation
+		ICSCCheckLPStrategy lpCSCCheck;
+		if (CLW.instance.CSC_CHECKER.getValue().equals("sat") && PlaceInvariants.of(stg).isStructurallyBounded())
+			lpCSCCheck = new CSCCheckerSAT(stg); // only reachable conflicts, the prefix must be finite
+		else
+			lpCSCCheck = new CSCCheckerLPSimple(stg); // inefficient, but more transparent implementation
 		
 		try {
 			while (!lpCSCCheck.execute(necessarySignals)) { // while CSC is not satisfied
@@ -70,7 +70,7 @@ public enum SignalValue {
 			
 		case MINUS:
 			switch (this) {
-			case UNKNOWN: case HIGH: return HIGH;
+			case UNKNOWN: case HIGH: return LOW;
 			case PLUS: return ZERO;
 			case ZERO: return MINUS;			
 			}
@@ -0,0 +1,400 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import net.strongdesign.statesystem.StateSystem;
+
+/**
+ * Partial order reduction of the state space of an STG with stubborn sets.
+ *
+ * <p>In every marking only the enabled transitions of a stubborn set are fired. A stubborn set
+ * contains with every enabled transition all transitions consuming from its preset and with every disabled
+ * transition all producers of one of its insufficiently marked preset places (a scapegoat).
+ * This preserves all reachable deadlocks. For the other properties some transitions are visible:
+ * if a stubborn set contains an enabled visible transition, it contains all visible ones, and a
+ * marking is fully expanded if one of its reduced successors has been seen before, so no transition is
+ * ignored on a cycle. This preserves the sequences of visible transitions.
+ *
+ * <ul>
+ * <li>{@link Property#DEADLOCK}: no visible transitions</li>
+ * <li>{@link Property#CONSISTENCY}: all signal transitions are visible, only dummies can be reduced</li>
+ * <li>{@link Property#PERSISTENCE}: transitions consuming from or producing on the preset of an output or
+ * internal transition are visible</li>
+ * </ul>
+ *
+ * <p>As a {@link StateSystem} the reduction returns the reduced events without the cycle condition, which
+ * is sufficient for deadlocks. {@link #explore()} performs the complete check of the property.
+ */
+public class StubbornSetReduction implements StateSystem<Marking, SignalEdge> {
+
+	public static enum Property {
+		DEADLOCK, CONSISTENCY, PERSISTENCE;
+
+		/**
+		 * Returns the property for a value of {@link net.strongdesign.desij.CLW#REDUCTION}, null for none.
+		 */
+		public static Property fromString(String name) {
+			for (Property property : values())
+				if (property.name().equalsIgnoreCase(name))
+					return property;
+			return null;
+		}
+	}
+
+	private final STG stg;
+	private final NetStructure net;
+	private final Property property;
+
+	/**Visible transitions, null if there are none.*/
+	private final boolean[] visible;
+
+	private int numberOfStates;
+	private int fullyExpanded;
+	private int skippedFirings;
+	private List<Marking> violations;
+	private boolean consistent;
+
+
+	public StubbornSetReduction(STG stg, Property property) {
+		this.stg = stg;
+		this.net = new NetStructure(stg);
+		this.property = property;
+		this.visible = computeVisible();
+	}
+
+	private boolean[] computeVisible() {
+		int nt = net.getNumberOfTransitions();
+		boolean[] result = new boolean[nt];
+
+		switch (property) {
+		case DEADLOCK:
+			return null;
+
+		case CONSISTENCY:
+			for (int t=0; t<nt; ++t)
+				result[t] = stg.getSignature(net.getLabel(t).getSignal()) != Signature.DUMMY;
+			break;
+
+		case PERSISTENCE:
+			for (int t=0; t<nt; ++t) {
+				Signature signature = stg.getSignature(net.getLabel(t).getSignal());
+				if (signature != Signature.OUTPUT && signature != Signature.INTERNAL)
+					continue;
+				for (int p : net.getPreset(t)) {
+					for (int u : net.getConsumers(p))
+						result[u] = true;
+					for (int u : net.getProducers(p))
+						result[u] = true;
+				}
+			}
+			break;
+		}
+
+		return result;
+	}
+
+
+	public Marking getInitialState() {
+		return net.getInitialMarking();
+	}
+
+	public Set<SignalEdge> getEvents(Marking marking) {
+		Set<SignalEdge> result = new HashSet<SignalEdge>();
+		for (int t : getStubbornEnabled(net.toLayout(marking)))
+			result.add(net.getLabel(t));
+		return result;
+	}
+
+	public Set<Marking> getNextStates(Marking marking, SignalEdge event) {
+		Set<Marking> result = new HashSet<Marking>();
+		PackedMarking packed = net.toLayout(marking);
+		for (int t : getStubbornEnabled(packed))
+			if (net.getLabel(t).equals(event))
+				result.add(net.fire(packed, t));
+		return result;
+	}
+
+
+	/**
+	 * Returns the enabled transitions of a stubborn set of the marking. Every enabled transition is tried as
+	 * starting point and the set with the fewest enabled transitions is chosen.
+	 */
+	public List<Integer> getStubbornEnabled(PackedMarking marking) {
+		List<Integer> enabled = net.getEnabledTransitions(marking);
+		if (enabled.size() <= 1)
+			return enabled;
+
+		int[] values = new int[net.getNumberOfPlaces()];
+		marking.getValues(values);
+		long[] enabledBits = net.getEnabled(marking);
+
+		List<Integer> best = enabled;
+		boolean[] inSet = new boolean[net.getNumberOfTransitions()];
+		for (int seed : enabled) {
+			List<Integer> candidate = closure(seed, values, enabledBits, inSet, best.size());
+			if (candidate != null && candidate.size() < best.size()) {
+				best = candidate;
+				if (best.size() == 1)
+					break;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Computes the stubborn set starting with the given enabled transition.
+	 * @return Its enabled transitions, null if they are not less than the given bound.
+	 */
+	private List<Integer> closure(int seed, int[] values, long[] enabledBits, boolean[] inSet, int bound) {
+		List<Integer> members = new ArrayList<Integer>();
+		List<Integer> result = new ArrayList<Integer>();
+		Queue<Integer> work = new ArrayDeque<Integer>();
+		boolean visibleAdded = false;
+
+		inSet[seed] = true;
+		members.add(seed);
+		work.add(seed);
+
+		try {
+			while (!work.isEmpty()) {
+				int t = work.poll();
+
+				if (NetStructure.isSet(enabledBits, t)) {
+					result.add(t);
+					if (result.size() >= bound)
+						return null;
+
+					for (int p : net.getPreset(t))
+						for (int u : net.getConsumers(p))
+							add(u, inSet, members, work);
+
+					if (visible != null && visible[t] && !visibleAdded) {
+						visibleAdded = true;
+						for (int u=0; u<visible.length; ++u)
+							if (visible[u])
+								add(u, inSet, members, work);
+					}
+				}
+				else {
+					int scapegoat = -1;
+					for (int p : net.getPreset(t))
+						if (values[p] < net.getPreWeight(t, p) &&
+								(scapegoat == -1 || net.getProducers(p).length < net.getProducers(scapegoat).length))
+							scapegoat = p;
+
+					for (int u : net.getProducers(scapegoat))
+						add(u, inSet, members, work);
+				}
+			}
+			return result;
+		}
+		finally {
+			for (int u : members)
+				inSet[u] = false;
+		}
+	}
+
+	private static void add(int t, boolean[] inSet, List<Integer> members, Queue<Integer> work) {
+		if (inSet[t])
+			return;
+		inSet[t] = true;
+		members.add(t);
+		work.add(t);
+	}
+
+
+	/**
+	 * Explores the reduced state space and checks the property. The results are available
+	 * via the getters afterwards.
+	 */
+	public void explore() {
+		numberOfStates = 0;
+		fullyExpanded = 0;
+		skippedFirings = 0;
+		violations = new LinkedList<Marking>();
+		consistent = true;
+
+		List<Integer> signals = new ArrayList<Integer>(stg.getSignals());
+		Map<Integer, Integer> signalIndex = new HashMap<Integer, Integer>();
+		for (Integer signal : signals)
+			signalIndex.put(signal, signalIndex.size());
+
+		// signal changes relative to the initial marking, only for consistency
+		Map<Marking, byte[]> changes = new HashMap<Marking, byte[]>();
+		Set<Marking> visited = new HashSet<Marking>();
+		Queue<PackedMarking> frontier = new LinkedList<PackedMarking>();
+
+		PackedMarking initial = net.getInitialMarking();
+		visited.add(initial);
+		frontier.add(initial);
+		changes.put(initial, new byte[signals.size()]);
+
+		while (!frontier.isEmpty()) {
+			PackedMarking marking = frontier.poll();
+			++numberOfStates;
+
+			List<Integer> enabled = net.getEnabledTransitions(marking);
+			List<Integer> fired = getStubbornEnabled(marking);
+			checkState(marking, enabled);
+
+			List<PackedMarking> successors = new ArrayList<PackedMarking>(enabled.size());
+			for (int t : fired)
+				successors.add(net.fire(marking, t));
+
+			if (visible != null && fired.size() < enabled.size()) {
+				for (PackedMarking successor : successors)
+					if (visited.contains(successor)) {
+						fired = enabled;
+						successors.clear();
+						for (int t : fired)
+							successors.add(net.fire(marking, t));
+						break;
+					}
+			}
+
+			if (fired.size() == enabled.size())
+				++fullyExpanded;
+			else
+				skippedFirings += enabled.size() - fired.size();
+
+			byte[] change = changes.get(marking);
+			for (int i=0; i<fired.size(); ++i) {
+				PackedMarking successor = successors.get(i);
+
+				if (property == Property.CONSISTENCY) {
+					byte[] next = change.clone();
+					SignalEdge label = net.getLabel(fired.get(i));
+					if (stg.getSignature(label.getSignal()) != Signature.DUMMY) {
+						int s = signalIndex.get(label.getSignal());
+						next[s] += label.getDirection() == EdgeDirection.UP ? 1 : -1;
+						if (next[s] < -1 || next[s] > 1)
+							consistent = false;
+					}
+					byte[] known = changes.get(successor);
+					if (known == null)
+						changes.put(successor, next);
+					else if (!Arrays.equals(known, next))
+						consistent = false;
+				}
+
+				if (visited.add(successor))
+					frontier.add(successor);
+			}
+		}
+
+		if (property == Property.CONSISTENCY) {
+			// the initial value of every signal must be determined uniquely
+			for (int s=0; s<signals.size(); ++s) {
+				boolean up = false, down = false;
+				for (byte[] change : changes.values()) {
+					up |= change[s] > 0;
+					down |= change[s] < 0;
+				}
+				if (up && down)
+					consistent = false;
+			}
+		}
+	}
+
+	private void checkState(PackedMarking marking, List<Integer> enabled) {
+		switch (property) {
+		case DEADLOCK:
+			if (enabled.isEmpty())
+				violations.add(marking);
+			break;
+
+		case PERSISTENCE:
+			int[] values = null;
+			for (int o : enabled) {
+				Signature signature = stg.getSignature(net.getLabel(o).getSignal());
+				if (signature != Signature.OUTPUT && signature != Signature.INTERNAL)
+					continue;
+				SignalEdge label = net.getLabel(o);
+				for (int u : enabled) {
+					if (net.getLabel(u).equals(label))
+						continue;
+					if (values == null) {
+						values = new int[net.getNumberOfPlaces()];
+						marking.getValues(values);
+					}
+					int[] next = values.clone();
+					net.fire(next, u);
+					if (!isLabelEnabled(next, label)) {
+						violations.add(marking);
+						return;
+					}
+				}
+			}
+			break;
+
+		default:
+		}
+	}
+
+
+	private boolean isLabelEnabled(int[] values, SignalEdge label) {
+		for (int t : net.getTransitions(label))
+			if (net.isEnabled(values, t))
+				return true;
+		return false;
+	}
+
+
+	public Property getProperty() {
+		return property;
+	}
+
+	/**Returns the number of markings explored by {@link #explore()}.*/
+	public int getNumberOfStates() {
+		return numberOfStates;
+	}
+
+	/**Returns the number of explored markings where all enabled transitions were fired.*/
+	public int getNumberOfFullyExpanded() {
+		return fullyExpanded;
+	}
+
+	/**Returns the number of enabled transitions which were not fired due to the reduction.*/
+	public int getSkippedFirings() {
+		return skippedFirings;
+	}
+
+	/**Returns the reachable deadlocks resp. markings violating output persistence found by {@link #explore()}.*/
+	public List<Marking> getViolations() {
+		return violations;
+	}
+
+	/**Returns the result of the consistency check of {@link #explore()}.*/
+	public boolean isConsistent() {
+		return consistent;
+	}
+
+}
@@ -46,7 +46,7 @@ public class Transition extends Node {
 	
 	public Transition (SignalEdge label, Integer identifier, STG stg) {
 		super(identifier, stg);
-		setLabel(label);
+		this.label = label;
 	}
 	
 	public String getString(int mode) {
@@ -95,7 +95,24 @@ public class Transition extends Node {
 	
 	
 	public void setLabel(SignalEdge label) {
+		changing();
+		Integer oldSignal = this.label.getSignal();
 		this.label = label;
+		if (stg != null)
+			stg.signalChanged(this, oldSignal);
+	}
+	
+	@Override
+	State saveState() {
+		State state = super.saveState();
+		state.label = label.clone();
+		return state;
+	}
+	
+	@Override
+	void restoreState(State state) {
+		super.restoreState(state);
+		label = (SignalEdge) state.label;
 	}
 
 
@@ -113,13 +130,8 @@ public class Transition extends Node {
 	}
 
 	public boolean isActivated() {
-		Set<Node> parents = getParents();
-		
-		for (Iterator<Node> itParents = parents.iterator(); itParents.hasNext();) {
-			Place actParent = (Place)itParents.next();
-			if (actParent.getMarking()<getParentValue(actParent)) return false;
-		}
-			
+		for (int i=0; i<getParentCount(); ++i) 
+			if (((Place)getParentAt(i)).getMarking()<getParentValueAt(i)) return false;
 		
 		return true;
 	}
@@ -127,16 +139,14 @@ public class Transition extends Node {
 	public void fire() {
 		if (!isActivated()) return;
 		
-		Set<Node> parents = getParents();
-		for (Iterator<Node> itParents = parents.iterator(); itParents.hasNext();) {
-			Place actParent = (Place) itParents.next();
-			actParent.setMarking(actParent.getMarking()-getParentValue(actParent));
+		for (int i=0; i<getParentCount(); ++i) {
+			Place actParent = (Place) getParentAt(i);
+			actParent.setMarking(actParent.getMarking()-getParentValueAt(i));
 		}
 
-		Set<Node> children = getChildren();
-		for (Iterator<Node> itChildren = children.iterator(); itChildren.hasNext();) {
-			Place actChild = (Place)itChildren.next();
-			actChild.setMarking(actChild.getMarking()+getChildValue(actChild));
+		for (int i=0; i<getChildCount(); ++i) {
+			Place actChild = (Place) getChildAt(i);
+			actChild.setMarking(actChild.getMarking()+getChildValueAt(i));
 		}		
 	}
 	
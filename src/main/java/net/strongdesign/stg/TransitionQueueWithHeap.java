@@ -0,0 +1,201 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import net.strongdesign.stg.STGUtil.Reason;
+import net.strongdesign.stg.traversal.ConditionFactory;
+
+/**
+ * An indexed binary min-heap of transitions, ordered by contractibility, by the number of
+ * newly generated places |pre t|*|post t|-|pre t|-|post t| and finally by identifier.
+ *
+ * <p>Every transition knows its position in the heap, hence the key of a transition affected
+ * by a contraction is updated in O(log n) instead of re-sorting all transitions.
+ */
+public class TransitionQueueWithHeap implements TransitionQueue {
+
+	private static final class Entry {
+		final Transition transition;
+		boolean isContractible;
+		int cost;
+		int position;
+
+		Entry(Transition transition) {
+			this.transition = transition;
+		}
+	}
+
+	private Entry[] heap;
+	private int size;
+	private final Map<Transition, Entry> entries = new HashMap<Transition, Entry>();
+	private int contractible_count = 0;
+
+	private final STG stg;
+	private final boolean checkContractibility;
+
+
+	/**
+	 * Creates a queue of all dummy transitions of an STG. Transitions which are not contractable
+	 * are ordered last and are never returned by {@link #pop()}.
+	 */
+	public TransitionQueueWithHeap(STG stg) {
+		this(stg, stg.getTransitions(ConditionFactory.getSignatureOfCondition(Signature.DUMMY)), true);
+	}
+
+	/**
+	 * Creates a queue of the given transitions.
+	 * @param checkContractibility If false, contractibility is left to the caller and
+	 *  all transitions are returned by {@link #pop()}.
+	 */
+	public TransitionQueueWithHeap(STG stg, Collection<Transition> transitions, boolean checkContractibility) {
+		this.stg = stg;
+		this.checkContractibility = checkContractibility;
+		heap = new Entry[Math.max(transitions.size(), 1)];
+
+		for (Transition t : transitions) {
+			if (entries.containsKey(t))
+				continue;
+			Entry entry = new Entry(t);
+			computeKey(entry);
+			entry.position = size;
+			heap[size++] = entry;
+			entries.put(t, entry);
+		}
+
+		for (int i = size/2-1; i >= 0; i--)
+			siftDown(i);
+	}
+
+	private void computeKey(Entry entry) {
+		Transition t = entry.transition;
+		boolean contractible = !checkContractibility || STGUtil.isContractable(stg, t) == Reason.OK;
+		if (entry.isContractible && !contractible)
+			contractible_count--;
+		else if (!entry.isContractible && contractible)
+			contractible_count++;
+		entry.isContractible = contractible;
+		entry.cost = (t.getChildren().size()-1) * (t.getParents().size()-1)-1;
+	}
+
+	private static boolean less(Entry e1, Entry e2) {
+		if (e1.isContractible != e2.isContractible)
+			return e1.isContractible;
+		if (e1.cost != e2.cost)
+			return e1.cost < e2.cost;
+		return e1.transition.getIdentifier() < e2.transition.getIdentifier();
+	}
+
+	private void place(Entry entry, int position) {
+		heap[position] = entry;
+		entry.position = position;
+	}
+
+	private void siftUp(int position) {
+		Entry entry = heap[position];
+		while (position > 0) {
+			int parent = (position-1) / 2;
+			if (!less(entry, heap[parent]))
+				break;
+			place(heap[parent], position);
+			position = parent;
+		}
+		place(entry, position);
+	}
+
+	private void siftDown(int position) {
+		Entry entry = heap[position];
+		while (true) {
+			int child = 2*position + 1;
+			if (child >= size)
+				break;
+			if (child+1 < size && less(heap[child+1], heap[child]))
+				child++;
+			if (!less(heap[child], entry))
+				break;
+			place(heap[child], position);
+			position = child;
+		}
+		place(entry, position);
+	}
+
+	private void removeAt(int position) {
+		Entry last = heap[--size];
+		heap[size] = null;
+		if (position == size)
+			return;
+		place(last, position);
+		siftDown(position);
+		siftUp(last.position);
+	}
+
+	@Override
+	public Transition pop() {
+		if (size == 0)
+			return null;
+		Entry first = heap[0];
+		if (!first.isContractible)
+			return null;
+
+		remove(first.transition);
+		return first.transition;
+	}
+
+	@Override
+	public void registerAffectedNodes(Collection<Node> nodes) {
+		for (Node n : nodes) {
+			Entry entry = entries.get(n);
+			if (entry == null)
+				continue;
+			computeKey(entry);
+			siftUp(entry.position);
+			siftDown(entry.position);
+		}
+	}
+
+	private void remove(Transition t) {
+		Entry entry = entries.remove(t);
+		if (entry == null)
+			return;
+		if (entry.isContractible)
+			contractible_count--;
+		removeAt(entry.position);
+	}
+
+	@Override
+	public void removeNodes(Collection<Node> nodes) {
+		for (Node node : nodes)
+			if (node instanceof Transition)
+				remove((Transition)node);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public int getContractibleTransitionsCount() {
+		return contractible_count;
+	}
+}
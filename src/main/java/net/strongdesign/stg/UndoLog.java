@@ -0,0 +1,99 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg;
+
+/**
+ * Append-only storage of the undo information of an {@link STG}.
+ *
+ * <p>A record consists of some ints and some object references, which are appended to two growing
+ * arrays. The record type is the last int of a record, hence the log can be read backwards with
+ * {@link #popInt()} and {@link #popRef()}. A position in the log is given by the pair
+ * {@link #size()} and {@link #refSize()}.
+ */
+final class UndoLog {
+
+	private int[] ints = new int[64];
+	private int size;
+
+	private Object[] refs = new Object[32];
+	private int refSize;
+
+
+	int size() {
+		return size;
+	}
+
+	int refSize() {
+		return refSize;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	void push(int value) {
+		if (size == ints.length) {
+			int[] newInts = new int[2*size];
+			System.arraycopy(ints, 0, newInts, 0, size);
+			ints = newInts;
+		}
+		ints[size++] = value;
+	}
+
+	void push(Object ref) {
+		if (refSize == refs.length) {
+			Object[] newRefs = new Object[2*refSize];
+			System.arraycopy(refs, 0, newRefs, 0, refSize);
+			refs = newRefs;
+		}
+		refs[refSize++] = ref;
+	}
+
+	int popInt() {
+		return ints[--size];
+	}
+
+	Object popRef() {
+		Object ref = refs[--refSize];
+		refs[refSize] = null;
+		return ref;
+	}
+
+	/**
+	 * Discards all records after the given position.
+	 */
+	void truncate(int size, int refSize) {
+		if (size > this.size || refSize > this.refSize)
+			return;
+
+		this.size = size;
+		while (this.refSize > refSize)
+			refs[--this.refSize] = null;
+	}
+
+	void clear() {
+		truncate(0, 0);
+		if (ints.length > 64) {
+			ints = new int[64];
+			refs = new Object[32];
+		}
+	}
+
+}
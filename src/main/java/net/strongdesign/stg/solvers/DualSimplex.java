@@ -0,0 +1,422 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.solvers;
+
+/**
+ * A bounded dual simplex for small sparse problems of the form
+ * min c x s.t. A x (&lt;=,=,&gt;=) b, l &lt;= x &lt;= u.
+ *
+ * <p>Every row gets a slack variable, A x + s = b, whose bounds encode the relation; the slacks form
+ * the initial basis. The tableau B^-1 [A I] is kept dense, but pivots only touch the nonzero
+ * entries of the pivot row and column. Variables with a cost pointing to an infinite bound get an
+ * artificial bound, which is removed again in the optimum; the problem is unbounded if the objective
+ * depends on such a bound.
+ *
+ * <p>Bounds may be changed after solving, {@link #solve(long)} then continues from the current basis,
+ * which is dual feasible, as needed for branch and bound. Instances are not thread-safe, but do not
+ * share any state.
+ */
+final class DualSimplex {
+
+	static final int OPTIMAL = 0;
+	static final int INFEASIBLE = 2;
+	static final int UNBOUNDED = 3;
+	static final int NOT_SOLVED = 4;
+
+	static final int LE = -1;
+	static final int EQ = 0;
+	static final int GE = 1;
+
+	private static final double PIVOT_TOL = 1e-9;
+	private static final double PRIMAL_TOL = 1e-7;
+	private static final double DUAL_TOL = 1e-9;
+	private static final double ARTIFICIAL_BOUND = 1e7;
+
+	/** Number of rows and of all variables, the last m variables are the slacks. */
+	private final int m;
+	private final int n;
+
+	private final double[][] tableau;
+	private final int[] basis;
+	/** The row of a basic variable, -1 for nonbasic variables. */
+	private final int[] row;
+	private final boolean[] atUpper;
+	private final boolean[] artificial;
+
+	private final double[] lower;
+	private final double[] upper;
+	private final double[] cost;
+	private final double[] x;
+	private final double[] d;
+
+
+	/**
+	 * @param columns number of structural variables
+	 * @param index the columns of the nonzero coefficients of each row
+	 * @param value the nonzero coefficients of each row
+	 * @param type the relation of each row, {@link #LE}, {@link #EQ} or {@link #GE}
+	 */
+	DualSimplex(int columns, int[][] index, double[][] value, int[] type, double[] rhs,
+			double[] cost, double[] lower, double[] upper) {
+		m = rhs.length;
+		n = columns + m;
+
+		tableau = new double[m][n];
+		basis = new int[m];
+		row = new int[n];
+		atUpper = new boolean[n];
+		artificial = new boolean[n];
+		this.lower = new double[n];
+		this.upper = new double[n];
+		this.cost = new double[n];
+		x = new double[n];
+		d = new double[n];
+
+		System.arraycopy(lower, 0, this.lower, 0, columns);
+		System.arraycopy(upper, 0, this.upper, 0, columns);
+		System.arraycopy(cost, 0, this.cost, 0, columns);
+		System.arraycopy(cost, 0, d, 0, columns);
+
+		for (int j = 0; j < columns; j++) {
+			row[j] = -1;
+			if (d[j] > DUAL_TOL && isInfinite(this.lower[j])) {
+				this.lower[j] = -ARTIFICIAL_BOUND;
+				artificial[j] = true;
+			}
+			else if (d[j] < -DUAL_TOL && isInfinite(this.upper[j])) {
+				this.upper[j] = ARTIFICIAL_BOUND;
+				artificial[j] = true;
+			}
+
+			atUpper[j] = d[j] < -DUAL_TOL || (d[j] <= DUAL_TOL && isInfinite(this.lower[j]) && !isInfinite(this.upper[j]));
+			x[j] = atUpper[j] ? this.upper[j] : (isInfinite(this.lower[j]) ? 0 : this.lower[j]);
+		}
+
+		for (int i = 0; i < m; i++) {
+			int slack = columns + i;
+			double[] t = tableau[i];
+			double activity = 0;
+			for (int k = 0; k < index[i].length; k++) {
+				t[index[i][k]] += value[i][k];
+				activity += value[i][k] * x[index[i][k]];
+			}
+			t[slack] = 1;
+
+			basis[i] = slack;
+			row[slack] = i;
+			x[slack] = rhs[i] - activity;
+			this.lower[slack] = type[i] == GE ? Double.NEGATIVE_INFINITY : 0;
+			this.upper[slack] = type[i] == LE ? Double.POSITIVE_INFINITY : 0;
+		}
+	}
+
+	private DualSimplex(DualSimplex other) {
+		m = other.m;
+		n = other.n;
+		tableau = new double[m][];
+		for (int i = 0; i < m; i++)
+			tableau[i] = other.tableau[i].clone();
+		basis = other.basis.clone();
+		row = other.row.clone();
+		atUpper = other.atUpper.clone();
+		artificial = other.artificial.clone();
+		lower = other.lower.clone();
+		upper = other.upper.clone();
+		cost = other.cost;
+		x = other.x.clone();
+		d = other.d.clone();
+	}
+
+	DualSimplex copy() {
+		return new DualSimplex(this);
+	}
+
+	private static boolean isInfinite(double bound) {
+		return Double.isInfinite(bound);
+	}
+
+	double getValue(int column) {
+		return x[column];
+	}
+
+	double getObjective() {
+		double result = 0;
+		for (int j = 0; j < n; j++)
+			if (cost[j] != 0)
+				result += cost[j] * x[j];
+		return result;
+	}
+
+	/**
+	 * Tightens the bounds of a variable, a nonbasic variable is moved to its new bound.
+	 */
+	void setBounds(int column, double lo, double up) {
+		lower[column] = lo;
+		upper[column] = up;
+		if (row[column] >= 0)
+			return;
+
+		double value = atUpper[column] && !isInfinite(up) ? up : (isInfinite(lo) ? (isInfinite(up) ? 0 : up) : lo);
+		atUpper[column] = value == up;
+		double delta = value - x[column];
+		if (delta == 0)
+			return;
+
+		x[column] = value;
+		for (int i = 0; i < m; i++) {
+			double alpha = tableau[i][column];
+			if (alpha != 0)
+				x[basis[i]] -= alpha * delta;
+		}
+	}
+
+	double getLower(int column) {
+		return lower[column];
+	}
+
+	double getUpper(int column) {
+		return upper[column];
+	}
+
+	/**
+	 * Runs the dual simplex until the basis is primal feasible.
+	 * @param deadline the time in ms after which the solver gives up, 0 for none
+	 * @return {@link #OPTIMAL}, {@link #INFEASIBLE}, {@link #UNBOUNDED} or {@link #NOT_SOLVED}
+	 */
+	int solve(long deadline) {
+		// Bland's rule prevents cycling after many degenerate pivots
+		int blandAfter = 20 * (m + n) + 100;
+		int maxIterations = 200 * (m + n) + 1000;
+
+		int[] pivotRow = new int[n];
+
+		for (int iteration = 0; ; iteration++) {
+			if (iteration > maxIterations)
+				return NOT_SOLVED;
+			if (deadline != 0 && (iteration & 63) == 0 && System.currentTimeMillis() > deadline)
+				return NOT_SOLVED;
+
+			boolean bland = iteration > blandAfter;
+
+			int r = chooseLeavingRow(bland);
+			if (r < 0)
+				return releaseArtificialBounds() ? OPTIMAL : UNBOUNDED;
+
+			int leaving = basis[r];
+			boolean toUpper = x[leaving] > upper[leaving];
+			int q = chooseEnteringColumn(r, toUpper, bland);
+			if (q < 0)
+				return INFEASIBLE;
+
+			pivot(r, q, toUpper, pivotRow);
+		}
+	}
+
+	private int chooseLeavingRow(boolean bland) {
+		int result = -1;
+		double worst = 0;
+		for (int i = 0; i < m; i++) {
+			int v = basis[i];
+			double violation = Math.max(lower[v] - x[v], x[v] - upper[v]);
+			if (violation <= PRIMAL_TOL)
+				continue;
+			if (bland) {
+				if (result < 0 || v < basis[result])
+					result = i;
+			}
+			else if (violation > worst) {
+				worst = violation;
+				result = i;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The ratio test of the dual simplex: the entering variable keeps all reduced costs dual feasible.
+	 * Of the candidates within a small tolerance of the minimal ratio the one with the largest pivot is taken.
+	 */
+	private int chooseEnteringColumn(int r, boolean toUpper, boolean bland) {
+		double[] t = tableau[r];
+
+		double bound = Double.POSITIVE_INFINITY;
+		for (int j = 0; j < n; j++) {
+			if (!isEligible(j, t[j], toUpper))
+				continue;
+			double ratio = (Math.abs(d[j]) + DUAL_TOL) / Math.abs(t[j]);
+			if (ratio < bound)
+				bound = ratio;
+		}
+		if (isInfinite(bound))
+			return -1;
+
+		int result = -1;
+		double best = 0;
+		for (int j = 0; j < n; j++) {
+			if (!isEligible(j, t[j], toUpper) || Math.abs(d[j]) / Math.abs(t[j]) > bound)
+				continue;
+			if (bland) {
+				if (result < 0)
+					result = j;
+			}
+			else if (Math.abs(t[j]) > best) {
+				best = Math.abs(t[j]);
+				result = j;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if a nonbasic variable can move such that the leaving variable moves towards its violated bound.
+	 * The leaving variable changes by -alpha for each unit the variable increases.
+	 */
+	private boolean isEligible(int j, double alpha, boolean toUpper) {
+		if (row[j] >= 0 || Math.abs(alpha) < PIVOT_TOL || upper[j] - lower[j] < PIVOT_TOL)
+			return false;
+
+		boolean free = isInfinite(lower[j]) && isInfinite(upper[j]);
+		boolean canIncrease = free || !atUpper[j];
+		boolean canDecrease = free || atUpper[j];
+		if (toUpper)
+			// the leaving variable must decrease
+			return (alpha > 0 && canIncrease) || (alpha < 0 && canDecrease);
+		else
+			return (alpha < 0 && canIncrease) || (alpha > 0 && canDecrease);
+	}
+
+	private void pivot(int r, int q, boolean toUpper, int[] pivotRow) {
+		double[] t = tableau[r];
+		int leaving = basis[r];
+		double alpha = t[q];
+
+		// primal update, the leaving variable reaches its bound
+		double bound = toUpper ? upper[leaving] : lower[leaving];
+		double delta = (x[leaving] - bound) / alpha;
+		for (int i = 0; i < m; i++) {
+			double a = tableau[i][q];
+			if (a != 0)
+				x[basis[i]] -= a * delta;
+		}
+		x[q] += delta;
+		x[leaving] = bound;
+
+		int nonzeros = 0;
+		for (int j = 0; j < n; j++)
+			if (t[j] != 0)
+				pivotRow[nonzeros++] = j;
+
+		// dual update, the reduced cost of the entering variable becomes 0
+		double theta = d[q] / alpha;
+		for (int k = 0; k < nonzeros; k++) {
+			int j = pivotRow[k];
+			d[j] -= theta * t[j];
+		}
+		d[q] = 0;
+
+		// tableau update
+		for (int k = 0; k < nonzeros; k++)
+			t[pivotRow[k]] /= alpha;
+		t[q] = 1;
+		for (int i = 0; i < m; i++) {
+			if (i == r)
+				continue;
+			double[] ti = tableau[i];
+			double f = ti[q];
+			if (f == 0)
+				continue;
+			for (int k = 0; k < nonzeros; k++) {
+				int j = pivotRow[k];
+				ti[j] -= f * t[j];
+			}
+			ti[q] = 0;
+		}
+
+		basis[r] = q;
+		row[q] = r;
+		row[leaving] = -1;
+		atUpper[leaving] = toUpper;
+	}
+
+	/**
+	 * Removes the artificial bounds of an optimal basis. A nonbasic variable at such a bound is moved back
+	 * towards its real bound, or towards 0 if there is none, until a basic variable blocks and leaves the basis.
+	 * @return false if the objective depends on an artificial bound, i.e. the problem is unbounded
+	 */
+	private boolean releaseArtificialBounds() {
+		for (int j = 0; j < n; j++) {
+			if (!artificial[j])
+				continue;
+
+			boolean artificialUpper = upper[j] == ARTIFICIAL_BOUND;
+			double real = artificialUpper ? lower[j] : upper[j];
+			if (artificialUpper)
+				upper[j] = Double.POSITIVE_INFINITY;
+			else
+				lower[j] = Double.NEGATIVE_INFINITY;
+			artificial[j] = false;
+
+			if (row[j] >= 0 || x[j] != (artificialUpper ? ARTIFICIAL_BOUND : -ARTIFICIAL_BOUND))
+				continue;
+			if (Math.abs(d[j]) > DUAL_TOL)
+				return false;
+
+			double target = isInfinite(real) ? 0 : real;
+			double step = Math.abs(target - x[j]);
+			double direction = Math.signum(target - x[j]);
+
+			// primal ratio test, the basic variable of row i changes by -alpha*direction per unit
+			int blocking = -1;
+			boolean blockingToUpper = false;
+			for (int i = 0; i < m; i++) {
+				double change = -tableau[i][j] * direction;
+				if (Math.abs(change) < PIVOT_TOL)
+					continue;
+				int v = basis[i];
+				double limit = change > 0 ? (upper[v] - x[v]) / change : (lower[v] - x[v]) / change;
+				if (limit < step) {
+					step = Math.max(limit, 0);
+					blocking = i;
+					blockingToUpper = change > 0;
+				}
+			}
+
+			double delta = step * direction;
+			for (int i = 0; i < m; i++) {
+				double alpha = tableau[i][j];
+				if (alpha != 0)
+					x[basis[i]] -= alpha * delta;
+			}
+			x[j] += delta;
+
+			if (blocking >= 0) {
+				int v = basis[blocking];
+				x[v] = blockingToUpper ? upper[v] : lower[v];
+				pivot(blocking, j, blockingToUpper, new int[n]);
+			}
+			else {
+				x[j] = target;
+				atUpper[j] = !artificialUpper && !isInfinite(real);
+			}
+		}
+		return true;
+	}
+
+}
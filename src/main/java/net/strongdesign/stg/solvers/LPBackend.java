@@ -0,0 +1,43 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.solvers;
+
+import net.sf.javailp.SolverFactory;
+import net.sf.javailp.SolverFactoryLpSolve;
+import net.strongdesign.desij.CLW;
+
+/**
+ * Selects the (I)LP solver by {@link CLW#LP_BACKEND}, lp_solve if there are no command line parameters.
+ */
+public class LPBackend {
+
+	private LPBackend() {
+	}
+
+	/**
+	 * Returns a new factory for the selected solver.
+	 */
+	public static SolverFactory newSolverFactory() {
+		if (CLW.instance != null && CLW.instance.LP_BACKEND.getValue().equals("java"))
+			return new SolverFactoryJava();
+		return new SolverFactoryLpSolve();
+	}
+
+}
@@ -19,27 +19,58 @@ package net.strongdesign.stg.solvers;
  * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import lpsolve.LpSolve;
 import lpsolve.LpSolveException;
-import net.sf.javailp.Linear;
-import net.sf.javailp.Operator;
-import net.sf.javailp.Problem;
-import net.sf.javailp.Result;
-import net.sf.javailp.Solver;
-import net.sf.javailp.SolverFactory;
-import net.sf.javailp.SolverFactoryLpSolve;
 import net.strongdesign.desij.CLW;
+import net.strongdesign.desij.DesiJException;
 import net.strongdesign.stg.Node;
 import net.strongdesign.stg.Place;
 import net.strongdesign.stg.STG;
 import net.strongdesign.stg.Transition;
+import net.strongdesign.stg.traversal.ConditionFactory;
 
+/**
+ * Checks places for structural redundancy with an LP solver.
+ * 
+ * <p>One LP model of the whole STG is kept between the checks: every place has a column, every transition
+ * a row for the change of the marking and a row for its enabling. The model is written for the case that
+ * no place is tested, the tested place only flips the sign of its column and gets the lower bound 1.
+ * The subgraph of a given depth is selected by fixing the other places to 0 and by moving the right hand
+ * sides of the rows of the other transitions to infinity. Hence, only the differences to the previous check are changed and the solver 
+ * starts from the previous basis.
+ * 
+ * <p>The model assumes that the STG is changed only by removing places in between, as it is the case
+ * while the redundant places of an STG are removed; otherwise it is built again. Call {@link #dispose()}
+ * to free the model.
+ * 
+ * <p>An instance must not be used by several threads at the same time, see {@link RedundantPlaceSolverPool}.
+ */
 public class RedundantPlaceSolverLP {
 	
+	private STG stg;
+	private LpSolve lp;
+	
+	private final Map<Place, Integer> columns = new HashMap<Place, Integer>();
+	private final Map<Transition, Integer> rows = new HashMap<Transition, Integer>();
+	private Place[] placeOfColumn;
+	private int cColumn;
+	
+	/** The places and transitions of the currently selected subgraph. */
+	private Set<Place> activePlaces;
+	private Set<Transition> activeTransitions;
+	
+	/** The places which were removed from the STG after the model was built. */
+	private final Set<Place> removedPlaces = new HashSet<Place>();
+	
+	
 	/**
 	 * Procedure checks for structural redundancy. It returns "true" if a place is structurally
 	 * redundant
@@ -50,6 +81,15 @@ public class RedundantPlaceSolverLP {
 	 * @return
 	 */
 	public boolean isRedundant2(STG stg, Place mainPlace, int depth) {
+		return isRedundant2(stg, mainPlace, depth, null);
+	}
+	
+	/**
+	 * Same as {@link #isRedundant2(STG, Place, int)}.
+	 * @param reason if the place is redundant, it is filled with the places having a positive valuation
+	 *  in the solution, i.e. the place stays redundant as long as these places are not removed
+	 */
+	public boolean isRedundant2(STG stg, Place mainPlace, int depth, Collection<Place> reason) {
 		
 		long startSetup = System.currentTimeMillis();
 		long startSolver;
@@ -58,7 +98,7 @@ public class RedundantPlaceSolverLP {
 		
 		// if the post set is empty, it is a redundant place
 		if (mainPlace.getChildren().size()==0) {
-			RedundantPlaceStatistics.totalFound++;
+			RedundantPlaceStatistics.totalFound.incrementAndGet();
 			return true;
 		}
 		
@@ -85,116 +125,245 @@ public class RedundantPlaceSolverLP {
 				return false;
 		}
 		
-		
-		// creating the lp solver for action
-		SolverFactory factory = new SolverFactoryLpSolve();
-		factory.setParameter(Solver.VERBOSE, 0); // no messages
-		factory.setParameter(Solver.TIMEOUT, 0); // no timeout
-		
-		Problem problem  = new Problem();
-		
-		for (Place p: places) {
-			problem.setVarType(p, Double.class);
-			if (!CLW.instance.NOILP.isEnabled())
-				problem.setVarType(p, Integer.class);
+		int ret;
+		try {
+			if (isModelOf(stg))
+				RedundantPlaceStatistics.totalModelReuses.incrementAndGet();
 			else
-				problem.setVarType(p, Double.class);
+				buildModel(stg);
+			
+			selectSubgraph(places, transitions);
+			
+			//The valuation of the redundant place must be strictly greater than 0
+			//the exact value is not important
+			int column = columns.get(mainPlace);
+			setColumn(mainPlace, 1);
+			lp.setLowbo(column, 1);
+			
+			// solve the problem, if it is feasible lp_solve returns immediately with 0 after the first vertex was encountered
+			// because the object function is constant, then the place is redundant
+			// if the problem is infeasible the place is not redundant
+			startSolver = System.currentTimeMillis();
+			
+			ret = lp.solve();
+			
+			if (reason != null && isSolved(ret))
+				collectReason(mainPlace, reason);
+			
+			RedundantPlaceStatistics.totalSetupMills.addAndGet(startSolver-startSetup);
+			RedundantPlaceStatistics.totalSolverMills.addAndGet(System.currentTimeMillis()-startSolver);
+			
+			setColumn(mainPlace, -1);
+			lp.setLowbo(column, 0);
+		}
+		catch (LpSolveException e) {
+			dispose();
+			throw new DesiJException("Error during LP solving: " + e.getMessage());
 		}
 		
-		if (!CLW.instance.NOILP.isEnabled())
-			problem.setVarType("c", Integer.class);
-		else
-			problem.setVarType("c", Double.class);
+		RedundantPlaceStatistics.totalChecked.incrementAndGet();
 		
-		Linear linear = new Linear();
+		if (isSolved(ret)) {
+			RedundantPlaceStatistics.totalFound.incrementAndGet();
+			return true;
+		} else
+			return false;
 		
-		for (Place p: places) {
-			linear.add(0, p);
-		}
-		linear.add(0, "c");
 		
-		//Set the target function, which is constant because only feasibility must be checked
-		problem.setObjective(linear);
-		//The valuation of the redundant place must be strictly greater than 0
-		//the exact value is not important
-		problem.setVarLowerBound(mainPlace, 1);
+	}
+	
+	private static boolean isSolved(int ret) {
+		return ret == LpSolve.OPTIMAL || ret == LpSolve.SUBOPTIMAL || ret == LpSolve.PRESOLVED;
+	}
+	
+	private void collectReason(Place mainPlace, Collection<Place> reason) throws LpSolveException {
+		double[] values = new double[cColumn];
+		lp.getVariables(values);
+		for (int col = 1; col < cColumn; col++)
+			if (values[col-1] > 1e-9 && placeOfColumn[col] != mainPlace)
+				reason.add(placeOfColumn[col]);
+	}
+	
+	public boolean isRedundant(STG stg, Place place) {
+		
+		return isRedundant2(stg, place, 0);
+	}
+	
+	/**
+	 * Frees the LP model.
+	 */
+	public void dispose() {
+		if (lp != null)
+			lp.deleteLp();
+		lp = null;
+		stg = null;
+	}
+	
+	
+	/**
+	 * Checks if the model can be used for the STG, places removed meanwhile are fixed to 0.
+	 */
+	private boolean isModelOf(STG stg) throws LpSolveException {
+		if (lp == null || this.stg != stg)
+			return false;
 		
+		if (stg.getNumberOfTransitions() != rows.size() || stg.getNumberOfPlaces() + removedPlaces.size() > columns.size())
+			return false;
+		for (Place place : stg.getPlaces())
+			if (!columns.containsKey(place))
+				return false;
 		
-		//set first constraint, for redundancy condition 1: V(p)M_N(p) - \sum_{q\in Q} V(q)M_N(q) - c = 0
-		linear = new Linear();
-		for (Place p: places) {
-			if (p==mainPlace) {
-				linear.add(p.getMarking(), p);
-			} else {
-				linear.add(-p.getMarking(), p);
+		if (stg.getNumberOfPlaces() + removedPlaces.size() < columns.size()) {
+			for (Map.Entry<Place, Integer> column : columns.entrySet()) {
+				Place place = column.getKey();
+				if (stg.getPlace(place.getIdentifier()) != place && removedPlaces.add(place))
+					lp.setUpbo(column.getValue(), 0);
 			}
 		}
-		linear.add((double)-1, "c");
-		problem.add(linear, Operator.EQ, 0);
+		return true;
+	}
+	
+	/**
+	 * Builds the model for all places and transitions of the STG, without a tested place.
+	 */
+	private void buildModel(STG stg) throws LpSolveException {
+		dispose();
+		columns.clear();
+		rows.clear();
+		removedPlaces.clear();
 		
-		//set second set of constraints for condition 2: 
-		// \forall t\in T : V(p)\Delta_t(p) - \sum_{q\in Q} V(q)\Delta_t(q) \geq 0
+		List<Transition> allTransitions = stg.getTransitions(ConditionFactory.ALL_TRANSITIONS);
+		List<Place> allPlaces = new ArrayList<Place>(stg.getPlaces());
 		
-		//for every constraint 0 -- variable c not important here
-		for (Transition t: transitions) {
-			linear = new Linear();
-			
-			for (Node p: t.getNeighbours()) {
-				if (!places.contains(p)) continue;
-				if (p==mainPlace) {
-					linear.add(t.getChildValue(p)-p.getChildValue(t), p);
-				} else {
-					linear.add(-(t.getChildValue(p)-p.getChildValue(t)), p);
-				}
-			}
-			problem.add(linear, Operator.GE, 0);
+		placeOfColumn = new Place[allPlaces.size()+1];
+		int col = 1;
+		for (Place place : allPlaces) {
+			placeOfColumn[col] = place;
+			columns.put(place, col++);
 		}
-
+		cColumn = col;
+		
+		lp = LpSolve.makeLp(0, cColumn);
+		if (lp.getLp() == 0)
+			throw new DesiJException("Couldn't construct a new lp model.");
+		this.stg = stg;
+		
+		lp.setVerbose(LpSolve.NEUTRAL); // no messages
+		lp.setAddRowmode(true);
+		
+		//set first constraint, for redundancy condition 1: V(p)M_N(p) - \sum_{q\in Q} V(q)M_N(q) - c = 0
+		List<Double> values = new ArrayList<Double>();
+		List<Integer> cols = new ArrayList<Integer>();
+		for (Place place : allPlaces) {
+			if (place.getMarking() == 0) continue;
+			values.add((double) -place.getMarking());
+			cols.add(columns.get(place));
+		}
+		values.add(-1.0);
+		cols.add(cColumn);
+		addConstraint(values, cols, LpSolve.EQ);
 		
-		//third set of constraints for condition 3: 
-		// \forall t\in T : V(p)W(p,t) - \sum_{q\in Q} V(q)W(q,t) -c \leq 0
-		for (Transition t: transitions) {
-			linear = new Linear();
+		int row = 2;
+		for (Transition t : allTransitions) {
+			rows.put(t, row);
+			row += 2;
 			
-			for (Node p: t.getNeighbours()) {
-				if (!places.contains(p)) continue;
-				
-				if (p==mainPlace) {
-					linear.add(p.getChildValue(t), p);
-				} else {
-					linear.add(-p.getChildValue(t), p);
-				}
+			//set second set of constraints for condition 2: 
+			// \forall t\in T : V(p)\Delta_t(p) - \sum_{q\in Q} V(q)\Delta_t(q) \geq 0
+			values.clear();
+			cols.clear();
+			for (Node p : t.getNeighbours()) {
+				int delta = t.getChildValue(p)-p.getChildValue(t);
+				if (delta == 0) continue;
+				values.add((double) -delta);
+				cols.add(columns.get(p));
 			}
+			addConstraint(values, cols, LpSolve.GE);
 			
-			linear.add((double)-1, "c");
-			
-			problem.add(linear, Operator.LE, 0);					
+			//third set of constraints for condition 3: 
+			// \forall t\in T : V(p)W(p,t) - \sum_{q\in Q} V(q)W(q,t) -c \leq 0
+			values.clear();
+			cols.clear();
+			for (Node p : t.getParents()) {
+				values.add((double) -p.getChildValue(t));
+				cols.add(columns.get(p));
+			}
+			values.add(-1.0);
+			cols.add(cColumn);
+			addConstraint(values, cols, LpSolve.LE);
 		}
 		
-		// solve the problem, if it is feasible lp_solv returns immediately with 0 after the first vertex was encountered
-		// because the object function is constant, then the place is redundant
-		// if the problem is infeasible the place is not redundant
-		startSolver = System.currentTimeMillis();
+		lp.setAddRowmode(false);
 		
-		Result res = factory.get().solve(problem);
-		
-		RedundantPlaceStatistics.totalSetupMills+=startSolver-startSetup;
-		RedundantPlaceStatistics.totalSolverMills+=System.currentTimeMillis()-startSolver;
-		
-		RedundantPlaceStatistics.totalChecked++;
+		if (!CLW.instance.NOILP.isEnabled())
+			for (col = 1; col <= cColumn; col++)
+				lp.setInt(col, true);
 		
-		if (res != null) {
-			RedundantPlaceStatistics.totalFound++;
-			return true;
-		} else
-			return false;
+		activePlaces = new HashSet<Place>(allPlaces);
+		activeTransitions = new HashSet<Transition>(allTransitions);
+	}
+	
+	private void addConstraint(List<Double> values, List<Integer> cols, int type) throws LpSolveException {
+		double[] row = new double[values.size()];
+		int[] colno = new int[cols.size()];
+		for (int i = 0; i < row.length; i++) {
+			row[i] = values.get(i);
+			colno[i] = cols.get(i);
+		}
+		lp.addConstraintex(row.length, row, colno, type, 0);
+	}
+	
+	/**
+	 * Sets the coefficients of the column of a place, with sign 1 for the tested place and -1 otherwise.
+	 */
+	private void setColumn(Place place, int sign) throws LpSolveException {
+		int column = columns.get(place);
 		
+		if (place.getMarking() != 0)
+			lp.setMat(1, column, sign*place.getMarking());
 		
+		for (Node t : place.getNeighbours()) {
+			int row = rows.get(t);
+			int delta = t.getChildValue(place)-place.getChildValue(t);
+			if (delta != 0)
+				lp.setMat(row, column, sign*delta);
+			int weight = place.getChildValue(t);
+			if (weight != 0)
+				lp.setMat(row+1, column, sign*weight);
+		}
 	}
 	
-	public boolean isRedundant(STG stg, Place place) {
+	/**
+	 * Restricts the model to the given places and transitions, changing only the differences to the previous subgraph.
+	 */
+	private void selectSubgraph(Set<Place> places, Set<Transition> transitions) throws LpSolveException {
+		for (Place place : activePlaces)
+			if (!places.contains(place) && !removedPlaces.contains(place))
+				lp.setUpbo(columns.get(place), 0);
+		for (Place place : places)
+			if (!activePlaces.contains(place))
+				lp.setUpbo(columns.get(place), lp.getInfinite());
 		
-		return isRedundant2(stg, place, 0);
+		boolean rowsChanged = false;
+		double infinity = lp.getInfinite();
+		for (Transition t : activeTransitions)
+			if (!transitions.contains(t)) {
+				lp.setRh(rows.get(t), -infinity);
+				lp.setRh(rows.get(t)+1, infinity);
+				rowsChanged = true;
+			}
+		for (Transition t : transitions)
+			if (!activeTransitions.contains(t)) {
+				lp.setRh(rows.get(t), 0);
+				lp.setRh(rows.get(t)+1, 0);
+				rowsChanged = true;
+			}
+		
+		// the previous basis is not reliable for the solver when rows were switched
+		if (rowsChanged)
+			lp.defaultBasis();
+		
+		activePlaces = places;
+		activeTransitions = transitions;
 	}
 }
-
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.solvers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.strongdesign.desij.DesiJException;
+import net.strongdesign.stg.Node;
+import net.strongdesign.stg.Place;
+import net.strongdesign.stg.STG;
+import net.strongdesign.stg.Transition;
+
+/**
+ * Checks several places of an STG for structural redundancy concurrently. Every thread of the pool
+ * has its own {@link RedundantPlaceSolverLP}, i.e. its own LP model, since the solver instances
+ * must not be shared.
+ *
+ * <p>The STG must not be changed while {@link #decide(STG, Collection, int)} is running. The returned
+ * decisions refer to this STG, when places are removed afterwards, {@link Decision#isValid(STG, Set)}
+ * tells if a decision still holds.
+ */
+public class RedundantPlaceSolverPool {
+
+	/**
+	 * The result of checking a single place.
+	 */
+	public static final class Decision {
+		private final Place place;
+		private final int depth;
+		private final boolean redundant;
+		/** The places the result depends on: for depth 0 the places needed for the redundancy, otherwise the subgraph. */
+		private final Set<Place> places;
+		private final Set<Transition> transitions;
+
+		private Decision(Place place, int depth, boolean redundant, Set<Place> places, Set<Transition> transitions) {
+			this.place = place;
+			this.depth = depth;
+			this.redundant = redundant;
+			this.places = places;
+			this.transitions = transitions;
+		}
+
+		public boolean isRedundant() {
+			return redundant;
+		}
+
+		/**
+		 * Checks if the decision still holds after the given places were removed from the STG.
+		 *
+		 * <p>For depth 0 the model consists of the whole STG, removing a place only fixes its valuation to 0.
+		 * Hence, a place which is not redundant stays so, and a redundant place stays so if no place of the
+		 * solution and no place of the presets of its children was removed. For a larger depth the decision holds
+		 * if the subgraph is the same.
+		 */
+		public boolean isValid(STG stg, Set<Place> removed) {
+			if (removed.isEmpty())
+				return true;
+
+			if (depth == 0) {
+				if (!redundant)
+					return true;
+				for (Place p : places)
+					if (removed.contains(p))
+						return false;
+				return true;
+			}
+
+			Set<Place> currentPlaces = new HashSet<Place>();
+			Set<Transition> currentTransitions = new HashSet<Transition>();
+			STG.getSubgraphNodes(stg, place, depth, currentPlaces, currentTransitions);
+			return currentPlaces.equals(places) && currentTransitions.equals(transitions);
+		}
+	}
+
+
+	private final ExecutorService executor;
+	private final List<RedundantPlaceSolverLP> solvers = new ArrayList<RedundantPlaceSolverLP>();
+
+	private final ThreadLocal<RedundantPlaceSolverLP> solver = new ThreadLocal<RedundantPlaceSolverLP>() {
+		@Override
+		protected RedundantPlaceSolverLP initialValue() {
+			RedundantPlaceSolverLP result = new RedundantPlaceSolverLP();
+			synchronized (solvers) {
+				solvers.add(result);
+			}
+			return result;
+		}
+	};
+
+
+	public RedundantPlaceSolverPool(int threads) {
+		// daemon threads, hence an exception of the caller does not keep the VM alive
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "lp-solver");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Checks the given places with the threads of the pool.
+	 * @return The decisions in the iteration order of the places.
+	 */
+	public Map<Place, Decision> decide(final STG stg, Collection<Place> places, final int depth) {
+		Map<Place, Future<Decision>> futures = new LinkedHashMap<Place, Future<Decision>>();
+		for (final Place place : places)
+			futures.put(place, executor.submit(new Callable<Decision>() {
+				public Decision call() {
+					return check(solver.get(), stg, place, depth);
+				}
+			}));
+
+		try {
+			Map<Place, Decision> result = new LinkedHashMap<Place, Decision>();
+			for (Map.Entry<Place, Future<Decision>> future : futures.entrySet())
+				result.put(future.getKey(), future.getValue().get());
+			return result;
+		}
+		catch (InterruptedException e) {
+			throw new DesiJException("Interrupted while checking redundant places");
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new DesiJException("Error while checking redundant places: " + e.getCause());
+		}
+		finally {
+			for (Future<Decision> future : futures.values())
+				future.cancel(false);
+		}
+	}
+
+	private static Decision check(RedundantPlaceSolverLP solver, STG stg, Place place, int depth) {
+		if (depth == 0) {
+			Set<Place> reason = new HashSet<Place>();
+			boolean redundant = solver.isRedundant2(stg, place, 0, reason);
+			if (redundant)
+				for (Node child : place.getChildren())
+					for (Node sibling : child.getParents())
+						if (sibling != place)
+							reason.add((Place) sibling);
+			return new Decision(place, 0, redundant, reason, null);
+		}
+
+		Set<Place> places = new HashSet<Place>();
+		Set<Transition> transitions = new HashSet<Transition>();
+		STG.getSubgraphNodes(stg, place, depth, places, transitions);
+		return new Decision(place, depth, solver.isRedundant2(stg, place, depth), places, transitions);
+	}
+
+	/**
+	 * Stops the threads and frees the LP models.
+	 */
+	public void dispose() {
+		executor.shutdownNow();
+		try {
+			// a model must not be freed while a thread is still solving it
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS));
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (solvers) {
+			for (RedundantPlaceSolverLP s : solvers)
+				s.dispose();
+			solvers.clear();
+		}
+	}
+
+}
@@ -19,30 +19,38 @@ package net.strongdesign.stg.solvers;
  * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import net.strongdesign.desij.CLW;
 
 public class RedundantPlaceStatistics {
-	static public long totalStructuralChecks; // how much we can find with simple structural checks in total
-	static public long totalShortcutPlaces; // how many shortcut places were found
-	static public long totalSharedPathSplits; // how many times shared path was split
-	static public long totalMergePlaceSplits; // how many merge places were split
+	static public final AtomicLong totalStructuralChecks = new AtomicLong(); // how much we can find with simple structural checks in total
+	static public final AtomicLong totalShortcutPlaces = new AtomicLong(); // how many shortcut places were found
+	static public final AtomicLong totalSharedPathSplits = new AtomicLong(); // how many times shared path was split
+	static public final AtomicLong totalMergePlaceSplits = new AtomicLong(); // how many merge places were split
 	
-	static public long totalSetupMills;  // number of milliseconds used for setting up the task
-	static public long totalSolverMills; // number of milliseconds solver was thinking (accumulates)
-	static public long totalFound;       // total number of the redundants found
-	static public long totalChecked;       // total number of the redundants found
+	static public final AtomicLong totalSetupMills = new AtomicLong();  // number of milliseconds used for setting up the task
+	static public final AtomicLong totalSolverMills = new AtomicLong(); // number of milliseconds solver was thinking (accumulates)
+	static public final AtomicLong totalFound = new AtomicLong();       // total number of the redundants found
+	static public final AtomicLong totalChecked = new AtomicLong();       // total number of the redundants found
+	static public final AtomicLong totalModelReuses = new AtomicLong();   // how many checks reused the LP model of the previous check
+	static public final AtomicLong totalRechecked = new AtomicLong();     // how many decisions of parallel checks were invalidated by removals
+	static public final AtomicLong totalInvariantFound = new AtomicLong(); // how many places were found implicit by the P-semiflows without the solver
 	
 	
 	public static void reset() {
 		System.out.println("RedundantPlaceStatistics.reset");
-		totalFound = 0;
-		totalSetupMills = 0;
-		totalSolverMills = 0;
+		totalFound.set(0);
+		totalSetupMills.set(0);
+		totalSolverMills.set(0);
+		totalModelReuses.set(0);
+		totalRechecked.set(0);
+		totalInvariantFound.set(0);
 		
-		totalStructuralChecks=0;
-		totalShortcutPlaces=0; 
-		totalSharedPathSplits=0;
-		totalMergePlaceSplits=0;
+		totalStructuralChecks.set(0);
+		totalShortcutPlaces.set(0); 
+		totalSharedPathSplits.set(0);
+		totalMergePlaceSplits.set(0);
 		
 	}
 	
@@ -56,16 +64,19 @@ public class RedundantPlaceStatistics {
 		if (prep==null||prep.equals("")) prep=" ";
 		else prep+=": ";
 		
-		System.out.println(prep+"Shared path splits: "+RedundantPlaceStatistics.totalSharedPathSplits);
-		System.out.println(prep+"Merge-place splits: "+RedundantPlaceStatistics.totalMergePlaceSplits);
+		System.out.println(prep+"Shared path splits: "+RedundantPlaceStatistics.totalSharedPathSplits.get());
+		System.out.println(prep+"Merge-place splits: "+RedundantPlaceStatistics.totalMergePlaceSplits.get());
 		
-		System.out.println(prep+"Structural checks found: "+RedundantPlaceStatistics.totalStructuralChecks+
-				" shortcut places:"+RedundantPlaceStatistics.totalShortcutPlaces);
+		System.out.println(prep+"Structural checks found: "+RedundantPlaceStatistics.totalStructuralChecks.get()+
+				" shortcut places:"+RedundantPlaceStatistics.totalShortcutPlaces.get());
 		
-		System.out.println(prep+"Solver found: "+ RedundantPlaceStatistics.totalFound +"/"+ RedundantPlaceStatistics.totalChecked+
+		System.out.println(prep+"Solver found: "+ RedundantPlaceStatistics.totalFound.get() +"/"+ RedundantPlaceStatistics.totalChecked.get()+
 				" on depth: "+CLW.instance.IPLACE_LP_SOLVER_DEPTH.getIntValue()+
-				" running time: "+(double)RedundantPlaceStatistics.totalSolverMills/1000+" s"+
-				" setup time: "+(double)RedundantPlaceStatistics.totalSetupMills/1000+" s"
+				" running time: "+(double)RedundantPlaceStatistics.totalSolverMills.get()/1000+" s"+
+				" setup time: "+(double)RedundantPlaceStatistics.totalSetupMills.get()/1000+" s"+
+				" reused models: "+RedundantPlaceStatistics.totalModelReuses.get()
+				+" rechecked: "+RedundantPlaceStatistics.totalRechecked.get()
+				+" found by invariants: "+RedundantPlaceStatistics.totalInvariantFound.get()
 				);
 		
 	}
@@ -30,7 +30,6 @@ import net.sf.javailp.Problem;
 import net.sf.javailp.Result;
 import net.sf.javailp.Solver;
 import net.sf.javailp.SolverFactory;
-import net.sf.javailp.SolverFactoryLpSolve;
 import net.strongdesign.stg.Node;
 import net.strongdesign.stg.Place;
 import net.strongdesign.stg.STG;
@@ -182,7 +181,7 @@ public class SharedPlaceSolver {
 	static private Result lpSolve(int test, String []names, double[][] v) {
 		
 		// launch solver
-		SolverFactory factory = new SolverFactoryLpSolve();
+		SolverFactory factory = LPBackend.newSolverFactory();
 		
 		factory.setParameter(Solver.VERBOSE, 0); // no messages
 		factory.setParameter(Solver.TIMEOUT, 0); // no timeout
@@ -218,7 +217,7 @@ public class SharedPlaceSolver {
 		STG stg = place.getSTG();
 		
 		// launch solver
-		SolverFactory factory = new SolverFactoryLpSolve();
+		SolverFactory factory = LPBackend.newSolverFactory();
 		
 		factory.setParameter(Solver.VERBOSE, 0); // no messages
 		factory.setParameter(Solver.TIMEOUT, 0); // no timeout
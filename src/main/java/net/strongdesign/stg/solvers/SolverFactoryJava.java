@@ -0,0 +1,35 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.solvers;
+
+import net.sf.javailp.AbstractSolverFactory;
+import net.sf.javailp.Solver;
+
+/**
+ * Creates {@link SolverJava} instances.
+ */
+public class SolverFactoryJava extends AbstractSolverFactory {
+
+	@Override
+	protected Solver getInternal() {
+		return new SolverJava();
+	}
+
+}
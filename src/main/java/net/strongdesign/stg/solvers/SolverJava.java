@@ -0,0 +1,304 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.solvers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import net.sf.javailp.AbstractSolver;
+import net.sf.javailp.Constraint;
+import net.sf.javailp.Linear;
+import net.sf.javailp.OptType;
+import net.sf.javailp.Problem;
+import net.sf.javailp.Result;
+import net.sf.javailp.ResultImpl;
+import net.sf.javailp.Solver;
+import net.sf.javailp.Term;
+import net.sf.javailp.VarType;
+
+/**
+ * A javailp solver running in-process, without a native library: the LP relaxation is solved by a
+ * {@link DualSimplex}, integer and boolean variables by a depth-first branch and bound on top of it,
+ * where every node starts from the basis of its parent.
+ *
+ * <p>Like {@link net.sf.javailp.SolverLpSolve}, variables have the lower bound 0 unless specified otherwise
+ * and {@link #solve(Problem)} returns null if the problem is infeasible or unbounded. If a limit stops the
+ * search before this is known, a {@link LimitExceededException} is thrown instead, since the callers read
+ * null as a proof of infeasibility.
+ * The solver keeps no state between calls, hence it may be used by several threads.
+ */
+public class SolverJava extends AbstractSolver {
+
+	private static final double INTEGRALITY_TOL = 1e-6;
+
+	/** Like the default of lp_solve, the branching depth is limited by 50 times the number of integer variables. */
+	private static final int DEPTH_LIMIT = 50;
+
+	/** The number of nodes after which branch and bound gives up. */
+	private static final int NODE_LIMIT = 100000;
+
+
+	@Override
+	public Result solve(Problem problem) {
+		Map<Object, Integer> columns = new HashMap<Object, Integer>();
+		List<Object> variables = new ArrayList<Object>(problem.getVariables());
+		for (Object variable : variables)
+			columns.put(variable, columns.size());
+		int n = variables.size();
+
+		double[] lower = new double[n];
+		double[] upper = new double[n];
+		boolean[] integer = new boolean[n];
+		int integers = 0;
+		for (int j = 0; j < n; j++) {
+			Object variable = variables.get(j);
+			VarType type = problem.getVarType(variable);
+			Number lo = problem.getVarLowerBound(variable);
+			Number up = problem.getVarUpperBound(variable);
+
+			if (type == VarType.BOOL) {
+				lower[j] = lo != null && lo.doubleValue() > 0 ? 1 : 0;
+				upper[j] = up != null && up.doubleValue() < 1 ? 0 : 1;
+			}
+			else {
+				lower[j] = lo != null ? lo.doubleValue() : 0;
+				upper[j] = up != null ? up.doubleValue() : Double.POSITIVE_INFINITY;
+			}
+			integer[j] = type != null && type.isInt();
+			if (integer[j]) {
+				integers++;
+				lower[j] = Math.ceil(lower[j] - INTEGRALITY_TOL);
+				upper[j] = Math.floor(upper[j] + INTEGRALITY_TOL);
+			}
+		}
+
+		List<Constraint> constraints = problem.getConstraints();
+		int m = constraints.size();
+		int[][] index = new int[m][];
+		double[][] value = new double[m][];
+		int[] type = new int[m];
+		double[] rhs = new double[m];
+		for (int i = 0; i < m; i++) {
+			Constraint constraint = constraints.get(i);
+			index[i] = new int[constraint.size()];
+			value[i] = new double[constraint.size()];
+			convert(constraint.getLhs(), columns, index[i], value[i]);
+			switch (constraint.getOperator()) {
+			case LE: type[i] = DualSimplex.LE; break;
+			case GE: type[i] = DualSimplex.GE; break;
+			default: type[i] = DualSimplex.EQ;
+			}
+			rhs[i] = constraint.getRhs().doubleValue();
+			if (!tighten(index[i], value[i], type[i], rhs, i, integer))
+				return null;
+		}
+
+		double[] cost = new double[n];
+		Linear objective = problem.getObjective();
+		if (objective != null) {
+			int[] objIndex = new int[objective.size()];
+			double[] objValue = new double[objective.size()];
+			convert(objective, columns, objIndex, objValue);
+			double sign = problem.getOptType() == OptType.MAX ? -1 : 1;
+			for (int k = 0; k < objIndex.length; k++)
+				cost[objIndex[k]] += sign * objValue[k];
+		}
+
+		long deadline = getDeadline();
+
+		DualSimplex root = new DualSimplex(n, index, value, type, rhs, cost, lower, upper);
+		int status = root.solve(deadline);
+		if (status == DualSimplex.NOT_SOLVED)
+			throw new LimitExceededException("The LP relaxation could not be solved within the limits.");
+		if (status != DualSimplex.OPTIMAL)
+			return null;
+
+		DualSimplex solution = integers == 0 ? root : branchAndBound(root, integer, integers * DEPTH_LIMIT, deadline);
+		if (solution == null)
+			return null;
+
+		ResultImpl result = objective != null ? new ResultImpl(objective) : new ResultImpl();
+		for (int j = 0; j < n; j++) {
+			double v = solution.getValue(j);
+			if (integer[j])
+				result.put(variables.get(j), (int) Math.round(v));
+			else
+				result.put(variables.get(j), v);
+		}
+		return result;
+	}
+
+	/**
+	 * Divides a row with only integer variables and integral coefficients by the gcd of the coefficients and
+	 * rounds the right hand side accordingly, which cuts off fractional solutions without any branching.
+	 * @return false if the row has no integral solution
+	 */
+	private static boolean tighten(int[] index, double[] value, int type, double[] rhs, int i, boolean[] integer) {
+		long gcd = 0;
+		for (int k = 0; k < index.length; k++) {
+			double a = value[k];
+			if (!integer[index[k]] || a != Math.rint(a) || Math.abs(a) > Integer.MAX_VALUE)
+				return true;
+			gcd = gcd(gcd, Math.abs((long) a));
+		}
+		if (gcd == 0)
+			return true;
+
+		double b = rhs[i] / gcd;
+		if (type == DualSimplex.EQ) {
+			if (Math.abs(b - Math.rint(b)) > INTEGRALITY_TOL)
+				return false;
+			b = Math.rint(b);
+		}
+		else if (type == DualSimplex.LE)
+			b = Math.floor(b + INTEGRALITY_TOL);
+		else
+			b = Math.ceil(b - INTEGRALITY_TOL);
+
+		for (int k = 0; k < index.length; k++)
+			value[k] /= gcd;
+		rhs[i] = b;
+		return true;
+	}
+
+	private static long gcd(long a, long b) {
+		while (b != 0) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+
+	private static void convert(Linear linear, Map<Object, Integer> columns, int[] index, double[] value) {
+		int k = 0;
+		for (Term term : linear) {
+			index[k] = columns.get(term.getVariable());
+			value[k] = term.getCoefficient().doubleValue();
+			k++;
+		}
+	}
+
+	private long getDeadline() {
+		Object timeout = parameters.get(Solver.TIMEOUT);
+		if (timeout instanceof Number && ((Number) timeout).longValue() > 0)
+			return System.currentTimeMillis() + 1000 * ((Number) timeout).longValue();
+		return 0;
+	}
+
+	/** A node of the search tree, its relaxation is solved when the node is expanded. */
+	private static final class Node {
+		final DualSimplex simplex;
+		final int depth;
+
+		Node(DualSimplex simplex, int depth) {
+			this.simplex = simplex;
+			this.depth = depth;
+		}
+	}
+
+	/**
+	 * Depth-first branch and bound on the most fractional variable, the child on the side of the rounded
+	 * value is explored first. A node is pruned if its relaxation is not better than the best integral solution.
+	 * @return the best integral solution found within the limits, null if there is none
+	 * @throws LimitExceededException if no integral solution was found, but the limits cut off a part of the search
+	 */
+	private static DualSimplex branchAndBound(DualSimplex root, boolean[] integer, int maxDepth, long deadline) {
+		DualSimplex best = null;
+		double bestObjective = Double.POSITIVE_INFINITY;
+
+		boolean complete = true;
+
+		LinkedList<Node> stack = new LinkedList<Node>();
+		stack.push(new Node(root, 0));
+
+		for (int nodes = 0; !stack.isEmpty(); nodes++) {
+			if (nodes == NODE_LIMIT) {
+				complete = false;
+				break;
+			}
+			Node node = stack.pop();
+			DualSimplex simplex = node.simplex;
+			if (node.depth > 0) {
+				int status = simplex.solve(deadline);
+				if (status == DualSimplex.NOT_SOLVED)
+					complete = false;
+				if (status != DualSimplex.OPTIMAL)
+					continue;
+			}
+			if (best != null && simplex.getObjective() >= bestObjective - INTEGRALITY_TOL)
+				continue;
+
+			int branch = -1;
+			double fraction = 0;
+			for (int j = 0; j < integer.length; j++) {
+				if (!integer[j])
+					continue;
+				double v = simplex.getValue(j);
+				double f = Math.abs(v - Math.round(v));
+				if (f > INTEGRALITY_TOL && f > fraction) {
+					fraction = f;
+					branch = j;
+				}
+			}
+
+			if (branch < 0) {
+				best = simplex;
+				bestObjective = simplex.getObjective();
+				continue;
+			}
+			if (node.depth >= maxDepth) {
+				complete = false;
+				continue;
+			}
+
+			double v = simplex.getValue(branch);
+			DualSimplex down = simplex.copy();
+			down.setBounds(branch, down.getLower(branch), Math.floor(v));
+			DualSimplex up = simplex;
+			up.setBounds(branch, Math.ceil(v), up.getUpper(branch));
+
+			// the stack is last in first out
+			boolean upFirst = v - Math.floor(v) > 0.5;
+			stack.push(new Node(upFirst ? down : up, node.depth+1));
+			stack.push(new Node(upFirst ? up : down, node.depth+1));
+		}
+
+		if (best == null && !complete)
+			throw new LimitExceededException("Branch and bound stopped without an integral solution.");
+		return best;
+	}
+
+
+	/**
+	 * Thrown if the solver gives up before it knows whether the problem is feasible.
+	 */
+	public static class LimitExceededException extends RuntimeException {
+		private static final long serialVersionUID = 3940912781245520375L;
+
+		public LimitExceededException(String message) {
+			super(message);
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.synthesis;
+
+import java.io.IOException;
+import java.util.List;
+
+import net.strongdesign.stg.STG;
+import net.strongdesign.stg.SignalEdge;
+import net.strongdesign.util.Pair;
+
+/**
+ * Extracts the CSC conflicts of an STG as pairs of traces, which lead from the initial marking to two markings
+ * with the same state code but different enabled output or internal signals.
+ * The implementations are created by {@link CSCTraceProviderFactory}.
+ */
+public interface CSCTraceProvider {
+
+	/**
+	 * Returns the pairs of traces in CSC conflict, an empty list if the STG satisfies CSC.
+	 * @throws IOException if an external tool cannot be run
+	 */
+	public List<Pair<List<SignalEdge>, List<SignalEdge>>> getCSCViolationTraces(STG stg) throws IOException;
+
+}
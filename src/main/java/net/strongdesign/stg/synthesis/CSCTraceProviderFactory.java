@@ -0,0 +1,274 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.synthesis;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import net.strongdesign.desij.CLW;
+import net.strongdesign.desij.DesiJException;
+import net.strongdesign.stg.EdgeDirection;
+import net.strongdesign.stg.STG;
+import net.strongdesign.stg.STGException;
+import net.strongdesign.stg.STGFile;
+import net.strongdesign.stg.SignalEdge;
+import net.strongdesign.util.FileSupport;
+import net.strongdesign.util.HelperApplications;
+import net.strongdesign.util.Pair;
+import net.strongdesign.util.StreamGobbler;
+
+/**
+ * The providers of CSC violation traces, see parameter csc-traces.
+ * <ul>
+ * <li>explicit: the reachability graph is explored with {@link StateGraph#getSG(STG)}</li>
+ * <li>symbolic: the reachable states of a safe STG are computed with BDDs by {@link SymbolicStateGraph}</li>
+ * <li>sat: the configurations of the unfolding prefix of a safe STG are searched by {@link SATStateGraph}</li>
+ * <li>punf: the external tools punf and mpsat</li>
+ * <li>auto: explicit for STGs with at most csc-traces-explicit-size places and transitions, symbolic for larger ones
+ * if they are safe</li>
+ * </ul>
+ * The in-process providers throw a {@link DesiJException} if the STG is not consistent.
+ */
+public abstract class CSCTraceProviderFactory {
+
+	public static final CSCTraceProvider EXPLICIT = new Explicit();
+	public static final CSCTraceProvider SYMBOLIC = new Symbolic();
+	public static final CSCTraceProvider SAT = new Sat();
+	public static final CSCTraceProvider PUNF = new Punf();
+	public static final CSCTraceProvider AUTO = new Auto();
+
+	/**
+	 * Returns the provider selected with the parameter csc-traces.
+	 */
+	public static CSCTraceProvider getProvider() {
+		String tool = CLW.instance.CSC_TRACES.getValue();
+		if (tool.equals("explicit"))
+			return EXPLICIT;
+		if (tool.equals("symbolic"))
+			return SYMBOLIC;
+		if (tool.equals("sat"))
+			return SAT;
+		if (tool.equals("punf"))
+			return PUNF;
+		return AUTO;
+	}
+
+
+	private static class Explicit implements CSCTraceProvider {
+		public List<Pair<List<SignalEdge>, List<SignalEdge>>> getCSCViolationTraces(STG stg) {
+			try {
+				return new ArrayList<Pair<List<SignalEdge>, List<SignalEdge>>>(
+						StateGraph.getSG(stg).getCSCViolationTraces());
+			}
+			catch (SynthesisException e) {
+				throw new DesiJException("Error extracting CSC violation traces: " + e.getMessage());
+			}
+			catch (STGException e) {
+				throw new DesiJException("Error extracting CSC violation traces: " + e.getMessage());
+			}
+		}
+	}
+
+	private static class Symbolic implements CSCTraceProvider {
+		public List<Pair<List<SignalEdge>, List<SignalEdge>>> getCSCViolationTraces(STG stg) {
+			try {
+				return getCSCViolationTraces(new SymbolicStateGraph(stg));
+			}
+			catch (SynthesisException e) {
+				throw new DesiJException("Error extracting CSC violation traces: " + e.getMessage());
+			}
+		}
+
+		static List<Pair<List<SignalEdge>, List<SignalEdge>>> getCSCViolationTraces(SymbolicStateGraph sg) {
+			try {
+				return new ArrayList<Pair<List<SignalEdge>, List<SignalEdge>>>(sg.getCSCViolationTraces());
+			}
+			catch (SynthesisException e) {
+				throw new DesiJException("Error extracting CSC violation traces: " + e.getMessage());
+			}
+		}
+	}
+
+	private static class Sat implements CSCTraceProvider {
+		public List<Pair<List<SignalEdge>, List<SignalEdge>>> getCSCViolationTraces(STG stg) {
+			try {
+				return new ArrayList<Pair<List<SignalEdge>, List<SignalEdge>>>(
+						new SATStateGraph(stg).getCSCViolationTraces());
+			}
+			catch (SynthesisException e) {
+				throw new DesiJException("Error extracting CSC violation traces: " + e.getMessage());
+			}
+		}
+	}
+
+	private static class Auto implements CSCTraceProvider {
+		public List<Pair<List<SignalEdge>, List<SignalEdge>>> getCSCViolationTraces(STG stg) throws IOException {
+			if (stg.getSize() <= CLW.instance.CSC_TRACES_EXPLICIT_SIZE.getIntValue())
+				return EXPLICIT.getCSCViolationTraces(stg);
+
+			SymbolicStateGraph sg;
+			try {
+				sg = new SymbolicStateGraph(stg);
+			}
+			catch (SynthesisException e) {
+				// not safe or weighted arcs
+				return EXPLICIT.getCSCViolationTraces(stg);
+			}
+			return Symbolic.getCSCViolationTraces(sg);
+		}
+	}
+
+	private static class Punf implements CSCTraceProvider {
+		public List<Pair<List<SignalEdge>, List<SignalEdge>>> getCSCViolationTraces(STG stg) throws IOException {
+			//where the STG is saved
+			File tmpSTG = File.createTempFile("desij", ".g");
+
+			//where the unfolding is saved
+			File tmpUNF = File.createTempFile("desij", ".unf");
+
+			//where the CSC violating traces are saved
+			File tmpCONF = File.createTempFile("desij", ".conf");
+
+			//save the STG, generate the unfolding and extract CSC violating traces
+			FileSupport.saveToDisk(STGFile.convertToG(stg, false), tmpSTG.getCanonicalPath());
+
+			try {
+				Process punf = HelperApplications.startExternalTool(HelperApplications.PUNF,
+						" -m"+HelperApplications.SECTION_START+"="+HelperApplications.SECTION_END +
+						HelperApplications.SECTION_START+tmpUNF.getCanonicalPath()+HelperApplications.SECTION_END +
+						" " +
+						HelperApplications.SECTION_START+tmpSTG.getCanonicalPath()+HelperApplications.SECTION_END );
+
+				OutputStream os = null;
+				OutputStream es = null;
+
+				if (CLW.instance.PUNF_MPSAT_GOBBLE.isEnabled()) {
+					os = System.out;
+					es = System.err;
+				}
+
+				StreamGobbler.createGobbler(punf.getInputStream(), "punf", os);
+				StreamGobbler.createGobbler(punf.getErrorStream(), "punf-er", es);
+
+				punf.waitFor();
+				punf.getErrorStream().close();
+				punf.getInputStream().close();
+				punf.getOutputStream().close();
+
+				Process mpsat = HelperApplications.startExternalTool(HelperApplications.MPSAT,
+						" -C -a " +
+						HelperApplications.SECTION_START+tmpUNF.getCanonicalPath()+HelperApplications.SECTION_END +
+						" " +
+						HelperApplications.SECTION_START+tmpCONF.getCanonicalPath()+HelperApplications.SECTION_END );
+
+				StreamGobbler.createGobbler(mpsat.getInputStream(), "mpsat", os);
+				StreamGobbler.createGobbler(mpsat.getErrorStream(), "mpsat-er", es);
+
+				mpsat.waitFor();
+				mpsat.getErrorStream().close();
+				mpsat.getInputStream().close();
+				mpsat.getOutputStream().close();
+			}
+			catch (InterruptedException e) {
+				throw new DesiJException("Error involving punf/mpsat.");
+			}
+
+			//parse the conflict traces
+			String conflicts = FileSupport.loadFileFromDisk(tmpCONF.getCanonicalPath());
+
+			//no CSC conflict
+			if (conflicts.startsWith("NO"))
+				return Collections.emptyList();
+
+			//the final result with all traces
+			List<Pair<List<SignalEdge>, List<SignalEdge>>> result = new LinkedList<Pair<List<SignalEdge>, List<SignalEdge>>>();
+
+			//help variables containing the current traces
+			List<SignalEdge> trace0 = new LinkedList<SignalEdge>();
+			List<SignalEdge> trace1 = new LinkedList<SignalEdge>();
+
+			//split the line and convert the entries
+			int i=0;
+			for (String line : conflicts.split("\n")) {
+				if (line.endsWith("\r")) line = line.substring(0, line.length()-1); // cut "\r" for Windows machines
+				if (line.startsWith("YES") || line.startsWith("_SEQ"))
+					continue;
+
+				if (i==0) {
+					i=1;
+					trace0 = getTrace(line);
+				}
+				else {
+					i=0;
+					trace1 = getTrace(line);
+					result.add(new Pair<List<SignalEdge>, List<SignalEdge>> (trace0, trace1));
+				}
+			}
+
+			return result;
+		}
+
+		/**
+		 * Converts a single trace given as String delivered by mpsat into an appropriate representation.
+		 */
+		private static List<SignalEdge> getTrace(String line) {
+			List<SignalEdge> result = new LinkedList<SignalEdge>();
+			boolean dummySignal = false; // might be a specification dummy without signal direction
+
+			for (String edge : line.split(",")) {
+				if (edge.startsWith("i") || edge.startsWith("I")) {
+				}
+				else if (edge.startsWith("o") || edge.startsWith("O") ) {
+				}
+				else if (edge.startsWith("d") || edge.startsWith("D") ) {
+					dummySignal = true;
+				}
+				else if (edge.matches("[ \t]*"))
+					continue;
+				else
+					throw new DesiJException("Unknown signature in "+line);
+
+				String sig = edge.replaceAll(".*\\.|/.*","");
+
+				EdgeDirection direction;
+				if (sig.endsWith("+"))
+					direction = EdgeDirection.UP;
+				else if (sig.endsWith("-"))
+					direction = EdgeDirection.DOWN;
+				else if (!dummySignal)
+					throw new DesiJException("Unknown direction in "+line);
+				else
+					direction = EdgeDirection.UNKNOWN;
+
+				String signalName = sig.replaceAll("\\+|-|_" ,  "");
+				Integer signal = Integer.parseInt(signalName);
+				result.add(new SignalEdge(signal, direction));
+			}
+
+			return result;
+		}
+	}
+
+}
@@ -19,6 +19,10 @@
  
 package net.strongdesign.stg.synthesis;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -34,6 +38,7 @@ import net.strongdesign.stg.STG;
 import net.strongdesign.stg.STGException;
 import net.strongdesign.stg.SignalEdge;
 import net.strongdesign.stg.SignalState;
+import net.strongdesign.stg.SignalValue;
 import net.strongdesign.stg.Signature;
 import net.strongdesign.util.Pair;
 
@@ -48,11 +53,9 @@ public class EncodedReachabilityGraph {
 	private Map<Marking, SignalState> encoding;
 	private STG stg;
 	
-	// global data for the BFS to reduce the call stack size during recursion
-	private Set<Marking> bfsGoal;
-	private Queue<Pair<List<SignalEdge>, Marking>> bfsFrontier; // queue of marking and the fired event before reaching this marking
-	private Set<Marking> bfsVisited;
-	private Map<Marking, List<SignalEdge>> bfsResult;
+	// BFS spanning tree from the initial marking: the parent of each marking and the edge leading to it
+	private Map<Marking, Marking> bfsParent;
+	private Map<Marking, SignalEdge> bfsEdge;
 	
 	public EncodedReachabilityGraph(StateSystem<Marking, SignalEdge> sys, Map<Marking, SignalState> encoding, STG stg) {
 		this.stateSystem = sys;
@@ -66,93 +69,114 @@ public class EncodedReachabilityGraph {
 		Set<Pair<List<SignalEdge>, List<SignalEdge>>> result = new HashSet<Pair<List<SignalEdge>,List<SignalEdge>>>();
 		Set<Set<Marking>> cscMarkings = getCSCConflictingMarkings();
 		
+		// one BFS for all conflicts, the shortest traces are read from the spanning tree
+		if (!cscMarkings.isEmpty())
+			bfs();
+		
 		for (Set<Marking> conflictingMarkings : cscMarkings) {
 			
 			// getting the SHORTEST trace for each of the conflicting markings, but NOT ALL traces
-			bfsGoal = new HashSet<Marking>(conflictingMarkings);
-			bfsFrontier = new LinkedList<Pair<List<SignalEdge>,Marking>>();
-			bfsFrontier.offer(new Pair<List<SignalEdge>, Marking>(new LinkedList<SignalEdge>(), stateSystem.getInitialState()));
-			bfsVisited = new HashSet<Marking>();
-			bfsResult = new HashMap<Marking, List<SignalEdge>>(conflictingMarkings.size());
-			bfs(); // bfsResult contains the result
+			Map<Marking, List<SignalEdge>> traces = new HashMap<Marking, List<SignalEdge>>(conflictingMarkings.size());
+			Map<Marking, Pair<SignalState, Set<SignalEdge>>> states = new HashMap<Marking, Pair<SignalState, Set<SignalEdge>>>();
+			for (Marking m : conflictingMarkings) {
+				if (!bfsParent.containsKey(m))
+					throw new STGException("Reachable marking(s) " + m + " not found");
+				traces.put(m, getTrace(m));
+				states.put(m, new Pair<SignalState, Set<SignalEdge>>(encoding.get(m), stateSystem.getEvents(m)));
+			}
 			
-			// free bfsResult from interleaved traces resulting from concurrency
-			deleteInterleavingTraces(); // !!!!! maybe not so good !!!!
+			addViolationTraces(stg, traces, states, result);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Pairs the traces of markings with the same state code, which are in CSC conflict, and adds the pairs
+	 * to the result. Traces which are interleavings of others and concurrent conflicts are skipped.
+	 * Also used by {@link SymbolicStateGraph#getCSCViolationTraces()}.
+	 * @param traces - a shortest trace for each marking, the map is modified
+	 * @param states - the state code and the activated signal edges of each marking
+	 */
+	static void addViolationTraces(STG stg, Map<Marking, List<SignalEdge>> traces, 
+			Map<Marking, Pair<SignalState, Set<SignalEdge>>> states, Set<Pair<List<SignalEdge>,List<SignalEdge>>> result) {
+		
+		// free traces from interleaved traces resulting from concurrency
+		deleteInterleavingTraces(traces); // !!!!! maybe not so good !!!!
+		
+		// a trace leads to exactly one marking, hence the traces can be looked up by hashing
+		Map<List<SignalEdge>, Marking> markingOfTrace = new HashMap<List<SignalEdge>, Marking>();
+		for (Map.Entry<Marking, List<SignalEdge>> entry : traces.entrySet())
+			markingOfTrace.put(entry.getValue(), entry.getKey());
 
-			Set<List<SignalEdge>> historicTraces = new HashSet<List<SignalEdge>>();
-			// bfsResult compare pair wise --> forget about one left trace, it should be a concurrent one
-			buildResult: while (bfsResult.size() > 1) {
-				
-				Iterator<Marking> markingIter = bfsResult.keySet().iterator();
-				Marking firstMarking = markingIter.next();
-				Marking secondMarking;
-				boolean inConflict = false;
-				
-				do {
-					secondMarking = markingIter.next();
-					inConflict = haveCSCViolation(
-							new Pair<SignalState, Set<SignalEdge>>(encoding.get(firstMarking), stateSystem.getEvents(firstMarking)), 
-							new Pair<SignalState, Set<SignalEdge>>(encoding.get(secondMarking), stateSystem.getEvents(secondMarking))
-							);
-				} while (!inConflict && markingIter.hasNext());
+		Set<List<SignalEdge>> historicTraces = new HashSet<List<SignalEdge>>();
+		// traces compare pair wise --> forget about one left trace, it should be a concurrent one
+		buildResult: while (traces.size() > 1) {
+			
+			Iterator<Marking> markingIter = traces.keySet().iterator();
+			Marking firstMarking = markingIter.next();
+			Marking secondMarking;
+			boolean inConflict = false;
+			
+			do {
+				secondMarking = markingIter.next();
+				inConflict = haveCSCViolation(stg, states.get(firstMarking), states.get(secondMarking));
+			} while (!inConflict && markingIter.hasNext());
+			
+			if (!inConflict) {
+				markingOfTrace.remove(traces.remove(firstMarking)); // since it is not in CSC conflict with any marking
+				continue;
+			}
+			
+			List<SignalEdge> trace1 = traces.remove(firstMarking);
+			List<SignalEdge> trace2 = traces.remove(secondMarking);
+			markingOfTrace.remove(trace1);
+			markingOfTrace.remove(trace2);
+			
+			// proof for type I conflict of trace1 and trace2
+			List<SignalEdge> intersection = buildIntersection(trace1, trace2);
+							
+			if (trace1.size() == intersection.size() || trace2.size() == intersection.size()) {
+				// We have a type I conflict!
+				result.add(new Pair<List<SignalEdge>, List<SignalEdge>>(trace1, trace2));
+			}
+			else {
+				// Do we have a concurrent conflict?
 				
-				if (!inConflict) {
-					bfsResult.remove(firstMarking); // since it is not in CSC conflict with any marking
-					continue;
+				// Is intersection as trace in traces? Then we have type I conflict between intersection and trace2
+				Marking m = markingOfTrace.get(intersection);
+				if (m != null) {
+					firstMarking = m; // new firstMarking, ie. refuse old one
+					trace1 = traces.get(firstMarking); // new trace1, ie. refuse old one
+					// now we have a new type I conflict
 				}
 				
-				List<SignalEdge> trace1 = bfsResult.remove(firstMarking);
-				List<SignalEdge> trace2 = bfsResult.remove(secondMarking);
+				// Is intersection as trace in historicTraces? Then a type I conflict between intersection and traceX 
+				// was already solved, ie. trace1 and trace2 are in concurrent conflict with traceX
+				if (historicTraces.contains(intersection)) 
+					continue buildResult; // forget about trace1 and trace2
 				
-				// proof for type I conflict of trace1 and trace2
-				List<SignalEdge> intersection = buildIntersection(trace1, trace2);
-								
-				if (trace1.size() == intersection.size() || trace2.size() == intersection.size()) {
-					// We have a type I conflict!
-					result.add(new Pair<List<SignalEdge>, List<SignalEdge>>(trace1, trace2));
-				}
-				else {
-					// Do we have a concurrent conflict?
-					
-					// Is intersection as trace in bfsResult? Then we have type I conflict between intersection and trace2
-					for (Marking m : bfsResult.keySet())
-						if (equalTrace(bfsResult.get(m), intersection)) {
-							firstMarking = m; // new firstMarking, ie. refuse old one
-							trace1 = bfsResult.get(firstMarking); // new trace1, ie. refuse old one
-							break; // now we have a new type I conflict
-						}
-					
-					// Is intersection as trace in historicTraces? Then a type I conflict between intersection and traceX 
-					// was already solved, ie. trace1 and trace2 are in concurrent conflict with traceX
-					for (List<SignalEdge> oldTrace: historicTraces) 
-						if (equalTrace(oldTrace, intersection)) 
-							continue buildResult; // forget about trace1 and trace2
-					
-					// if it is not type I, it is type II conflict, but not a concurrent conflict
-					result.add(new Pair<List<SignalEdge>, List<SignalEdge>>(trace1, trace2));
-				}
-				
-				// Store! in order to avoid concurrent conflicts later
-				historicTraces.add(trace1);
-				historicTraces.add(trace2);
+				// if it is not type I, it is type II conflict, but not a concurrent conflict
+				result.add(new Pair<List<SignalEdge>, List<SignalEdge>>(trace1, trace2));
 			}
-		
+			
+			// Store! in order to avoid concurrent conflicts later
+			historicTraces.add(trace1);
+			historicTraces.add(trace2);
 		}
-		
-		return result;
 	}
 	
-	private void deleteInterleavingTraces() {
+	private static void deleteInterleavingTraces(Map<Marking, List<SignalEdge>> traces) {
 		
 		Set<Marking> markingsToDelete = new HashSet<Marking>();
 		
-		for (Marking m : bfsResult.keySet()) {
-			List<SignalEdge> interleavingTrace = bfsResult.get(m);
+		for (Marking m : traces.keySet()) {
+			List<SignalEdge> interleavingTrace = traces.get(m);
 			if (interleavingTrace.isEmpty()) continue;
 			
-			List<SignalEdge> interleavingTraceWorkingCopy = new LinkedList<SignalEdge>(bfsResult.get(m));
+			List<SignalEdge> interleavingTraceWorkingCopy = new LinkedList<SignalEdge>(traces.get(m));
 			
-			for (List<SignalEdge> trace : bfsResult.values()) 
+			for (List<SignalEdge> trace : traces.values()) 
 				if ( (trace != interleavingTrace) && (trace.size() <= interleavingTrace.size()) )
 					interleavingTraceWorkingCopy.removeAll(trace);
 			
@@ -161,31 +185,8 @@ public class EncodedReachabilityGraph {
 		}
 		
 		for (Marking m : markingsToDelete)
-			bfsResult.remove(m);
-		
-	}
-
-
-	/**
-	 * Helper Rountine for getCSCViolationTraces()
-	 * @param trace1
-	 * @param trace2
-	 * @return - whether trace1 and trace2 specify the same sequence of signal edges
-	 */
-	private boolean equalTrace(List<SignalEdge> trace1, List<SignalEdge> trace2) {
+			traces.remove(m);
 		
-		if (trace1.size() != trace2.size())
-			return false;
-		
-		Iterator<SignalEdge> trace1Iterator = trace1.iterator();
-		Iterator<SignalEdge> trace2Iterator = trace2.iterator();
-		
-		while (trace1Iterator.hasNext()) { // then trace2Iterator as well ...
-			if (trace1Iterator.next() != trace2Iterator.next())
-				return false;
-		}
-
-		return true;
 	}
 
 
@@ -195,7 +196,7 @@ public class EncodedReachabilityGraph {
 	 * @param trace2
 	 * @return - the intersection!
 	 */
-	private List<SignalEdge> buildIntersection(List<SignalEdge> trace1, List<SignalEdge> trace2) {
+	private static List<SignalEdge> buildIntersection(List<SignalEdge> trace1, List<SignalEdge> trace2) {
 		
 		Iterator<SignalEdge> trace1Iterator = trace1.iterator();
 		Iterator<SignalEdge> trace2Iterator = trace2.iterator();
@@ -216,79 +217,128 @@ public class EncodedReachabilityGraph {
 
 	
 	/**
-	 * Helper Routine for getCSCViolationTraces()
-	 * 
-	 * @throws STGException - if there is indeterminism in the reachability graph or an activated event leads to no marking
+	 * Helper Routine for getCSCViolationTraces(): a BFS over all reachable markings, which stores
+	 * the spanning tree in bfsParent and bfsEdge, the trace of its path to a marking is a shortest one.
 	 */
-	private void bfs() throws STGException {
-		// Assert.assertTrue(bfsGoal != null && bfsFrontier != null && bfsVisited != null && bfsResult != null);
-		if (bfsFrontier.isEmpty())
-			throw new STGException("Reachable marking(s) " + bfsGoal.toString() + " not found");
+	private void bfs() {
+		bfsParent = new HashMap<Marking, Marking>();
+		bfsEdge = new HashMap<Marking, SignalEdge>();
 		
-		Pair<List<SignalEdge>, Marking> curMarking = bfsFrontier.poll();
-		bfsVisited.add(curMarking.b);
+		Marking initial = stateSystem.getInitialState();
+		Queue<Marking> frontier = new ArrayDeque<Marking>();
+		frontier.offer(initial);
+		bfsParent.put(initial, null);
 		
-		if (bfsGoal.remove(curMarking.b)) {
-			bfsResult.put(curMarking.b, curMarking.a);
-			if (bfsGoal.isEmpty()) return; // all shortest traces to conflicting marking are found
-		}
-		
-		// expand the queue
-		for (SignalEdge edge : stateSystem.getEvents(curMarking.b)) {
-			Marking nextMarking = stateSystem.getNextStates(curMarking.b, edge).iterator().next(); // should be extacly one next State
-			if ( !bfsVisited.contains(nextMarking) ) {
-				List<SignalEdge> newTrace = new LinkedList<SignalEdge>(curMarking.a);
-				if (edge != null) newTrace.add(edge);
-				bfsFrontier.offer(new Pair<List<SignalEdge>, Marking>(newTrace, nextMarking));
+		while (!frontier.isEmpty()) {
+			Marking curMarking = frontier.poll();
+			
+			// expand the queue
+			for (SignalEdge edge : stateSystem.getEvents(curMarking)) {
+				Marking nextMarking = stateSystem.getNextStates(curMarking, edge).iterator().next(); // should be extacly one next State
+				if (!bfsParent.containsKey(nextMarking)) {
+					bfsParent.put(nextMarking, curMarking);
+					bfsEdge.put(nextMarking, edge);
+					frontier.offer(nextMarking);
+				}
 			}
 		}
-		
-		bfs();
 	}
 	
+	/**
+	 * Helper Routine for getCSCViolationTraces()
+	 * @return - the trace of the path to the marking in the BFS spanning tree
+	 */
+	private List<SignalEdge> getTrace(Marking marking) {
+		LinkedList<SignalEdge> trace = new LinkedList<SignalEdge>();
+		for (Marking m = marking; bfsParent.get(m) != null; m = bfsParent.get(m)) {
+			SignalEdge edge = bfsEdge.get(m);
+			if (edge != null) trace.addFirst(edge);
+		}
+		return trace;
+	}
+	
+	/**
+	 * Returns the markings which are in CSC conflict with another marking, grouped by their state code.
+	 * The markings are bucketed by their binary code; within a bucket, two markings are in CSC conflict if they
+	 * enable different output or internal signal edges, hence either all markings of a bucket are in conflict or none.
+	 */
 	public Set<Set<Marking>> getCSCConflictingMarkings() {
 		
 		Set<Set<Marking>> result = new HashSet<Set<Marking>>();
-						
-		Set<Marking> conflictingMarkings;
-		for (Marking currentMarking : this.encoding.keySet()) {
-			conflictingMarkings = null;
+		
+		List<Integer> signals = new ArrayList<Integer>(stg.getSignals());
+		Collections.sort(signals);
+		
+		Map<PackedCode, Set<Marking>> buckets = new HashMap<PackedCode, Set<Marking>>();
+		for (Map.Entry<Marking, SignalState> entry : encoding.entrySet()) {
+			PackedCode code = new PackedCode(entry.getValue(), signals);
+			Set<Marking> bucket = buckets.get(code);
+			if (bucket == null) {
+				bucket = new HashSet<Marking>();
+				buckets.put(code, bucket);
+			}
+			bucket.add(entry.getKey());
+		}
+		
+		for (Set<Marking> bucket : buckets.values()) {
+			if (bucket.size() < 2) continue;
 			
-			for (Marking reachableMarking : this.encoding.keySet()) 
-				if (currentMarking != reachableMarking && 
-						haveCSCViolation(
-								new Pair<SignalState, Set<SignalEdge>>(encoding.get(currentMarking), stateSystem.getEvents(currentMarking)),
-								new Pair<SignalState, Set<SignalEdge>>(encoding.get(reachableMarking), stateSystem.getEvents(reachableMarking))
-								) ) { // CSC violation?
-					if (conflictingMarkings == null) {
-						conflictingMarkings = new HashSet<Marking>();
-						conflictingMarkings.add(currentMarking);
-						conflictingMarkings.add(reachableMarking);
-					}
-					else {
-						conflictingMarkings.add(reachableMarking);
-						// maybe reachableMarking is only in conflict with currentMarking but not with different markings in conflictingMarkings?
-						// but we will proof it later when giving back the traces ...
-					}
+			Set<Set<SignalEdge>> excitations = new HashSet<Set<SignalEdge>>();
+			for (Marking marking : bucket) {
+				excitations.add(getNonInputEdges(marking));
+				if (excitations.size() > 1) {
+					result.add(bucket);
+					break;
 				}
-			
-			if (conflictingMarkings != null) {
-				// join all conflicting sets representing the same state code
-				SignalState currentState = encoding.get(currentMarking);
-				for (Set<Marking> differentConflictMarking : result) 
-					if (encoding.get(differentConflictMarking.iterator().next()).equals(currentState)) { // differentConflictMarking cannot be empty
-						conflictingMarkings.addAll(differentConflictMarking);
-						result.remove(differentConflictMarking);
-						break; // there can only be one set in result having the same statecode, because it is tested in every iteration
-					}
-				result.add(conflictingMarkings);		
 			}
 		}
-				
+		
+		return result;
+	}
+	
+	/**
+	 * The output and internal signal edges activated under the marking.
+	 */
+	private Set<SignalEdge> getNonInputEdges(Marking marking) {
+		Set<SignalEdge> result = new HashSet<SignalEdge>();
+		for (SignalEdge edge : stateSystem.getEvents(marking))
+			if (stg.getSignature(edge.getSignal()) == Signature.OUTPUT ||
+					stg.getSignature(edge.getSignal()) == Signature.INTERNAL)
+				result.add(edge);
 		return result;
 	}
 	
-	private boolean haveCSCViolation(Pair<SignalState, Set<SignalEdge>> state1, Pair<SignalState, Set<SignalEdge>> state2) {
+	/**
+	 * A state code with the values of the signals packed into longs, 3 bits per signal.
+	 */
+	private static final class PackedCode {
+		private final long[] bits;
+		
+		PackedCode(SignalState state, List<Integer> signals) {
+			bits = new long[(3*signals.size() + 63) / 64];
+			int i = 0;
+			for (Integer signal : signals) {
+				SignalValue value = state.get(signal);
+				long v = value == null ? 7 : value.ordinal();
+				bits[i / 64] |= v << (i % 64);
+				if (i % 64 > 61)
+					bits[i / 64 + 1] |= v >>> (64 - i % 64);
+				i += 3;
+			}
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof PackedCode && Arrays.equals(bits, ((PackedCode) o).bits);
+		}
+		
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(bits);
+		}
+	}
+	
+	private static boolean haveCSCViolation(STG stg, Pair<SignalState, Set<SignalEdge>> state1, Pair<SignalState, Set<SignalEdge>> state2) {
 		
 		if (! state1.a.equals(state2.a)) return false; // different state codes --> no CSC violation
 		
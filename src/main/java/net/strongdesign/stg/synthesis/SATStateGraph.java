@@ -0,0 +1,345 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.synthesis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.strongdesign.stg.EdgeDirection;
+import net.strongdesign.stg.Marking;
+import net.strongdesign.stg.NetStructure;
+import net.strongdesign.stg.STG;
+import net.strongdesign.stg.STGException;
+import net.strongdesign.stg.SignalEdge;
+import net.strongdesign.stg.SignalState;
+import net.strongdesign.stg.SignalValue;
+import net.strongdesign.stg.Signature;
+import net.strongdesign.stg.unfolding.ConfigurationEncoding;
+import net.strongdesign.stg.unfolding.Event;
+import net.strongdesign.stg.unfolding.Prefix;
+import net.strongdesign.util.Pair;
+import net.strongdesign.util.sat.SATSolver;
+
+/**
+ * The state graph of a safe STG, given implicitly by the configurations of a complete {@link Prefix} and
+ * queried with a {@link SATSolver} like mpsat -C does.
+ *
+ * <p>Two configurations of the prefix are encoded with a {@link ConfigurationEncoding}. As in
+ * {@link SymbolicStateGraph}, the code of a configuration is the parity of the occurrences of each signal,
+ * the initial values are derived afterwards. Consistency, USC and CSC are each decided by a few queries
+ * under assumptions on the same solver; only {@link #getCSCViolationTraces()} enumerates the conflicting
+ * markings, code by code. Traces are the events of a configuration, which need not be shortest.
+ */
+public class SATStateGraph {
+
+	private final STG stg;
+	private final NetStructure net;
+	private final ConfigurationEncoding encoding;
+	private final SATSolver solver;
+	private final ConfigurationEncoding.Configuration first, second;
+
+	/**The non-dummy signals.*/
+	private final List<Integer> signals;
+	/**Per signal, the literals telling whether both configurations have the same parity.*/
+	private final int[] sameParity;
+
+	// literals created when needed
+	private int sameCode, sameMarking, differentOutputs;
+
+	private SignalValue[] initialValues;
+	private boolean consistent;
+
+
+	/**
+	 * Unfolds the STG and checks its consistency.
+	 * @throws SynthesisException if the STG is not safe or cannot be unfolded
+	 */
+	public SATStateGraph(STG stg) throws SynthesisException {
+		this.stg = stg;
+
+		Prefix prefix;
+		try {
+			prefix = new Prefix(stg);
+		}
+		catch (STGException e) {
+			throw new SynthesisException(e.getMessage(), stg);
+		}
+		if (!prefix.isSafe())
+			throw new SynthesisException("STG is not safe", stg);
+
+		this.net = prefix.getNetStructure();
+		this.encoding = new ConfigurationEncoding(prefix);
+		this.solver = encoding.getSolver();
+		this.first = encoding.getConfiguration(0);
+		this.second = encoding.getConfiguration(1);
+
+		signals = new ArrayList<Integer>();
+		for (Integer signal : stg.getSignals())
+			if (stg.getSignature(signal) != Signature.DUMMY)
+				signals.add(signal);
+
+		sameParity = new int[signals.size()];
+		for (int s=0; s<signals.size(); ++s)
+			sameParity[s] = -solver.xor(first.getParity(signals.get(s)), second.getParity(signals.get(s)));
+
+		checkConsistency();
+	}
+
+	/**
+	 * Determines the initial value of each signal like {@link SymbolicStateGraph}, with one query for each
+	 * direction of a signal and each parity.
+	 */
+	private void checkConsistency() {
+		consistent = true;
+		initialValues = new SignalValue[signals.size()];
+
+		for (int s=0; s<signals.size(); ++s) {
+			List<Integer> up = new ArrayList<Integer>(), down = new ArrayList<Integer>();
+			for (int t=0; t<net.getNumberOfTransitions(); ++t) {
+				SignalEdge label = net.getLabel(t);
+				if (!label.getSignal().equals(signals.get(s)))
+					continue;
+				if (label.getDirection() == EdgeDirection.UP)
+					up.add(first.getEnabled(t));
+				else if (label.getDirection() == EdgeDirection.DOWN)
+					down.add(first.getEnabled(t));
+			}
+			int upEnabled = solver.or(toArray(up));
+			int downEnabled = solver.or(toArray(down));
+			int changed = first.getParity(signals.get(s));
+
+			// upLow: the signal was low initially if a+ is enabled where it has not changed, etc.
+			boolean low = isSatisfiable(upEnabled, -changed) || isSatisfiable(downEnabled, changed);
+			boolean high = isSatisfiable(upEnabled, changed) || isSatisfiable(downEnabled, -changed);
+			if (low && high)
+				consistent = false;
+			initialValues[s] = low ? SignalValue.LOW : high ? SignalValue.HIGH : SignalValue.UNKNOWN;
+		}
+
+		// every marking must have a unique signal change vector; the configurations without cut-offs
+		// reach every marking, but not necessarily with every change vector
+		if (consistent)
+			consistent = !isSatisfiable(sameMarking(), -sameCode()) && haveCutOffsCompanionCodes();
+	}
+
+	/**
+	 * Returns true if the local configuration of every cut-off event has the same change vector as the one
+	 * of its companion, which reaches the same marking.
+	 */
+	private boolean haveCutOffsCompanionCodes() {
+		for (Event e : encoding.getPrefix().getEvents()) {
+			if (!e.isCutOff())
+				continue;
+			Event companion = e.getCompanion();
+			int[] changes = new int[signals.size()];
+			for (int t=0; t<net.getNumberOfTransitions(); ++t) {
+				int s = signals.indexOf(net.getLabel(t).getSignal());
+				if (s != -1)
+					changes[s] += e.getOccurrences(t) - (companion == null ? 0 : companion.getOccurrences(t));
+			}
+			for (int change : changes)
+				if (change % 2 != 0)
+					return false;
+		}
+		return true;
+	}
+
+	private boolean isSatisfiable(int... assumptions) {
+		return solver.solve(assumptions) == SATSolver.SAT;
+	}
+
+	/**Returns the literal which is true if both configurations reach the same marking.*/
+	private int sameMarking() {
+		if (sameMarking == 0) {
+			int[] same = new int[net.getNumberOfPlaces()];
+			for (int p=0; p<same.length; ++p)
+				same[p] = -solver.xor(first.getMarked(p), second.getMarked(p));
+			sameMarking = solver.and(same);
+		}
+		return sameMarking;
+	}
+
+	public boolean isConsistent() {
+		return consistent;
+	}
+
+	private void requireConsistency() throws SynthesisException {
+		if (!consistent)
+			throw new SynthesisException("STG is not consistent", stg);
+	}
+
+	/**
+	 * Returns true if no two reachable markings have the same state code.
+	 * @throws SynthesisException if the STG is not consistent
+	 */
+	public boolean hasUSC() throws SynthesisException {
+		requireConsistency();
+		return !isSatisfiable(sameCode(), -sameMarking());
+	}
+
+	/**
+	 * Returns true if all reachable markings with the same state code enable the same output and internal
+	 * signal edges.
+	 * @throws SynthesisException if the STG is not consistent
+	 */
+	public boolean hasCSC() throws SynthesisException {
+		requireConsistency();
+		return !isSatisfiable(sameCode(), differentOutputs());
+	}
+
+	private int sameCode() {
+		if (sameCode == 0)
+			sameCode = solver.and(sameParity);
+		return sameCode;
+	}
+
+	/**
+	 * Returns the literal which is true if the configurations enable different output or internal edges.
+	 */
+	private int differentOutputs() {
+		if (differentOutputs != 0)
+			return differentOutputs;
+		Map<SignalEdge, List<Integer>> firstEnabled = new HashMap<SignalEdge, List<Integer>>();
+		Map<SignalEdge, List<Integer>> secondEnabled = new HashMap<SignalEdge, List<Integer>>();
+		for (int t=0; t<net.getNumberOfTransitions(); ++t) {
+			SignalEdge label = net.getLabel(t);
+			Signature signature = stg.getSignature(label.getSignal());
+			if (signature != Signature.OUTPUT && signature != Signature.INTERNAL)
+				continue;
+			if (!firstEnabled.containsKey(label)) {
+				firstEnabled.put(label, new ArrayList<Integer>());
+				secondEnabled.put(label, new ArrayList<Integer>());
+			}
+			firstEnabled.get(label).add(first.getEnabled(t));
+			secondEnabled.get(label).add(second.getEnabled(t));
+		}
+
+		List<Integer> different = new ArrayList<Integer>();
+		for (SignalEdge label : firstEnabled.keySet())
+			different.add(solver.xor(solver.or(toArray(firstEnabled.get(label))),
+					solver.or(toArray(secondEnabled.get(label)))));
+		differentOutputs = solver.or(toArray(different));
+		return differentOutputs;
+	}
+
+	/**
+	 * Returns the pairs of traces leading to markings in CSC conflict, like
+	 * {@link EncodedReachabilityGraph#getCSCViolationTraces()}. The conflicting codes are found one after the
+	 * other, then all markings with that code are enumerated.
+	 * @throws SynthesisException if the STG is not consistent
+	 */
+	public Set<Pair<List<SignalEdge>,List<SignalEdge>>> getCSCViolationTraces() throws SynthesisException {
+		requireConsistency();
+		Set<Pair<List<SignalEdge>, List<SignalEdge>>> result = new HashSet<Pair<List<SignalEdge>,List<SignalEdge>>>();
+
+		int conflict = solver.and(sameCode(), differentOutputs());
+		// guards the clauses excluding the codes found so far
+		int newCode = solver.newVariable();
+
+		while (isSatisfiable(conflict, newCode)) {
+			boolean[] changed = new boolean[signals.size()];
+			int[] code = new int[signals.size()];
+			for (int s=0; s<code.length; ++s) {
+				int parity = first.getParity(signals.get(s));
+				changed[s] = solver.getValue(parity);
+				code[s] = changed[s] ? parity : -parity;
+			}
+
+			Map<Marking, List<SignalEdge>> traces = new HashMap<Marking, List<SignalEdge>>();
+			Map<Marking, Pair<SignalState, Set<SignalEdge>>> states = new HashMap<Marking, Pair<SignalState, Set<SignalEdge>>>();
+			SignalState state = getStateCode(changed);
+			enumerateMarkings(code, state, traces, states);
+			EncodedReachabilityGraph.addViolationTraces(stg, traces, states, result);
+
+			int[] exclude = new int[code.length + 1];
+			for (int s=0; s<code.length; ++s)
+				exclude[s] = -code[s];
+			exclude[code.length] = -newCode;
+			solver.addClause(exclude);
+		}
+		solver.addClause(-newCode);
+
+		return result;
+	}
+
+	/**
+	 * Adds the traces and states of all reachable markings with the given code, which is given by the
+	 * parity literals of the first configuration.
+	 */
+	private void enumerateMarkings(int[] code, SignalState state, Map<Marking, List<SignalEdge>> traces,
+			Map<Marking, Pair<SignalState, Set<SignalEdge>>> states) {
+		int newMarking = solver.newVariable();
+		int[] assumptions = new int[code.length + 1];
+		System.arraycopy(code, 0, assumptions, 0, code.length);
+		assumptions[code.length] = newMarking;
+
+		while (isSatisfiable(assumptions)) {
+			boolean[] marked = first.getMarking();
+			int[] tokens = new int[marked.length];
+			int[] exclude = new int[marked.length + 1];
+			for (int p=0; p<marked.length; ++p) {
+				tokens[p] = marked[p] ? 1 : 0;
+				exclude[p] = marked[p] ? -first.getMarked(p) : first.getMarked(p);
+			}
+			exclude[marked.length] = -newMarking;
+			solver.addClause(exclude);
+
+			List<SignalEdge> trace = new LinkedList<SignalEdge>();
+			for (Event e : first.getEvents())
+				trace.add(net.getLabel(e.getTransitionPosition()));
+
+			Set<SignalEdge> events = new HashSet<SignalEdge>();
+			for (int t=0; t<net.getNumberOfTransitions(); ++t)
+				if (net.isEnabled(tokens, t))
+					events.add(net.getLabel(t));
+
+			Marking marking = net.pack(tokens);
+			traces.put(marking, trace);
+			states.put(marking, new Pair<SignalState, Set<SignalEdge>>(state, events));
+		}
+		solver.addClause(-newMarking);
+	}
+
+	private SignalState getStateCode(boolean[] changed) {
+		SignalState result = new SignalState(stg.getSignals(), SignalValue.UNKNOWN);
+		for (int s=0; s<signals.size(); ++s) {
+			SignalValue value = initialValues[s];
+			if (changed[s] && value == SignalValue.LOW)
+				value = SignalValue.HIGH;
+			else if (changed[s] && value == SignalValue.HIGH)
+				value = SignalValue.LOW;
+			result.put(signals.get(s), value);
+		}
+		return result;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] result = new int[list.size()];
+		for (int i=0; i<result.length; ++i)
+			result[i] = list.get(i);
+		return result;
+	}
+
+}
@@ -38,8 +38,12 @@ public class StateGraph {
 
 	public static EncodedReachabilityGraph getSG(STG stg) throws SynthesisException {
 				
-		StateSystem<Marking, SignalEdge> sys = 
-					new Cache<Marking, SignalEdge>(
+		StateSystem<Marking, SignalEdge> sys;
+		int threads = STGUtil.getExplorationThreads();
+		if (threads != 1)
+			sys = new ParallelExplorer<Marking, SignalEdge>(STGAdapterFactory.getStateSystemAdapter(stg), threads).explore();
+		else
+			sys = new Cache<Marking, SignalEdge>(
 							STGAdapterFactory.getStateSystemAdapter(stg));
 		
 		
@@ -59,7 +63,9 @@ public class StateGraph {
 			//get activated events and next states
 			for (SignalEdge edge : sys.getEvents(marking)) {
 				SignalState nextState;
-				try {
+				if (stg.getSignature(edge.getSignal()) == Signature.DUMMY)
+					nextState = state; //dummies do not change the signal state
+				else try {
 					nextState = state.applySignalEdge(edge);
 				} catch (IllegalArgumentException e) {
 					throw new SynthesisException("STG is not consistent", stg);
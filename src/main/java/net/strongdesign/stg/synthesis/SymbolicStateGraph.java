@@ -0,0 +1,609 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.synthesis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.strongdesign.stg.EdgeDirection;
+import net.strongdesign.stg.Marking;
+import net.strongdesign.stg.NetStructure;
+import net.strongdesign.stg.STG;
+import net.strongdesign.stg.SignalEdge;
+import net.strongdesign.stg.SignalState;
+import net.strongdesign.stg.SignalValue;
+import net.strongdesign.stg.Signature;
+import net.strongdesign.util.Pair;
+import net.strongdesign.util.bdd.BDD;
+import net.strongdesign.util.bdd.BDDOrdering;
+
+/**
+ * The state graph of a safe STG, represented symbolically with {@link BDD}s.
+ *
+ * <p>There is one variable per place and one per non-dummy signal. The signal variables do not
+ * hold the signal values but whether the signal has changed an odd number of times since the initial
+ * marking, the initial values are derived afterwards as in {@link StateGraph}. The reachable states
+ * are computed by chaining the images of the single transitions until a fixpoint is reached.
+ *
+ * <p>Consistency, USC and CSC are decided on the BDDs without enumerating states, only
+ * {@link #getCSCConflictingMarkings()} enumerates the conflicting markings. The layers of the breadth first
+ * search are kept, shortest traces to markings are found by stepping back through them.
+ */
+public class SymbolicStateGraph {
+
+	private final STG stg;
+	private final NetStructure net;
+	private final BDD bdd;
+
+	private final int numberOfPlaces;
+	/**The non-dummy signals.*/
+	private final List<Integer> signals;
+	/**Index in signals for each transition, -1 for dummies.*/
+	private final int[] signalOfTransition;
+
+	private final int[] placeVar;
+	private final int[] codeVar;
+	private final int placeCube;
+	private final int codeCube;
+
+	// per transition
+	private final int[] enabled;
+	private final int[] support;
+	private final int[] enabledLow, enabledHigh, postFromLow, postFromHigh;
+	private final int[] contact;
+
+	private int reachable;
+	/**The states in BFS order: the initial state and the states reached first after 1, 2, ... firings, referenced.*/
+	private final List<Integer> layers = new ArrayList<Integer>();
+
+	private SignalValue[] initialValues;
+	private boolean consistent;
+
+
+	/**
+	 * Computes the reachable states.
+	 * @throws SynthesisException if the STG is not safe
+	 */
+	public SymbolicStateGraph(STG stg) throws SynthesisException {
+		this.stg = stg;
+		this.net = new NetStructure(stg);
+		this.numberOfPlaces = net.getNumberOfPlaces();
+		int nt = net.getNumberOfTransitions();
+
+		signals = new ArrayList<Integer>();
+		Map<Integer, Integer> signalIndex = new HashMap<Integer, Integer>();
+		for (Integer signal : stg.getSignals())
+			if (stg.getSignature(signal) != Signature.DUMMY) {
+				signalIndex.put(signal, signals.size());
+				signals.add(signal);
+			}
+
+		signalOfTransition = new int[nt];
+		for (int t=0; t<nt; ++t) {
+			Integer s = signalIndex.get(net.getLabel(t).getSignal());
+			signalOfTransition[t] = s == null ? -1 : s;
+
+			for (int p : net.getPreset(t))
+				if (net.getPreWeight(t, p) != 1)
+					throw new SynthesisException("Weighted arcs are not supported", stg);
+			for (int p : net.getPostset(t))
+				if (net.getPostWeight(t, p) != 1)
+					throw new SynthesisException("Weighted arcs are not supported", stg);
+		}
+
+		int[] initial = net.getValues(net.getInitialMarking());
+		for (int tokens : initial)
+			if (tokens > 1)
+				throw new SynthesisException("STG is not safe", stg);
+
+		// variable order
+		int nv = numberOfPlaces + signals.size();
+		int[][] edges = new int[nt][];
+		for (int t=0; t<nt; ++t) {
+			Set<Integer> edge = new LinkedHashSet<Integer>();
+			for (int p : net.getPreset(t))
+				edge.add(p);
+			for (int p : net.getPostset(t))
+				edge.add(p);
+			if (signalOfTransition[t] != -1)
+				edge.add(numberOfPlaces + signalOfTransition[t]);
+			edges[t] = toArray(edge);
+		}
+		List<Integer> marked = new ArrayList<Integer>();
+		for (int p=0; p<numberOfPlaces; ++p)
+			if (initial[p] == 1)
+				marked.add(p);
+		int[] order = BDDOrdering.traversal(nv, edges, toArray(marked));
+		int[] level = BDDOrdering.levels(BDDOrdering.force(nv, edges, order));
+
+		bdd = new BDD(nv);
+		placeVar = Arrays.copyOfRange(level, 0, numberOfPlaces);
+		codeVar = Arrays.copyOfRange(level, numberOfPlaces, nv);
+		placeCube = bdd.ref(bdd.cube(placeVar));
+		codeCube = bdd.ref(bdd.cube(codeVar));
+
+		// transitions
+		enabled = new int[nt];
+		support = new int[nt];
+		enabledLow = new int[nt];
+		enabledHigh = new int[nt];
+		postFromLow = new int[nt];
+		postFromHigh = new int[nt];
+		contact = new int[nt];
+
+		for (int t=0; t<nt; ++t) {
+			int[] pre = net.getPreset(t);
+			int[] post = net.getPostset(t);
+
+			int[] preVars = new int[pre.length];
+			for (int i=0; i<pre.length; ++i)
+				preVars[i] = placeVar[pre[i]];
+			enabled[t] = bdd.ref(bdd.cube(preVars));
+
+			Set<Integer> changed = new HashSet<Integer>();
+			for (int p : pre)
+				changed.add(p);
+			for (int p : post)
+				changed.add(p);
+			int[] vars = new int[changed.size()];
+			boolean[] values = new boolean[vars.length];
+			int i = 0;
+			for (int p : changed) {
+				vars[i] = placeVar[p];
+				values[i++] = contains(post, p);
+			}
+			int postLow = bdd.ref(bdd.minterm(vars, values));
+
+			int contactPlaces = BDD.ZERO;
+			for (int p : post)
+				if (!contains(pre, p)) {
+					int c = bdd.or(contactPlaces, bdd.ithVar(placeVar[p]));
+					bdd.deref(contactPlaces);
+					contactPlaces = bdd.ref(c);
+				}
+			contact[t] = bdd.ref(bdd.and(enabled[t], contactPlaces));
+			bdd.deref(contactPlaces);
+
+			int s = signalOfTransition[t];
+			if (s == -1 || net.getLabel(t).getDirection() == EdgeDirection.UNKNOWN) {
+				support[t] = bdd.ref(bdd.cube(vars));
+				enabledLow[t] = bdd.ref(enabled[t]);
+				enabledHigh[t] = BDD.ZERO;
+				postFromLow[t] = postLow;
+				postFromHigh[t] = BDD.ZERO;
+			}
+			else {
+				vars = Arrays.copyOf(vars, vars.length + 1);
+				vars[vars.length-1] = codeVar[s];
+				support[t] = bdd.ref(bdd.cube(vars));
+				enabledLow[t] = bdd.ref(bdd.and(enabled[t], bdd.nithVar(codeVar[s])));
+				enabledHigh[t] = bdd.ref(bdd.and(enabled[t], bdd.ithVar(codeVar[s])));
+				postFromLow[t] = bdd.ref(bdd.and(postLow, bdd.ithVar(codeVar[s])));
+				postFromHigh[t] = bdd.ref(bdd.and(postLow, bdd.nithVar(codeVar[s])));
+				bdd.deref(postLow);
+			}
+		}
+
+		// initial state, all signals unchanged
+		int[] vars = new int[nv];
+		boolean[] values = new boolean[nv];
+		for (int p=0; p<numberOfPlaces; ++p) {
+			vars[p] = placeVar[p];
+			values[p] = initial[p] == 1;
+		}
+		for (int s=0; s<signals.size(); ++s)
+			vars[numberOfPlaces + s] = codeVar[s];
+		reachable = bdd.ref(bdd.minterm(vars, values));
+
+		computeReachable();
+		checkConsistency();
+	}
+
+	private static int[] toArray(Set<Integer> set) {
+		int[] result = new int[set.size()];
+		int i = 0;
+		for (int v : set)
+			result[i++] = v;
+		return result;
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] result = new int[list.size()];
+		for (int i=0; i<result.length; ++i)
+			result[i] = list.get(i);
+		return result;
+	}
+
+	private static boolean contains(int[] array, int value) {
+		for (int v : array)
+			if (v == value)
+				return true;
+		return false;
+	}
+
+
+	/**
+	 * Returns the states reached from the given ones by firing t.
+	 */
+	private int image(int states, int t) {
+		int low = bdd.ref(bdd.andExists(states, enabledLow[t], support[t]));
+		int result = bdd.ref(bdd.and(low, postFromLow[t]));
+		bdd.deref(low);
+
+		if (enabledHigh[t] != BDD.ZERO) {
+			int high = bdd.ref(bdd.andExists(states, enabledHigh[t], support[t]));
+			int fromHigh = bdd.ref(bdd.and(high, postFromHigh[t]));
+			bdd.deref(high);
+			int both = bdd.or(result, fromHigh);
+			bdd.deref(result);
+			bdd.deref(fromHigh);
+			result = bdd.ref(both);
+		}
+
+		bdd.deref(result);
+		return result;
+	}
+
+	private void computeReachable() throws SynthesisException {
+		int frontier = bdd.ref(reachable);
+		while (frontier != BDD.ZERO) {
+			layers.add(bdd.ref(frontier));
+			int next = BDD.ZERO;
+			for (int t=0; t<enabled.length; ++t) {
+				if (bdd.and(frontier, contact[t]) != BDD.ZERO)
+					throw new SynthesisException("STG is not safe", stg);
+
+				int image = bdd.ref(image(frontier, t));
+				int n = bdd.or(next, image);
+				bdd.deref(image);
+				bdd.deref(next);
+				next = bdd.ref(n);
+			}
+			bdd.deref(frontier);
+
+			frontier = bdd.ref(bdd.diff(next, reachable));
+			bdd.deref(next);
+
+			int r = bdd.or(reachable, frontier);
+			bdd.deref(reachable);
+			reachable = bdd.ref(r);
+		}
+	}
+
+	/**
+	 * Determines the initial value of each signal: a signal with an enabled raising edge in a state
+	 * where it has changed cannot have been low, etc.
+	 */
+	private void checkConsistency() {
+		consistent = true;
+		initialValues = new SignalValue[signals.size()];
+
+		for (int s=0; s<signals.size(); ++s) {
+			boolean upLow = false, upHigh = false, downLow = false, downHigh = false;
+			int changed = bdd.ref(bdd.and(reachable, bdd.ithVar(codeVar[s])));
+			int unchanged = bdd.ref(bdd.and(reachable, bdd.nithVar(codeVar[s])));
+
+			for (int t=0; t<enabled.length; ++t) {
+				if (signalOfTransition[t] != s)
+					continue;
+				boolean inChanged = bdd.and(changed, enabled[t]) != BDD.ZERO;
+				boolean inUnchanged = bdd.and(unchanged, enabled[t]) != BDD.ZERO;
+				switch (net.getLabel(t).getDirection()) {
+				case UP:
+					upLow |= inUnchanged;
+					upHigh |= inChanged;
+					break;
+				case DOWN:
+					downLow |= inChanged;
+					downHigh |= inUnchanged;
+					break;
+				default:
+				}
+			}
+			bdd.deref(changed);
+			bdd.deref(unchanged);
+
+			// upLow: the signal was low initially if a+ is enabled where it has not changed, etc.
+			boolean low = upLow || downLow;
+			boolean high = upHigh || downHigh;
+			if (low && high)
+				consistent = false;
+			initialValues[s] = low ? SignalValue.LOW : high ? SignalValue.HIGH : SignalValue.UNKNOWN;
+		}
+
+		// every marking must have a unique signal change vector
+		if (consistent) {
+			int markings = bdd.ref(bdd.exists(reachable, codeCube));
+			consistent = bdd.satCount(markings) == bdd.satCount(reachable) * Math.pow(2, signals.size());
+			bdd.deref(markings);
+		}
+	}
+
+
+	/**
+	 * Returns the number of reachable markings.
+	 */
+	public double getNumberOfStates() {
+		int markings = bdd.ref(bdd.exists(reachable, codeCube));
+		double result = bdd.satCount(markings, placeCube);
+		bdd.deref(markings);
+		return result;
+	}
+
+	/**
+	 * Returns the number of BDD nodes representing the reachable states.
+	 */
+	public int getNumberOfNodes() {
+		return bdd.nodeCount(reachable);
+	}
+
+	public boolean isConsistent() {
+		return consistent;
+	}
+
+	private void requireConsistency() throws SynthesisException {
+		if (!consistent)
+			throw new SynthesisException("STG is not consistent", stg);
+	}
+
+	/**
+	 * Returns the number of different state codes of the reachable markings.
+	 * @throws SynthesisException if the STG is not consistent
+	 */
+	public double getNumberOfCodes() throws SynthesisException {
+		requireConsistency();
+		int codes = bdd.ref(bdd.exists(reachable, placeCube));
+		double result = bdd.satCount(codes, codeCube);
+		bdd.deref(codes);
+		return result;
+	}
+
+	/**
+	 * Returns true if no two reachable markings have the same state code.
+	 * @throws SynthesisException if the STG is not consistent
+	 */
+	public boolean hasUSC() throws SynthesisException {
+		return getNumberOfCodes() == getNumberOfStates();
+	}
+
+	/**
+	 * Returns true if all reachable markings with the same state code enable the same output and internal
+	 * signal edges.
+	 * @throws SynthesisException if the STG is not consistent
+	 */
+	public boolean hasCSC() throws SynthesisException {
+		requireConsistency();
+		int conflicts = conflicting();
+		bdd.deref(conflicts);
+		return conflicts == BDD.ZERO;
+	}
+
+	/**
+	 * Returns the markings which are in CSC conflict with another marking, grouped by their state code.
+	 * This is the same as {@link EncodedReachabilityGraph#getCSCConflictingMarkings()}, but the markings
+	 * are enumerated explicitly.
+	 * @throws SynthesisException if the STG is not consistent
+	 */
+	public Set<Set<Marking>> getCSCConflictingMarkings() throws SynthesisException {
+		requireConsistency();
+		int conflicts = conflicting();
+
+		int nv = bdd.getNumberOfVariables();
+		int[] vars = new int[nv];
+		for (int i=0; i<nv; ++i)
+			vars[i] = i;
+
+		final Map<List<Boolean>, Set<Marking>> byCode = new HashMap<List<Boolean>, Set<Marking>>();
+		bdd.enumerate(conflicts, vars, new BDD.Visitor() {
+			public boolean visit(boolean[] values) {
+				int[] tokens = new int[numberOfPlaces];
+				for (int p=0; p<numberOfPlaces; ++p)
+					tokens[p] = values[placeVar[p]] ? 1 : 0;
+				List<Boolean> code = new ArrayList<Boolean>(codeVar.length);
+				for (int s=0; s<codeVar.length; ++s)
+					code.add(values[codeVar[s]]);
+
+				Set<Marking> markings = byCode.get(code);
+				if (markings == null) {
+					markings = new HashSet<Marking>();
+					byCode.put(code, markings);
+				}
+				markings.add(net.pack(tokens));
+				return true;
+			}
+		});
+		bdd.deref(conflicts);
+
+		return new HashSet<Set<Marking>>(byCode.values());
+	}
+
+	/**
+	 * Returns the state code of a reachable marking, null if it is not reachable.
+	 * @throws SynthesisException if the STG is not consistent
+	 */
+	public SignalState getStateCode(Marking marking) throws SynthesisException {
+		requireConsistency();
+		int[] tokens = net.getValues(marking);
+		boolean[] values = new boolean[numberOfPlaces];
+		for (int p=0; p<numberOfPlaces; ++p)
+			values[p] = tokens[p] == 1;
+		int minterm = bdd.ref(bdd.minterm(placeVar, values));
+		int state = bdd.ref(bdd.and(reachable, minterm));
+		bdd.deref(minterm);
+		if (state == BDD.ZERO)
+			return null;
+
+		int[] vars = codeVar.clone();
+		Arrays.sort(vars);
+		final boolean[][] code = new boolean[1][];
+		int codes = bdd.ref(bdd.exists(state, placeCube));
+		bdd.enumerate(codes, vars, new BDD.Visitor() {
+			public boolean visit(boolean[] values) {
+				code[0] = values;
+				return false;
+			}
+		});
+		bdd.deref(codes);
+		bdd.deref(state);
+
+		SignalState result = new SignalState(stg.getSignals(), SignalValue.UNKNOWN);
+		for (int s=0; s<signals.size(); ++s) {
+			boolean changed = code[0][Arrays.binarySearch(vars, codeVar[s])];
+			SignalValue value = initialValues[s];
+			if (changed && value == SignalValue.LOW)
+				value = SignalValue.HIGH;
+			else if (changed && value == SignalValue.HIGH)
+				value = SignalValue.LOW;
+			result.put(signals.get(s), value);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a shortest sequence of signal edges leading from the initial marking to the given one, null if
+	 * it is not reachable. The trace is built backwards: a predecessor of a marking in BFS layer k is searched
+	 * in layer k-1.
+	 */
+	public List<SignalEdge> getTrace(Marking marking) {
+		int[] values = net.getValues(marking);
+		for (int v : values)
+			if (v > 1)
+				return null;
+
+		int k = 0;
+		while (k < layers.size() && !inLayer(values, k))
+			++k;
+		if (k == layers.size())
+			return null;
+
+		LinkedList<SignalEdge> trace = new LinkedList<SignalEdge>();
+		for (; k > 0; --k) {
+			int t = 0;
+			for (; t < enabled.length; ++t) {
+				int[] before = getPredecessor(values, t);
+				if (before != null && inLayer(before, k-1)) {
+					values = before;
+					break;
+				}
+			}
+			if (t == enabled.length)
+				throw new IllegalStateException("No predecessor in BFS layer " + (k-1));
+			trace.addFirst(net.getLabel(t));
+		}
+		return trace;
+	}
+
+	private boolean inLayer(int[] values, int k) {
+		boolean[] marked = new boolean[numberOfPlaces];
+		for (int p=0; p<numberOfPlaces; ++p)
+			marked[p] = values[p] == 1;
+		int minterm = bdd.ref(bdd.minterm(placeVar, marked));
+		boolean result = bdd.and(layers.get(k), minterm) != BDD.ZERO;
+		bdd.deref(minterm);
+		return result;
+	}
+
+	/**
+	 * Returns the safe marking from which firing t leads to the given one, null if there is none.
+	 */
+	private int[] getPredecessor(int[] values, int t) {
+		int[] result = values.clone();
+		for (int p : net.getPostset(t))
+			if (--result[p] < 0)
+				return null;
+		for (int p : net.getPreset(t))
+			if (++result[p] > 1)
+				return null;
+		return result;
+	}
+
+	/**
+	 * Returns the pairs of shortest traces leading to markings in CSC conflict, like
+	 * {@link EncodedReachabilityGraph#getCSCViolationTraces()}.
+	 * @throws SynthesisException if the STG is not consistent
+	 */
+	public Set<Pair<List<SignalEdge>,List<SignalEdge>>> getCSCViolationTraces() throws SynthesisException {
+		Set<Pair<List<SignalEdge>, List<SignalEdge>>> result = new HashSet<Pair<List<SignalEdge>,List<SignalEdge>>>();
+
+		for (Set<Marking> conflictingMarkings : getCSCConflictingMarkings()) {
+			// all markings of a group have the same state code
+			SignalState code = getStateCode(conflictingMarkings.iterator().next());
+
+			Map<Marking, List<SignalEdge>> traces = new HashMap<Marking, List<SignalEdge>>(conflictingMarkings.size());
+			Map<Marking, Pair<SignalState, Set<SignalEdge>>> states = new HashMap<Marking, Pair<SignalState, Set<SignalEdge>>>();
+			for (Marking m : conflictingMarkings) {
+				traces.put(m, getTrace(m));
+
+				Set<SignalEdge> events = new HashSet<SignalEdge>();
+				for (int t : net.getEnabledTransitions(net.toLayout(m)))
+					events.add(net.getLabel(t));
+				states.put(m, new Pair<SignalState, Set<SignalEdge>>(code, events));
+			}
+
+			EncodedReachabilityGraph.addViolationTraces(stg, traces, states, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the reachable states which are in CSC conflict, referenced.
+	 */
+	private int conflicting() {
+		Map<SignalEdge, Integer> outputEdges = new HashMap<SignalEdge, Integer>();
+		for (int t=0; t<enabled.length; ++t) {
+			SignalEdge label = net.getLabel(t);
+			Signature signature = stg.getSignature(label.getSignal());
+			if (signature != Signature.OUTPUT && signature != Signature.INTERNAL)
+				continue;
+			Integer known = outputEdges.get(label);
+			int e = bdd.or(known == null ? BDD.ZERO : known, enabled[t]);
+			if (known != null)
+				bdd.deref(known);
+			outputEdges.put(label, bdd.ref(e));
+		}
+
+		int result = BDD.ZERO;
+		for (int edge : outputEdges.values()) {
+			// codes of states with and without the edge
+			int with = bdd.ref(bdd.andExists(reachable, edge, placeCube));
+			int notEdge = bdd.ref(bdd.not(edge));
+			int without = bdd.ref(bdd.andExists(reachable, notEdge, placeCube));
+
+			int a = bdd.ref(bdd.and(edge, without));
+			int b = bdd.ref(bdd.and(notEdge, with));
+			int ab = bdd.ref(bdd.or(a, b));
+			int c = bdd.ref(bdd.and(reachable, ab));
+			int r = bdd.or(result, c);
+			for (int f : new int[] {with, notEdge, without, a, b, ab, c, result, edge})
+				bdd.deref(f);
+			result = bdd.ref(r);
+		}
+		return result;
+	}
+
+}
@@ -22,6 +22,7 @@ package net.strongdesign.stg.traversal;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -42,8 +43,8 @@ import net.sf.javailp.Problem;
 import net.sf.javailp.Result;
 import net.sf.javailp.Solver;
 import net.sf.javailp.SolverFactory;
-import net.sf.javailp.SolverFactoryLpSolve;
 import net.strongdesign.desij.CLW;
+import net.strongdesign.stg.DuplicateDetector;
 import net.strongdesign.stg.Node;
 import net.strongdesign.stg.Place;
 import net.strongdesign.stg.STG;
@@ -56,6 +57,8 @@ import net.strongdesign.stg.solvers.MarkingEquationCache;
 import net.strongdesign.stg.solvers.RedundantPlaceSolverLP;
 import net.strongdesign.stg.solvers.RedundantPlaceStatistics;
 import net.strongdesign.stg.solvers.SharedPlaceSolver;
+import net.strongdesign.stg.solvers.LPBackend;
+import net.strongdesign.stg.unfolding.Prefix;
 import net.strongdesign.util.FileSupport;
 import net.strongdesign.util.HelperApplications;
 import net.strongdesign.util.StreamGobbler;
@@ -307,11 +310,15 @@ public abstract class ConditionFactory {
 		}
 	}
 	
-	protected static class IsDummy<T extends Transition> extends AbstractCondition<T> {
+	protected static class IsDummy<T extends Transition> extends AbstractCondition<T> implements SignalCondition<T> {
 		public boolean fulfilled(T transition) {
 			if (transition.getSTG().getSignature(transition.getLabel().getSignal()) != Signature.DUMMY) return false;
 			return true;
 		}
+		
+		public Collection<Integer> getSignals(STG stg) {
+			return stg.getSignals(Signature.DUMMY);
+		}
 	}
 	
 	
@@ -416,9 +423,15 @@ public abstract class ConditionFactory {
 	protected static class RedundantPlace<P extends Place> extends AbstractCondition<P> {
 		protected STG stg;
 		protected Set<Node> reason;
+		protected boolean duplicates;
 		
 		public RedundantPlace(STG stg) {
+			this(stg, true);
+		}
+		
+		public RedundantPlace(STG stg, boolean duplicates) {
 			this.stg = stg;
+			this.duplicates = duplicates;
 			reason = Collections.emptySet();
 		}
 		
@@ -444,51 +457,8 @@ public abstract class ConditionFactory {
 				return true;
 			
 			// is a duplicate place
-			Collection<Place> sibblings = new HashSet<Place>();
-			
-			for (Node node : place.getParents()) {
-				for (Node sibbling : node.getChildren()) {
-					sibblings.add( (Place) sibbling);
-				}
-			}
-			
-			for (Node node : place.getChildren()) {
-				for (Node sibbling : node.getParents()) {
-					sibblings.add( (Place) sibbling);
-				}
-			}
-			
-			sibblings.remove(place);
-			
-			
-			l: for (Place actPlace : sibblings) {
-				if (place.getMarking() < actPlace.getMarking())
-					continue;
-				
-				if (place.getParents().size() != actPlace.getParents().size())
-					continue;
-				if (place.getChildren().size() != actPlace.getChildren().size())
-					continue;
-				
-				if (!place.getParents().containsAll(actPlace.getParents()))
-					continue;
-				if (!place.getChildren().containsAll(actPlace.getChildren()))
-					continue;
-				
-				for (Node act2Place : place.getParents())
-					if (place.getParentValue(act2Place) != actPlace
-							.getParentValue(act2Place))
-						continue l;
-				
-				for (Node act2Place : place.getChildren())
-					if (place.getChildValue(act2Place) != actPlace
-							.getChildValue(act2Place))
-						continue l;
-				
-				reason.add(actPlace);
+			if (duplicates && DuplicateDetector.hasDuplicate(place, reason))
 				return true;
-				
-			}
 			
 			
 			// the primitive case of the shared place
@@ -549,7 +519,7 @@ public abstract class ConditionFactory {
 			if (CLW.instance.SHORTCUTPLACE.isEnabled()) { 
 				boolean shortCutPlace = shortCutPlace(place, reason);
 				if (shortCutPlace) {
-					RedundantPlaceStatistics.totalShortcutPlaces++;
+					RedundantPlaceStatistics.totalShortcutPlaces.incrementAndGet();
 					return true;
 				}
 			}
@@ -694,10 +664,7 @@ public abstract class ConditionFactory {
 //			}
 			
 			
-			if (stg.getTransitions(
-					ConditionFactory
-					.getDuplicateTransitionCondition(transition))
-					.size() != 0)
+			if (DuplicateDetector.hasDuplicate(transition))
 				return true;
 			
 			return false;
@@ -768,7 +735,7 @@ public abstract class ConditionFactory {
 		}
 	}
 	
-	protected static class SignalOf<T extends Transition> extends AbstractCondition<T> {
+	protected static class SignalOf<T extends Transition> extends AbstractCondition<T> implements SignalCondition<T> {
 		protected Collection<Integer> signals;
 		
 		public SignalOf(Collection<Integer> signals) {
@@ -785,6 +752,10 @@ public abstract class ConditionFactory {
 			
 			return signals.contains(transition.getLabel().getSignal());
 		}
+		
+		public Collection<Integer> getSignals(STG stg) {
+			return signals;
+		}
 	}
 	
 	protected static class SignalOfEdge<E extends SignalEdge> extends AbstractCondition<E> {
@@ -806,7 +777,7 @@ public abstract class ConditionFactory {
 	}
 	
 	
-	protected static class SignatureOf<T extends Transition> extends AbstractCondition<T> {
+	protected static class SignatureOf<T extends Transition> extends AbstractCondition<T> implements SignalCondition<T> {
 		protected List<Signature> signatures;
 		
 		public SignatureOf(List<Signature> signatures) {
@@ -821,6 +792,16 @@ public abstract class ConditionFactory {
 		public boolean fulfilled(T transition) {
 			return signatures.contains(transition.getSTG().getSignature(transition.getLabel().getSignal()));
 		}
+		
+		public Collection<Integer> getSignals(STG stg) {
+			if (signatures.size() == 1)
+				return stg.getSignals(signatures.get(0));
+			
+			Set<Integer> result = new HashSet<Integer>();
+			for (Signature signature : signatures)
+				result.addAll(stg.getSignals(signature));
+			return result;
+		}
 	}
 	
 	
@@ -875,12 +856,23 @@ public abstract class ConditionFactory {
 		
 		protected STG stg;
 		protected File unfolding;
+		protected Prefix prefix;
 		protected Map<Node, Collection<Node>> cEffects;
 		
 		public SafeContraction(STG stg)  {
 			this.stg = stg;
 			reset();
 			
+			if (CLW.instance.UNFOLDER.getValue().equals("internal")) {
+				try {
+					prefix = new Prefix(stg);
+				}
+				catch (STGException e) {
+					e.printStackTrace();
+				}
+				return;
+			}
+			
 			try {
 				//where the STG is saved
 				File tmpSTG = File.createTempFile("desij", ".g");
@@ -966,6 +958,19 @@ public abstract class ConditionFactory {
 			}
 			
 			
+			if (unfolding == null) {
+				// some place of the preset is marked together with some place of the postset
+				if (prefix == null)
+					return false;
+				for (Place parent : parentCondition)
+					for (Place child : childCondition)
+						if (prefix.isReachable(Arrays.asList(parent, child), Collections.<Place>emptySet()))
+							return false;
+				
+				addContractionEffects(transition);
+				return true;
+			}
+			
 			for (Place place : parentCondition) {
 				cl.append(place.getString(Node.UNIQUE) + "|");
 			}
@@ -1009,15 +1014,7 @@ public abstract class ConditionFactory {
 				
 				String res = FileSupport.loadFileFromDisk(tmpOut.getCanonicalPath());
 				if (res.startsWith("NO")) {
-					
-					for (Node node : transition.getParents()) {
-						cEffects.put(node, transition.getChildren());						
-					}
-					
-					for (Node node : transition.getChildren()) {
-						cEffects.put(node, transition.getParents());						
-					}
-					
+					addContractionEffects(transition);
 					return true;
 				}
 				else 
@@ -1033,6 +1030,19 @@ public abstract class ConditionFactory {
 			return false;
 		}
 		
+		/**
+		 * Remembers which places of the original STG the places around the contracted transition comprise.
+		 */
+		protected void addContractionEffects(T transition) {
+			for (Node node : transition.getParents()) {
+				cEffects.put(node, transition.getChildren());						
+			}
+			
+			for (Node node : transition.getChildren()) {
+				cEffects.put(node, transition.getParents());						
+			}
+		}
+		
 	}
 	
 	protected static class PlaceMarking<P extends Place> extends AbstractCondition<P> {
@@ -1166,7 +1176,7 @@ public abstract class ConditionFactory {
 		@Override
 		public boolean fulfilled(P place) {
 			
-			SolverFactory factory = new SolverFactoryLpSolve();
+			SolverFactory factory = LPBackend.newSolverFactory();
 			factory.setParameter(Solver.VERBOSE, 0); // we don't need messages from the solver
 			factory.setParameter(Solver.TIMEOUT, 0); // no timeout
 			
@@ -1370,7 +1380,7 @@ public abstract class ConditionFactory {
 			long startSolver;
 			
 			
-			SolverFactory factory = new SolverFactoryLpSolve();
+			SolverFactory factory = LPBackend.newSolverFactory();
 			factory.setParameter(Solver.VERBOSE, 0); // we don't need messages from the solver
 			factory.setParameter(Solver.TIMEOUT, 0); // no timeout
 			
@@ -1408,22 +1418,22 @@ public abstract class ConditionFactory {
 				startSolver = System.currentTimeMillis();
 				Result result = factory.get().solve(problem);
 				
-				RedundantPlaceStatistics.totalSetupMills+=startSolver-startSetup;
-				RedundantPlaceStatistics.totalSolverMills+=System.currentTimeMillis()-startSolver;
+				RedundantPlaceStatistics.totalSetupMills.addAndGet(startSolver-startSetup);
+				RedundantPlaceStatistics.totalSolverMills.addAndGet(System.currentTimeMillis()-startSolver);
 				
 				//System.out.println("setup: "+((double)setup)/1000+" solver: "+((double)solver)/1000+" (implicit)");
 				
 				if (result == null) // problem is infeasible
 					continue; // i.e. place is definitely implicit w.r.t. transition "postPlace"
 				else {
-					RedundantPlaceStatistics.totalChecked++;
+					RedundantPlaceStatistics.totalChecked.incrementAndGet();
 					return false; // i.e. place is maybe not implicit
 				}
 				
 			}
 			
-			RedundantPlaceStatistics.totalChecked++;
-			RedundantPlaceStatistics.totalFound++;
+			RedundantPlaceStatistics.totalChecked.incrementAndGet();
+			RedundantPlaceStatistics.totalFound.incrementAndGet();
 			return true;
 		}
 		
@@ -1487,7 +1497,7 @@ public abstract class ConditionFactory {
 		public boolean fulfilled(T trans2) {
 			if (trans1 == trans2) return false; // no concurrency
 			
-			SolverFactory factory = new SolverFactoryLpSolve();
+			SolverFactory factory = LPBackend.newSolverFactory();
 			factory.setParameter(Solver.VERBOSE, 0); // we don't need messages from the solver
 			factory.setParameter(Solver.TIMEOUT, 0); // no timeout
 			
@@ -1830,6 +1840,14 @@ protected static class SignalConcurrencyCondition extends AbstractCondition<Inte
 		return new RedundantPlace<Place>(stg);
 	}
 	
+	/**
+	 * Same as {@link #getRedundantPlaceCondition(STG)}, but duplicate places are only found if <code>duplicates</code>
+	 * is set, e.g. because they were already removed with {@link DuplicateDetector}.
+	 */
+	public static Condition<Place> getRedundantPlaceCondition(STG stg, boolean duplicates) {
+		return new RedundantPlace<Place>(stg, duplicates);
+	}
+	
 	
 	public static Condition<Place> getPlaceMarkingCondition(int marking) {
 		return new PlaceMarking<Place>(marking);
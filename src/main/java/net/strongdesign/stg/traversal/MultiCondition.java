@@ -21,6 +21,7 @@ package net.strongdesign.stg.traversal;
 
 import java.util.*;
 
+import net.strongdesign.stg.STG;
 import net.strongdesign.stg.traversal.Condition;
 /**
  * 
@@ -33,7 +34,7 @@ import net.strongdesign.stg.traversal.Condition;
  * 
  * @author Mark Sch�fer
  */
-public  class MultiCondition<T> extends  AbstractCondition<T> {
+public  class MultiCondition<T> extends  AbstractCondition<T> implements SignalCondition<T> {
 	public static final int AND = 1;
 	public static final int OR = 2;
 	public static final int XOR = 3;
@@ -74,4 +75,33 @@ public  class MultiCondition<T> extends  AbstractCondition<T> {
 
 		return false;
 	}
+	
+	/**
+	 * A conjunction is restricted by the smallest signal restriction of its conditions,
+	 * a disjunction only if all its conditions are restricted. 
+	 */
+	public Collection<Integer> getSignals(STG stg) {
+		if (conditions.isEmpty())
+			return null;
+		
+		if (mode == AND) {
+			Collection<Integer> result = null;
+			for (Condition<? super T> actCondition : conditions) {
+				if (! (actCondition instanceof SignalCondition)) continue;
+				Collection<Integer> signals = ((SignalCondition<? super T>) actCondition).getSignals(stg);
+				if (signals != null && (result == null || signals.size() < result.size()))
+					result = signals;
+			}
+			return result;
+		}
+		
+		Set<Integer> result = new HashSet<Integer>();
+		for (Condition<? super T> actCondition : conditions) {
+			if (! (actCondition instanceof SignalCondition)) return null;
+			Collection<Integer> signals = ((SignalCondition<? super T>) actCondition).getSignals(stg);
+			if (signals == null) return null;
+			result.addAll(signals);
+		}
+		return result;
+	}
 }
\ No newline at end of file
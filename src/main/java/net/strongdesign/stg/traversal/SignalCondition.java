@@ -0,0 +1,41 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.traversal;
+
+import java.util.Collection;
+
+import net.strongdesign.stg.STG;
+
+/**
+ * A condition which can only be fulfilled by transitions with certain signals.
+ *
+ * <p>{@link STG#getTransitions(Condition)} and the collect methods of {@link STG} use
+ * {@link #getSignals(STG)} to restrict the candidates to the transitions of these signals,
+ * which are looked up in the signal index of the STG instead of scanning all transitions.
+ * The condition is still checked for every candidate.
+ */
+public interface SignalCondition<T> extends Condition<T> {
+
+	/**
+	 * Returns all signals of the given STG a transition fulfilling the condition may have,
+	 * or null if the condition is not restricted to certain signals.
+	 */
+	public Collection<Integer> getSignals(STG stg);
+}
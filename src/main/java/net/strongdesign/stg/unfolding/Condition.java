@@ -0,0 +1,94 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.unfolding;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import net.strongdesign.stg.Node;
+import net.strongdesign.stg.Place;
+
+/**
+ * A condition of a {@link Prefix}, i.e. an occurrence of a token on a place.
+ */
+public final class Condition {
+
+	private final int id;
+	private final int place;
+	private final Place stgPlace;
+	private final Event preEvent;
+	private final List<Event> postEvents;
+
+	/**The ids of the concurrent conditions.*/
+	final BitSet co;
+
+
+	Condition(int id, int place, Place stgPlace, Event preEvent) {
+		this.id = id;
+		this.place = place;
+		this.stgPlace = stgPlace;
+		this.preEvent = preEvent;
+		this.postEvents = new ArrayList<Event>(1);
+		this.co = new BitSet();
+	}
+
+	/**Returns the number of the condition, conditions are numbered consecutively from 0.*/
+	public int getId() {
+		return id;
+	}
+
+	/**Returns the position of the place in the {@link net.strongdesign.stg.NetStructure} of the prefix.*/
+	public int getPlacePosition() {
+		return place;
+	}
+
+	public Place getPlace() {
+		return stgPlace;
+	}
+
+	/**Returns the event producing this condition, null for the initial conditions.*/
+	public Event getPreEvent() {
+		return preEvent;
+	}
+
+	/**Returns the events consuming this condition.*/
+	public List<Event> getPostEvents() {
+		return Collections.unmodifiableList(postEvents);
+	}
+
+	void addPostEvent(Event event) {
+		postEvents.add(event);
+	}
+
+	/**
+	 * Returns true if both conditions are concurrent, i.e. they are marked together in some reachable marking.
+	 */
+	public boolean isConcurrent(Condition condition) {
+		return co.get(condition.id);
+	}
+
+	@Override
+	public String toString() {
+		return "c" + id + "(" + stgPlace.getString(Node.UNIQUE) + ")";
+	}
+
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.unfolding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.strongdesign.stg.NetStructure;
+import net.strongdesign.stg.Place;
+import net.strongdesign.util.sat.SATSolver;
+
+/**
+ * Encodes the configurations of a {@link Prefix} for a {@link SATSolver}, in the way mpsat does.
+ *
+ * <p>A configuration has one variable per event which is not a cut-off: an event needs the producers of its
+ * preset and no two events of a configuration consume the same condition. Since the prefix is complete, the
+ * final markings of these configurations are exactly the reachable markings. Literals for the cut, the marked
+ * places, the enabled transitions and the parity of the changes of a signal are derived from the event variables,
+ * the latter two only when they are asked for.
+ *
+ * <p>Several configurations can be encoded in the same solver, e.g. two for a coding conflict. All queries are
+ * posed as assumptions, hence the clauses learned for one query help with the next one. Like the solver, the
+ * encoding is not thread-safe.
+ */
+public class ConfigurationEncoding {
+
+	private final Prefix prefix;
+	private final NetStructure net;
+	private final SATSolver solver = new SATSolver();
+	private final List<Configuration> configurations = new ArrayList<Configuration>(2);
+
+
+	public ConfigurationEncoding(Prefix prefix) {
+		this.prefix = prefix;
+		this.net = prefix.getNetStructure();
+	}
+
+	public Prefix getPrefix() {
+		return prefix;
+	}
+
+	public SATSolver getSolver() {
+		return solver;
+	}
+
+	/**
+	 * Returns the configuration with the given number, numbers start with 0. The clauses of a configuration
+	 * are added when it is asked for the first time.
+	 */
+	public Configuration getConfiguration(int i) {
+		while (configurations.size() <= i)
+			configurations.add(new Configuration());
+		return configurations.get(i);
+	}
+
+	/**
+	 * Searches a configuration whose final marking marks all places of marked and none of unmarked,
+	 * see {@link Prefix#findConfiguration(Collection, Collection)}.
+	 * @return The events of the configuration in a firing order, null if there is no such marking
+	 */
+	public List<Event> findConfiguration(Collection<Place> marked, Collection<Place> unmarked) {
+		Configuration configuration = getConfiguration(0);
+		List<Integer> assumptions = new ArrayList<Integer>();
+		for (Place place : marked) {
+			int p = net.getLayout().getPosition(place);
+			if (p == -1)
+				return null;
+			assumptions.add(configuration.getMarked(p));
+		}
+		for (Place place : unmarked) {
+			int p = net.getLayout().getPosition(place);
+			if (p != -1)
+				assumptions.add(-configuration.getMarked(p));
+		}
+
+		if (solve(assumptions) != SATSolver.SAT)
+			return null;
+		return configuration.getEvents();
+	}
+
+	/**
+	 * Solves under the given assumptions.
+	 * @return {@link SATSolver#SAT}, {@link SATSolver#UNSAT} or {@link SATSolver#UNKNOWN}
+	 */
+	public int solve(List<Integer> assumptions) {
+		int[] literals = new int[assumptions.size()];
+		for (int i=0; i<literals.length; ++i)
+			literals[i] = assumptions.get(i);
+		return solver.solve(literals);
+	}
+
+
+	/**
+	 * A configuration of the prefix, given by the literals of its events. Other literals are defined
+	 * with respect to the final marking of the configuration.
+	 */
+	public final class Configuration {
+
+		/**Per event id, false for cut-off events.*/
+		private final int[] event;
+		/**Per condition id, true if the condition is in the cut.*/
+		private final int[] cut;
+		/**Per place position.*/
+		private final int[] marked;
+		/**Per transition position, 0 until asked for.*/
+		private final int[] enabled;
+		private final Map<Integer, Integer> parity = new HashMap<Integer, Integer>();
+
+		private Configuration() {
+			List<Event> events = prefix.getEvents();
+			List<Condition> conditions = prefix.getConditions();
+			int yes = solver.getTrue();
+
+			event = new int[events.size()];
+			for (Event e : events)
+				event[e.getId()] = e.isCutOff() ? -yes : solver.newVariable();
+
+			// causality
+			for (Event e : events)
+				if (!e.isCutOff())
+					for (Condition c : e.preset())
+						if (c.getPreEvent() != null)
+							solver.addClause(-event[e.getId()], event[c.getPreEvent().getId()]);
+
+			// conflicts and cut
+			cut = new int[conditions.size()];
+			for (Condition c : conditions) {
+				int produced = c.getPreEvent() == null ? yes : event[c.getPreEvent().getId()];
+				List<Integer> consumers = new ArrayList<Integer>(c.getPostEvents().size());
+				for (Event e : c.getPostEvents())
+					if (!e.isCutOff())
+						consumers.add(event[e.getId()]);
+
+				if (consumers.isEmpty()) {
+					cut[c.getId()] = produced;
+					continue;
+				}
+				int[] consumed = toArray(consumers);
+				solver.atMostOne(consumed);
+
+				int inCut = solver.newVariable();
+				int[] clause = new int[consumed.length + 2];
+				solver.addClause(-inCut, produced);
+				for (int i=0; i<consumed.length; ++i) {
+					solver.addClause(-inCut, -consumed[i]);
+					clause[i] = consumed[i];
+				}
+				clause[consumed.length] = -produced;
+				clause[consumed.length + 1] = inCut;
+				solver.addClause(clause);
+				cut[c.getId()] = inCut;
+			}
+
+			List<List<Integer>> inCut = new ArrayList<List<Integer>>(net.getNumberOfPlaces());
+			for (int p=0; p<net.getNumberOfPlaces(); ++p)
+				inCut.add(new ArrayList<Integer>(2));
+			for (Condition c : conditions)
+				inCut.get(c.getPlacePosition()).add(cut[c.getId()]);
+			marked = new int[net.getNumberOfPlaces()];
+			for (int p=0; p<marked.length; ++p)
+				marked[p] = solver.or(toArray(inCut.get(p)));
+
+			enabled = new int[net.getNumberOfTransitions()];
+		}
+
+		/**Returns the literal of the event, which is false for cut-off events.*/
+		public int getEvent(Event e) {
+			return event[e.getId()];
+		}
+
+		/**Returns the literal which is true if the condition belongs to the cut.*/
+		public int getCut(Condition c) {
+			return cut[c.getId()];
+		}
+
+		/**Returns the literal which is true if the place with the given position is marked.*/
+		public int getMarked(int place) {
+			return marked[place];
+		}
+
+		/**Returns the literal which is true if the transition with the given position is enabled.*/
+		public int getEnabled(int t) {
+			if (enabled[t] == 0) {
+				int[] pre = net.getPreset(t);
+				int[] literals = new int[pre.length];
+				for (int i=0; i<pre.length; ++i)
+					literals[i] = marked[pre[i]];
+				enabled[t] = solver.and(literals);
+			}
+			return enabled[t];
+		}
+
+		/**
+		 * Returns the literal which is true if the configuration contains an odd number of events
+		 * of the signal.
+		 */
+		public int getParity(Integer signal) {
+			Integer result = parity.get(signal);
+			if (result == null) {
+				result = -solver.getTrue();
+				for (Event e : prefix.getEvents())
+					if (!e.isCutOff() && e.getTransition().getLabel().getSignal().equals(signal))
+						result = result == -solver.getTrue() ? event[e.getId()] : solver.xor(result, event[e.getId()]);
+				parity.put(signal, result);
+			}
+			return result;
+		}
+
+		/**Returns the events of the configuration in the last model of the solver, in a firing order.*/
+		public List<Event> getEvents() {
+			List<Event> result = new ArrayList<Event>();
+			for (Event e : prefix.getEvents())
+				if (!e.isCutOff() && solver.getValue(event[e.getId()]))
+					result.add(e);
+			return result;
+		}
+
+		/**Returns the final marking in the last model of the solver, as the places which are marked.*/
+		public boolean[] getMarking() {
+			boolean[] result = new boolean[marked.length];
+			for (int p=0; p<marked.length; ++p)
+				result[p] = solver.getValue(marked[p]);
+			return result;
+		}
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] result = new int[list.size()];
+		for (int i=0; i<result.length; ++i)
+			result[i] = list.get(i);
+		return result;
+	}
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.unfolding;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.strongdesign.stg.Node;
+import net.strongdesign.stg.PackedMarking;
+import net.strongdesign.stg.Transition;
+
+/**
+ * An event of a {@link Prefix}, i.e. an occurrence of a transition.
+ *
+ * <p>Besides the pre- and postset every event knows the data of its local configuration [e] needed for
+ * the adequate order: its size, its Parikh vector, its depth and the marking reached by it.
+ */
+public final class Event {
+
+	private int id;
+	private final int transition;
+	private final Transition stgTransition;
+	private final Condition[] preset;
+	private Condition[] postset;
+
+	private final int size;
+	/**The Parikh vector of [e] as pairs of transition position and count, sorted by position.*/
+	private final int[] parikh;
+	/**The length of the longest causal chain ending with this event.*/
+	private final int depth;
+	private final PackedMarking marking;
+
+	private boolean cutOff;
+	private Event companion;
+
+
+	Event(int transition, Transition stgTransition, Condition[] preset, int size, int[] parikh, int depth,
+			PackedMarking marking) {
+		this.id = -1;
+		this.transition = transition;
+		this.stgTransition = stgTransition;
+		this.preset = preset;
+		this.size = size;
+		this.parikh = parikh;
+		this.depth = depth;
+		this.marking = marking;
+	}
+
+	/**Returns the number of the event, events are numbered consecutively from 0 in the order they were added.*/
+	public int getId() {
+		return id;
+	}
+
+	void setId(int id) {
+		this.id = id;
+	}
+
+	/**Returns the position of the transition in the {@link net.strongdesign.stg.NetStructure} of the prefix.*/
+	public int getTransitionPosition() {
+		return transition;
+	}
+
+	public Transition getTransition() {
+		return stgTransition;
+	}
+
+	public List<Condition> getPreset() {
+		return Collections.unmodifiableList(Arrays.asList(preset));
+	}
+
+	public List<Condition> getPostset() {
+		return Collections.unmodifiableList(Arrays.asList(postset));
+	}
+
+	Condition[] preset() {
+		return preset;
+	}
+
+	Condition[] postset() {
+		return postset;
+	}
+
+	void setPostset(Condition[] postset) {
+		this.postset = postset;
+	}
+
+	/**Returns the number of events of the local configuration, including this event.*/
+	public int getLocalConfigurationSize() {
+		return size;
+	}
+
+	int[] getParikh() {
+		return parikh;
+	}
+
+	int getDepth() {
+		return depth;
+	}
+
+	/**Returns the marking reached by firing the local configuration.*/
+	public PackedMarking getMarking() {
+		return marking;
+	}
+
+	/**Returns true if the event is a cut-off event, the prefix is not continued after it.*/
+	public boolean isCutOff() {
+		return cutOff;
+	}
+
+	void setCutOff(boolean cutOff) {
+		this.cutOff = cutOff;
+	}
+
+	/**
+	 * Returns the event whose local configuration reaches the same marking as the one of this cut-off event,
+	 * null if it is the initial marking or this is no cut-off event.
+	 */
+	public Event getCompanion() {
+		return companion;
+	}
+
+	void setCompanion(Event companion) {
+		this.companion = companion;
+	}
+
+	/**Returns how often the transition with the given position occurs in the local configuration [e].*/
+	public int getOccurrences(int transition) {
+		for (int i=0; i<parikh.length; i+=2)
+			if (parikh[i] == transition)
+				return parikh[i+1];
+		return 0;
+	}
+
+	@Override
+	public String toString() {
+		return "e" + id + "(" + stgTransition.getString(Node.UNIQUE) + ")";
+	}
+
+}
@@ -0,0 +1,577 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.stg.unfolding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.strongdesign.stg.Marking;
+import net.strongdesign.stg.NetStructure;
+import net.strongdesign.stg.PackedMarking;
+import net.strongdesign.stg.Place;
+import net.strongdesign.stg.STG;
+import net.strongdesign.stg.STGException;
+
+/**
+ * A complete finite prefix of the unfolding of a bounded STG, built in-process with the algorithm of
+ * Esparza, R&ouml;mer and Vogler.
+ *
+ * <p>Possible extensions are added in the total adequate order of ERV: the size of the local configuration,
+ * then its Parikh vector, then its Foata normal form. An event is a cut-off if an event added before, or the
+ * empty configuration, reaches the same marking. Every reachable marking of the STG is reached by a configuration
+ * of the prefix, and every cut of the prefix is a reachable marking.
+ *
+ * <p>Besides the prefix itself, {@link #findConfiguration(Collection, Collection)} answers reachability queries
+ * for markings where some places are marked and others are not, which is what mpsat -F was used for.
+ *
+ * <p>The concurrency relation is stored as one bit set per condition, hence the prefix is meant for the small
+ * STGs checked during decomposition. A prefix is not modified after construction and queries can be
+ * answered by several threads at once.
+ */
+public class Prefix {
+
+	private final STG stg;
+	private final NetStructure net;
+
+	private final List<Condition> conditions = new ArrayList<Condition>();
+	private final List<Event> events = new ArrayList<Event>();
+	private final List<Condition> initialConditions = new ArrayList<Condition>();
+	private final List<List<Condition>> conditionsOfPlace;
+	private int numberOfCutOffs;
+
+	private final int[] initialValues;
+
+	// buffers for computing local configurations
+	private int[] stamp = new int[16];
+	private int currentStamp;
+	private final int[] transitionCount;
+
+
+	/**
+	 * Unfolds the STG.
+	 * @throws STGException if the STG has weighted arcs or transitions with an empty preset
+	 */
+	public Prefix(STG stg) throws STGException {
+		this.stg = stg;
+		this.net = new NetStructure(stg);
+		this.transitionCount = new int[net.getNumberOfTransitions()];
+
+		for (int t=0; t<net.getNumberOfTransitions(); ++t) {
+			if (net.getPreset(t).length == 0)
+				throw new STGException("Cannot unfold transitions without preset: " + net.getTransition(t));
+			for (int p : net.getPreset(t))
+				if (net.getPreWeight(t, p) != 1)
+					throw new STGException("Cannot unfold weighted arcs: " + net.getTransition(t));
+			for (int p : net.getPostset(t))
+				if (net.getPostWeight(t, p) != 1)
+					throw new STGException("Cannot unfold weighted arcs: " + net.getTransition(t));
+		}
+
+		conditionsOfPlace = new ArrayList<List<Condition>>(net.getNumberOfPlaces());
+		for (int p=0; p<net.getNumberOfPlaces(); ++p)
+			conditionsOfPlace.add(new ArrayList<Condition>(2));
+
+		initialValues = net.getValues(net.getInitialMarking());
+		unfold();
+	}
+
+
+	// *******************************************************************
+	// Construction
+	// *******************************************************************
+
+	private void unfold() {
+		PriorityQueue<Event> extensions = new PriorityQueue<Event>(16, new AdequateOrder());
+		// the first event reaching a marking, null for the initial marking
+		Map<Marking, Event> markings = new HashMap<Marking, Event>();
+		markings.put(net.getInitialMarking(), null);
+
+		for (int p=0; p<initialValues.length; ++p)
+			for (int i=0; i<initialValues[p]; ++i)
+				initialConditions.add(newCondition(p, null));
+
+		Condition[] initial = initialConditions.toArray(new Condition[initialConditions.size()]);
+		for (Condition c : initial)
+			for (Condition d : initial)
+				if (c != d)
+					c.co.set(d.getId());
+		addExtensions(initial, new BitSet(), extensions);
+
+		while (!extensions.isEmpty()) {
+			Event event = extensions.poll();
+			BitSet co = insert(event);
+
+			if (markings.containsKey(event.getMarking())) {
+				event.setCutOff(true);
+				event.setCompanion(markings.get(event.getMarking()));
+				++numberOfCutOffs;
+			}
+			else {
+				markings.put(event.getMarking(), event);
+				addExtensions(event.postset(), co, extensions);
+			}
+		}
+	}
+
+	private Condition newCondition(int place, Event preEvent) {
+		Condition condition = new Condition(conditions.size(), place, net.getLayout().getPlaces()[place], preEvent);
+		conditions.add(condition);
+		conditionsOfPlace.get(place).add(condition);
+		return condition;
+	}
+
+	/**
+	 * Adds the event and its postset to the prefix and updates the concurrency relation.
+	 * @return The conditions concurrent to the event
+	 */
+	private BitSet insert(Event event) {
+		event.setId(events.size());
+		events.add(event);
+
+		Condition[] preset = event.preset();
+		BitSet co = (BitSet) preset[0].co.clone();
+		for (int i=1; i<preset.length; ++i)
+			co.and(preset[i].co);
+		for (Condition c : preset)
+			c.addPostEvent(event);
+
+		int[] places = net.getPostset(event.getTransitionPosition());
+		Condition[] postset = new Condition[places.length];
+		BitSet ids = new BitSet();
+		for (int i=0; i<places.length; ++i) {
+			postset[i] = newCondition(places[i], event);
+			ids.set(postset[i].getId());
+		}
+		event.setPostset(postset);
+
+		for (Condition c : postset) {
+			c.co.or(co);
+			c.co.or(ids);
+			c.co.clear(c.getId());
+		}
+		for (int d = co.nextSetBit(0); d >= 0; d = co.nextSetBit(d+1))
+			conditions.get(d).co.or(ids);
+
+		return co;
+	}
+
+	/**
+	 * Adds all possible extensions whose preset contains one of the fresh conditions and otherwise conditions
+	 * concurrent to them.
+	 */
+	private void addExtensions(Condition[] fresh, BitSet co, PriorityQueue<Event> extensions) {
+		BitSet freshIds = new BitSet();
+		Set<Integer> transitions = new TreeSet<Integer>();
+		for (Condition c : fresh) {
+			freshIds.set(c.getId());
+			for (int t : net.getConsumers(c.getPlacePosition()))
+				transitions.add(t);
+		}
+		BitSet allowed = (BitSet) co.clone();
+		allowed.or(freshIds);
+
+		for (int t : transitions) {
+			int[] preset = net.getPreset(t);
+			List<List<Condition>> options = new ArrayList<List<Condition>>(preset.length);
+			for (int p : preset) {
+				List<Condition> candidates = new ArrayList<Condition>();
+				for (Condition c : conditionsOfPlace.get(p))
+					if (allowed.get(c.getId()) && (c.getPreEvent() == null || !c.getPreEvent().isCutOff()))
+						candidates.add(c);
+				if (candidates.isEmpty())
+					break;
+				options.add(candidates);
+			}
+			if (options.size() < preset.length)
+				continue;
+
+			chooseConditions(t, options, new Condition[preset.length], 0, false, freshIds, extensions);
+		}
+	}
+
+	private void chooseConditions(int t, List<List<Condition>> options, Condition[] chosen, int i,
+			boolean containsFresh, BitSet freshIds, PriorityQueue<Event> extensions) {
+		if (i == chosen.length) {
+			if (containsFresh)
+				extensions.add(newEvent(t, chosen.clone()));
+			return;
+		}
+
+		next: for (Condition c : options.get(i)) {
+			for (int j=0; j<i; ++j)
+				if (!chosen[j].co.get(c.getId()))
+					continue next;
+			chosen[i] = c;
+			chooseConditions(t, options, chosen, i+1, containsFresh || freshIds.get(c.getId()), freshIds, extensions);
+		}
+	}
+
+	/**
+	 * Creates a possible extension, i.e. computes the data of its local configuration.
+	 */
+	private Event newEvent(int t, Condition[] preset) {
+		List<Event> local = localConfiguration(preset);
+
+		int[] values = initialValues.clone();
+		List<Integer> touched = new ArrayList<Integer>();
+		int depth = 0;
+		for (Event e : local) {
+			net.fire(values, e.getTransitionPosition());
+			if (transitionCount[e.getTransitionPosition()]++ == 0)
+				touched.add(e.getTransitionPosition());
+		}
+		for (Condition c : preset)
+			if (c.getPreEvent() != null)
+				depth = Math.max(depth, c.getPreEvent().getDepth());
+		net.fire(values, t);
+		if (transitionCount[t]++ == 0)
+			touched.add(t);
+
+		Collections.sort(touched);
+		int[] parikh = new int[touched.size() * 2];
+		for (int i=0; i<touched.size(); ++i) {
+			parikh[2*i] = touched.get(i);
+			parikh[2*i+1] = transitionCount[touched.get(i)];
+			transitionCount[touched.get(i)] = 0;
+		}
+
+		PackedMarking marking = net.pack(values);
+		return new Event(t, net.getTransition(t), preset, local.size() + 1, parikh, depth + 1, marking);
+	}
+
+	/**
+	 * Returns the union of the local configurations of the producers of the given conditions.
+	 */
+	private List<Event> localConfiguration(Condition[] conditions) {
+		if (stamp.length < events.size())
+			stamp = Arrays.copyOf(stamp, Math.max(events.size(), stamp.length * 2));
+		++currentStamp;
+
+		List<Event> result = new ArrayList<Event>();
+		List<Event> work = new ArrayList<Event>();
+		for (Condition c : conditions)
+			visit(c.getPreEvent(), result, work);
+		while (!work.isEmpty()) {
+			Event e = work.remove(work.size() - 1);
+			for (Condition c : e.preset())
+				visit(c.getPreEvent(), result, work);
+		}
+		return result;
+	}
+
+	private void visit(Event e, List<Event> result, List<Event> work) {
+		if (e == null || stamp[e.getId()] == currentStamp)
+			return;
+		stamp[e.getId()] = currentStamp;
+		result.add(e);
+		work.add(e);
+	}
+
+
+	/**
+	 * The total adequate order of Esparza, R&ouml;mer and Vogler.
+	 */
+	private class AdequateOrder implements Comparator<Event> {
+		public int compare(Event a, Event b) {
+			if (a.getLocalConfigurationSize() != b.getLocalConfigurationSize())
+				return a.getLocalConfigurationSize() < b.getLocalConfigurationSize() ? -1 : 1;
+
+			int result = compareMultisets(a.getParikh(), b.getParikh());
+			if (result != 0)
+				return result;
+
+			List<int[]> foataA = foata(a), foataB = foata(b);
+			for (int i=0; i<Math.min(foataA.size(), foataB.size()); ++i) {
+				result = compareMultisets(foataA.get(i), foataB.get(i));
+				if (result != 0)
+					return result;
+			}
+			return foataA.size() - foataB.size();
+		}
+	}
+
+	/**
+	 * Compares multisets of transitions given as sorted pairs of transition and count: the first transition
+	 * where the counts differ decides, the multiset with fewer occurrences is smaller.
+	 */
+	private static int compareMultisets(int[] a, int[] b) {
+		int i = 0;
+		for (; i < a.length && i < b.length; i += 2) {
+			if (a[i] != b[i])
+				return a[i] < b[i] ? 1 : -1;
+			if (a[i+1] != b[i+1])
+				return a[i+1] < b[i+1] ? -1 : 1;
+		}
+		if (i < a.length)
+			return 1;
+		if (i < b.length)
+			return -1;
+		return 0;
+	}
+
+	/**
+	 * Returns the Foata normal form of the local configuration of a possible extension, as one multiset
+	 * per level.
+	 */
+	private List<int[]> foata(Event event) {
+		List<Event> local = localConfiguration(event.preset());
+		int levels = event.getDepth();
+		List<List<Integer>> byLevel = new ArrayList<List<Integer>>(levels);
+		for (int i=0; i<levels; ++i)
+			byLevel.add(new ArrayList<Integer>());
+		for (Event e : local)
+			byLevel.get(e.getDepth() - 1).add(e.getTransitionPosition());
+		byLevel.get(levels - 1).add(event.getTransitionPosition());
+
+		List<int[]> result = new ArrayList<int[]>(levels);
+		for (List<Integer> level : byLevel) {
+			Collections.sort(level);
+			List<Integer> pairs = new ArrayList<Integer>();
+			for (int t : level) {
+				int n = pairs.size();
+				if (n > 0 && pairs.get(n-2) == t)
+					pairs.set(n-1, pairs.get(n-1) + 1);
+				else {
+					pairs.add(t);
+					pairs.add(1);
+				}
+			}
+			int[] multiset = new int[pairs.size()];
+			for (int i=0; i<multiset.length; ++i)
+				multiset[i] = pairs.get(i);
+			result.add(multiset);
+		}
+		return result;
+	}
+
+
+	// *******************************************************************
+	// Access
+	// *******************************************************************
+
+	public STG getSTG() {
+		return stg;
+	}
+
+	/**Returns the numbering of places and transitions used by the prefix.*/
+	public NetStructure getNetStructure() {
+		return net;
+	}
+
+	/**Returns all conditions, indexed by their id.*/
+	public List<Condition> getConditions() {
+		return Collections.unmodifiableList(conditions);
+	}
+
+	/**Returns all events including the cut-off events, indexed by their id.*/
+	public List<Event> getEvents() {
+		return Collections.unmodifiableList(events);
+	}
+
+	public List<Condition> getInitialConditions() {
+		return Collections.unmodifiableList(initialConditions);
+	}
+
+	/**Returns the conditions labelled with the given place.*/
+	public List<Condition> getConditions(Place place) {
+		int p = net.getLayout().getPosition(place);
+		if (p == -1)
+			return Collections.emptyList();
+		return Collections.unmodifiableList(conditionsOfPlace.get(p));
+	}
+
+	public int getNumberOfCutOffs() {
+		return numberOfCutOffs;
+	}
+
+	/**
+	 * Returns true if the STG is safe, i.e. no two conditions of the same place are concurrent.
+	 */
+	public boolean isSafe() {
+		for (List<Condition> ofPlace : conditionsOfPlace)
+			for (int i=0; i<ofPlace.size(); ++i)
+				for (int j=i+1; j<ofPlace.size(); ++j)
+					if (ofPlace.get(i).isConcurrent(ofPlace.get(j)))
+						return false;
+		return true;
+	}
+
+
+	// *******************************************************************
+	// Reachability
+	// *******************************************************************
+
+	/**
+	 * Returns true if a marking is reachable where all places of marked carry a token and all places of
+	 * unmarked are empty.
+	 */
+	public boolean isReachable(Collection<Place> marked, Collection<Place> unmarked) {
+		return findConfiguration(marked, unmarked) != null;
+	}
+
+	/**
+	 * Searches a configuration whose final marking marks all places of marked and none of unmarked.
+	 *
+	 * <p>First a set of concurrent conditions for the marked places is chosen, then events are added to
+	 * the configuration as long as its cut contains a condition of an unmarked place, trying every consumer
+	 * of that condition.
+	 *
+	 * @return The events of the configuration in a firing order, null if there is no such marking
+	 */
+	public List<Event> findConfiguration(Collection<Place> marked, Collection<Place> unmarked) {
+		List<List<Condition>> options = new ArrayList<List<Condition>>();
+		for (Place place : new LinkedHashSet<Place>(marked)) {
+			List<Condition> candidates = getConditions(place);
+			if (candidates.isEmpty())
+				return null;
+			options.add(candidates);
+		}
+		Collections.sort(options, new Comparator<List<Condition>>() {
+			public int compare(List<Condition> a, List<Condition> b) {
+				return a.size() - b.size();
+			}
+		});
+
+		boolean[] forbidden = new boolean[net.getNumberOfPlaces()];
+		for (Place place : unmarked) {
+			int p = net.getLayout().getPosition(place);
+			if (p != -1)
+				forbidden[p] = true;
+		}
+
+		return chooseCut(options, new Condition[options.size()], 0, forbidden);
+	}
+
+	private List<Event> chooseCut(List<List<Condition>> options, Condition[] chosen, int i, boolean[] forbidden) {
+		if (i == chosen.length) {
+			BitSet configuration = new BitSet();
+			addLocalConfiguration(chosen, configuration);
+			BitSet keep = new BitSet();
+			for (Condition c : chosen)
+				keep.set(c.getId());
+
+			BitSet result = extend(configuration, keep, forbidden, new HashSet<BitSet>());
+			if (result == null)
+				return null;
+
+			List<Event> trace = new ArrayList<Event>(result.cardinality());
+			for (int e = result.nextSetBit(0); e >= 0; e = result.nextSetBit(e+1))
+				trace.add(events.get(e));
+			return trace;
+		}
+
+		next: for (Condition c : options.get(i)) {
+			for (int j=0; j<i; ++j)
+				if (!chosen[j].co.get(c.getId()))
+					continue next;
+			chosen[i] = c;
+			List<Event> result = chooseCut(options, chosen, i+1, forbidden);
+			if (result != null)
+				return result;
+		}
+		return null;
+	}
+
+	/**
+	 * Extends the configuration until its cut contains no forbidden condition, without consuming the
+	 * conditions to keep.
+	 */
+	private BitSet extend(BitSet configuration, BitSet keep, boolean[] forbidden, Set<BitSet> visited) {
+		if (!visited.add(configuration))
+			return null;
+
+		// the forbidden condition of the cut with the fewest consumers
+		Condition bad = null;
+		for (int p=0; p<forbidden.length; ++p) {
+			if (!forbidden[p])
+				continue;
+			for (Condition c : conditionsOfPlace.get(p))
+				if (inCut(c, configuration) && (bad == null || c.getPostEvents().size() < bad.getPostEvents().size()))
+					bad = c;
+		}
+		if (bad == null)
+			return configuration;
+
+		next: for (Event f : bad.getPostEvents()) {
+			BitSet extended = (BitSet) configuration.clone();
+			BitSet added = new BitSet();
+			addLocalConfiguration(f.preset(), added);
+			added.set(f.getId());
+			added.andNot(configuration);
+
+			for (int id = added.nextSetBit(0); id >= 0; id = added.nextSetBit(id+1)) {
+				Event e = events.get(id);
+				for (Condition c : e.preset()) {
+					if (keep.get(c.getId()))
+						continue next;
+					for (Event consumer : c.getPostEvents())
+						if (consumer != e && configuration.get(consumer.getId()))
+							continue next;
+				}
+				extended.set(e.getId());
+			}
+
+			BitSet result = extend(extended, keep, forbidden, visited);
+			if (result != null)
+				return result;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the local configurations of the producers of the given conditions to the configuration. Unlike
+	 * {@link #localConfiguration(Condition[])} this only reads the prefix.
+	 */
+	private static void addLocalConfiguration(Condition[] conditions, BitSet configuration) {
+		List<Event> work = new ArrayList<Event>();
+		for (Condition c : conditions)
+			work.add(c.getPreEvent());
+		while (!work.isEmpty()) {
+			Event e = work.remove(work.size() - 1);
+			if (e == null || configuration.get(e.getId()))
+				continue;
+			configuration.set(e.getId());
+			for (Condition c : e.preset())
+				work.add(c.getPreEvent());
+		}
+	}
+
+	private static boolean inCut(Condition c, BitSet configuration) {
+		if (c.getPreEvent() != null && !configuration.get(c.getPreEvent().getId()))
+			return false;
+		for (Event e : c.getPostEvents())
+			if (configuration.get(e.getId()))
+				return false;
+		return true;
+	}
+
+}
@@ -0,0 +1,652 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.util.bdd;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A small reduced ordered binary decision diagram package.
+ *
+ * <p>BDDs are represented by int handles into a node table, {@link #ZERO} and {@link #ONE} are the terminals.
+ * Variables are identified with their level, i.e. variable 0 is the topmost; a good variable order has to be
+ * chosen by the caller, see {@link BDDOrdering}.
+ *
+ * <p>Memory is reclaimed by a mark and sweep garbage collection which only runs at the start of an operation.
+ * Hence, every BDD which is used after another operation has been started must be protected with
+ * {@link #ref(int)} and released with {@link #deref(int)} later.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public class BDD {
+
+	public static final int ZERO = 0;
+	public static final int ONE = 1;
+
+	private static final int OP_AND = 0;
+	private static final int OP_OR = 1;
+	private static final int OP_XOR = 2;
+	private static final int OP_NOT = 3;
+	private static final int OP_EXISTS = 4;
+	private static final int OP_AND_EXISTS = 5;
+
+	private final int numberOfVariables;
+
+	// the node table, a free node has var == -1
+	private int[] var;
+	private int[] low;
+	private int[] high;
+	private int[] next;
+	private int[] refs;
+
+	private int[] buckets;
+	private int freeList;
+	private int freeNodes;
+
+	// a lossy cache for operation results
+	private int[] cacheOp;
+	private int[] cacheA;
+	private int[] cacheB;
+	private int[] cacheC;
+	private int[] cacheResult;
+
+	/**Variables of the cube of the current quantification.*/
+	private boolean[] quantified;
+
+	/**The BDDs of the variables and their negations, they are never collected.*/
+	private int[] vars;
+	private int[] negatedVars;
+
+
+	/**
+	 * @param numberOfVariables The number of variables, they can not be added later.
+	 */
+	public BDD(int numberOfVariables) {
+		this(numberOfVariables, 1 << 16);
+	}
+
+	public BDD(int numberOfVariables, int initialNodes) {
+		this.numberOfVariables = numberOfVariables;
+		int size = Integer.highestOneBit(Math.max(initialNodes, 1024) - 1) << 1;
+
+		var = new int[size];
+		low = new int[size];
+		high = new int[size];
+		next = new int[size];
+		refs = new int[size];
+		buckets = new int[size];
+		Arrays.fill(buckets, -1);
+
+		var[ZERO] = var[ONE] = numberOfVariables;
+		low[ONE] = high[ONE] = ONE;
+		refs[ZERO] = refs[ONE] = Integer.MAX_VALUE;
+
+		freeList = -1;
+		for (int i=size-1; i>=2; --i) {
+			var[i] = -1;
+			next[i] = freeList;
+			freeList = i;
+		}
+		freeNodes = size - 2;
+
+		int cacheSize = size;
+		cacheOp = new int[cacheSize];
+		cacheA = new int[cacheSize];
+		cacheB = new int[cacheSize];
+		cacheC = new int[cacheSize];
+		cacheResult = new int[cacheSize];
+		Arrays.fill(cacheOp, -1);
+
+		quantified = new boolean[numberOfVariables];
+
+		vars = new int[numberOfVariables];
+		negatedVars = new int[numberOfVariables];
+		for (int v=0; v<numberOfVariables; ++v) {
+			vars[v] = mk(v, ZERO, ONE);
+			refs[vars[v]] = Integer.MAX_VALUE;
+			negatedVars[v] = mk(v, ONE, ZERO);
+			refs[negatedVars[v]] = Integer.MAX_VALUE;
+		}
+	}
+
+	public int getNumberOfVariables() {
+		return numberOfVariables;
+	}
+
+	/**
+	 * Returns the number of nodes currently allocated, including garbage which has not been collected yet.
+	 */
+	public int getNumberOfNodes() {
+		return var.length - freeNodes;
+	}
+
+	/**
+	 * Returns the number of nodes of the BDD, including the terminals.
+	 */
+	public int nodeCount(int f) {
+		boolean[] marked = new boolean[var.length];
+		mark(f, marked);
+		int result = 0;
+		for (boolean m : marked)
+			if (m)
+				++result;
+		return result;
+	}
+
+
+	// *******************************************************************
+	// References and garbage collection
+	// *******************************************************************
+
+	/**
+	 * Protects the BDD from garbage collection.
+	 * @return f
+	 */
+	public int ref(int f) {
+		if (refs[f] != Integer.MAX_VALUE)
+			++refs[f];
+		return f;
+	}
+
+	/**
+	 * Releases a BDD protected with {@link #ref(int)}.
+	 */
+	public void deref(int f) {
+		if (refs[f] != Integer.MAX_VALUE && refs[f] > 0)
+			--refs[f];
+	}
+
+	/**
+	 * Called at the start of each operation, collects garbage or grows the table if it is almost full.
+	 */
+	private void checkSpace() {
+		if (freeNodes * 4 >= var.length)
+			return;
+
+		collectGarbage();
+		if (freeNodes * 2 < var.length)
+			grow();
+	}
+
+	/**
+	 * Frees all nodes which are not reachable from a referenced node.
+	 */
+	public void collectGarbage() {
+		boolean[] marked = new boolean[var.length];
+		marked[ZERO] = marked[ONE] = true;
+		for (int i=2; i<var.length; ++i)
+			if (var[i] != -1 && refs[i] > 0)
+				mark(i, marked);
+
+		Arrays.fill(buckets, -1);
+		freeList = -1;
+		freeNodes = 0;
+		for (int i=var.length-1; i>=2; --i) {
+			if (marked[i]) {
+				int b = hash(var[i], low[i], high[i]) & (buckets.length - 1);
+				next[i] = buckets[b];
+				buckets[b] = i;
+			}
+			else {
+				var[i] = -1;
+				refs[i] = 0;
+				next[i] = freeList;
+				freeList = i;
+				++freeNodes;
+			}
+		}
+
+		Arrays.fill(cacheOp, -1);
+	}
+
+	private void mark(int f, boolean[] marked) {
+		while (!marked[f]) {
+			marked[f] = true;
+			mark(low[f], marked);
+			f = high[f];
+		}
+	}
+
+	private void grow() {
+		int oldSize = var.length;
+		int size = oldSize * 2;
+
+		var = Arrays.copyOf(var, size);
+		low = Arrays.copyOf(low, size);
+		high = Arrays.copyOf(high, size);
+		next = Arrays.copyOf(next, size);
+		refs = Arrays.copyOf(refs, size);
+
+		for (int i=size-1; i>=oldSize; --i) {
+			var[i] = -1;
+			next[i] = freeList;
+			freeList = i;
+		}
+		freeNodes += size - oldSize;
+
+		buckets = new int[size];
+		Arrays.fill(buckets, -1);
+		for (int i=2; i<size; ++i)
+			if (var[i] != -1) {
+				int b = hash(var[i], low[i], high[i]) & (size - 1);
+				next[i] = buckets[b];
+				buckets[b] = i;
+			}
+
+		cacheOp = new int[size];
+		cacheA = new int[size];
+		cacheB = new int[size];
+		cacheC = new int[size];
+		cacheResult = new int[size];
+		Arrays.fill(cacheOp, -1);
+	}
+
+
+	// *******************************************************************
+	// Nodes
+	// *******************************************************************
+
+	private static int hash(int v, int l, int h) {
+		int x = v * 0x9E3779B1 + l * 0x85EBCA6B + h * 0xC2B2AE35;
+		return x ^ (x >>> 15);
+	}
+
+	/**
+	 * Returns the unique node for the given variable and children.
+	 */
+	private int mk(int v, int l, int h) {
+		if (l == h)
+			return l;
+
+		int b = hash(v, l, h) & (buckets.length - 1);
+		for (int n = buckets[b]; n != -1; n = next[n])
+			if (var[n] == v && low[n] == l && high[n] == h)
+				return n;
+
+		if (freeList == -1) {
+			grow();
+			b = hash(v, l, h) & (buckets.length - 1);
+		}
+
+		int n = freeList;
+		freeList = next[n];
+		--freeNodes;
+
+		var[n] = v;
+		low[n] = l;
+		high[n] = h;
+		refs[n] = 0;
+		next[n] = buckets[b];
+		buckets[b] = n;
+		return n;
+	}
+
+	/**Returns the variable of the root node, {@link #getNumberOfVariables()} for terminals.*/
+	public int var(int f) {
+		return var[f];
+	}
+
+	public int low(int f) {
+		return low[f];
+	}
+
+	public int high(int f) {
+		return high[f];
+	}
+
+
+	// *******************************************************************
+	// Operations
+	// *******************************************************************
+
+	/**Returns the BDD of the variable, it does not need to be referenced.*/
+	public int ithVar(int v) {
+		return vars[v];
+	}
+
+	/**Returns the BDD of the negated variable, it does not need to be referenced.*/
+	public int nithVar(int v) {
+		return negatedVars[v];
+	}
+
+	public int and(int f, int g) {
+		checkSpace();
+		return apply(OP_AND, f, g);
+	}
+
+	public int or(int f, int g) {
+		checkSpace();
+		return apply(OP_OR, f, g);
+	}
+
+	public int xor(int f, int g) {
+		checkSpace();
+		return apply(OP_XOR, f, g);
+	}
+
+	public int not(int f) {
+		checkSpace();
+		return not0(f);
+	}
+
+	/**Returns f and not g.*/
+	public int diff(int f, int g) {
+		checkSpace();
+		int ng = ref(not0(g));
+		int result = apply(OP_AND, f, ng);
+		deref(ng);
+		return result;
+	}
+
+	/**
+	 * Existential quantification of the variables of the given cube, i.e. a conjunction of positive variables.
+	 */
+	public int exists(int f, int cube) {
+		checkSpace();
+		setQuantified(cube);
+		return exists0(f, cube);
+	}
+
+	/**
+	 * Returns exists cube: f and g, without building the conjunction.
+	 */
+	public int andExists(int f, int g, int cube) {
+		checkSpace();
+		setQuantified(cube);
+		return andExists0(f, g, cube);
+	}
+
+	/**
+	 * Returns the cube, i.e. the conjunction of the given positive variables.
+	 */
+	public int cube(int... vars) {
+		checkSpace();
+		int[] sorted = vars.clone();
+		Arrays.sort(sorted);
+		int result = ONE;
+		for (int i=sorted.length-1; i>=0; --i)
+			result = mk(sorted[i], ZERO, result);
+		return result;
+	}
+
+	/**
+	 * Returns the conjunction of the literals, variables with value true are positive, with false negative.
+	 */
+	public int minterm(int[] vars, boolean[] values) {
+		checkSpace();
+		Integer[] order = new Integer[vars.length];
+		for (int i=0; i<order.length; ++i)
+			order[i] = i;
+		final int[] v = vars;
+		Arrays.sort(order, new java.util.Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return v[a] - v[b];
+			}
+		});
+		int result = ONE;
+		for (int i=order.length-1; i>=0; --i) {
+			int k = order[i];
+			result = values[k] ? mk(vars[k], ZERO, result) : mk(vars[k], result, ZERO);
+		}
+		return result;
+	}
+
+
+	private int cacheSlot(int op, int a, int b, int c) {
+		int x = hash(op * 31 + a, b, c);
+		return x & (cacheOp.length - 1);
+	}
+
+	private int apply(int op, int f, int g) {
+		switch (op) {
+		case OP_AND:
+			if (f == ZERO || g == ZERO) return ZERO;
+			if (f == ONE) return g;
+			if (g == ONE) return f;
+			if (f == g) return f;
+			break;
+		case OP_OR:
+			if (f == ONE || g == ONE) return ONE;
+			if (f == ZERO) return g;
+			if (g == ZERO) return f;
+			if (f == g) return f;
+			break;
+		case OP_XOR:
+			if (f == g) return ZERO;
+			if (f == ZERO) return g;
+			if (g == ZERO) return f;
+			if (f == ONE) return not0(g);
+			if (g == ONE) return not0(f);
+			break;
+		}
+
+		if (f > g) {
+			int t = f; f = g; g = t;
+		}
+
+		int slot = cacheSlot(op, f, g, 0);
+		if (cacheOp[slot] == op && cacheA[slot] == f && cacheB[slot] == g)
+			return cacheResult[slot];
+
+		int vf = var[f], vg = var[g];
+		int v = Math.min(vf, vg);
+		int l = apply(op, vf == v ? low[f] : f, vg == v ? low[g] : g);
+		int h = apply(op, vf == v ? high[f] : f, vg == v ? high[g] : g);
+		int result = mk(v, l, h);
+
+		slot = cacheSlot(op, f, g, 0);
+		cacheOp[slot] = op;
+		cacheA[slot] = f;
+		cacheB[slot] = g;
+		cacheC[slot] = 0;
+		cacheResult[slot] = result;
+		return result;
+	}
+
+	private int not0(int f) {
+		if (f == ZERO) return ONE;
+		if (f == ONE) return ZERO;
+
+		int slot = cacheSlot(OP_NOT, f, 0, 0);
+		if (cacheOp[slot] == OP_NOT && cacheA[slot] == f)
+			return cacheResult[slot];
+
+		int result = mk(var[f], not0(low[f]), not0(high[f]));
+
+		slot = cacheSlot(OP_NOT, f, 0, 0);
+		cacheOp[slot] = OP_NOT;
+		cacheA[slot] = f;
+		cacheB[slot] = 0;
+		cacheC[slot] = 0;
+		cacheResult[slot] = result;
+		return result;
+	}
+
+	private void setQuantified(int cube) {
+		Arrays.fill(quantified, false);
+		for (int c = cube; c > ONE; c = high[c])
+			quantified[var[c]] = true;
+	}
+
+	private int exists0(int f, int cube) {
+		if (f <= ONE)
+			return f;
+
+		// skip the variables of the cube above f
+		while (cube > ONE && var[cube] < var[f])
+			cube = high[cube];
+		if (cube <= ONE)
+			return f;
+
+		int slot = cacheSlot(OP_EXISTS, f, cube, 0);
+		if (cacheOp[slot] == OP_EXISTS && cacheA[slot] == f && cacheB[slot] == cube)
+			return cacheResult[slot];
+
+		int result;
+		int l = exists0(low[f], cube);
+		if (quantified[var[f]]) {
+			if (l == ONE)
+				result = ONE;
+			else {
+				int h = exists0(high[f], cube);
+				result = apply(OP_OR, l, h);
+			}
+		}
+		else {
+			int h = exists0(high[f], cube);
+			result = mk(var[f], l, h);
+		}
+
+		slot = cacheSlot(OP_EXISTS, f, cube, 0);
+		cacheOp[slot] = OP_EXISTS;
+		cacheA[slot] = f;
+		cacheB[slot] = cube;
+		cacheC[slot] = 0;
+		cacheResult[slot] = result;
+		return result;
+	}
+
+	private int andExists0(int f, int g, int cube) {
+		if (f == ZERO || g == ZERO)
+			return ZERO;
+		if (f == ONE && g == ONE)
+			return ONE;
+		if (f == ONE)
+			return exists0(g, cube);
+		if (g == ONE || f == g)
+			return exists0(f, cube);
+
+		if (f > g) {
+			int t = f; f = g; g = t;
+		}
+
+		int vf = var[f], vg = var[g];
+		int v = Math.min(vf, vg);
+		while (cube > ONE && var[cube] < v)
+			cube = high[cube];
+		if (cube <= ONE)
+			return apply(OP_AND, f, g);
+
+		int slot = cacheSlot(OP_AND_EXISTS, f, g, cube);
+		if (cacheOp[slot] == OP_AND_EXISTS && cacheA[slot] == f && cacheB[slot] == g && cacheC[slot] == cube)
+			return cacheResult[slot];
+
+		int f0 = vf == v ? low[f] : f, f1 = vf == v ? high[f] : f;
+		int g0 = vg == v ? low[g] : g, g1 = vg == v ? high[g] : g;
+
+		int result;
+		int l = andExists0(f0, g0, cube);
+		if (quantified[v]) {
+			if (l == ONE)
+				result = ONE;
+			else
+				result = apply(OP_OR, l, andExists0(f1, g1, cube));
+		}
+		else
+			result = mk(v, l, andExists0(f1, g1, cube));
+
+		slot = cacheSlot(OP_AND_EXISTS, f, g, cube);
+		cacheOp[slot] = OP_AND_EXISTS;
+		cacheA[slot] = f;
+		cacheB[slot] = g;
+		cacheC[slot] = cube;
+		cacheResult[slot] = result;
+		return result;
+	}
+
+
+	// *******************************************************************
+	// Counting and enumeration
+	// *******************************************************************
+
+	/**
+	 * Returns the number of satisfying assignments of all variables.
+	 */
+	public double satCount(int f) {
+		return satCount(f, new HashMap<Integer, Double>()) * Math.pow(2, var[f]);
+	}
+
+	/**
+	 * Returns the number of satisfying assignments of the variables of the given cube, f may only depend on them.
+	 */
+	public double satCount(int f, int cube) {
+		int n = 0;
+		for (int c = cube; c > ONE; c = high[c])
+			++n;
+		return satCount(f) / Math.pow(2, numberOfVariables - n);
+	}
+
+	private double satCount(int f, Map<Integer, Double> memo) {
+		if (f == ZERO) return 0;
+		if (f == ONE) return 1;
+
+		Double known = memo.get(f);
+		if (known != null)
+			return known;
+
+		double l = satCount(low[f], memo) * Math.pow(2, var[low[f]] - var[f] - 1);
+		double h = satCount(high[f], memo) * Math.pow(2, var[high[f]] - var[f] - 1);
+		double result = l + h;
+		memo.put(f, result);
+		return result;
+	}
+
+	/**
+	 * Receives the assignments of {@link BDD#enumerate(int, int[], Visitor)}.
+	 */
+	public static interface Visitor {
+		/**
+		 * @param values values[i] is the value of the i-th enumerated variable
+		 * @return false to stop the enumeration
+		 */
+		public boolean visit(boolean[] values);
+	}
+
+	/**
+	 * Enumerates all satisfying assignments of the given variables, which must be sorted and
+	 * contain all variables f depends on.
+	 */
+	public void enumerate(int f, int[] vars, Visitor visitor) {
+		enumerate(f, vars, 0, new boolean[vars.length], visitor);
+	}
+
+	private boolean enumerate(int f, int[] vars, int i, boolean[] values, Visitor visitor) {
+		if (f == ZERO)
+			return true;
+		if (i == vars.length)
+			return visitor.visit(values.clone());
+
+		if (var[f] == vars[i]) {
+			values[i] = false;
+			if (!enumerate(low[f], vars, i+1, values, visitor))
+				return false;
+			values[i] = true;
+			return enumerate(high[f], vars, i+1, values, visitor);
+		}
+
+		values[i] = false;
+		if (!enumerate(f, vars, i+1, values, visitor))
+			return false;
+		values[i] = true;
+		return enumerate(f, vars, i+1, values, visitor);
+	}
+
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.util.bdd;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Static variable ordering heuristics for {@link BDD}s.
+ *
+ * <p>The variables are the vertices of a hypergraph, e.g. the places of a Petri net, and every hyperedge
+ * contains variables which are related, e.g. the pre- and postset of a transition. Orders where
+ * related variables are close to each other tend to give small BDDs.
+ */
+public class BDDOrdering {
+
+	private BDDOrdering() {
+	}
+
+	/**
+	 * Returns an order visiting the variables breadth first along the hyperedges, starting with the given
+	 * variables and continuing with the lowest unvisited variable for unconnected parts.
+	 *
+	 * @return order[i] is the variable at level i
+	 */
+	public static int[] traversal(int numberOfVariables, int[][] edges, int[] start) {
+		List<List<Integer>> incident = incidence(numberOfVariables, edges);
+		boolean[] visited = new boolean[numberOfVariables];
+		boolean[] edgeVisited = new boolean[edges.length];
+		int[] order = new int[numberOfVariables];
+		int level = 0;
+
+		Queue<Integer> queue = new ArrayDeque<Integer>();
+		for (int v : start)
+			if (!visited[v]) {
+				visited[v] = true;
+				queue.add(v);
+			}
+
+		int next = 0;
+		while (level < numberOfVariables) {
+			if (queue.isEmpty()) {
+				while (visited[next])
+					++next;
+				visited[next] = true;
+				queue.add(next);
+			}
+
+			int v = queue.poll();
+			order[level++] = v;
+			for (int e : incident.get(v)) {
+				if (edgeVisited[e])
+					continue;
+				edgeVisited[e] = true;
+				for (int w : edges[e])
+					if (!visited[w]) {
+						visited[w] = true;
+						queue.add(w);
+					}
+			}
+		}
+
+		return order;
+	}
+
+	/**
+	 * Improves an order with the FORCE heuristic of Aloul, Markov and Sakallah: every vertex is moved to the
+	 * average of the centres of gravity of its hyperedges, this is repeated while the total span of the hyperedges
+	 * decreases.
+	 *
+	 * @param order The initial order, order[i] is the variable at level i
+	 * @return The improved order
+	 */
+	public static int[] force(int numberOfVariables, int[][] edges, int[] order) {
+		List<List<Integer>> incident = incidence(numberOfVariables, edges);
+
+		int[] best = order.clone();
+		long bestSpan = span(edges, levels(best));
+		int maxIterations = 2 * (32 - Integer.numberOfLeadingZeros(numberOfVariables)) + 10;
+
+		int[] current = best;
+		for (int iteration = 0; iteration < maxIterations; ++iteration) {
+			int[] level = levels(current);
+
+			double[] gravity = new double[edges.length];
+			for (int e=0; e<edges.length; ++e) {
+				double sum = 0;
+				for (int v : edges[e])
+					sum += level[v];
+				gravity[e] = edges[e].length == 0 ? 0 : sum / edges[e].length;
+			}
+
+			final double[] position = new double[numberOfVariables];
+			for (int v=0; v<numberOfVariables; ++v) {
+				List<Integer> es = incident.get(v);
+				if (es.isEmpty()) {
+					position[v] = level[v];
+					continue;
+				}
+				double sum = 0;
+				for (int e : es)
+					sum += gravity[e];
+				position[v] = sum / es.size();
+			}
+
+			Integer[] sorted = new Integer[numberOfVariables];
+			for (int i=0; i<numberOfVariables; ++i)
+				sorted[i] = current[i];
+			Arrays.sort(sorted, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return Double.compare(position[a], position[b]);
+				}
+			});
+
+			int[] next = new int[numberOfVariables];
+			for (int i=0; i<numberOfVariables; ++i)
+				next[i] = sorted[i];
+
+			long nextSpan = span(edges, levels(next));
+			if (nextSpan >= bestSpan)
+				break;
+
+			best = next;
+			bestSpan = nextSpan;
+			current = next;
+		}
+
+		return best;
+	}
+
+	/**
+	 * Returns the level of each variable for an order.
+	 */
+	public static int[] levels(int[] order) {
+		int[] level = new int[order.length];
+		for (int i=0; i<order.length; ++i)
+			level[order[i]] = i;
+		return level;
+	}
+
+	/**
+	 * Returns the sum of the spans of all hyperedges, i.e. the distance of their highest and lowest variable.
+	 */
+	public static long span(int[][] edges, int[] level) {
+		long result = 0;
+		for (int[] edge : edges) {
+			int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+			for (int v : edge) {
+				min = Math.min(min, level[v]);
+				max = Math.max(max, level[v]);
+			}
+			if (edge.length > 0)
+				result += max - min;
+		}
+		return result;
+	}
+
+	private static List<List<Integer>> incidence(int numberOfVariables, int[][] edges) {
+		List<List<Integer>> result = new ArrayList<List<Integer>>(numberOfVariables);
+		for (int v=0; v<numberOfVariables; ++v)
+			result.add(new ArrayList<Integer>(2));
+		for (int e=0; e<edges.length; ++e)
+			for (int v : edges[e])
+				result.get(v).add(e);
+		return result;
+	}
+
+}
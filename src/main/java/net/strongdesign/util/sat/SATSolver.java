@@ -0,0 +1,720 @@
+/**
+ * Copyright 2004-2014 Mark Schaefer, Dominic Wist, Stanislavs Golubcovs, Norman Kluge
+ *
+ * This file is part of DesiJ.
+ *
+ * DesiJ is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * DesiJ is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with DesiJ.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.strongdesign.util.sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An incremental CDCL SAT solver in the style of MiniSat.
+ *
+ * <p>Variables are numbered from 1, literals are given like in DIMACS: v for the variable and -v for its
+ * negation. Clauses can be added between calls of {@link #solve(int...)}, which decides satisfiability under
+ * a set of assumed literals. Learned clauses are kept from one call to the next, hence a sequence of similar
+ * queries on the same formula gets cheaper; a clause which should only hold for some queries is guarded with
+ * an activation literal that is assumed when needed.
+ *
+ * <p>The search uses two watched literals, VSIDS with phase saving, first UIP learning with clause
+ * minimisation, Luby restarts and removes learned clauses with a high literal block distance from time to time.
+ * Instances are not thread-safe.
+ */
+public class SATSolver {
+
+	public static final int SAT = 0;
+	public static final int UNSAT = 1;
+	public static final int UNKNOWN = 2;
+
+	private static final byte UNDEF = 0;
+	private static final byte TRUE = 1;
+	private static final byte FALSE = -1;
+
+	private static final int RESTART_UNIT = 100;
+	private static final double VAR_DECAY = 0.95;
+	private static final double CLAUSE_DECAY = 0.999;
+
+	private static final class Clause {
+		final int[] lits;
+		final boolean learnt;
+		double activity;
+		int lbd;
+		boolean deleted;
+
+		Clause(int[] lits, boolean learnt) {
+			this.lits = lits;
+			this.learnt = learnt;
+		}
+	}
+
+	private int numberOfVariables;
+
+	// indexed by internal literals 2v and 2v+1
+	private byte[] value = new byte[4];
+	private Clause[][] watches = new Clause[4][];
+	private int[] watchSize = new int[4];
+
+	// indexed by variables
+	private int[] level = new int[2];
+	private Clause[] reason = new Clause[2];
+	private boolean[] polarity = new boolean[2];
+	private boolean[] seen = new boolean[2];
+	private double[] activity = new double[2];
+	private boolean[] model = new boolean[2];
+
+	private int[] trail = new int[2];
+	private int trailSize;
+	private int qhead;
+	private int[] trailLim = new int[2];
+	private int decisionLevel;
+
+	private final List<Clause> clauses = new ArrayList<Clause>();
+	private final List<Clause> learnts = new ArrayList<Clause>();
+	private double maxLearnts;
+
+	private double varInc = 1;
+	private double clauseInc = 1;
+
+	// a binary max-heap of the unassigned variables ordered by activity
+	private int[] heap = new int[2];
+	private int heapSize;
+	private int[] heapIndex = new int[2];
+
+	/**False if the clauses are unsatisfiable without any assumption.*/
+	private boolean okay = true;
+
+	private long conflicts;
+	private long conflictLimit;
+
+	private int trueLiteral;
+
+	// buffers for conflict analysis
+	private final IntBuffer learntBuffer = new IntBuffer();
+	private int lbd;
+	private int[] levelStamp = new int[2];
+	private int stampCounter;
+
+
+	// *******************************************************************
+	// Formula
+	// *******************************************************************
+
+	/**Creates a new variable and returns its number.*/
+	public int newVariable() {
+		int v = ++numberOfVariables;
+		if (v >= level.length) {
+			int n = 2 * level.length;
+			level = Arrays.copyOf(level, n);
+			reason = Arrays.copyOf(reason, n);
+			polarity = Arrays.copyOf(polarity, n);
+			seen = Arrays.copyOf(seen, n);
+			activity = Arrays.copyOf(activity, n);
+			model = Arrays.copyOf(model, n);
+			trail = Arrays.copyOf(trail, n);
+			trailLim = Arrays.copyOf(trailLim, Math.max(n, trailLim.length));
+			heap = Arrays.copyOf(heap, n);
+			heapIndex = Arrays.copyOf(heapIndex, n);
+			levelStamp = Arrays.copyOf(levelStamp, Math.max(n, levelStamp.length));
+			value = Arrays.copyOf(value, 2 * n);
+			watches = Arrays.copyOf(watches, 2 * n);
+			watchSize = Arrays.copyOf(watchSize, 2 * n);
+		}
+		heapIndex[v] = -1;
+		heapInsert(v);
+		return v;
+	}
+
+	public int getNumberOfVariables() {
+		return numberOfVariables;
+	}
+
+	/**Returns the number of conflicts of all calls of {@link #solve(int...)} so far.*/
+	public long getConflicts() {
+		return conflicts;
+	}
+
+	/**
+	 * Limits the number of conflicts of a single call of {@link #solve(int...)}, which returns
+	 * {@link #UNKNOWN} if the limit is exceeded. 0 means no limit, which is the default.
+	 */
+	public void setConflictLimit(long limit) {
+		this.conflictLimit = limit;
+	}
+
+	/**
+	 * Adds a clause.
+	 * @return false if the clauses became unsatisfiable
+	 */
+	public boolean addClause(int... literals) {
+		if (!okay)
+			return false;
+
+		int[] lits = new int[literals.length];
+		int n = 0;
+		for (int literal : literals) {
+			int lit = toInternal(literal);
+			if (value[lit] == TRUE || contains(lits, n, lit ^ 1))
+				return true;
+			if (value[lit] == FALSE || contains(lits, n, lit))
+				continue;
+			lits[n++] = lit;
+		}
+
+		if (n == 0)
+			return okay = false;
+		if (n == 1) {
+			assign(lits[0], null);
+			return okay = propagate() == null;
+		}
+
+		Clause clause = new Clause(Arrays.copyOf(lits, n), false);
+		clauses.add(clause);
+		attach(clause);
+		return true;
+	}
+
+	/**Returns a literal which is always true.*/
+	public int getTrue() {
+		if (trueLiteral == 0) {
+			trueLiteral = newVariable();
+			addClause(trueLiteral);
+		}
+		return trueLiteral;
+	}
+
+	/**Returns a new literal equivalent to the conjunction of the given literals.*/
+	public int and(int... literals) {
+		if (literals.length == 0)
+			return getTrue();
+		if (literals.length == 1)
+			return literals[0];
+		int result = newVariable();
+		int[] clause = new int[literals.length + 1];
+		for (int i = 0; i < literals.length; i++) {
+			addClause(-result, literals[i]);
+			clause[i] = -literals[i];
+		}
+		clause[literals.length] = result;
+		addClause(clause);
+		return result;
+	}
+
+	/**Returns a new literal equivalent to the disjunction of the given literals.*/
+	public int or(int... literals) {
+		int[] negated = new int[literals.length];
+		for (int i = 0; i < literals.length; i++)
+			negated[i] = -literals[i];
+		return -and(negated);
+	}
+
+	/**Returns a new literal equivalent to the exclusive or of both literals.*/
+	public int xor(int a, int b) {
+		int result = newVariable();
+		addClause(-result, a, b);
+		addClause(-result, -a, -b);
+		addClause(result, -a, b);
+		addClause(result, a, -b);
+		return result;
+	}
+
+	/**Adds clauses allowing at most one of the literals to be true.*/
+	public void atMostOne(int... literals) {
+		if (literals.length <= 5) {
+			for (int i = 0; i < literals.length; i++)
+				for (int j = i + 1; j < literals.length; j++)
+					addClause(-literals[i], -literals[j]);
+			return;
+		}
+
+		// sequential counter: s_i is true if one of the first i+1 literals is true
+		int previous = literals[0];
+		for (int i = 1; i < literals.length; i++) {
+			addClause(-previous, -literals[i]);
+			if (i == literals.length - 1)
+				break;
+			int s = newVariable();
+			addClause(-previous, s);
+			addClause(-literals[i], s);
+			previous = s;
+		}
+	}
+
+
+	// *******************************************************************
+	// Solving
+	// *******************************************************************
+
+	/**
+	 * Decides whether the clauses and the assumptions are satisfiable. If so, the model can be read
+	 * with {@link #getValue(int)} until the next call.
+	 * @return {@link #SAT}, {@link #UNSAT} or {@link #UNKNOWN} if the conflict limit was exceeded
+	 */
+	public int solve(int... assumptions) {
+		if (!okay)
+			return UNSAT;
+
+		int[] assumed = new int[assumptions.length];
+		for (int i = 0; i < assumptions.length; i++)
+			assumed[i] = toInternal(assumptions[i]);
+
+		if (maxLearnts == 0)
+			maxLearnts = Math.max(clauses.size() / 3.0, 2000);
+
+		long limit = conflictLimit > 0 ? conflicts + conflictLimit : Long.MAX_VALUE;
+		int result = UNKNOWN;
+		for (int restarts = 0; result == UNKNOWN; restarts++) {
+			if (conflicts >= limit)
+				break;
+			long budget = (long) (RESTART_UNIT * luby(restarts));
+			result = search(assumed, Math.min(conflicts + budget, limit));
+		}
+
+		backtrack(0);
+		return result;
+	}
+
+	/**Returns the value of the literal in the last model.*/
+	public boolean getValue(int literal) {
+		boolean v = model[Math.abs(literal)];
+		return literal > 0 ? v : !v;
+	}
+
+	private int search(int[] assumptions, long limit) {
+		while (true) {
+			Clause conflict = propagate();
+			if (conflict != null) {
+				conflicts++;
+				if (decisionLevel == 0) {
+					okay = false;
+					return UNSAT;
+				}
+
+				int backtrackLevel = analyze(conflict);
+				backtrack(backtrackLevel);
+				int[] lits = learntBuffer.toArray();
+				if (lits.length == 1)
+					assign(lits[0], null);
+				else {
+					Clause learnt = new Clause(lits, true);
+					learnt.lbd = lbd;
+					learnts.add(learnt);
+					attach(learnt);
+					bumpClause(learnt);
+					assign(lits[0], learnt);
+				}
+
+				varInc /= VAR_DECAY;
+				clauseInc /= CLAUSE_DECAY;
+				continue;
+			}
+
+			if (conflicts >= limit) {
+				backtrack(0);
+				return UNKNOWN;
+			}
+			if (learnts.size() - trailSize >= maxLearnts) {
+				reduceLearnts();
+				maxLearnts *= 1.1;
+			}
+
+			int next = -1;
+			while (decisionLevel < assumptions.length) {
+				int p = assumptions[decisionLevel];
+				if (value[p] == TRUE)
+					newDecisionLevel();
+				else if (value[p] == FALSE)
+					return UNSAT;
+				else {
+					next = p;
+					break;
+				}
+			}
+
+			if (next == -1) {
+				int v = pickBranchVariable();
+				if (v == 0) {
+					for (int u = 1; u <= numberOfVariables; u++)
+						model[u] = value[2 * u] == TRUE;
+					return SAT;
+				}
+				next = polarity[v] ? 2 * v : 2 * v + 1;
+			}
+
+			newDecisionLevel();
+			assign(next, null);
+		}
+	}
+
+	private int pickBranchVariable() {
+		while (heapSize > 0) {
+			int v = heapRemoveMax();
+			if (value[2 * v] == UNDEF)
+				return v;
+		}
+		return 0;
+	}
+
+	private void newDecisionLevel() {
+		// assumptions which are already true get a level of their own
+		if (decisionLevel + 1 >= trailLim.length) {
+			trailLim = Arrays.copyOf(trailLim, 2 * trailLim.length);
+			levelStamp = Arrays.copyOf(levelStamp, 2 * levelStamp.length);
+		}
+		trailLim[decisionLevel++] = trailSize;
+	}
+
+	private void assign(int lit, Clause from) {
+		int v = lit >> 1;
+		value[lit] = TRUE;
+		value[lit ^ 1] = FALSE;
+		level[v] = decisionLevel;
+		reason[v] = from;
+		trail[trailSize++] = lit;
+	}
+
+	private void backtrack(int targetLevel) {
+		if (decisionLevel <= targetLevel)
+			return;
+		for (int i = trailSize - 1; i >= trailLim[targetLevel]; i--) {
+			int lit = trail[i];
+			int v = lit >> 1;
+			value[lit] = UNDEF;
+			value[lit ^ 1] = UNDEF;
+			reason[v] = null;
+			polarity[v] = (lit & 1) == 0;
+			if (heapIndex[v] == -1)
+				heapInsert(v);
+		}
+		trailSize = trailLim[targetLevel];
+		qhead = trailSize;
+		decisionLevel = targetLevel;
+	}
+
+	/**
+	 * Propagates all assignments of the trail. The watches of a literal are the clauses which have to be
+	 * visited when the literal becomes false.
+	 * @return the conflicting clause or null
+	 */
+	private Clause propagate() {
+		while (qhead < trailSize) {
+			int falseLit = trail[qhead++] ^ 1;
+			Clause[] ws = watches[falseLit];
+			int n = watchSize[falseLit];
+			int i = 0, j = 0;
+
+			next: while (i < n) {
+				Clause c = ws[i++];
+				if (c.deleted)
+					continue;
+				int[] lits = c.lits;
+				if (lits[0] == falseLit) {
+					lits[0] = lits[1];
+					lits[1] = falseLit;
+				}
+				if (value[lits[0]] == TRUE) {
+					ws[j++] = c;
+					continue;
+				}
+
+				for (int k = 2; k < lits.length; k++) {
+					if (value[lits[k]] != FALSE) {
+						lits[1] = lits[k];
+						lits[k] = falseLit;
+						addWatch(lits[1], c);
+						continue next;
+					}
+				}
+
+				ws[j++] = c;
+				if (value[lits[0]] == FALSE) {
+					while (i < n)
+						ws[j++] = ws[i++];
+					watchSize[falseLit] = j;
+					qhead = trailSize;
+					return c;
+				}
+				assign(lits[0], c);
+			}
+			watchSize[falseLit] = j;
+		}
+		return null;
+	}
+
+	/**
+	 * First UIP conflict analysis, the learned clause is left in learntBuffer with the asserting literal
+	 * first and a literal of the highest remaining level second.
+	 * @return the level to backtrack to
+	 */
+	private int analyze(Clause conflict) {
+		learntBuffer.clear();
+		learntBuffer.add(0);
+
+		int pathCount = 0;
+		int p = -1;
+		int index = trailSize - 1;
+		Clause c = conflict;
+		do {
+			if (c.learnt)
+				bumpClause(c);
+			for (int k = p == -1 ? 0 : 1; k < c.lits.length; k++) {
+				int q = c.lits[k];
+				int v = q >> 1;
+				if (!seen[v] && level[v] > 0) {
+					seen[v] = true;
+					bumpVariable(v);
+					if (level[v] >= decisionLevel)
+						pathCount++;
+					else
+						learntBuffer.add(q);
+				}
+			}
+			while (!seen[trail[index--] >> 1]);
+			p = trail[index + 1];
+			c = reason[p >> 1];
+			seen[p >> 1] = false;
+			pathCount--;
+		} while (pathCount > 0);
+		learntBuffer.data[0] = p ^ 1;
+
+		// remove literals implied by the others
+		int[] lits = learntBuffer.toArray();
+		int n = 1;
+		for (int i = 1; i < lits.length; i++)
+			if (!isRedundant(lits[i]))
+				learntBuffer.data[n++] = lits[i];
+		for (int i = 1; i < lits.length; i++)
+			seen[lits[i] >> 1] = false;
+		learntBuffer.size = n;
+
+		int backtrackLevel = 0;
+		if (n > 1) {
+			int max = 1;
+			for (int i = 2; i < n; i++)
+				if (level[learntBuffer.data[i] >> 1] > level[learntBuffer.data[max] >> 1])
+					max = i;
+			int q = learntBuffer.data[max];
+			learntBuffer.data[max] = learntBuffer.data[1];
+			learntBuffer.data[1] = q;
+			backtrackLevel = level[q >> 1];
+		}
+
+		// the literal block distance
+		lbd = 0;
+		stampCounter++;
+		for (int i = 0; i < n; i++) {
+			int l = level[learntBuffer.data[i] >> 1];
+			if (levelStamp[l] != stampCounter) {
+				levelStamp[l] = stampCounter;
+				lbd++;
+			}
+		}
+		return backtrackLevel;
+	}
+
+	private boolean isRedundant(int lit) {
+		Clause r = reason[lit >> 1];
+		if (r == null)
+			return false;
+		for (int k = 1; k < r.lits.length; k++) {
+			int v = r.lits[k] >> 1;
+			if (!seen[v] && level[v] > 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**Removes half of the learned clauses, preferring those with a high literal block distance and low activity.*/
+	private void reduceLearnts() {
+		Collections.sort(learnts, new Comparator<Clause>() {
+			public int compare(Clause a, Clause b) {
+				if (a.lbd != b.lbd)
+					return a.lbd > b.lbd ? -1 : 1;
+				return Double.compare(a.activity, b.activity);
+			}
+		});
+
+		int toRemove = learnts.size() / 2;
+		List<Clause> kept = new ArrayList<Clause>(learnts.size() - toRemove);
+		for (Clause c : learnts) {
+			if (toRemove > 0 && c.lbd > 2 && !isLocked(c)) {
+				c.deleted = true;
+				toRemove--;
+			}
+			else
+				kept.add(c);
+		}
+		learnts.clear();
+		learnts.addAll(kept);
+
+		for (int lit = 2; lit < 2 * numberOfVariables + 2; lit++) {
+			Clause[] ws = watches[lit];
+			if (ws == null)
+				continue;
+			int j = 0;
+			for (int i = 0; i < watchSize[lit]; i++)
+				if (!ws[i].deleted)
+					ws[j++] = ws[i];
+			Arrays.fill(ws, j, watchSize[lit], null);
+			watchSize[lit] = j;
+		}
+	}
+
+	private boolean isLocked(Clause c) {
+		int lit = c.lits[0];
+		return value[lit] == TRUE && reason[lit >> 1] == c;
+	}
+
+	private void attach(Clause c) {
+		addWatch(c.lits[0], c);
+		addWatch(c.lits[1], c);
+	}
+
+	private void addWatch(int lit, Clause c) {
+		Clause[] ws = watches[lit];
+		if (ws == null)
+			ws = watches[lit] = new Clause[4];
+		else if (watchSize[lit] == ws.length)
+			ws = watches[lit] = Arrays.copyOf(ws, 2 * ws.length);
+		ws[watchSize[lit]++] = c;
+	}
+
+	private void bumpVariable(int v) {
+		if ((activity[v] += varInc) > 1e100) {
+			for (int u = 1; u <= numberOfVariables; u++)
+				activity[u] *= 1e-100;
+			varInc *= 1e-100;
+		}
+		if (heapIndex[v] != -1)
+			heapUp(heapIndex[v]);
+	}
+
+	private void bumpClause(Clause c) {
+		if ((c.activity += clauseInc) > 1e20) {
+			for (Clause d : learnts)
+				d.activity *= 1e-20;
+			clauseInc *= 1e-20;
+		}
+	}
+
+	/**The Luby sequence 1 1 2 1 1 2 4 1 1 2 ...*/
+	private static double luby(int x) {
+		int size = 1, seq = 0;
+		while (size < x + 1) {
+			seq++;
+			size = 2 * size + 1;
+		}
+		while (size - 1 != x) {
+			size = (size - 1) >> 1;
+			seq--;
+			x = x % size;
+		}
+		return Math.pow(2, seq);
+	}
+
+	private int toInternal(int literal) {
+		int v = Math.abs(literal);
+		if (literal == 0 || v > numberOfVariables)
+			throw new IllegalArgumentException("Unknown variable: " + literal);
+		return literal > 0 ? 2 * v : 2 * v + 1;
+	}
+
+	private static boolean contains(int[] lits, int n, int lit) {
+		for (int i = 0; i < n; i++)
+			if (lits[i] == lit)
+				return true;
+		return false;
+	}
+
+
+	// *******************************************************************
+	// Heap
+	// *******************************************************************
+
+	private void heapInsert(int v) {
+		heap[heapSize] = v;
+		heapIndex[v] = heapSize;
+		heapUp(heapSize++);
+	}
+
+	private int heapRemoveMax() {
+		int v = heap[0];
+		heapIndex[v] = -1;
+		if (--heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			heapDown(0);
+		}
+		return v;
+	}
+
+	private void heapUp(int i) {
+		int v = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (activity[heap[parent]] >= activity[v])
+				break;
+			heap[i] = heap[parent];
+			heapIndex[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+
+	private void heapDown(int i) {
+		int v = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize)
+				break;
+			if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]])
+				child++;
+			if (activity[heap[child]] <= activity[v])
+				break;
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+
+
+	private static final class IntBuffer {
+		int[] data = new int[16];
+		int size;
+
+		void clear() {
+			size = 0;
+		}
+
+		void add(int x) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, 2 * size);
+			data[size++] = x;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+
+}